@@ -1,19 +1,133 @@
 package core.util.random;
 
 import java.util.Random;
+import java.util.SplittableRandom;
 
+/**
+ * Random engine service of genstar. 
+ * <p>
+ * Each thread draws from its own {@link GenstarRandomStream}, split from one master stream, so there is no
+ * contention between threads that draw at the same time. When a master seed is given with {@link #setSeed(long)},
+ * single threaded generation is reproducible. For parallel tasks to be reproducible as well, whatever
+ * the thread they are executed by, they should draw from a task stream: either one derived from master seed
+ * with {@link #getStream(long)} or one split from the current engine with {@link #split()}, bound to the
+ * executing thread with {@link #setThreadInstance(Random)}.
+ * <p>
+ * An engine set with {@link #setInstance(Random)} is shared by all threads that have not been bound
+ * to a specific engine
+ *
+ */
 public class GenstarRandom {
 	
-	private static Random randomEngine;
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
 	
+	private static volatile long masterSeed = new SplittableRandom().nextLong();
+	private static GenstarRandomStream master = new GenstarRandomStream(masterSeed);
+	private static volatile int generation = 0;
+	
+	private static volatile Random randomEngine;
+	
+	private static final ThreadLocal<Random> threadEngine = new ThreadLocal<>();
+	private static final ThreadLocal<ThreadStream> threadStream = new ThreadLocal<>();
+	
+	/**
+	 * The random engine bound to the current thread, if any, or the global one when it has been
+	 * set, or the stream of the current thread
+	 * 
+	 * @return
+	 */
 	public static Random getInstance(){
-		if(randomEngine == null)
-			randomEngine = new Random();
-		return randomEngine;
+		Random threadRandom = threadEngine.get();
+		if(threadRandom != null)
+			return threadRandom;
+		if(randomEngine != null)
+			return randomEngine;
+		ThreadStream stream = threadStream.get();
+		if(stream == null || stream.generation != generation) {
+			stream = newThreadStream();
+			threadStream.set(stream);
+		}
+		return stream.engine;
 	}
 	
+	/**
+	 * Set an engine that will be shared by all threads that are not bound to their own engine.
+	 * Passing null restore the default per thread streams
+	 * 
+	 * @param random
+	 */
 	public static void setInstance(Random random){
 		randomEngine = random;
 	}
 	
+	/**
+	 * Bind a random engine to the current thread: parallel tasks that draw from their
+	 * own engine neither contend on the global one nor depend on thread scheduling. 
+	 * Passing null unbinds current thread
+	 * 
+	 * @param random
+	 */
+	public static void setThreadInstance(Random random){
+		if(random == null)
+			threadEngine.remove();
+		else
+			threadEngine.set(random);
+	}
+	
+	/**
+	 * Reset the master stream with the given seed: thread streams are split again from it. Also
+	 * discard the engine set with {@link #setInstance(Random)}, if any
+	 * 
+	 * @param seed
+	 */
+	public static synchronized void setSeed(long seed) {
+		masterSeed = seed;
+		master = new GenstarRandomStream(seed);
+		randomEngine = null;
+		generation++;
+	}
+	
+	/**
+	 * The stream of a given task: it only depends on the master seed and the task number, 
+	 * hence not on the thread that executes the task nor on the draws already made
+	 * 
+	 * @param task
+	 * @return
+	 */
+	public static GenstarRandomStream getStream(long task) {
+		return new GenstarRandomStream(new SplittableRandom(masterSeed + task * GOLDEN_GAMMA).nextLong());
+	}
+	
+	/**
+	 * A new stream split from the engine of the current thread: successive calls
+	 * give different but reproducible streams
+	 * 
+	 * @return
+	 */
+	public static GenstarRandomStream split() {
+		Random current = getInstance();
+		if(current instanceof GenstarRandomStream)
+			return ((GenstarRandomStream) current).split();
+		return new GenstarRandomStream(current.nextLong());
+	}
+	
+	private static synchronized ThreadStream newThreadStream() {
+		return new ThreadStream(master.split(), generation);
+	}
+	
+	/*
+	 * Stream of a thread, outdated when master seed changes
+	 */
+	private static class ThreadStream {
+		
+		private final GenstarRandomStream engine;
+		private final int generation;
+		
+		private ThreadStream(GenstarRandomStream engine, int generation) {
+			this.engine = engine;
+			this.generation = generation;
+		}
+		
+	}
+	
 }
@@ -0,0 +1,78 @@
+package core.util.random;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * A {@link Random} engine backed by a {@link SplittableRandom}: it can be used wherever genstar expects
+ * a {@link Random} but it is meant to be confined to one thread (or one task) at a time. Independent streams 
+ * for other threads or tasks are derived with {@link #split()}, without any contention between them.
+ * <p>
+ * WARNING: contrary to {@link Random}, this engine is not thread safe
+ * 
+ * @see GenstarRandom
+ *
+ */
+public class GenstarRandomStream extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	private SplittableRandom stream;
+	
+	public GenstarRandomStream(long seed) {
+		this(new SplittableRandom(seed));
+	}
+	
+	private GenstarRandomStream(SplittableRandom stream) {
+		super(0L);
+		this.stream = stream;
+	}
+	
+	/**
+	 * Derive a new independent stream: this stream state is advanced, hence successive calls
+	 * give different but reproducible streams
+	 * 
+	 * @return
+	 */
+	public GenstarRandomStream split() {
+		return new GenstarRandomStream(stream.split());
+	}
+	
+	@Override
+	public void setSeed(long seed) {
+		// Called by super constructor before the stream is setup
+		if(stream != null)
+			stream = new SplittableRandom(seed);
+	}
+	
+	@Override
+	protected int next(int bits) {
+		return stream.nextInt() >>> (32 - bits);
+	}
+	
+	@Override
+	public int nextInt() {
+		return stream.nextInt();
+	}
+	
+	@Override
+	public int nextInt(int bound) {
+		return stream.nextInt(bound);
+	}
+	
+	@Override
+	public long nextLong() {
+		return stream.nextLong();
+	}
+	
+	@Override
+	public double nextDouble() {
+		return stream.nextDouble();
+	}
+	
+	@Override
+	public boolean nextBoolean() {
+		return stream.nextBoolean();
+	}
+	
+}
@@ -0,0 +1,147 @@
+package core.util.random.roulette;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import core.util.random.GenstarRandom;
+
+/**
+ * Roulette wheel whose cumulative weights are stored in a Fenwick (binary indexed) tree: drawing an index
+ * and changing the weight of one index are both done in O(log n), so the wheel can follow changes of
+ * weights - e.g. a spatial nest which is full gets a zero weight - without being built again.
+ * <p>
+ * WARNING: weights are copied when the distribution is set, so later changes must go through
+ * {@link #setWeight(int, double)} or {@link #setWeight(Object, double)}
+ *
+ * @param <K>
+ */
+public class FenwickRouletteWheelSelection<K> extends ARouletteWheelSelection<Double, K> {
+
+	private double[] weights;
+	private double[] tree;
+	private double sum;
+
+	private Map<K, Integer> key2index;
+
+	public FenwickRouletteWheelSelection(List<Double> distribution) {
+		super(distribution);
+	}
+
+	@Override
+	protected Double computeDistributionSum(List<Double> distribution) {
+		return distribution.stream().collect(Collectors.summingDouble(n -> n));
+	}
+
+	@Override
+	public void setDistribution(List<Double> distribution) {
+		super.setDistribution(distribution);
+		int n = distribution.size();
+		this.weights = new double[n];
+		this.tree = new double[n+1];
+		for (int i = 0; i < n; i++) {
+			double w = distribution.get(i);
+			if (w < 0)
+				throw new IllegalArgumentException("weights of a roulette wheel cannot be negative, but was "+w);
+			weights[i] = w;
+			// linear construction: each node pushes its partial sum to its parent
+			tree[i+1] += w;
+			int parent = (i+1) + ((i+1) & -(i+1));
+			if (parent <= n)
+				tree[parent] += tree[i+1];
+		}
+		this.sum = total;
+	}
+
+	@Override
+	public void setKeys(List<K> keys) {
+		super.setKeys(keys);
+		this.key2index = null;
+	}
+
+	@Override
+	public Double getValue(K key) {
+		return weights[indexOf(key)];
+	}
+
+	/**
+	 * Changes the weight of an index
+	 * @param index
+	 * @param weight
+	 */
+	public void setWeight(int index, double weight) {
+		if (weight < 0)
+			throw new IllegalArgumentException("weights of a roulette wheel cannot be negative, but was "+weight);
+		double delta = weight - weights[index];
+		if (delta == 0)
+			return;
+		weights[index] = weight;
+		for (int i = index+1; i < tree.length; i += i & -i)
+			tree[i] += delta;
+		sum += delta;
+		total = sum;
+	}
+
+	/**
+	 * Changes the weight of a key
+	 * @param key
+	 * @param weight
+	 */
+	public void setWeight(K key, double weight) {
+		setWeight(indexOf(key), weight);
+	}
+
+	/**
+	 * The sum of all weights
+	 * @return
+	 */
+	public double getTotal() {
+		return sum;
+	}
+
+	@Override
+	public int drawIndex() throws IllegalStateException {
+
+		if (weights == null)
+			throw new IllegalStateException("please define the distribution first using setDistribution()");
+		if (sum <= 0)
+			throw new IllegalStateException("there is no positive weight left to draw from");
+
+		double random = GenstarRandom.getInstance().nextDouble()*sum;
+
+		// descend the tree to the first index whose cumulative weight exceeds random
+		int index = 0;
+		for (int step = Integer.highestOneBit(weights.length); step > 0; step >>= 1) {
+			int next = index + step;
+			if (next <= weights.length && tree[next] <= random) {
+				index = next;
+				random -= tree[next];
+			}
+		}
+
+		// in case something is lost during updates of the sums, stick to a drawable index
+		if (index >= weights.length || weights[index] <= 0) {
+			int i = Math.min(index, weights.length-1);
+			while (i > 0 && weights[i] <= 0) i--;
+			while (i < weights.length-1 && weights[i] <= 0) i++;
+			index = i;
+		}
+		return index;
+	}
+
+	private int indexOf(K key) {
+		if (keys == null)
+			throw new IllegalStateException("please call setKeys() first to define the keys");
+		if (key2index == null) {
+			key2index = new HashMap<>(keys.size() * 2);
+			for (int i = 0; i < keys.size(); i++)
+				key2index.put(keys.get(i), i);
+		}
+		Integer index = key2index.get(key);
+		if (index == null)
+			throw new IllegalArgumentException("unknown key "+key);
+		return index;
+	}
+
+}
@@ -1,6 +1,7 @@
 package core.util.random.roulette;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Creates a RouletteWheelSelectionFactory based on the type of the distribution passed as parameter.
@@ -39,6 +40,22 @@ public final class RouletteWheelSelectionFactory {
 		return res;
 	}
 	
+	/**
+	 * Roulette wheel whose weights can be updated in O(log n) after creation
+	 * 
+	 * @see FenwickRouletteWheelSelection
+	 * @param distribution
+	 * @param keys
+	 * @return
+	 */
+	public static <K> FenwickRouletteWheelSelection<K> getFenwickRouletteWheel(List<? extends Number> distribution, 
+			List<K> keys) {
+		FenwickRouletteWheelSelection<K> res = new FenwickRouletteWheelSelection<>(distribution.stream()
+				.map(Number::doubleValue).collect(Collectors.toList()));
+		res.setKeys(keys);
+		return res;
+	}
+	
 	private RouletteWheelSelectionFactory() {}
 	
 
@@ -0,0 +1,74 @@
+package core.util.random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TestGenstarRandom {
+
+	private static final int DRAWS = 100;
+
+	@After
+	public void tearDown() {
+		GenstarRandom.setSeed(new Random().nextLong());
+	}
+
+	private long[] draw(Random random) {
+		return IntStream.range(0, DRAWS).mapToLong(i -> random.nextLong()).toArray();
+	}
+
+	@Test
+	public void testSeedIsReproducible() {
+		GenstarRandom.setSeed(42);
+		long[] first = draw(GenstarRandom.getInstance());
+		GenstarRandom.setSeed(42);
+		long[] second = draw(GenstarRandom.getInstance());
+		assertArrayEquals(first, second);
+	}
+
+	@Test
+	public void testTaskStreamsDoNotDependOnThreads() throws Exception {
+		GenstarRandom.setSeed(42);
+		long[][] sequential = new long[8][];
+		for(int task = 0; task < sequential.length; task++)
+			sequential[task] = draw(GenstarRandom.getStream(task));
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			List<Future<long[]>> parallel = IntStream.range(0, sequential.length)
+					.mapToObj(task -> executor.submit(() -> {
+						GenstarRandom.setThreadInstance(GenstarRandom.getStream(task));
+						try {
+							return draw(GenstarRandom.getInstance());
+						} finally {
+							GenstarRandom.setThreadInstance(null);
+						}
+					})).collect(Collectors.toList());
+			for(int task = 0; task < sequential.length; task++)
+				assertArrayEquals(sequential[task], parallel.get(task).get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSplitStreamsDiffer() {
+		GenstarRandom.setSeed(42);
+		GenstarRandomStream first = GenstarRandom.split();
+		GenstarRandomStream second = GenstarRandom.split();
+		assertFalse(Arrays.equals(draw(first), draw(second)));
+		assertFalse(Arrays.equals(draw(GenstarRandom.getStream(0)), draw(GenstarRandom.getStream(1))));
+	}
+
+}
@@ -1,5 +1,7 @@
 package core.util.random;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
@@ -12,17 +14,22 @@ import org.apache.logging.log4j.Logger;
 import org.junit.Test;
 
 import core.util.random.roulette.ARouletteWheelSelection;
+import core.util.random.roulette.FenwickRouletteWheelSelection;
 import core.util.random.roulette.RouletteWheelSelectionFactory;
 
 public class TestRouletteWheelSelection {
 
 	private Logger logger = LogManager.getLogger();
 	
-	private <X extends Number, K> void testDistribution(List<X> distribution, int samples, double epsilon) {
+	private <X extends Number> void testDistribution(List<X> distribution, int samples, double epsilon) {
 
 		logger.debug("required wheel {}", distribution);
 		
-		ARouletteWheelSelection<X, K> roulette = RouletteWheelSelectionFactory.getRouletteWheel(distribution);
+		testDistribution(RouletteWheelSelectionFactory.getRouletteWheel(distribution), distribution, samples, epsilon);
+	}
+	
+	private <X extends Number> void testDistribution(ARouletteWheelSelection<?, ?> roulette, List<X> distribution, 
+			int samples, double epsilon) {
 		
 		final double totalRequired =  distribution.stream().collect(Collectors.summingDouble(n -> n.doubleValue()));
 
@@ -71,6 +78,40 @@ public class TestRouletteWheelSelection {
 	}
 
 
+	@Test
+	public void testIndexDistributionInFenwick() {
+		
+		List<Double> l = new ArrayList<>();
+		for (int i=0; i<100; i++)
+			l.add((double)i/1000);
+		testDistribution(RouletteWheelSelectionFactory.getFenwickRouletteWheel(l, l), l, 100000, 0.01);
+		
+	}
+	
+	@Test
+	public void testWeightUpdatesInFenwick() {
+		
+		List<Integer> l = Arrays.asList(12,28,32,46,0,5);
+		List<String> keys = Arrays.asList("a","b","c","d","e","f");
+		FenwickRouletteWheelSelection<String> roulette = RouletteWheelSelectionFactory.getFenwickRouletteWheel(l, keys);
+		
+		// emptied weights are never drawn again
+		roulette.setWeight("d", 0);
+		roulette.setWeight(1, 0);
+		for (int i=0; i<10000; i++) {
+			String key = roulette.drawObject();
+			assertNotEquals("b", key);
+			assertNotEquals("d", key);
+			assertNotEquals("e", key);
+		}
+		assertEquals(49d, roulette.getTotal(), 1e-9);
+		
+		// and updated weights are drawn as if the wheel was built with them
+		roulette.setWeight("e", 10);
+		testDistribution(roulette, Arrays.asList(12,0,32,0,10,5), 10000, 0.02);
+		
+	}
+
 	@Test
 	public void testIndexDistributionInInteger() {
 		
@@ -0,0 +1,581 @@
+package gospl;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import core.metamodel.IPopulation;
+import core.metamodel.attribute.Attribute;
+import core.metamodel.entity.ADemoEntity;
+import core.metamodel.value.IValue;
+import gospl.distribution.GosplNDimensionalMatrixFactory;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.distribution.matrix.control.ControlContingency;
+import gospl.distribution.matrix.coordinate.GosplCoordinate;
+
+/**
+ * Compact population that stores entities as rows of a table: each attribute is a column of value codes,
+ * i.e. the index of the value in a dictionary of the column. Codes are stored in a byte array as long as
+ * the column has less than 256 distinct values, then in a short array and finally in an int array. Hence,
+ * an entity only takes a few bytes in memory instead of a full {@link ADemoEntity}.
+ * <p>
+ * Entities returned by the population (e.g. through {@link #iterator()}) are flyweight views over a row:
+ * reading and setting values read and write the columns. They are equal if they refer to the same row
+ * of the same population. Entities that are added are copied into a new row and are not retained.
+ * Counting entities, e.g. to build a contingency table with {@link #getContingency(Set)}, is
+ * a plain scan of columns.
+ * <p>
+ * WARNING: only values, type and weight of entities are stored. Parent, children and tags
+ * of added entities are lost
+ *
+ */
+public class GosplColumnarPopulation extends AbstractCollection<ADemoEntity>
+	implements IPopulation<ADemoEntity, Attribute<? extends IValue>> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private List<Attribute<? extends IValue>> columnAttributes;
+	private Map<Attribute<? extends IValue>, Integer> attributeIndex;
+
+	private List<Column<IValue>> columns;
+	private Column<String> types;
+	private double[] weights;
+
+	private final BitSet removed;
+	private int rows = 0;
+	private int size = 0;
+	private int capacity;
+	// bumped when rows are cleared, so entities of former rows are no longer part of the population
+	private int generation = 0;
+
+	/**
+	 * Empty population: columns are defined by the first entity added
+	 */
+	public GosplColumnarPopulation() {
+		this.capacity = DEFAULT_CAPACITY;
+		this.removed = new BitSet();
+	}
+
+	/**
+	 * Empty population with given attributes
+	 *
+	 * @param attributes
+	 */
+	public GosplColumnarPopulation(Collection<? extends Attribute<? extends IValue>> attributes) {
+		this();
+		this.setupColumns(attributes);
+	}
+
+	/**
+	 * Population with a given collection of entity within
+	 *
+	 * @param population
+	 */
+	public GosplColumnarPopulation(IPopulation<ADemoEntity, Attribute<? extends IValue>> population) {
+		this(population.getPopulationAttributes());
+		this.ensureCapacity(population.size());
+		this.addAll(population);
+	}
+
+	/*
+	 * Clone constructor
+	 */
+	private GosplColumnarPopulation(GosplColumnarPopulation population) {
+		this.columnAttributes = population.columnAttributes;
+		this.attributeIndex = population.attributeIndex;
+		this.rows = population.rows;
+		this.size = population.size;
+		this.capacity = Math.max(DEFAULT_CAPACITY, population.rows);
+		this.removed = (BitSet) population.removed.clone();
+		if(population.columns != null) {
+			this.columns = new ArrayList<>(population.columns.size());
+			for(Column<IValue> column : population.columns)
+				this.columns.add(column.copy(capacity));
+			this.types = population.types.copy(capacity);
+		}
+		if(population.weights != null)
+			this.weights = Arrays.copyOf(population.weights, capacity);
+	}
+
+	// ------------------------- COLLECTION ------------------------- //
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if(!(o instanceof ColumnarEntity))
+			return false;
+		ColumnarEntity entity = (ColumnarEntity) o;
+		return entity.getPopulation() == this && entity.generation == generation
+				&& entity.row < rows && !removed.get(entity.row);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Values of the entity are copied into a new row, unless the entity is a row of this population
+	 */
+	@Override
+	public boolean add(ADemoEntity e) {
+		if(this.contains(e))
+			return false;
+		if(columns == null)
+			this.setupColumns(e.getAttributes());
+		for(Attribute<? extends IValue> attribute : e.getAttributes())
+			if(!attributeIndex.containsKey(attribute))
+				throw new IllegalArgumentException("the entity should contain attributes "+columnAttributes);
+
+		this.ensureCapacity(rows + 1);
+		int row = rows++;
+		for(int i = 0; i < columnAttributes.size(); i++) {
+			Column<IValue> column = columns.get(i);
+			column.set(row, column.encode(e.getValueForAttribute(columnAttributes.get(i))));
+		}
+		types.set(row, types.encode(e.getEntityType()));
+		if(e.getWeight() != 1d || weights != null)
+			this.getWeights()[row] = e.getWeight();
+		size++;
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if(!this.contains(o))
+			return false;
+		removed.set(((ColumnarEntity) o).row);
+		size--;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		removed.clear();
+		rows = 0;
+		size = 0;
+		generation++;
+	}
+
+	@Override
+	public Iterator<ADemoEntity> iterator() {
+		return new Iterator<ADemoEntity>() {
+
+			private int next = removed.nextClearBit(0);
+			private int last = -1;
+
+			@Override
+			public boolean hasNext() {
+				return next < rows;
+			}
+
+			@Override
+			public ADemoEntity next() {
+				if(!hasNext())
+					throw new NoSuchElementException();
+				last = next;
+				next = removed.nextClearBit(next + 1);
+				return new ColumnarEntity(last);
+			}
+
+			@Override
+			public void remove() {
+				if(last < 0 || removed.get(last))
+					throw new IllegalStateException();
+				removed.set(last);
+				size--;
+			}
+		};
+	}
+
+	@Override
+	public GosplColumnarPopulation clone() {
+		return new GosplColumnarPopulation(this);
+	}
+
+	// ------------------------- POP ACCESSORS ------------------------- //
+
+	@Override
+	public Set<Attribute<? extends IValue>> getPopulationAttributes() {
+		if(columnAttributes == null)
+			return Collections.emptySet();
+		return Collections.unmodifiableSet(new LinkedHashSet<>(columnAttributes));
+	}
+
+	@Override
+	public Attribute<? extends IValue> getPopulationAttributeNamed(String name) {
+		if(columnAttributes == null)
+			return null;
+		for (Attribute<? extends IValue> a: columnAttributes) {
+			if (a.getAttributeName().equals(name))
+				return a;
+		}
+		return null;
+	}
+
+	@Override
+	public boolean isAllPopulationOfType(String type) {
+		for(int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1))
+			if(type == null || !type.equals(types.decode(types.get(row))))
+				return false;
+		return true;
+	}
+
+	// ------------------------- COLUMN SCAN ------------------------- //
+
+	/**
+	 * Number of entities that have all the given values
+	 *
+	 * @param values
+	 * @return
+	 */
+	public int getCountHavingValues(Map<Attribute<? extends IValue>, IValue> values) {
+		int[] axes = new int[values.size()];
+		int[] codes = new int[values.size()];
+		int i = 0;
+		for(Map.Entry<Attribute<? extends IValue>, IValue> value : values.entrySet()) {
+			Integer axis = attributeIndex == null ? null : attributeIndex.get(value.getKey());
+			Integer code = axis == null ? null : columns.get(axis).codes.get(value.getValue());
+			if(code == null)
+				return 0;
+			axes[i] = axis;
+			codes[i++] = code;
+		}
+		int count = 0;
+		for(int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+			boolean match = true;
+			for(int j = 0; j < axes.length && match; j++)
+				match = columns.get(axes[j]).get(row) == codes[j];
+			if(match)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Contingency table of the population over the given attributes: each row is encoded as a
+	 * mixed radix number of the codes of its values, and counted in one scan of columns
+	 *
+	 * @param dimensions
+	 * @return
+	 */
+	public AFullNDimensionalMatrix<Integer> getContingency(Set<Attribute<? extends IValue>> dimensions) {
+		AFullNDimensionalMatrix<Integer> matrix = GosplNDimensionalMatrixFactory.getFactory()
+				.createEmtpyContingencies(dimensions, false);
+		matrix.addGenesis("Created from a columnar population GosplColumnarPopulation@getContingency");
+		if(size == 0)
+			return matrix;
+
+		List<Attribute<? extends IValue>> axisAttributes = new ArrayList<>(dimensions);
+		List<Column<IValue>> axes = new ArrayList<>(axisAttributes.size());
+		for(Attribute<? extends IValue> dimension : axisAttributes) {
+			Integer axis = attributeIndex.get(dimension);
+			if(axis == null)
+				throw new IllegalArgumentException("Attribute "+dimension.getAttributeName()+" is not a population attribute");
+			axes.add(columns.get(axis));
+		}
+
+		// Code 0 (no value) is part of each radix
+		long[] radix = new long[axes.size()];
+		long cells = 1;
+		for(int i = 0; i < axes.size(); i++) {
+			radix[i] = cells;
+			cells = Math.multiplyExact(cells, axes.get(i).values.size() + 1);
+		}
+
+		Map<Long, int[]> counts = new HashMap<>();
+		for(int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+			long key = 0;
+			for(int i = 0; i < axes.size(); i++)
+				key += radix[i] * axes.get(i).get(row);
+			int[] count = counts.get(key);
+			if(count == null)
+				counts.put(key, count = new int[1]);
+			count[0]++;
+		}
+
+		for(Map.Entry<Long, int[]> cell : counts.entrySet()) {
+			Map<Attribute<? extends IValue>, IValue> coordinate = new HashMap<>();
+			for(int i = 0; i < axes.size(); i++) {
+				Column<IValue> axis = axes.get(i);
+				IValue value = axis.decode((int) (cell.getKey() / radix[i] % (axis.values.size() + 1)));
+				if(value != null)
+					coordinate.put(axisAttributes.get(i), value);
+			}
+			matrix.addValue(new GosplCoordinate(coordinate), new ControlContingency(cell.getValue()[0]));
+		}
+		return matrix;
+	}
+
+	// ------------------------- INNER UTILITIES ------------------------- //
+
+	private void setupColumns(Collection<? extends Attribute<? extends IValue>> populationAttributes) {
+		this.columnAttributes = Collections.unmodifiableList(new ArrayList<>(populationAttributes));
+		this.attributeIndex = new HashMap<>();
+		this.columns = new ArrayList<>(columnAttributes.size());
+		for(int i = 0; i < columnAttributes.size(); i++) {
+			attributeIndex.put(columnAttributes.get(i), i);
+			columns.add(new Column<>(capacity));
+		}
+		this.types = new Column<>(capacity);
+	}
+
+	private void ensureCapacity(int minCapacity) {
+		if(minCapacity <= capacity)
+			return;
+		capacity = Math.max(minCapacity, capacity + (capacity >> 1));
+		if(columns != null) {
+			for(Column<IValue> column : columns)
+				column.grow(capacity);
+			types.grow(capacity);
+		}
+		if(weights != null)
+			weights = Arrays.copyOf(weights, capacity);
+	}
+
+	private double[] getWeights() {
+		if(weights == null) {
+			weights = new double[capacity];
+			Arrays.fill(weights, 1d);
+		}
+		return weights;
+	}
+
+	/*
+	 * A column of codes, with the dictionary to translate them into objects. Code 0 stands for null,
+	 * so byte codes go up to 255 distinct values and short codes up to 65535
+	 */
+	private static class Column<V> {
+
+		private final List<V> values;
+		private final Map<V, Integer> codes;
+
+		private byte[] bytes;
+		private short[] shorts;
+		private int[] ints;
+
+		private Column(int capacity) {
+			this.values = new ArrayList<>();
+			this.codes = new HashMap<>();
+			this.bytes = new byte[capacity];
+		}
+
+		private Column(Column<V> column, int capacity) {
+			this.values = new ArrayList<>(column.values);
+			this.codes = new HashMap<>(column.codes);
+			if(column.bytes != null)
+				this.bytes = Arrays.copyOf(column.bytes, capacity);
+			else if(column.shorts != null)
+				this.shorts = Arrays.copyOf(column.shorts, capacity);
+			else
+				this.ints = Arrays.copyOf(column.ints, capacity);
+		}
+
+		private int get(int row) {
+			if(bytes != null)
+				return bytes[row] & 0xFF;
+			if(shorts != null)
+				return shorts[row] & 0xFFFF;
+			return ints[row];
+		}
+
+		private void set(int row, int code) {
+			if(bytes != null)
+				bytes[row] = (byte) code;
+			else if(shorts != null)
+				shorts[row] = (short) code;
+			else
+				ints[row] = code;
+		}
+
+		private int encode(V value) {
+			if(value == null)
+				return 0;
+			Integer code = codes.get(value);
+			if(code == null) {
+				values.add(value);
+				code = values.size();
+				codes.put(value, code);
+				this.widen(code);
+			}
+			return code;
+		}
+
+		private V decode(int code) {
+			return code == 0 ? null : values.get(code - 1);
+		}
+
+		private void widen(int code) {
+			if(bytes != null && code > 0xFF) {
+				shorts = new short[bytes.length];
+				for(int i = 0; i < bytes.length; i++)
+					shorts[i] = (short) (bytes[i] & 0xFF);
+				bytes = null;
+			}
+			if(shorts != null && code > 0xFFFF) {
+				ints = new int[shorts.length];
+				for(int i = 0; i < shorts.length; i++)
+					ints[i] = shorts[i] & 0xFFFF;
+				shorts = null;
+			}
+		}
+
+		private void grow(int capacity) {
+			if(bytes != null)
+				bytes = Arrays.copyOf(bytes, capacity);
+			else if(shorts != null)
+				shorts = Arrays.copyOf(shorts, capacity);
+			else
+				ints = Arrays.copyOf(ints, capacity);
+		}
+
+		private Column<V> copy(int capacity) {
+			return new Column<>(this, capacity);
+		}
+
+	}
+
+	/*
+	 * Flyweight entity: a view over a row of the population
+	 */
+	private class ColumnarEntity extends ADemoEntity {
+
+		private final int row;
+		private final int generation;
+
+		private ColumnarEntity(int row) {
+			super((Map<Attribute<? extends IValue>, IValue>) null);
+			this.row = row;
+			this.generation = GosplColumnarPopulation.this.generation;
+			String type = types.decode(types.get(row));
+			super.setEntityType(type);
+			super._setEntityId((type == null ? "untyped" : type) + "_" + (row + 1));
+		}
+
+		private GosplColumnarPopulation getPopulation() {
+			return GosplColumnarPopulation.this;
+		}
+
+		@Override
+		public void setAttributeValue(Attribute<? extends IValue> attribute, IValue value) {
+			Integer axis = attributeIndex.get(attribute);
+			if(axis == null)
+				throw new IllegalArgumentException("there is no attribute "+attribute.getAttributeName()+" defined for this entity");
+			Column<IValue> column = columns.get(axis);
+			column.set(row, column.encode(value));
+		}
+
+		@Override
+		public void setAttributeValue(String attributeName, IValue value) {
+			Attribute<? extends IValue> attribute = getPopulationAttributeNamed(attributeName);
+			if(attribute == null)
+				throw new IllegalArgumentException("there is no attribute named "+attributeName+" defined for this entity");
+			this.setAttributeValue(attribute, value);
+		}
+
+		@Override
+		public boolean hasAttribute(Attribute<? extends IValue> a) {
+			return attributeIndex.containsKey(a);
+		}
+
+		@Override
+		public IValue getValueForAttribute(Attribute<? extends IValue> attribute) {
+			Integer axis = attributeIndex.get(attribute);
+			if(axis == null)
+				return null;
+			Column<IValue> column = columns.get(axis);
+			return column.decode(column.get(row));
+		}
+
+		@Override
+		public IValue getValueForAttribute(String property) {
+			Attribute<? extends IValue> attribute = getPopulationAttributeNamed(property);
+			return attribute == null ? null : this.getValueForAttribute(attribute);
+		}
+
+		@Override
+		public Map<Attribute<? extends IValue>, IValue> getAttributeMap() {
+			Map<Attribute<? extends IValue>, IValue> map = new HashMap<>();
+			for(int i = 0; i < columnAttributes.size(); i++) {
+				Column<IValue> column = columns.get(i);
+				IValue value = column.decode(column.get(row));
+				if(value != null)
+					map.put(columnAttributes.get(i), value);
+			}
+			return Collections.unmodifiableMap(map);
+		}
+
+		@Override
+		public Collection<Attribute<? extends IValue>> getAttributes() {
+			return columnAttributes;
+		}
+
+		@Override
+		public Collection<IValue> getValues() {
+			return getAttributeMap().values();
+		}
+
+		@Override
+		public void setEntityType(String type) {
+			types.set(row, types.encode(type));
+			super.setEntityType(type);
+		}
+
+		@Override
+		public double getWeight() {
+			return weights == null ? 1d : weights[row];
+		}
+
+		@Override
+		public void setWeight(double weight) {
+			getWeights()[row] = weight;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * <p>
+		 * The clone is a {@link GosplEntity} that does not belong to the population
+		 */
+		@Override
+		public ADemoEntity clone() {
+			return new GosplEntity(new HashMap<>(getAttributeMap()), getWeight());
+		}
+
+		@Override
+		public String toString() {
+			return "Entity ["+this.getEntityId()+"] "+getAttributeMap().entrySet().stream()
+					.map(e -> e.getKey().getAttributeName()+":"+e.getValue().getStringValue())
+					.collect(Collectors.joining(",\t"));
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(getPopulation()) + row;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj)
+				return true;
+			if(!(obj instanceof ColumnarEntity))
+				return false;
+			ColumnarEntity other = (ColumnarEntity) obj;
+			return other.getPopulation() == getPopulation() && other.row == row
+					&& other.generation == generation;
+		}
+
+	}
+
+}
@@ -2,6 +2,7 @@ package gospl;
 
 import java.io.File;
 import java.net.URL;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -9,16 +10,21 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
@@ -33,11 +39,29 @@ import core.metamodel.entity.EntityUniqueId;
 import core.metamodel.value.IValue;
 import core.metamodel.value.binary.BinarySpace;
 import core.metamodel.value.binary.BooleanValue;
+import core.metamodel.value.numeric.ContinuousValue;
+import core.metamodel.value.numeric.IntegerValue;
+import gospl.distribution.GosplNDimensionalMatrixFactory;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.distribution.matrix.control.AControl;
+import gospl.distribution.matrix.control.ControlContingency;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinate;
 
 /**
  * Stores a population in database; provides quick access. 
- * 
- * TODO prepared statements for perf
+ * <p>
+ * Entities are loaded in bulk with one prepared insert statement per entity type, executed
+ * in batches of {@link #setBatchSize(int)} rows within a transaction. Indexes on attributes
+ * are built once the initial population has been loaded.
+ * <p>
+ * Count queries are prepared once for each entity type and set of attributes, and their results are kept in a
+ * least recently used cache of {@link #setCountCacheSize(int)} queries per entity type. The cache of a type is
+ * cleared whenever entities of this type are added or removed.
+ * <p>
+ * Contingency tables over a set of attributes can be registered with {@link #registerContingency(Set)}: 
+ * they are stored as GROUP BY tables of counts that are updated along with insertions and deletions, 
+ * so {@link #getContingency(Set)} does not go through entities.
  * 
  * TODO create indexes on dimensions often queried together
  * 
@@ -51,6 +75,9 @@ public class GosplPopulationInDatabase
 	public static final String DEFAULT_ENTITY_TYPE = "unknown";
 	public static int REMOVE_ENTITIES_BATCH = 500;
 	public static int ADD_ENTITIES_BATCH = 5000; // TODO more !
+	public static int COUNT_CACHE_SIZE = 10000;
+	public static int COUNT_STATEMENTS_SIZE = 64;
+	public static int FETCH_SIZE = 1000;
 	
 	private Logger logger = LogManager.getLogger();
 	
@@ -67,6 +94,30 @@ public class GosplPopulationInDatabase
 	
 	private Map<String,Set<String>> table2createdIndex = new HashMap<>();
 	
+	private Map<String,PreparedStatement> entityType2insertStatement = new HashMap<>();
+	private Map<String,List<Attribute<? extends IValue>>> entityType2insertAttributes = new HashMap<>();
+	
+	private int batchSize = ADD_ENTITIES_BATCH;
+	
+	private Map<List<Object>,PreparedStatement> countQuery2statement = 
+			new LinkedHashMap<List<Object>,PreparedStatement>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<List<Object>,PreparedStatement> eldest) {
+					if (size() <= COUNT_STATEMENTS_SIZE)
+						return false;
+					closeStatement(eldest.getValue());
+					return true;
+				}
+			};
+	private Map<String,Map<Map<Attribute<? extends IValue>,Set<IValue>>,Integer>> entityType2countCache = new HashMap<>();
+	private int countCacheSize = COUNT_CACHE_SIZE;
+	
+	private int fetchSize = FETCH_SIZE;
+	
+	private Set<Set<Attribute<? extends IValue>>> registeredContingencies = new HashSet<>();
+	private Map<String,Map<Set<Attribute<? extends IValue>>,ContingencyCube>> entityType2cubes = new HashMap<>();
+	
 	public GosplPopulationInDatabase(Connection connection, IPopulation<ADemoEntity, Attribute<? extends IValue>> population) {
 		this.connection = connection;
 		loadPopulationIntoDatabase(population);
@@ -226,14 +277,32 @@ public class GosplPopulationInDatabase
 		s.execute(qry);
 		s.close();
 		
-		// create indexes
-		Set<String> setIndex = new HashSet<>();
-		table2createdIndex.put(getTableNameForEntityType(type), setIndex);
+		for (Set<Attribute<? extends IValue>> attributes: registeredContingencies)
+			createContingencyCube(type, attributes);
+		
+	}
+	
+	/**
+	 * Creates an index for each attribute of the given entity type, if not already done. 
+	 * Building indexes once the table has been filled is much faster than maintaining them during the load.
+	 * @param type
+	 * @throws SQLException
+	 */
+	protected void createIndexesForEntityType(String type) throws SQLException {
+		
+		Set<String> setIndex = table2createdIndex.get(getTableNameForEntityType(type));
+		if (setIndex == null) {
+			setIndex = new HashSet<>();
+			table2createdIndex.put(getTableNameForEntityType(type), setIndex);
+		}
 		
 		Statement s2 = connection.createStatement();				
 		for (Attribute<? extends IValue> a: entityType2attributes.get(type)) {
+			
+			if (setIndex.contains(getAttributeColNameForType(type, a)))
+				continue;
  
-			sb = new StringBuffer();
+			StringBuffer sb = new StringBuffer();
 			sb.append("CREATE INDEX idx_")
 				.append(getTableNameForEntityType(type))
 				.append("_")
@@ -262,8 +331,6 @@ public class GosplPopulationInDatabase
 			createTableForEntityType(type);
 		}
 		
-		// TODO indexes !
-		
 	}
 	
 	
@@ -291,39 +358,148 @@ public class GosplPopulationInDatabase
 		
 		try {
 			storeEntities(entityType, pop);
+			createIndexesForEntityType(entityType);
 		} catch (SQLException e) {
 			e.printStackTrace();
 			throw new RuntimeException("error while inserting the population in database: "+e.getMessage(), e);
 			
 		}
 	}
+	
+	/**
+	 * Number of rows sent to the database at once when entities are stored in bulk
+	 * @param batchSize
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1)
+			throw new IllegalArgumentException("batch size should be strictly positive but was "+batchSize);
+		this.batchSize = batchSize;
+	}
 
 	/**
-	 * Returns the SQL value for the attribute of an entity
+	 * Sets the SQL parameter for the attribute of an entity
+	 * @param st
+	 * @param index
 	 * @param e
 	 * @param a
-	 * @return
+	 * @throws SQLException 
 	 */
-	private String getSQLValueFor(ADemoEntity e, Attribute<? extends IValue> a) {
-		
-		IValue v = e.getValueForAttribute(a);
+	private void setSQLValueFor(PreparedStatement st, int index, ADemoEntity e, Attribute<? extends IValue> a) 
+			throws SQLException {
+		setSQLValue(st, index, a, e.getValueForAttribute(a));
+	}
+	
+	/**
+	 * Sets the SQL parameter for a value of an attribute
+	 * @param st
+	 * @param index
+	 * @param a
+	 * @param v
+	 * @throws SQLException
+	 */
+	private void setSQLValue(PreparedStatement st, int index, Attribute<? extends IValue> a, IValue v) 
+			throws SQLException {
 		
 		switch (a.getValueSpace().getType()) {
-			case Continue:
 			case Integer:
-				return v.getStringValue();
+				if (v == null)
+					st.setNull(index, Types.INTEGER);
+				else if (v instanceof IntegerValue)
+					st.setInt(index, ((IntegerValue)v).getActualValue());
+				else
+					st.setInt(index, Integer.parseInt(v.getStringValue()));
+				break;
+			case Continue:
+				if (v == null)
+					st.setNull(index, Types.DOUBLE);
+				else if (v instanceof ContinuousValue)
+					st.setDouble(index, ((ContinuousValue)v).getActualValue());
+				else
+					st.setDouble(index, Double.parseDouble(v.getStringValue()));
+				break;
 			case Nominal:
 			case Order:
 			case Range:
-				return "'"+v.getStringValue()+"'";
+				if (v == null)
+					st.setNull(index, Types.VARCHAR);
+				else
+					st.setString(index, v.getStringValue());
+				break;
 			case Boolean:
-				return ((BooleanValue)v).getActualValue()?"TRUE":"FALSE";
+				if (v == null)
+					st.setNull(index, Types.BOOLEAN);
+				else
+					st.setBoolean(index, ((BooleanValue)v).getActualValue());
+				break;
 			default:
 				throw new RuntimeException("unknown value type "+a.getValueSpace().getType());
 		}
 	
 	}
 	
+	/**
+	 * Returns the insert statement of a given entity type, prepared once
+	 * @param type
+	 * @return
+	 * @throws SQLException
+	 */
+	protected PreparedStatement getInsertStatement(String type) throws SQLException {
+		
+		PreparedStatement st = entityType2insertStatement.get(type);
+		if (st != null)
+			return st;
+		
+		st = connection.prepareStatement(getInsertQuery(type));
+		entityType2insertStatement.put(type, st);
+		return st;
+	}
+	
+	/*
+	 * The SQL insert query of a given entity type, with one parameter for the id 
+	 * then one for each attribute in the order of entityType2insertAttributes
+	 */
+	private String getInsertQuery(String type) {
+		
+		// name columns 
+		List<Attribute<? extends IValue>> attributes = entityType2insertAttributes.get(type);
+		if (attributes == null) {
+			attributes = new ArrayList<>(entityType2attributes.get(type));
+			entityType2insertAttributes.put(type, attributes);
+		}
+		
+		StringBuffer sb = new StringBuffer();
+		sb.append("INSERT INTO ").append(getTableNameForEntityType(type));
+		sb.append(" (id");
+		for (Attribute<? extends IValue> a: attributes) {
+			sb.append(",");
+			sb.append(getAttributeColNameForType(type, a));
+		}
+		sb.append(") VALUES (?");
+		for (int i = 0; i < attributes.size(); i++)
+			sb.append(",?");
+		sb.append(")");
+		
+		logger.trace("insert query for type {}: {}", type, sb);
+		return sb.toString();
+	}
+	
+	/**
+	 * Binds the values of an entity to an insert statement of its type
+	 * @param st
+	 * @param type
+	 * @param e
+	 * @return the statement ready to be executed or batched
+	 * @throws SQLException
+	 */
+	private PreparedStatement bindInsertStatement(PreparedStatement st, String type, ADemoEntity e) 
+			throws SQLException {
+		List<Attribute<? extends IValue>> attributes = entityType2insertAttributes.get(type);
+		st.setString(1, e.getEntityId());
+		for (int i = 0; i < attributes.size(); i++)
+			setSQLValueFor(st, i+2, e, attributes.get(i));
+		return st;
+	}
+	
 	/**
 	 * For a given attribute of an entity of a given type, decodes the value from a SQL resultset 
 	 * and returns the corresponding genstar value.
@@ -359,78 +535,64 @@ public class GosplPopulationInDatabase
 	}
 	
 	
+	/**
+	 * Stores entities of a given type in bulk: rows are sent in batches through a prepared insert 
+	 * statement, and all of them are committed at once with the update of the contingency cubes. 
+	 * If anything fails, the whole transaction is rolled back and a {@link SQLIntegrityConstraintViolationException} 
+	 * is raised when some entities already existed.
+	 * @param type
+	 * @param entities
+	 * @return the number of entities added
+	 * @throws SQLException
+	 */
 	protected int storeEntities(String type, Collection<? extends ADemoEntity> entities) throws SQLException {
 
 		if (!entityType2tableName.containsKey(type))
 			createTableForEntityType(type);
 		
-		int added = 0;
-		
-		// name columns 
-		List<Attribute<? extends IValue>> attributes = new LinkedList<>(entityType2attributes.get(type));
+		invalidateCountCache(type);
 		
-		StringBuffer sb = new StringBuffer();
-		sb.append("INSERT INTO ").append(getTableNameForEntityType(type));
-		sb.append(" m (id");
-		for (Attribute<? extends IValue> a: attributes) {
-			sb.append(",");
-			sb.append(getAttributeColNameForType(type, a));
-		}
-		sb.append(") VALUES (");
-		final String qryHead = sb.toString();
+		int added = 0;
 		
-		// add each entity
-		boolean first = true;
-		for (ADemoEntity e: entities) {
-			
-			if (sb.length() >= MAX_BUFFER_QRY) {
-				sb.append(")");
-				final String qry = sb.toString();
-				// execute the query
-				logger.trace("adding entities with query {}", qry);
-				Statement st = connection.createStatement();
-				st.executeQuery(qry);
-				ResultSet rs = st.executeQuery("CALL DIAGNOSTICS ( ROW_COUNT )");
-				rs.next();
-				added += rs.getInt(1);
-				rs.close();
-				st.close();
-				// restart from scratch 
-				first = true;
-				sb = new StringBuffer(qryHead);
-			}
-			
-			if (first) {
-				first = false;
-			} else {
-				sb.append(",");
-			}
-			sb.append("('");
-			sb.append(e.getEntityId());
-			sb.append("'");
-			for (Attribute<? extends IValue> a: attributes) {
-				sb.append(",");
-				sb.append(getSQLValueFor(e,a));
+		final boolean autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		try (PreparedStatement st = connection.prepareStatement(getInsertQuery(type))) {
+			int pending = 0;
+			for (ADemoEntity e: entities) {
+				bindInsertStatement(st, type, e).addBatch();
+				if (++pending >= batchSize) {
+					added += executeBatch(st);
+					pending = 0;
+				}
 			}
-			sb.append(")");
-			
-		}
-		
-		if (sb.length() > qryHead.length()) {
-			sb.append(")");
-			final String qry = sb.toString();
-			// execute the query
-			logger.trace("adding last entities with query {}", qry);
-			Statement st = connection.createStatement();
-			st.executeQuery(qry);
-			ResultSet rs = st.executeQuery("CALL DIAGNOSTICS ( ROW_COUNT )");
-			rs.next();
-			added += rs.getInt(1);
-			rs.close();
-			st.close();
+			if (pending > 0)
+				added += executeBatch(st);
+			updateContingencyCubes(type, entities, 1);
+			connection.commit();
+		} catch (SQLException e) {
+			connection.rollback();
+			if (!(e instanceof BatchUpdateException))
+				throw e;
+			// SQL state class 23 is integrity constraint violation
+			if (e.getSQLState() != null && e.getSQLState().startsWith("23") 
+					|| e.getCause() instanceof SQLIntegrityConstraintViolationException)
+				throw new SQLIntegrityConstraintViolationException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+			throw e;
+		} finally {
+			connection.setAutoCommit(autoCommit);
 		}
 		return added;
 	}
+	
+	/*
+	 * Executes a batch of inserts, returns the number of rows added
+	 */
+	private int executeBatch(PreparedStatement st) throws SQLException {
+		int added = 0;
+		for (int count : st.executeBatch())
+			added += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+		return added;
+	}
 
 	@Override
 	public boolean add(ADemoEntity e) {
@@ -445,37 +607,16 @@ public class GosplPopulationInDatabase
 		if (!entityType2tableName.containsKey(type)) {
 			try {
 				createTableForEntityType(type);
+				createIndexesForEntityType(type);
 			} catch (SQLException ex) {
 				throw new RuntimeException("error while creating table for type "+type);
 			}
 		}
 		
-		// name columns 
-		List<Attribute<? extends IValue>> attributes = 
-				new LinkedList<>(entityType2attributes.get(type));
-		
-		StringBuffer sb = new StringBuffer();
-		sb.append("INSERT INTO ").append(getTableNameForEntityType(type));
-		sb.append(" (id");
-		for (Attribute<? extends IValue> a: attributes) {
-			sb.append(",");
-			sb.append(getAttributeColNameForType(type, a));
-		}
-		sb.append(") VALUES");
-		
-		sb.append("('");
-		sb.append(e.getEntityId());
-		sb.append("'");
-		for (Attribute<? extends IValue> a: attributes) {
-			sb.append(",");
-			sb.append(getSQLValueFor(e,a));
-		}
-		sb.append(")");
-		
 		try {
-			Statement st = connection.createStatement();
-			st.executeQuery(sb.toString());
-			st.close();
+			bindInsertStatement(getInsertStatement(type), type, e).executeUpdate();
+			invalidateCountCache(type);
+			updateContingencyCubes(type, Collections.singletonList(e), 1);
 			return true;
 		} catch(SQLIntegrityConstraintViolationException e1) {
 			return false;
@@ -492,6 +633,8 @@ public class GosplPopulationInDatabase
 		int added = 0;
 		
 		Map<String,List<ADemoEntity>> type2entities = new HashMap<>();
+		// tables created by this load: indexed once loaded
+		Set<String> createdTypes = new HashSet<>();
 		
 		try {
 				
@@ -511,14 +654,13 @@ public class GosplPopulationInDatabase
 				if (!e._hasEntityId())
 					e._setEntityId(EntityUniqueId.createNextId(this, type));
 				
-				System.out.println("should add entity id: "+e.getEntityId());
-
 				if (!entityType2attributes.containsKey(type))
 					entityType2attributes.put(type, new HashSet<>(e.getAttributes()));
 				
 				if (!entityType2tableName.containsKey(type)) {
 					try {
 						createTableForEntityType(type);
+						createdTypes.add(type);
 					} catch (SQLException ex) {
 						throw new RuntimeException("error while creating table for type "+type);
 					}
@@ -526,12 +668,12 @@ public class GosplPopulationInDatabase
 				
 				List<ADemoEntity> l = type2entities.get(type);
 				if (l == null) { 
-					l = new ArrayList<>(ADD_ENTITIES_BATCH);
+					l = new ArrayList<>(batchSize);
 					type2entities.put(type, l);
 				}
 				l.add(e);
 				
-				if (l.size() >= ADD_ENTITIES_BATCH) {
+				if (l.size() >= batchSize) {
 					try {
 						added += storeEntities(type, l);
 					} catch (SQLIntegrityConstraintViolationException e2) {
@@ -563,6 +705,9 @@ public class GosplPopulationInDatabase
 					}
 				}
 			}
+			
+			for (String type: createdTypes)
+				createIndexesForEntityType(type);
 		} catch (SQLException e) {
 			e.printStackTrace();
 			throw new RuntimeException("error while adding entities",e);
@@ -578,6 +723,10 @@ public class GosplPopulationInDatabase
 			for (String tablename : entityType2tableName.values()) {
 				st.executeQuery("TRUNCATE TABLE "+tablename);
 			}
+			entityType2countCache.clear();
+			for (Map<Set<Attribute<? extends IValue>>,ContingencyCube> cubes: entityType2cubes.values())
+				for (ContingencyCube cube: cubes.values())
+					st.executeQuery("DELETE FROM "+cube.tableName);
 		} catch (SQLException e) {
 			e.printStackTrace();
 			throw new RuntimeException("error while dropping the table containing the entities", e);
@@ -652,20 +801,22 @@ public class GosplPopulationInDatabase
 	}
 
 	/**
-	 * Iterates the entities of a given type
+	 * Browses the rows of a given type through a forward only cursor, which fetches rows from the database 
+	 * by chunks of {@link #setFetchSize(int)} and only reads the columns of the requested attributes.
 	 * 
 	 * @author Samuel Thiriot
 	 */
-	public class DatabaseEntitiesIterator implements Iterator<ADemoEntity> {
+	public abstract class DatabaseCursor<T> implements Iterator<T> {
 
-	    private ResultSet rs;
+	    protected ResultSet rs;
 	    private PreparedStatement ps;
 	    private Connection connection;
 	    private String sql;
-	    private String type;
-	    private Set<Attribute<? extends IValue>> attributes;
+	    protected String type;
+	    protected Set<Attribute<? extends IValue>> attributes;
+	    private boolean hasRow = false;
 	    
-	    public DatabaseEntitiesIterator(
+	    public DatabaseCursor(
 	    		Connection connection, 
 	    		Set<Attribute<? extends IValue>> attributes, 
 	    		String type, 
@@ -675,34 +826,21 @@ public class GosplPopulationInDatabase
 	        assert type != null;
 	        assert attributes != null;
 	        this.connection = connection;
-	        this.sql = "SELECT * FROM "+entityType2tableName.get(type)+sqlWhereClause;
+	        StringBuffer sb = new StringBuffer("SELECT id");
+	        for (Attribute<? extends IValue> a: attributes)
+	        	sb.append(", ").append(getAttributeColNameForType(type, a));
+	        sb.append(" FROM ").append(getTableNameForEntityType(type)).append(sqlWhereClause);
+	        this.sql = sb.toString();
 	        this.attributes = attributes;
 	        this.type = type;
-	        
-	    }
-
-	    /**
-	     * Creates an iterator browsing all the entities of this type
-	     * @param connection
-	     * @param type
-	     */
-	    public DatabaseEntitiesIterator(
-	    		Connection connection, 
-	    		Set<Attribute<? extends IValue>> attributes, 
-	    		String type) {
-	    	this(
-	    			connection, 
-	    			attributes, 
-	    			type,
-	    			""
-	    			);
 	    }
 	    
 	    public void init() {
 	        try {
-	            ps = connection.prepareStatement(sql);
+	            ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+	            ps.setFetchSize(fetchSize);
 	            rs = ps.executeQuery();
-	            rs.next();
+	            hasRow = rs.next();
 	        } catch (SQLException e) {
 	            close();
 	            throw new RuntimeException(e);
@@ -714,25 +852,10 @@ public class GosplPopulationInDatabase
 	        if (ps == null) {
 	            init();
 	        }
-	        try {
-	            boolean hasMore = !rs.isAfterLast();
-	            // TODO avoid this ugly workaround ?!
-	            if (hasMore) {
-	            	try {
-		            	rs.getString("id");
-		            } catch (SQLException e) {
-		            	hasMore = false;
-		            }
-	            }
-	            if (!hasMore) {
-	                close();
-	            }
-	            return hasMore;
-	        } catch (SQLException e) {
-	            close();
-	            throw new RuntimeException(e);
+	        if (!hasRow) {
+	        	close();
 	        }
-
+	        return hasRow;
 	    }
 
 	    private void close() {
@@ -751,18 +874,153 @@ public class GosplPopulationInDatabase
 	    }
 
 	    @Override
-	    public ADemoEntity next() {
+	    public T next() {
 	        
-	    	if (ps == null) {
-	            init();
-	        }
+	    	if (!hasNext())
+	    		throw new NoSuchElementException("no more entities of type "+type);
     	  
 	    	try {
-	    		return createEntity(rs, type, attributes);
+	    		T res = read();
+	    		hasRow = rs.next();
+	    		return res;
 	    	} catch (SQLException e) {
+	    		close();
 	    		throw new RuntimeException(e);
 	    	}
 	    }
+	    
+	    /**
+	     * Reads the current row of the cursor
+	     * @return
+	     * @throws SQLException
+	     */
+	    protected abstract T read() throws SQLException;
+	    
+	}
+
+	/**
+	 * Iterates the entities of a given type
+	 * 
+	 * @author Samuel Thiriot
+	 */
+	public class DatabaseEntitiesIterator extends DatabaseCursor<ADemoEntity> {
+
+	    public DatabaseEntitiesIterator(
+	    		Connection connection, 
+	    		Set<Attribute<? extends IValue>> attributes, 
+	    		String type, 
+	    		String sqlWhereClause) {
+	    	super(connection, attributes, type, sqlWhereClause);
+	    }
+
+	    /**
+	     * Creates an iterator browsing all the entities of this type
+	     * @param connection
+	     * @param type
+	     */
+	    public DatabaseEntitiesIterator(
+	    		Connection connection, 
+	    		Set<Attribute<? extends IValue>> attributes, 
+	    		String type) {
+	    	this(
+	    			connection, 
+	    			attributes, 
+	    			type,
+	    			""
+	    			);
+	    }
+
+	    @Override
+	    protected ADemoEntity read() throws SQLException {
+	    	return createEntity(rs, type, attributes);
+	    }
+	}
+	
+	/**
+	 * Iterates the rows of a given type through a single {@link DatabaseRow} which is moved 
+	 * from row to row: no entity is created unless {@link DatabaseRow#toEntity()} is called.
+	 * 
+	 * WARNING: the row returned by {@link #next()} is always the same and holds the values of the last 
+	 * row read, so it should not be kept
+	 */
+	public class DatabaseRowsIterator extends DatabaseCursor<DatabaseRow> {
+		
+		private DatabaseRow row = null;
+
+		public DatabaseRowsIterator(
+				Connection connection, 
+				Set<Attribute<? extends IValue>> attributes, 
+				String type) {
+			super(connection, attributes, type, "");
+		}
+
+		@Override
+		protected DatabaseRow read() throws SQLException {
+			if (row == null)
+				row = new DatabaseRow(type, attributes);
+			// values are decoded now: the cursor moves to the next row before the row is used
+			row.id = rs.getString("id");
+			for (Attribute<? extends IValue> a: attributes)
+				row.values.put(a, readValueForAttribute(type, a, rs));
+			return row;
+		}
+		
+	}
+	
+	/**
+	 * A view on the current row of a {@link DatabaseRowsIterator}, which only holds the values 
+	 * of the projected attributes
+	 */
+	public class DatabaseRow {
+		
+		private final String type;
+		private final Set<Attribute<? extends IValue>> attributes;
+		
+		private String id;
+		private final Map<Attribute<? extends IValue>,IValue> values = new HashMap<>();
+		
+		private DatabaseRow(String type, Set<Attribute<? extends IValue>> attributes) {
+			this.type = type;
+			this.attributes = attributes;
+		}
+		
+		public String getEntityId() {
+			return id;
+		}
+		
+		public String getEntityType() {
+			return type;
+		}
+		
+		public Set<Attribute<? extends IValue>> getAttributes() {
+			return attributes;
+		}
+		
+		/**
+		 * The value of an attribute of the current row
+		 * @param a
+		 * @return
+		 */
+		public IValue getValueForAttribute(Attribute<? extends IValue> a) {
+			if (!attributes.contains(a))
+				throw new IllegalArgumentException("attribute "+a+" was not projected for this row");
+			return values.get(a);
+		}
+		
+		/**
+		 * Creates an entity holding the values of the current row
+		 * @return
+		 */
+		public ADemoEntity toEntity() {
+			Map<Attribute<? extends IValue>,IValue> attribute2value = new HashMap<>();
+			for (Attribute<? extends IValue> a: attributes)
+				attribute2value.put(a, getValueForAttribute(a));
+			GosplEntity res = new GosplEntity(attribute2value);
+	    	res._setEntityId(id);
+	    	res.setEntityType(type);
+	    	return res;
+		}
+		
 	}
 	
 	private ADemoEntity createEntity(ResultSet rs, String type, Set<Attribute<? extends IValue>> attributes) 
@@ -776,8 +1034,6 @@ public class GosplPopulationInDatabase
     	for (Attribute<? extends IValue> a: attributes) {
     		attribute2value.put(a, readValueForAttribute(type, a, rs));
         } 
-    	
-		rs.next();
 		
 		// create the return result
     	GosplEntity res = new GosplEntity(attribute2value);
@@ -787,6 +1043,134 @@ public class GosplPopulationInDatabase
     	return res;
 	}
 	
+	/**
+	 * Splits the entities of several types, first by types and then by ranges of ids, 
+	 * so the population can be streamed in parallel. Each part reads its range through its own
+	 * {@link DatabaseEntitiesIterator}.
+	 */
+	public class DatabaseEntitiesSpliterator implements Spliterator<ADemoEntity> {
+		
+		private List<String> types;
+		private Set<Attribute<? extends IValue>> projection;
+		private String lowId;
+		private String highId;
+		private long estimate = -1;
+		
+		private int currentType = 0;
+		private DatabaseEntitiesIterator itEntities = null;
+		
+		/**
+		 * @param types
+		 * @param projection: the attributes to read, or null for all the attributes of each type
+		 */
+		public DatabaseEntitiesSpliterator(List<String> types, Set<Attribute<? extends IValue>> projection) {
+			this(types, projection, null, null);
+		}
+		
+		private DatabaseEntitiesSpliterator(List<String> types, Set<Attribute<? extends IValue>> projection, 
+				String lowId, String highId) {
+			this.types = types;
+			this.projection = projection;
+			this.lowId = lowId;
+			this.highId = highId;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super ADemoEntity> action) {
+			while (currentType < types.size()) {
+				if (itEntities == null) {
+					String type = types.get(currentType);
+					Set<Attribute<? extends IValue>> attributes = new HashSet<>(entityType2attributes.get(type));
+					if (projection != null)
+						attributes.retainAll(projection);
+					itEntities = new DatabaseEntitiesIterator(connection, attributes, type, getRangeClause());
+				}
+				if (itEntities.hasNext()) {
+					action.accept(itEntities.next());
+					return true;
+				}
+				itEntities = null;
+				currentType++;
+			}
+			return false;
+		}
+
+		@Override
+		public Spliterator<ADemoEntity> trySplit() {
+			if (itEntities != null || currentType > 0)
+				return null;
+			if (types.size() > 1) {
+				List<String> prefix = types.subList(0, types.size()/2);
+				types = types.subList(types.size()/2, types.size());
+				estimate = -1;
+				return new DatabaseEntitiesSpliterator(prefix, projection, lowId, highId);
+			}
+			long size = estimateSize();
+			if (types.isEmpty() || size < 2*fetchSize)
+				return null;
+			String table = getTableNameForEntityType(types.get(0));
+			String midId;
+			try {
+				Statement st = connection.createStatement();
+				ResultSet rs = st.executeQuery("SELECT id FROM "+table+getRangeClause()
+						+" ORDER BY id LIMIT 1 OFFSET "+(size/2));
+				midId = rs.next() ? rs.getString("id") : null;
+				rs.close();
+				st.close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+				throw new RuntimeException("error while splitting the ids of "+table, e);
+			}
+			if (midId == null)
+				return null;
+			DatabaseEntitiesSpliterator prefix = new DatabaseEntitiesSpliterator(types, projection, lowId, midId);
+			prefix.estimate = size/2;
+			this.lowId = midId;
+			this.estimate = size - size/2;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			if (estimate < 0) {
+				estimate = 0;
+				try {
+					Statement st = connection.createStatement();
+					for (String type: types) {
+						ResultSet rs = st.executeQuery("SELECT COUNT(*) AS TOTAL FROM "
+								+getTableNameForEntityType(type)+getRangeClause());
+						rs.next();
+						estimate += rs.getInt("TOTAL");
+						rs.close();
+					}
+					st.close();
+				} catch (SQLException e) {
+					e.printStackTrace();
+					throw new RuntimeException("error while counting entities", e);
+				}
+			}
+			return estimate;
+		}
+
+		@Override
+		public int characteristics() {
+			return DISTINCT | NONNULL;
+		}
+		
+		private String getRangeClause() {
+			if (lowId == null && highId == null)
+				return "";
+			StringBuffer sb = new StringBuffer(" WHERE ");
+			if (lowId != null)
+				sb.append("id >= '").append(lowId.replace("'", "''")).append("'");
+			if (lowId != null && highId != null)
+				sb.append(" AND ");
+			if (highId != null)
+				sb.append("id < '").append(highId.replace("'", "''")).append("'");
+			return sb.toString();
+		}
+		
+	}
 
 	/**
 	 * Iterates the entities of a all types
@@ -929,6 +1313,60 @@ public class GosplPopulationInDatabase
 	public Iterator<ADemoEntity> iterator(String type) {
 		return new DatabaseEntitiesIterator(connection, entityType2attributes.get(type), type);
 	}
+	
+	/**
+	 * Iterates the entities of a type, only reading the values of the given attributes
+	 * @param type
+	 * @param attributes
+	 * @return
+	 */
+	public Iterator<ADemoEntity> iterator(String type, Set<Attribute<? extends IValue>> attributes) {
+		return new DatabaseEntitiesIterator(connection, getProjection(type, attributes), type);
+	}
+	
+	/**
+	 * Iterates the rows of a type without creating entities: the same {@link DatabaseRow} 
+	 * is returned for each row, and only decodes the values of the given attributes.
+	 * @param type
+	 * @param attributes
+	 * @return
+	 */
+	public DatabaseRowsIterator rowIterator(String type, Set<Attribute<? extends IValue>> attributes) {
+		return new DatabaseRowsIterator(connection, getProjection(type, attributes), type);
+	}
+	
+	@Override
+	public Spliterator<ADemoEntity> spliterator() {
+		return spliterator(null);
+	}
+	
+	/**
+	 * Spliterator over all the entities, only reading the values of the given attributes 
+	 * (or all of them if null), which splits on types and ranges of ids for parallel streams
+	 * @param attributes
+	 * @return
+	 */
+	public Spliterator<ADemoEntity> spliterator(Set<Attribute<? extends IValue>> attributes) {
+		return new DatabaseEntitiesSpliterator(new ArrayList<>(entityType2tableName.keySet()), attributes);
+	}
+	
+	private Set<Attribute<? extends IValue>> getProjection(String type, Set<Attribute<? extends IValue>> attributes) {
+		if (!entityType2attributes.containsKey(type))
+			throw new IllegalArgumentException("there is no entity of type "+type);
+		Set<Attribute<? extends IValue>> projection = new HashSet<>(entityType2attributes.get(type));
+		projection.retainAll(attributes);
+		return projection;
+	}
+	
+	/**
+	 * Sets the number of rows fetched at once by iterators
+	 * @param fetchSize
+	 */
+	public void setFetchSize(int fetchSize) {
+		if (fetchSize < 1)
+			throw new IllegalArgumentException("fetch size should be positive but was "+fetchSize);
+		this.fetchSize = fetchSize;
+	}
 
 	@Override
 	public boolean remove(Object o) {
@@ -944,6 +1382,9 @@ public class GosplPopulationInDatabase
 				return false;
 			
 			try {
+				// counts are read before the rows disappear, and applied once they did
+				Map<ContingencyCube,Map<List<IValue>,Integer>> removed = 
+						countInContingencyCubes(e.getEntityType(), Collections.singleton(e.getEntityId()));
 				Statement st = connection.createStatement();
 				st.executeQuery("DELETE FROM "+
 						getTableNameForEntityType(e.getEntityType())+
@@ -953,7 +1394,11 @@ public class GosplPopulationInDatabase
 				// check if we deleted anything
 				ResultSet rs = st.executeQuery("CALL DIAGNOSTICS ( ROW_COUNT )");
 				rs.next();
-				return rs.getInt(1) > 0;
+				if (rs.getInt(1) == 0)
+					return false;
+				invalidateCountCache(e.getEntityType());
+				applyToContingencyCubes(removed);
+				return true;
 			} catch (SQLException ex) {
 				ex.printStackTrace();
 				throw new RuntimeException("SQL error while deleting the entity "+e, ex);
@@ -985,12 +1430,19 @@ public class GosplPopulationInDatabase
 		createIdsClause(sb, ids);
 		
 		try {
+			// counts are read before the rows disappear, and applied once they did
+			Map<ContingencyCube,Map<List<IValue>,Integer>> removed = countInContingencyCubes(type, ids);
 			Statement st = connection.createStatement();
 			st.executeQuery(sb.toString());
 			// check if we deleted anything
 			ResultSet rs = st.executeQuery("CALL DIAGNOSTICS ( ROW_COUNT )");
 			rs.next();
-			return rs.getInt(1);
+			int deleted = rs.getInt(1);
+			if (deleted > 0) {
+				invalidateCountCache(type);
+				applyToContingencyCubes(removed);
+			}
+			return deleted;
 		} catch (SQLException ex) {
 			ex.printStackTrace();
 			throw new RuntimeException("SQL error while deleting the entities "+ex, ex);
@@ -1110,10 +1562,31 @@ public class GosplPopulationInDatabase
 	protected void finalize() throws Throwable {
 		
 		if (this.connection != null) {
+			closeStatements();
 			this.connection.close();		
 		}
 		super.finalize();
 	}
+	
+	/*
+	 * Closes the statements prepared once, before the connection is released
+	 */
+	private void closeStatements() {
+		for (PreparedStatement st : countQuery2statement.values())
+			closeStatement(st);
+		countQuery2statement.clear();
+		for (PreparedStatement st : entityType2insertStatement.values())
+			closeStatement(st);
+		entityType2insertStatement.clear();
+	}
+	
+	private void closeStatement(PreparedStatement st) {
+		try {
+			st.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
 
 	@Override
 	public int getCountHavingValues(Attribute<? extends IValue> attribute, IValue... values) {
@@ -1182,23 +1655,10 @@ public class GosplPopulationInDatabase
 						Attribute<? extends IValue> attribute, 
 						IValue... values) throws SQLException {
 
-		StringBuffer sb = new StringBuffer();
-		sb.append("SELECT COUNT(*) AS TOTAL FROM ").append(getTableNameForEntityType(type));
-		
-		if (values.length > 0) {
-			sb.append(" WHERE ");
-			addWhereClauseForAttribute(sb, type, attribute, values);
-		}
-		
-		//System.out.println(sb.toString());
-		
-		Statement st = connection.createStatement();
-		ResultSet set = st.executeQuery(sb.toString());
-		set.next();
-		int res = set.getInt("TOTAL");
-		st.close();
-	
-		return res;
+		Map<Attribute<? extends IValue>, Collection<IValue>> a2vv = new HashMap<>();
+		if (values.length > 0)
+			a2vv.put(attribute, Arrays.asList(values));
+		return countEntities(type, a2vv);
 	}
 
 	/*
@@ -1221,43 +1681,10 @@ public class GosplPopulationInDatabase
 		sb.append(")");
 	}
 	
-	/*
-	 * Private inner method to setupe query
-	 */
-	private void addWhereClauseForCoordinate(
-			StringBuffer sb,
-			String type,
-			Map<Attribute<? extends IValue>, IValue> attribute2values
-			) {
-		sb.append(" WHERE (");
-		boolean first = true;
-		for (Attribute<? extends IValue> attribute: attribute2values.keySet()) {
-			if (first) first = false; else sb.append(") AND (");
-			addWhereClauseForAttribute(sb, type, attribute, new IValue[] {attribute2values.get(attribute)});
-		}
-		sb.append(")");
-	}
-	
 	protected int getEntitiesHavingValues(
 			String type,
 			Map<Attribute<? extends IValue>, Collection<IValue>> attribute2values) throws SQLException {
-		
-		StringBuffer sb = new StringBuffer();
-		sb.append("SELECT COUNT(*) AS TOTAL FROM ").append(getTableNameForEntityType(type));
-		
-		if (!attribute2values.isEmpty()) {
-			addWhereClauseForAttributes(sb, type, attribute2values);
-		}
-		//System.out.println(sb.toString());
-		
-		Statement st = connection.createStatement();
-		ResultSet set = st.executeQuery(sb.toString());
-		set.next();
-		int res = set.getInt("TOTAL");
-		st.close();
-	
-		return res;
-
+		return countEntities(type, attribute2values);
 	}
 	
 	@Override
@@ -1282,22 +1709,129 @@ public class GosplPopulationInDatabase
 			String type,
 			Map<Attribute<? extends IValue>, IValue> attribute2value) throws SQLException {
 		
+		Map<Attribute<? extends IValue>, Collection<IValue>> a2vv = new HashMap<>();
+		for (Map.Entry<Attribute<? extends IValue>, IValue> e: attribute2value.entrySet())
+			a2vv.put(e.getKey(), Collections.singleton(e.getValue()));
+		return countEntities(type, a2vv);
+	}
+	
+	/**
+	 * Counts entities of the given type that have, for each attribute, one of the given values. 
+	 * The result is read from the count cache of the type when the same query has already been done, else
+	 * it is computed with the prepared statement of the attribute set and cached. 
+	 * Attributes without any value do not constrain the count.
+	 * @param type
+	 * @param attribute2values
+	 * @return
+	 * @throws SQLException
+	 */
+	protected int countEntities(
+			String type,
+			Map<Attribute<? extends IValue>, ? extends Collection<IValue>> attribute2values) throws SQLException {
+		
+		Map<Attribute<? extends IValue>,Set<IValue>> query = new HashMap<>();
+		for (Map.Entry<Attribute<? extends IValue>, ? extends Collection<IValue>> e: attribute2values.entrySet())
+			if (!e.getValue().isEmpty())
+				query.put(e.getKey(), new HashSet<>(e.getValue()));
+		
+		Map<Map<Attribute<? extends IValue>,Set<IValue>>,Integer> cache = getCountCache(type);
+		Integer count = cache.get(query);
+		if (count != null)
+			return count;
+		
+		List<Attribute<? extends IValue>> attributes = new ArrayList<>(query.keySet());
+		List<Integer> arities = new ArrayList<>(attributes.size());
+		for (Attribute<? extends IValue> a: attributes)
+			arities.add(query.get(a).size());
+		
+		PreparedStatement st = getCountStatement(type, attributes, arities);
+		int index = 1;
+		for (Attribute<? extends IValue> a: attributes)
+			for (IValue v: query.get(a))
+				setSQLValue(st, index++, a, v);
+		
+		ResultSet set = st.executeQuery();
+		set.next();
+		int res = set.getInt(1);
+		set.close();
+		
+		if (countCacheSize > 0)
+			cache.put(query, res);
+		return res;
+	}
+	
+	/**
+	 * Returns the count statement for a type and a set of attributes, each one with a given number of 
+	 * accepted values, prepared once. Only the {@link #COUNT_STATEMENTS_SIZE} most recently used
+	 * statements are kept open
+	 * @param type
+	 * @param attributes
+	 * @param arities
+	 * @return
+	 * @throws SQLException
+	 */
+	protected PreparedStatement getCountStatement(
+			String type,
+			List<Attribute<? extends IValue>> attributes,
+			List<Integer> arities) throws SQLException {
+		
+		List<Object> key = Arrays.asList(type, attributes, arities);
+		PreparedStatement st = countQuery2statement.get(key);
+		if (st != null)
+			return st;
+		
 		StringBuffer sb = new StringBuffer();
 		sb.append("SELECT COUNT(*) AS TOTAL FROM ").append(getTableNameForEntityType(type));
-		
-		if (!attribute2value.isEmpty()) {
-			addWhereClauseForCoordinate(sb, type, attribute2value);
+		for (int i = 0; i < attributes.size(); i++) {
+			sb.append(i == 0 ? " WHERE " : " AND ");
+			sb.append(getAttributeColNameForType(type, attributes.get(i))).append(" IN (?");
+			for (int j = 1; j < arities.get(i); j++)
+				sb.append(",?");
+			sb.append(")");
 		}
-		//System.out.println(sb.toString());
 		
-		Statement st = connection.createStatement();
-		ResultSet set = st.executeQuery(sb.toString());
-		set.next();
-		int res = set.getInt("TOTAL");
-		st.close();
+		logger.trace("preparing count statement for type {}: {}", type, sb);
+		st = connection.prepareStatement(sb.toString());
+		countQuery2statement.put(key, st);
+		return st;
+	}
 	
-		return res;
-
+	/**
+	 * Number of count query results kept in cache for each entity type; 0 disables the cache
+	 * @param countCacheSize
+	 */
+	public void setCountCacheSize(int countCacheSize) {
+		if (countCacheSize < 0)
+			throw new IllegalArgumentException("cache size cannot be negative but was "+countCacheSize);
+		this.countCacheSize = countCacheSize;
+		entityType2countCache.clear();
+	}
+	
+	/*
+	 * Least recently used cache of count results for a given type
+	 */
+	private Map<Map<Attribute<? extends IValue>,Set<IValue>>,Integer> getCountCache(String type) {
+		Map<Map<Attribute<? extends IValue>,Set<IValue>>,Integer> cache = entityType2countCache.get(type);
+		if (cache == null) {
+			final int maxSize = countCacheSize;
+			cache = new LinkedHashMap<Map<Attribute<? extends IValue>,Set<IValue>>,Integer>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Map<Attribute<? extends IValue>,Set<IValue>>,Integer> eldest) {
+					return size() > maxSize;
+				}
+			};
+			entityType2countCache.put(type, cache);
+		}
+		return cache;
+	}
+	
+	/**
+	 * Forgets cached counts of a type, to be called whenever entities of this type change
+	 * @param type
+	 */
+	protected void invalidateCountCache(String type) {
+		entityType2countCache.remove(type == null ? DEFAULT_ENTITY_TYPE : type);
 	}
 	
 	@Override
@@ -1345,6 +1879,249 @@ public class GosplPopulationInDatabase
 				);
 	}
 	
+	// ------------------------- CONTINGENCY CUBES ------------------------- //
+	
+	/**
+	 * Registers a contingency table over the given attributes: for each entity type that has all these
+	 * attributes, a table of counts grouped by values is created from stored entities, 
+	 * and then updated whenever entities are added or removed
+	 * @param attributes
+	 */
+	public void registerContingency(Set<Attribute<? extends IValue>> attributes) {
+		if (attributes.isEmpty())
+			throw new IllegalArgumentException("cannot register a contingency without attributes");
+		Set<Attribute<? extends IValue>> key = new HashSet<>(attributes);
+		if (!registeredContingencies.add(key))
+			return;
+		try {
+			for (String type: entityType2tableName.keySet())
+				createContingencyCube(type, key);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new RuntimeException("error while creating the contingency table of "+attributes, e);
+		}
+	}
+	
+	/**
+	 * Returns the contingency table of all the entities over the given attributes. Types which have a
+	 * registered table of counts over these attributes are read from it, the other ones are counted with 
+	 * a GROUP BY over the attributes they have, without registering anything: 
+	 * call {@link #registerContingency(Set)} first to make repeated queries cheap
+	 * @param attributes
+	 * @return
+	 */
+	public AFullNDimensionalMatrix<Integer> getContingency(Set<Attribute<? extends IValue>> attributes) {
+		
+		Set<Attribute<? extends IValue>> key = new HashSet<>(attributes);
+		
+		AFullNDimensionalMatrix<Integer> matrix = GosplNDimensionalMatrixFactory.getFactory()
+				.createEmtpyContingencies(key, false);
+		matrix.addGenesis("Created from a database population GosplPopulationInDatabase@getContingency");
+		
+		for (String type: entityType2tableName.keySet()) {
+			Map<Set<Attribute<? extends IValue>>,ContingencyCube> cubes = entityType2cubes.get(type);
+			ContingencyCube cube = cubes == null ? null : cubes.get(key);
+			try {
+				Statement st = connection.createStatement();
+				ResultSet rs;
+				List<Attribute<? extends IValue>> typeAttributes;
+				if (cube != null) {
+					typeAttributes = cube.attributes;
+					rs = st.executeQuery("SELECT * FROM "+cube.tableName+" WHERE total > 0");
+				} else {
+					typeAttributes = key.stream().filter(entityType2attributes.get(type)::contains)
+							.collect(Collectors.toList());
+					// nothing to count for a type without any of these attributes
+					if (typeAttributes.isEmpty()) {
+						st.close();
+						continue;
+					}
+					String cols = typeAttributes.stream().map(a -> getAttributeColNameForType(type, a))
+							.collect(Collectors.joining(","));
+					rs = st.executeQuery("SELECT "+cols+", COUNT(*) AS total FROM "+getTableNameForEntityType(type)
+							+" GROUP BY "+cols);
+				}
+				while (rs.next()) {
+					// coordinates span all the attributes: the ones the type misses, or that are NULL, are empty
+					Map<Attribute<? extends IValue>,IValue> coordinate = new HashMap<>();
+					for (Attribute<? extends IValue> a: key) {
+						if (typeAttributes.contains(a) && rs.getObject(getAttributeColNameForType(type, a)) != null)
+							coordinate.put(a, readValueForAttribute(type, a, rs));
+						else
+							coordinate.put(a, a.getValueSpace().getEmptyValue());
+					}
+					ACoordinate<Attribute<? extends IValue>, IValue> coord = new GosplCoordinate(coordinate);
+					int total = rs.getInt("total");
+					AControl<Integer> count = matrix.getMatrix().get(coord);
+					if (count == null)
+						matrix.addValue(coord, new ControlContingency(total));
+					else
+						count.add(total);
+				}
+				rs.close();
+				st.close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+				throw new RuntimeException("error while reading the contingency table of type "+type, e);
+			}
+		}
+		return matrix;
+	}
+	
+	/*
+	 * Creates the table of counts of a type for a given set of attributes, if the type has them all
+	 */
+	private void createContingencyCube(String type, Set<Attribute<? extends IValue>> attributes) throws SQLException {
+		
+		Map<Set<Attribute<? extends IValue>>,ContingencyCube> cubes = entityType2cubes.get(type);
+		if (cubes == null) {
+			cubes = new HashMap<>();
+			entityType2cubes.put(type, cubes);
+		}
+		if (cubes.containsKey(attributes) || !entityType2attributes.get(type).containsAll(attributes))
+			return;
+		
+		ContingencyCube cube = new ContingencyCube(type, attributes, 
+				"cube_"+getTableNameForEntityType(type)+"_"+cubes.size());
+		
+		StringBuffer cols = new StringBuffer();
+		StringBuffer sb = new StringBuffer();
+		sb.append("CREATE TABLE ").append(cube.tableName).append(" (");
+		for (Attribute<? extends IValue> a: cube.attributes) {
+			sb.append(getAttributeColNameForType(type, a)).append(" ").append(getSQLTypeForAttribute(a)).append(", ");
+			if (cols.length() > 0)
+				cols.append(",");
+			cols.append(getAttributeColNameForType(type, a));
+		}
+		sb.append("total INTEGER)");
+		
+		logger.info("creating contingency table for type {} with SQL query: {}", type, sb);
+		Statement st = connection.createStatement();
+		st.execute(sb.toString());
+		st.execute("INSERT INTO "+cube.tableName+" ("+cols+",total) SELECT "+cols+", COUNT(*) FROM "
+				+getTableNameForEntityType(type)+" GROUP BY "+cols);
+		st.close();
+		
+		cubes.put(attributes, cube);
+	}
+	
+	/*
+	 * Adds (or removes with a negative delta) entities to the tables of counts of their type
+	 */
+	private void updateContingencyCubes(String type, Collection<? extends ADemoEntity> entities, int delta) 
+			throws SQLException {
+		Map<Set<Attribute<? extends IValue>>,ContingencyCube> cubes = entityType2cubes.get(type);
+		if (cubes == null || cubes.isEmpty())
+			return;
+		for (ContingencyCube cube: cubes.values()) {
+			Map<List<IValue>,Integer> deltas = new HashMap<>();
+			for (ADemoEntity e: entities) {
+				List<IValue> values = new ArrayList<>(cube.attributes.size());
+				for (Attribute<? extends IValue> a: cube.attributes)
+					values.add(e.getValueForAttribute(a));
+				deltas.merge(values, delta, Integer::sum);
+			}
+			cube.apply(deltas);
+		}
+	}
+	
+	/*
+	 * Negative count variations of the tables of counts of a type for the entities with given ids: 
+	 * to be read before entities are actually deleted, and applied once they are
+	 */
+	private Map<ContingencyCube,Map<List<IValue>,Integer>> countInContingencyCubes(String type, Collection<String> ids) 
+			throws SQLException {
+		Map<ContingencyCube,Map<List<IValue>,Integer>> cube2deltas = new HashMap<>();
+		Map<Set<Attribute<? extends IValue>>,ContingencyCube> cubes = entityType2cubes.get(type);
+		if (cubes == null || cubes.isEmpty())
+			return cube2deltas;
+		StringBuffer idsClause = new StringBuffer();
+		createIdsClause(idsClause, ids);
+		for (ContingencyCube cube: cubes.values()) {
+			String cols = cube.attributes.stream().map(a -> getAttributeColNameForType(type, a))
+					.collect(Collectors.joining(","));
+			Statement st = connection.createStatement();
+			ResultSet rs = st.executeQuery("SELECT "+cols+", COUNT(*) AS total FROM "+getTableNameForEntityType(type)
+					+" WHERE id "+idsClause+" GROUP BY "+cols);
+			Map<List<IValue>,Integer> deltas = new HashMap<>();
+			while (rs.next()) {
+				List<IValue> values = new ArrayList<>(cube.attributes.size());
+				for (Attribute<? extends IValue> a: cube.attributes)
+					values.add(rs.getObject(getAttributeColNameForType(type, a)) == null ? 
+							null : readValueForAttribute(type, a, rs));
+				deltas.put(values, -rs.getInt("total"));
+			}
+			rs.close();
+			st.close();
+			cube2deltas.put(cube, deltas);
+		}
+		return cube2deltas;
+	}
+	
+	/*
+	 * Applies count variations to tables of counts
+	 */
+	private void applyToContingencyCubes(Map<ContingencyCube,Map<List<IValue>,Integer>> cube2deltas) 
+			throws SQLException {
+		for (Map.Entry<ContingencyCube,Map<List<IValue>,Integer>> e: cube2deltas.entrySet())
+			e.getKey().apply(e.getValue());
+	}
+	
+	/*
+	 * Table of counts of entities of a type, grouped by the values of some attributes 
+	 */
+	private class ContingencyCube {
+		
+		private final String type;
+		private final List<Attribute<? extends IValue>> attributes;
+		private final String tableName;
+		
+		private PreparedStatement update;
+		private PreparedStatement insert;
+		
+		private ContingencyCube(String type, Set<Attribute<? extends IValue>> attributes, String tableName) {
+			this.type = type;
+			this.attributes = new ArrayList<>(attributes);
+			this.tableName = tableName;
+		}
+		
+		/*
+		 * Adds count variations to the cells, creating the ones that do not exist yet
+		 */
+		private void apply(Map<List<IValue>,Integer> deltas) throws SQLException {
+			if (update == null) {
+				StringBuffer sb = new StringBuffer();
+				sb.append("UPDATE ").append(tableName).append(" SET total = total + ? WHERE ");
+				sb.append(attributes.stream().map(a -> getAttributeColNameForType(type, a)+" IS NOT DISTINCT FROM ?")
+						.collect(Collectors.joining(" AND ")));
+				update = connection.prepareStatement(sb.toString());
+				sb = new StringBuffer();
+				sb.append("INSERT INTO ").append(tableName).append(" (");
+				for (Attribute<? extends IValue> a: attributes)
+					sb.append(getAttributeColNameForType(type, a)).append(",");
+				sb.append("total) VALUES (");
+				for (int i = 0; i < attributes.size(); i++)
+					sb.append("?,");
+				sb.append("?)");
+				insert = connection.prepareStatement(sb.toString());
+			}
+			for (Map.Entry<List<IValue>,Integer> cell: deltas.entrySet()) {
+				if (cell.getValue() == 0)
+					continue;
+				update.setInt(1, cell.getValue());
+				for (int i = 0; i < attributes.size(); i++)
+					setSQLValue(update, i+2, attributes.get(i), cell.getKey().get(i));
+				if (update.executeUpdate() > 0)
+					continue;
+				for (int i = 0; i < attributes.size(); i++)
+					setSQLValue(insert, i+1, attributes.get(i), cell.getKey().get(i));
+				insert.setInt(attributes.size()+1, cell.getValue());
+				insert.executeUpdate();
+			}
+		}
+		
+	}
+	
 	@Override
 	public ADemoEntity getEntityForId(String id) {
 
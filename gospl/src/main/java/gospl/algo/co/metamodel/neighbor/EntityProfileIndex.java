@@ -0,0 +1,247 @@
+package gospl.algo.co.metamodel.neighbor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import core.metamodel.attribute.Attribute;
+import core.metamodel.entity.ADemoEntity;
+import core.metamodel.entity.comparator.HammingEntityComparator;
+import core.metamodel.value.IValue;
+
+/**
+ * Index of entities by profile, i.e. the vector of their attribute values. Each value is encoded as an integer
+ * and entities that share the same encoded vector are stored in the same bucket.
+ * <p>
+ * Closest entities according to Hamming distance (the number of attributes whose values differ, see
+ * {@link HammingEntityComparator}) are retrieved by probing buckets at increasing radius: first the bucket
+ * of the exact same profile, then all profiles that differ on one attribute, then two, etc. When the number
+ * of profiles to probe at a given radius exceeds the number of buckets, buckets are scanned instead.
+ * Hence, a k nearest query never goes through the whole population.
+ * <p>
+ * WARNING: ties at the last radius are broken according to bucket order, not to {@link HammingEntityComparator}
+ * implicit order
+ *
+ */
+public class EntityProfileIndex {
+
+	private final List<Attribute<? extends IValue>> attributes;
+	private final List<Map<IValue, Integer>> codes;
+
+	private final Map<Profile, List<ADemoEntity>> buckets;
+
+	private int size = 0;
+
+	/**
+	 * Index the given entities
+	 *
+	 * @param entities
+	 */
+	public EntityProfileIndex(Collection<ADemoEntity> entities) {
+		this.attributes = new ArrayList<>(entities.stream()
+				.flatMap(e -> e.getAttributes().stream()).distinct()
+				.collect(Collectors.toList()));
+		this.codes = new ArrayList<>(attributes.size());
+		for(int i = 0; i < attributes.size(); i++)
+			codes.add(new HashMap<>());
+		this.buckets = new LinkedHashMap<>();
+		for(ADemoEntity entity : entities)
+			this.add(entity);
+	}
+
+	// ------------------------- UPDATE ------------------------- //
+
+	/**
+	 * Add an entity to the index
+	 *
+	 * @param entity
+	 */
+	public void add(ADemoEntity entity) {
+		buckets.computeIfAbsent(encode(entity, true), p -> new ArrayList<>()).add(entity);
+		size++;
+	}
+
+	/**
+	 * Remove an entity from the index
+	 *
+	 * @param entity
+	 * @return true if the entity was indexed
+	 */
+	public boolean remove(ADemoEntity entity) {
+		Profile profile = encode(entity, false);
+		List<ADemoEntity> bucket = buckets.get(profile);
+		if(bucket == null || !bucket.remove(entity))
+			return false;
+		if(bucket.isEmpty())
+			buckets.remove(profile);
+		size--;
+		return true;
+	}
+
+	/**
+	 * Number of indexed entities
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Number of distinct profiles, i.e. non empty buckets
+	 *
+	 * @return
+	 */
+	public int getProfileCount() {
+		return buckets.size();
+	}
+
+	// ------------------------- QUERY ------------------------- //
+
+	/**
+	 * The k closest entities to the referent one, according to Hamming distance. The referent entity
+	 * is part of the result if it has been indexed
+	 *
+	 * @param referent
+	 * @param k
+	 * @return
+	 */
+	public List<ADemoEntity> getNearest(ADemoEntity referent, int k) {
+		List<ADemoEntity> nearest = new ArrayList<>(k);
+		if(k <= 0)
+			return nearest;
+		Profile query = encode(referent, false);
+		for(int radius = 0; radius <= attributes.size() && nearest.size() < k; radius++) {
+			if(getProbeCount(query, radius) > buckets.size()) {
+				scan(query, radius, k, nearest);
+				break;
+			}
+			probe(query.codes.clone(), 0, radius, k, nearest);
+		}
+		return nearest;
+	}
+
+	/*
+	 * Multi-probe: visit all profiles at exactly the given radius from the query
+	 */
+	private void probe(int[] probe, int from, int radius, int k, List<ADemoEntity> nearest) {
+		if(nearest.size() >= k)
+			return;
+		if(radius == 0) {
+			fill(buckets.get(new Profile(probe)), k, nearest);
+			return;
+		}
+		for(int axis = from; axis <= probe.length - radius; axis++) {
+			int original = probe[axis];
+			for(int code = 0; code < codes.get(axis).size(); code++) {
+				if(code == original)
+					continue;
+				probe[axis] = code;
+				probe(probe, axis + 1, radius - 1, k, nearest);
+			}
+			probe[axis] = original;
+		}
+	}
+
+	/*
+	 * Go through buckets, from the given radius onward, to complete the nearest entity list
+	 */
+	private void scan(Profile query, int fromRadius, int k, List<ADemoEntity> nearest) {
+		List<List<List<ADemoEntity>>> byDistance = new ArrayList<>();
+		for(int d = 0; d <= attributes.size(); d++)
+			byDistance.add(new ArrayList<>());
+		for(Map.Entry<Profile, List<ADemoEntity>> bucket : buckets.entrySet()) {
+			int distance = query.distance(bucket.getKey());
+			if(distance >= fromRadius)
+				byDistance.get(distance).add(bucket.getValue());
+		}
+		for(int d = fromRadius; d < byDistance.size() && nearest.size() < k; d++)
+			for(List<ADemoEntity> bucket : byDistance.get(d))
+				fill(bucket, k, nearest);
+	}
+
+	private void fill(List<ADemoEntity> bucket, int k, List<ADemoEntity> nearest) {
+		if(bucket == null)
+			return;
+		for(int i = 0; i < bucket.size() && nearest.size() < k; i++)
+			nearest.add(bucket.get(i));
+	}
+
+	/*
+	 * Number of profiles at exactly the given radius: elementary symmetric polynomial
+	 * of the number of alternative values of each attribute
+	 */
+	private double getProbeCount(Profile query, int radius) {
+		double[] e = new double[radius + 1];
+		e[0] = 1d;
+		for(int axis = 0; axis < attributes.size(); axis++) {
+			int alternatives = codes.get(axis).size() - (query.codes[axis] < 0 ? 0 : 1);
+			for(int r = radius; r > 0; r--)
+				e[r] += e[r-1] * alternatives;
+		}
+		return e[radius];
+	}
+
+	// ------------------------- ENCODING ------------------------- //
+
+	/*
+	 * Unknown values are encoded as -1 when not registered
+	 */
+	private Profile encode(ADemoEntity entity, boolean register) {
+		int[] vector = new int[attributes.size()];
+		for(int axis = 0; axis < vector.length; axis++) {
+			IValue value = entity.getValueForAttribute(attributes.get(axis));
+			Map<IValue, Integer> axisCodes = codes.get(axis);
+			Integer code = axisCodes.get(value);
+			if(code == null && register) {
+				code = axisCodes.size();
+				axisCodes.put(value, code);
+			}
+			vector[axis] = code == null ? -1 : code;
+		}
+		return new Profile(vector);
+	}
+
+	/*
+	 * Encoded vector of attribute values
+	 */
+	private static class Profile {
+
+		private final int[] codes;
+		private final int hash;
+
+		private Profile(int[] codes) {
+			this.codes = codes;
+			this.hash = Arrays.hashCode(codes);
+		}
+
+		private int distance(Profile other) {
+			int distance = 0;
+			for(int i = 0; i < codes.length; i++)
+				if(codes[i] != other.codes[i])
+					distance++;
+			return distance;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj)
+				return true;
+			if(!(obj instanceof Profile))
+				return false;
+			return Arrays.equals(codes, ((Profile) obj).codes);
+		}
+
+	}
+
+}
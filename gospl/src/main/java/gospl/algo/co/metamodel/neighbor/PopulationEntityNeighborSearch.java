@@ -1,10 +1,12 @@
 package gospl.algo.co.metamodel.neighbor;
 
-import java.util.Arrays;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -12,7 +14,6 @@ import java.util.stream.Collectors;
 import core.metamodel.IPopulation;
 import core.metamodel.attribute.Attribute;
 import core.metamodel.entity.ADemoEntity;
-import core.metamodel.entity.comparator.HammingEntityComparator;
 import core.metamodel.value.IValue;
 import core.util.random.GenstarRandomUtils;
 import gospl.GosplPopulation;
@@ -26,9 +27,19 @@ import gospl.GosplPopulation;
  */
 public class PopulationEntityNeighborSearch implements IPopulationNeighborSearch<GosplPopulation, ADemoEntity> {
 
+	/*
+	 * Maximum number of switches drawn from the indexed population that are kept to update the index
+	 */
+	private static final int MAX_PENDING_SWITCHES = 1024;
+	
 	private IPopulation<ADemoEntity, Attribute<? extends IValue>> sample;
 	private Collection<ADemoEntity> predicates;
 	
+	private GosplPopulation indexedPopulation;
+	private EntityProfileIndex profileIndex;
+	// Switches drawn from the indexed population, latest last
+	private final Deque<Map<ADemoEntity, ADemoEntity>> pendingSwitches = new ArrayDeque<>();
+	
 	public PopulationEntityNeighborSearch() {
 		this.predicates = new HashSet<>();
 	}
@@ -49,10 +60,11 @@ public class PopulationEntityNeighborSearch implements IPopulationNeighborSearch
 	public Map<ADemoEntity, ADemoEntity> getPairwisedEntities(GosplPopulation population, ADemoEntity predicate, int size, boolean childSizeConsistant) {
 		Map<ADemoEntity, ADemoEntity> pair = new HashMap<>();
 		
-		Set<ADemoEntity> predicates = new HashSet<>(Arrays.asList(predicate));
+		Set<ADemoEntity> predicates = new HashSet<>(Collections.singleton(predicate));
 		if(size > 1)
-			predicates = population.stream().sorted(new HammingEntityComparator(predicate))
-				.limit(size).collect(Collectors.toSet());
+			synchronized (this) {
+				predicates = new HashSet<>(this.getProfileIndex(population).getNearest(predicate, size));
+			}
 		
 		if (childSizeConsistant && predicate.hasChildren()) {
 			int sizeConstraint = predicate.getChildren().size();
@@ -68,6 +80,8 @@ public class PopulationEntityNeighborSearch implements IPopulationNeighborSearch
 			pair.put(oldEntity, candidateEntity);
 		}
 		
+		if(size > 1)
+			this.addPendingSwitch(population, pair);
 		return pair;
 	}
 
@@ -82,8 +96,67 @@ public class PopulationEntityNeighborSearch implements IPopulationNeighborSearch
 	}
 
 	@Override
-	public void updatePredicates(GosplPopulation population) {
+	public synchronized void updatePredicates(GosplPopulation population) {
 		this.setPredicates(population);
+		this.indexedPopulation = null;
+		this.pendingSwitches.clear();
+	}
+	
+	/**
+	 * The index used to retrieve the closest entities of a predicate. It is built once, then updated 
+	 * incrementally: when population results from a switch previously drawn from the indexed population 
+	 * (see {@link #getPairwisedEntities(GosplPopulation, ADemoEntity, int, boolean)}), only switched entities 
+	 * are removed from and added to the index. It is built again otherwise
+	 * <p>
+	 * WARNING: the index is shared with following calls, hence must be accessed while holding the lock of
+	 * this neighbor search
+	 * 
+	 * @param population
+	 * @return
+	 */
+	public synchronized EntityProfileIndex getProfileIndex(GosplPopulation population) {
+		if(population != indexedPopulation) {
+			Map<ADemoEntity, ADemoEntity> theSwitch = indexedPopulation == null ? null : findPendingSwitch(population);
+			if(theSwitch == null) {
+				profileIndex = new EntityProfileIndex(population);
+			} else {
+				for(Map.Entry<ADemoEntity, ADemoEntity> entities : theSwitch.entrySet()) {
+					profileIndex.remove(entities.getKey());
+					profileIndex.add(entities.getValue());
+				}
+			}
+			indexedPopulation = population;
+			pendingSwitches.clear();
+		}
+		return profileIndex;
+	}
+	
+	/*
+	 * Keep track of a switch drawn from the indexed population
+	 */
+	private synchronized void addPendingSwitch(GosplPopulation population, Map<ADemoEntity, ADemoEntity> theSwitch) {
+		if(population != indexedPopulation)
+			return;
+		if(pendingSwitches.size() == MAX_PENDING_SWITCHES)
+			pendingSwitches.removeFirst();
+		pendingSwitches.addLast(theSwitch);
+	}
+	
+	/*
+	 * The latest pending switch that leads from the indexed population to the given one: removed entities
+	 * are no longer in population and added ones are. Null if there is none
+	 */
+	private Map<ADemoEntity, ADemoEntity> findPendingSwitch(GosplPopulation population) {
+		if(population.size() != profileIndex.size())
+			return null;
+		Iterator<Map<ADemoEntity, ADemoEntity>> it = pendingSwitches.descendingIterator();
+		while(it.hasNext()) {
+			Map<ADemoEntity, ADemoEntity> theSwitch = it.next();
+			if(theSwitch.keySet().stream().noneMatch(population::contains)
+					&& theSwitch.values().stream().allMatch(population::contains))
+				return theSwitch;
+		}
+		return null;
 	}
 
 	@Override
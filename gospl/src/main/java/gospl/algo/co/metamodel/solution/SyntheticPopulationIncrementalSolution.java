@@ -0,0 +1,313 @@
+package gospl.algo.co.metamodel.solution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import core.metamodel.IPopulation;
+import core.metamodel.attribute.Attribute;
+import core.metamodel.entity.ADemoEntity;
+import core.metamodel.value.IValue;
+import core.util.random.GenstarRandomUtils;
+import gospl.GosplPopulation;
+import gospl.algo.co.metamodel.IOptimizationAlgorithm;
+import gospl.algo.co.metamodel.neighbor.IPopulationNeighborSearch;
+import gospl.distribution.matrix.INDimensionalMatrix;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.validation.GosplIndicatorFactory;
+
+/**
+ * Combinatorial Optimization solution to be used in {@link IOptimizationAlgorithm} that computes
+ * fitness incrementally: rather than building a contingency table of the whole population for each candidate,
+ * it keeps the count of entities for each objective record and only update the ones that are
+ * changed by the switch of entities that leads from a solution to its neighbor
+ * (see {@link IPopulationNeighborSearch#getPairwisedEntities(IPopulation, Object, int, boolean)}).
+ * <p>
+ * Hence, fitness of a neighbor is computed in O(k x objectives) with k the number of switched entities:
+ * the switch is applied to the counts of the solution it comes from, then reverted. A neighbor only owns a copy
+ * of counts when its own neighbors are evaluated, i.e. once it has been accepted by the algorithm.
+ * Neighbor populations are not built until asked for, i.e. {@link #getSolution()} is called, so rejected
+ * candidates never have to clone the population.
+ * <p>
+ * Fitness is the same as {@link SyntheticPopulationSolution}: the sum of integer TAE
+ * (see {@link GosplIndicatorFactory#getIntegerTAE(INDimensionalMatrix, gospl.distribution.matrix.AFullNDimensionalMatrix)})
+ * over all objectives
+ *
+ */
+public class SyntheticPopulationIncrementalSolution implements ISyntheticPopulationSolution<GosplPopulation> {
+
+	private GosplPopulation population;
+
+	// Neighbor not yet built: the solution it comes from and the switch to apply
+	private SyntheticPopulationIncrementalSolution parent;
+	private Map<ADemoEntity, ADemoEntity> theSwitch;
+	private IPopulationNeighborSearch<GosplPopulation, ?> neighborSearch;
+
+	private ObjectiveIndex index;
+	private int[] counts;
+	private double fitness = -1;
+
+	public SyntheticPopulationIncrementalSolution(GosplPopulation population){
+		this.population = population;
+	}
+
+	public SyntheticPopulationIncrementalSolution(Collection<ADemoEntity> population){
+		this(new GosplPopulation(population));
+	}
+
+	private SyntheticPopulationIncrementalSolution(SyntheticPopulationIncrementalSolution parent,
+			Map<ADemoEntity, ADemoEntity> theSwitch, IPopulationNeighborSearch<GosplPopulation, ?> neighborSearch){
+		this.parent = parent;
+		this.theSwitch = theSwitch;
+		this.neighborSearch = neighborSearch;
+	}
+
+	// ----------------------- NEIGHBOR ----------------------- //
+
+	@Override
+	public <U> Collection<ISyntheticPopulationSolution<GosplPopulation>> getNeighbors(
+			IPopulationNeighborSearch<GosplPopulation, U> neighborSearch) {
+		return getNeighbors(neighborSearch, 1);
+	}
+
+	@Override
+	public <U> Collection<ISyntheticPopulationSolution<GosplPopulation>> getNeighbors(
+			IPopulationNeighborSearch<GosplPopulation, U> neighborSearch, int k_neighbors) {
+		return neighborSearch.getPredicates().stream()
+				.map(u -> new SyntheticPopulationIncrementalSolution(this,
+						neighborSearch.getPairwisedEntities(this.getSolution(), u, k_neighbors, false), neighborSearch))
+				.collect(Collectors.toCollection(ArrayList::new));
+	}
+
+	@Override
+	public <U> SyntheticPopulationIncrementalSolution getRandomNeighbor(
+			IPopulationNeighborSearch<GosplPopulation, U> neighborSearch) {
+		return getRandomNeighbor(neighborSearch, 1);
+	}
+
+	@Override
+	public <U> SyntheticPopulationIncrementalSolution getRandomNeighbor(
+			IPopulationNeighborSearch<GosplPopulation, U> neighborSearch, int k_neighbors) {
+		return new SyntheticPopulationIncrementalSolution(this,
+				neighborSearch.getPairwisedEntities(this.getSolution(),
+						GenstarRandomUtils.oneOf(neighborSearch.getPredicates()), k_neighbors, false),
+				neighborSearch);
+	}
+
+	// ----------------------- FITNESS & SOLUTION ----------------------- //
+
+	@Override
+	public Double getFitness(Set<INDimensionalMatrix<Attribute<? extends IValue>, IValue, Integer>> objectives) {
+		// Only compute once
+		if(fitness == -1){
+			if(parent != null) {
+				// Apply the switch to parent counts, then revert it
+				int[] parentCounts = parent.getCounts(objectives);
+				index = parent.index;
+				synchronized (parent) {
+					double f = parent.fitness;
+					for(Entry<ADemoEntity, ADemoEntity> entities : theSwitch.entrySet()) {
+						f += index.move(parentCounts, entities.getKey(), -1);
+						f += index.move(parentCounts, entities.getValue(), 1);
+					}
+					for(Entry<ADemoEntity, ADemoEntity> entities : theSwitch.entrySet()) {
+						index.move(parentCounts, entities.getValue(), -1);
+						index.move(parentCounts, entities.getKey(), 1);
+					}
+					fitness = f;
+				}
+			} else {
+				// Count the whole population once
+				index = new ObjectiveIndex(objectives, population.getPopulationAttributes());
+				counts = new int[index.size()];
+				fitness = index.getTotal();
+				for(ADemoEntity entity : population)
+					fitness += index.move(counts, entity, 1);
+			}
+		}
+		return fitness;
+	}
+
+	@Override
+	public INDimensionalMatrix<Attribute<? extends IValue>, IValue, Integer> getAbsoluteErrors(
+			INDimensionalMatrix<Attribute<? extends IValue>, IValue, Integer> errorMatrix,
+			Set<INDimensionalMatrix<Attribute<? extends IValue>, IValue, Integer>> objectives) {
+		int[] solutionCounts = getCounts(objectives);
+		Map<ACoordinate<Attribute<? extends IValue>, IValue>, Integer> errorRecords = new HashMap<>();
+		for(ACoordinate<Attribute<? extends IValue>, IValue> coord : errorMatrix.getMatrix().keySet()) {
+			Integer r = index.getRecord(coord.values());
+			// Not an objective record: count it on the whole population
+			if(r == null)
+				return GosplIndicatorFactory.getFactory().getAbsoluteErrors(getSolution(), errorMatrix, objectives);
+			errorRecords.put(coord, r);
+		}
+		for(Entry<ACoordinate<Attribute<? extends IValue>, IValue>, Integer> record : errorRecords.entrySet())
+			errorMatrix.setValue(record.getKey(), index.targets[record.getValue()] - solutionCounts[record.getValue()]);
+		return errorMatrix;
+	}
+
+	@Override
+	public GosplPopulation getSolution() {
+		if(population == null) {
+			population = neighborSearch.getNeighbor(parent.getSolution(), theSwitch);
+			release();
+		}
+		return population;
+	}
+
+	/*
+	 * The count of entities per objective record for this solution: neighbors only copy them 
+	 * from their parent the first time they are asked for
+	 */
+	private int[] getCounts(Set<INDimensionalMatrix<Attribute<? extends IValue>, IValue, Integer>> objectives) {
+		getFitness(objectives);
+		if(counts == null) {
+			int[] parentCounts = parent.getCounts(objectives);
+			int[] ownCounts;
+			synchronized (parent) {
+				ownCounts = parentCounts.clone();
+			}
+			for(Entry<ADemoEntity, ADemoEntity> entities : theSwitch.entrySet()) {
+				index.move(ownCounts, entities.getKey(), -1);
+				index.move(ownCounts, entities.getValue(), 1);
+			}
+			counts = ownCounts;
+			release();
+		}
+		return counts;
+	}
+
+	/*
+	 * Parent is no longer required once population has been built and counts have been copied
+	 */
+	private void release() {
+		if(population != null && counts != null) {
+			parent = null;
+			theSwitch = null;
+			neighborSearch = null;
+		}
+	}
+
+	// ----------------------- UTILITY ----------------------- //
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + getSolution().hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		SyntheticPopulationIncrementalSolution other = (SyntheticPopulationIncrementalSolution) obj;
+		return getSolution().equals(other.getSolution());
+	}
+
+	// ----------------------- INNER INDEX ----------------------- //
+
+	/*
+	 * Flat view of objective records: target values and the attribute values an entity must have to be counted
+	 * in the record. Records an entity belongs to are cached by attribute values, hence shared by
+	 * all entities that look alike
+	 */
+	private static class ObjectiveIndex {
+
+		private final int[] targets;
+		private final List<Map<Attribute<? extends IValue>, IValue>> records;
+		private final Map<Set<IValue>, Integer> recordIndexes;
+		private final Map<Map<Attribute<? extends IValue>, IValue>, int[]> profiles;
+
+		private ObjectiveIndex(Set<INDimensionalMatrix<Attribute<? extends IValue>, IValue, Integer>> objectives,
+				Set<Attribute<? extends IValue>> populationAttributes) {
+			// Same as TAE: only values that are aspects of the population do matter
+			Map<IValue, Attribute<? extends IValue>> aspects = new HashMap<>();
+			for(Attribute<? extends IValue> attribute : populationAttributes)
+				for(IValue value : attribute.getValueSpace().getValues())
+					aspects.put(value, attribute);
+			
+			this.records = new ArrayList<>();
+			this.recordIndexes = new HashMap<>();
+			List<Integer> targetList = new ArrayList<>();
+			for(INDimensionalMatrix<Attribute<? extends IValue>, IValue, Integer> objective : objectives) {
+				for(ACoordinate<Attribute<? extends IValue>, IValue> coordinate : objective.getMatrix().keySet()) {
+					Map<Attribute<? extends IValue>, IValue> record = new HashMap<>();
+					for(IValue value : coordinate.values())
+						if(aspects.containsKey(value))
+							record.put(aspects.get(value), value);
+					recordIndexes.putIfAbsent(new HashSet<>(coordinate.values()), records.size());
+					records.add(record);
+					targetList.add(objective.getVal(coordinate).getValue().intValue());
+				}
+			}
+			this.targets = targetList.stream().mapToInt(Integer::intValue).toArray();
+			this.profiles = new ConcurrentHashMap<>();
+		}
+
+		/*
+		 * The index of the objective record with given coordinate values, null if there is none
+		 */
+		private Integer getRecord(Collection<IValue> values) {
+			return recordIndexes.get(new HashSet<>(values));
+		}
+
+		private int size() {
+			return targets.length;
+		}
+
+		/*
+		 * The fitness of an empty population
+		 */
+		private double getTotal() {
+			double total = 0d;
+			for(int target : targets)
+				total += Math.abs(target);
+			return total;
+		}
+
+		/*
+		 * Add delta entity to the records the entity belongs to and return the fitness variation
+		 */
+		private int move(int[] counts, ADemoEntity entity, int delta) {
+			int diff = 0;
+			for(int r : getRecords(entity)) {
+				int before = Math.abs(counts[r] - targets[r]);
+				counts[r] += delta;
+				diff += Math.abs(counts[r] - targets[r]) - before;
+			}
+			return diff;
+		}
+
+		private int[] getRecords(ADemoEntity entity) {
+			Map<Attribute<? extends IValue>, IValue> profile = entity.getAttributeMap();
+			int[] entityRecords = profiles.get(profile);
+			if(entityRecords == null) {
+				entityRecords = new int[records.size()];
+				int count = 0;
+				for(int r = 0; r < records.size(); r++)
+					if(records.get(r).entrySet().stream()
+							.allMatch(e -> e.getValue().equals(profile.get(e.getKey()))))
+						entityRecords[count++] = r;
+				entityRecords = Arrays.copyOf(entityRecords, count);
+				profiles.put(new HashMap<>(profile), entityRecords);
+			}
+			return entityRecords;
+		}
+
+	}
+
+}
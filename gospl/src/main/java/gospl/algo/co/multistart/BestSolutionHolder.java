@@ -0,0 +1,92 @@
+package gospl.algo.co.multistart;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import core.metamodel.IPopulation;
+import core.metamodel.attribute.Attribute;
+import core.metamodel.entity.ADemoEntity;
+import core.metamodel.value.IValue;
+import gospl.algo.co.metamodel.solution.ISyntheticPopulationSolution;
+
+/**
+ * Lock-free holder of the best solution found so far by concurrent optimization chains. Solutions
+ * are offered together with their fitness and the index of the chain that found it: the lowest fitness wins
+ * and ties are broken by chain index, so the retained solution does not depend on thread scheduling
+ *
+ * @param <Population>
+ */
+public class BestSolutionHolder<Population extends IPopulation<ADemoEntity, Attribute<? extends IValue>>> {
+
+	private final AtomicReference<Candidate<Population>> best = new AtomicReference<>();
+
+	/**
+	 * Offer a solution: it is retained if it is better than the current best one
+	 *
+	 * @param solution
+	 * @param fitness
+	 * @param chain
+	 * @return true if the solution is the new best one
+	 */
+	public boolean offer(ISyntheticPopulationSolution<Population> solution, double fitness, int chain) {
+		Candidate<Population> candidate = new Candidate<>(solution, fitness, chain);
+		Candidate<Population> current;
+		do {
+			current = best.get();
+			if(current != null && !candidate.isBetterThan(current))
+				return false;
+		} while(!best.compareAndSet(current, candidate));
+		return true;
+	}
+
+	/**
+	 * The best solution so far, or null if none has been offered
+	 *
+	 * @return
+	 */
+	public ISyntheticPopulationSolution<Population> getSolution() {
+		Candidate<Population> current = best.get();
+		return current == null ? null : current.solution;
+	}
+
+	/**
+	 * The fitness of the best solution so far, or {@link Double#MAX_VALUE} if none has been offered
+	 *
+	 * @return
+	 */
+	public double getFitness() {
+		Candidate<Population> current = best.get();
+		return current == null ? Double.MAX_VALUE : current.fitness;
+	}
+
+	/**
+	 * The chain that found the best solution so far, or -1 if none has been offered
+	 *
+	 * @return
+	 */
+	public int getChain() {
+		Candidate<Population> current = best.get();
+		return current == null ? -1 : current.chain;
+	}
+
+	/*
+	 * Immutable solution / fitness pair
+	 */
+	private static class Candidate<Population extends IPopulation<ADemoEntity, Attribute<? extends IValue>>> {
+
+		private final ISyntheticPopulationSolution<Population> solution;
+		private final double fitness;
+		private final int chain;
+
+		private Candidate(ISyntheticPopulationSolution<Population> solution, double fitness, int chain) {
+			this.solution = solution;
+			this.fitness = fitness;
+			this.chain = chain;
+		}
+
+		private boolean isBetterThan(Candidate<Population> other) {
+			return fitness < other.fitness || (fitness == other.fitness && chain < other.chain);
+		}
+
+	}
+
+}
@@ -0,0 +1,205 @@
+package gospl.algo.co.multistart;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.Level;
+
+import core.metamodel.attribute.Attribute;
+import core.metamodel.value.IValue;
+import core.util.GSPerformanceUtil;
+import core.util.random.GenstarRandom;
+import gospl.GosplPopulation;
+import gospl.algo.co.metamodel.AOptimizationAlgorithm;
+import gospl.algo.co.metamodel.solution.ISyntheticPopulationSolution;
+import gospl.algo.co.metamodel.solution.SyntheticPopulationIncrementalSolution;
+import gospl.algo.co.metamodel.solution.SyntheticPopulationSolution;
+import gospl.algo.co.simannealing.SimulatedAnnealing;
+import gospl.algo.co.tabusearch.TabuSearch;
+import gospl.distribution.matrix.INDimensionalMatrix;
+import gospl.sampler.co.CombinatorialOptimizationSampler;
+
+/**
+ * Multi-start driver for combinatorial optimization: run several independent chains - e.g. {@link SimulatedAnnealing}
+ * or {@link TabuSearch} - on separate threads, and make them exchange their best solution on a regular basis.
+ * <p>
+ * The optimization is divided into rounds: at each round, every chain runs from its starting solution and
+ * offers its outcome to a shared {@link BestSolutionHolder}. Chains that end up with a worse solution than the
+ * global best one adopt it as the starting solution of the next round. Iterations stop when all rounds have been
+ * done or when the global best solution fits the threshold.
+ * <p>
+ * Each chain draws from its own random engine (see {@link GenstarRandom#setThreadInstance(Random)}), split from
+ * the engine of the calling thread when the driver starts, hence a run does not depend on thread scheduling.
+ * <p>
+ * As it is an {@link AOptimizationAlgorithm} itself, it can be given to a {@link CombinatorialOptimizationSampler}
+ * as is, which will then draw the best solution found by any chain
+ *
+ */
+public class MultiStartOptimization extends AOptimizationAlgorithm<GosplPopulation> {
+
+	private final List<AOptimizationAlgorithm<GosplPopulation>> chains;
+	private final int nbRounds;
+	private final int nbThreads;
+
+	private BestSolutionHolder<GosplPopulation> bestSolution;
+
+	/**
+	 * Multi-start with as many threads as there are available processors
+	 *
+	 * @param chainFactory: provides a new algorithm for each chain
+	 * @param nbChains
+	 * @param nbRounds
+	 */
+	public MultiStartOptimization(Supplier<? extends AOptimizationAlgorithm<GosplPopulation>> chainFactory,
+			int nbChains, int nbRounds) {
+		this(chainFactory, nbChains, nbRounds, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Multi-start with a given number of threads
+	 *
+	 * @param chainFactory: provides a new algorithm for each chain
+	 * @param nbChains
+	 * @param nbRounds
+	 * @param nbThreads
+	 */
+	public MultiStartOptimization(Supplier<? extends AOptimizationAlgorithm<GosplPopulation>> chainFactory,
+			int nbChains, int nbRounds, int nbThreads) {
+		this(createChains(chainFactory, nbChains), nbRounds, nbThreads);
+	}
+
+	private MultiStartOptimization(List<AOptimizationAlgorithm<GosplPopulation>> chains, int nbRounds, int nbThreads) {
+		super(chains.get(0).getNeighborSearchAlgorithm(), chains.get(0).getFitnessThreshold());
+		if(nbRounds < 1 || nbThreads < 1)
+			throw new IllegalArgumentException("Multi-start requires at least one round and one thread, but was "
+					+nbRounds+" round(s) and "+nbThreads+" thread(s)");
+		this.chains = chains;
+		this.nbRounds = nbRounds;
+		this.nbThreads = nbThreads;
+		this.bestSolution = new BestSolutionHolder<>();
+	}
+
+	private static List<AOptimizationAlgorithm<GosplPopulation>> createChains(
+			Supplier<? extends AOptimizationAlgorithm<GosplPopulation>> chainFactory, int nbChains){
+		if(nbChains < 1)
+			throw new IllegalArgumentException("Multi-start requires at least one chain, but was "+nbChains);
+		List<AOptimizationAlgorithm<GosplPopulation>> chains = new ArrayList<>(nbChains);
+		for(int i = 0; i < nbChains; i++)
+			chains.add(chainFactory.get());
+		return chains;
+	}
+
+	@Override
+	public ISyntheticPopulationSolution<GosplPopulation> run(ISyntheticPopulationSolution<GosplPopulation> initialSolution) {
+
+		GSPerformanceUtil gspu = new GSPerformanceUtil("Start multi-start optimization"
+				+ "\nPopulation size = "+initialSolution.getSolution().size()
+				+ "\nSample size = "+super.getSample().size()
+				+ "\nChains = "+chains.size()+" "+chains.get(0).getClass().getSimpleName()
+				+ "\nRounds = "+nbRounds+" | Threads = "+nbThreads
+				+ "\nSolution = "+initialSolution.getClass().getSimpleName(),
+				Level.DEBUG);
+
+		// Chain setup: own random engine, sample and objectives
+		Random[] engines = new Random[chains.size()];
+		for(int i = 0; i < chains.size(); i++) {
+			engines[i] = GenstarRandom.split();
+			AOptimizationAlgorithm<GosplPopulation> chain = chains.get(i);
+			chain.setSample((GosplPopulation) super.getSample());
+			// Objectives are set again at each run, in case they have changed since the last one
+			chain.getObjectives().clear();
+			for(INDimensionalMatrix<Attribute<? extends IValue>, IValue, Integer> objective : this.getObjectives())
+				chain.addObjectives(objective);
+		}
+
+		this.bestSolution = new BestSolutionHolder<>();
+		bestSolution.offer(initialSolution, initialSolution.getFitness(this.getObjectives()), -1);
+
+		// Each chain starts from its own copy of the initial solution
+		List<ISyntheticPopulationSolution<GosplPopulation>> starts = new ArrayList<>(chains.size());
+		for(int i = 0; i < chains.size(); i++)
+			starts.add(copyOf(initialSolution));
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(nbThreads, chains.size()));
+		try {
+			for(int round = 0; round < nbRounds && bestSolution.getFitness() > this.getFitnessThreshold(); round++) {
+				List<Future<ISyntheticPopulationSolution<GosplPopulation>>> results = new ArrayList<>();
+				for(int i = 0; i < chains.size(); i++)
+					results.add(executor.submit(this.chainRound(i, starts.get(i), engines[i])));
+
+				for(int i = 0; i < chains.size(); i++) {
+					ISyntheticPopulationSolution<GosplPopulation> result = results.get(i).get();
+					// Adopt the global best solution if it is better than the chain one
+					starts.set(i, result.getFitness(this.getObjectives()) > bestSolution.getFitness() ?
+							copyOf(bestSolution.getSolution()) : result);
+				}
+
+				gspu.sysoStempPerformance("Round "+(round+1)+" ends with best fitness = "
+						+bestSolution.getFitness()+" (chain "+bestSolution.getChain()+")", this);
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("Multi-start optimization has failed", e);
+		} finally {
+			executor.shutdown();
+		}
+
+		return bestSolution.getSolution();
+	}
+
+	/**
+	 * The holder of the best solution found so far: can be polled while optimization is running
+	 *
+	 * @return
+	 */
+	public BestSolutionHolder<GosplPopulation> getBestSolutionHolder() {
+		return bestSolution;
+	}
+
+	/**
+	 * The optimization algorithms that run in parallel
+	 *
+	 * @return
+	 */
+	public List<AOptimizationAlgorithm<GosplPopulation>> getChains() {
+		return Collections.unmodifiableList(chains);
+	}
+
+	/*
+	 * A copy of the solution with cloned entities, so that chains never share the state of a solution
+	 */
+	private static ISyntheticPopulationSolution<GosplPopulation> copyOf(
+			ISyntheticPopulationSolution<GosplPopulation> solution) {
+		GosplPopulation population = new GosplPopulation(solution.getSolution());
+		return solution instanceof SyntheticPopulationIncrementalSolution ?
+				new SyntheticPopulationIncrementalSolution(population) : new SyntheticPopulationSolution(population);
+	}
+
+	/*
+	 * One round of one chain, drawing from the chain random engine
+	 */
+	private Callable<ISyntheticPopulationSolution<GosplPopulation>> chainRound(int chain,
+			ISyntheticPopulationSolution<GosplPopulation> start, Random engine) {
+		return () -> {
+			GenstarRandom.setThreadInstance(engine);
+			try {
+				ISyntheticPopulationSolution<GosplPopulation> result = chains.get(chain).run(start);
+				double fitness = result.getFitness(this.getObjectives());
+				// Make solution ready to be shared with other chains
+				result.getSolution();
+				bestSolution.offer(result, fitness, chain);
+				return result;
+			} finally {
+				GenstarRandom.setThreadInstance(null);
+			}
+		};
+	}
+
+}
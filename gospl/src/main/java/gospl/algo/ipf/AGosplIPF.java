@@ -3,6 +3,7 @@ package gospl.algo.ipf;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.Level;
@@ -14,15 +15,10 @@ import core.metamodel.attribute.Attribute;
 import core.metamodel.entity.ADemoEntity;
 import core.metamodel.value.IValue;
 import core.util.GSPerformanceUtil;
-import core.util.random.GenstarRandom;
 import gospl.algo.ipf.margin.Margin;
-import gospl.algo.ipf.margin.MarginDescriptor;
 import gospl.algo.ipf.margin.MarginalsIPFBuilder;
 import gospl.distribution.matrix.AFullNDimensionalMatrix;
 import gospl.distribution.matrix.INDimensionalMatrix;
-import gospl.distribution.matrix.control.AControl;
-import gospl.distribution.matrix.control.ControlFrequency;
-import gospl.distribution.matrix.coordinate.ACoordinate;
 import gospl.sampler.IDistributionSampler;
 import gospl.sampler.IEntitySampler;
 
@@ -63,6 +59,7 @@ public abstract class AGosplIPF<T extends Number> {
 	private int step = 100;
 	private double delta = Math.pow(10, -4);
 	private double aapd = Double.MAX_VALUE;
+	private int parallelism = 1;
 
 	private Logger logger = LogManager.getLogger();
 
@@ -122,6 +119,20 @@ public abstract class AGosplIPF<T extends Number> {
 	protected void setMaxDelta(double delta) {
 		this.delta = delta;
 	}
+	
+	/**
+	 * Setup the number of threads used to fit the seed: when greater than 1, descriptors of each margin
+	 * and convergence criteria are computed on a dedicated {@link ForkJoinPool}. Parallel fitting is
+	 * deterministic and does not depend on the actual number of threads
+	 * 
+	 * @see IPFKernel#rake(ForkJoinPool)
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		if(parallelism < 1)
+			throw new IllegalArgumentException("Parallelism must be at least 1, but was "+parallelism);
+		this.parallelism = parallelism;
+	}
 
 	//////////////////////////////////////////////////////////////
 	// ------------------------- ALGO ------------------------- //
@@ -193,52 +204,40 @@ public abstract class AGosplIPF<T extends Number> {
 		Collection<Margin<T>> marginals = marginalProcessor.buildCompliantMarginals(this.marginals, seed);
 
 		int stepIter = step;
-		int totalNumberOfMargins = marginals.stream().mapToInt(Margin::size).sum();
 		gspu.sysoStempMessage("Convergence criterias are: step = "+step+" | delta = "+delta);
 				
 		double total = this.marginals.getVal().getValue().doubleValue();
-		aapd = marginals.stream().mapToDouble(m -> m.getMarginDescriptors()
-				.stream().mapToDouble(md -> Math.abs(seed.getVal(md.getSeed()).getDiff(m.getControl(md))
-						.doubleValue()) / total).sum()).sum() / totalNumberOfMargins;
-		gspu.sysoStempMessage("Start fitting iterations with AAPD = "+aapd);
+		IPFKernel<T> kernel = new IPFKernel<>(marginals, seed, total);
+		gspu.sysoStempMessage("Fitting kernel indexed "+kernel.getDescriptorCount()+" margin descriptors over "
+				+kernel.getCellCount()+" seed cells");
+		
+		ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+		if(pool != null)
+			gspu.sysoStempMessage("Fitting is processed on "+parallelism+" threads");
+		
+		try {
+			aapd = pool == null ? kernel.getAAPD() : kernel.getAAPD(pool);
+			gspu.sysoStempMessage("Start fitting iterations with AAPD = "+aapd);
 
-		double relativeIncrease = Double.MAX_VALUE;
+			double relativeIncrease = Double.MAX_VALUE;
 		
-		while(stepIter-- > 0 ? aapd > delta || relativeIncrease < delta : false){
-			if(stepIter % (int) (step * 0.1) == 0d)
-				gspu.sysoStempMessage("Step = "+(step - stepIter)+" | average error = "+aapd, Level.DEBUG);
-			for(Margin<T> margin : marginals){
-				for(MarginDescriptor seedMarginalDescriptor : margin.getMarginDescriptors()){
-					double marginValue = margin.getControl(seedMarginalDescriptor).getValue().doubleValue();
-					double actualValue = seed.getVal(seedMarginalDescriptor.getSeed()).getValue().doubleValue();
-					
-					AControl<Double> factor = new ControlFrequency(marginValue / 
-							(actualValue == 0d ? marginValue : actualValue) ); // If zero seed marginal statu quo
-					Collection<ACoordinate<Attribute<? extends IValue>, IValue>> relatedCoordinates = 
-							seed.getCoordinates(seedMarginalDescriptor.getSeed()); 
-					for(ACoordinate<Attribute<? extends IValue>, IValue> coord : relatedCoordinates) {
-						// When no data in seed but known marginal in control tables put atomic value in
-						if(actualValue == 0d && marginValue > 0d) {seed.setValue(coord, seed.getAtomicVal());}
-						AControl<T> av = seed.getVal(coord);
-						// Store value for debug
-						double avbu = av.getValue().doubleValue();
-						// Update value
-						av.multiply(factor);
-						
-						// DEBUG ONLY 
-						if(logger.getLevel() == Level.TRACE && GenstarRandom.getInstance().nextDouble() < 0.01)
-							gspu.sysoStempMessage("Coord "+coord+":\n AV = "+avbu+" | Factor = "
-									+factor.getValue().doubleValue()+" | UV = "+av.getValue().doubleValue(), Level.TRACE);
-					}
-				}
+			while(stepIter-- > 0 ? aapd > delta || relativeIncrease < delta : false){
+				if(stepIter % (int) (step * 0.1) == 0d)
+					gspu.sysoStempMessage("Step = "+(step - stepIter)+" | average error = "+aapd, Level.DEBUG);
+				if(pool == null)
+					kernel.rake();
+				else
+					kernel.rake(pool);
+
+				double cachedAapd = pool == null ? kernel.getAAPD() : kernel.getAAPD(pool);
+				relativeIncrease = Math.abs(aapd - cachedAapd);
+				aapd = cachedAapd;
 			}
-
-			double cachedAapd = marginals.stream().mapToDouble(m -> m.getMarginDescriptors()
-					.stream().mapToDouble(md -> Math.abs(seed.getVal(md.getSeed()).getDiff(m.getControl(md))
-							.doubleValue()) / total).sum()).sum() / totalNumberOfMargins;
-			relativeIncrease = Math.abs(aapd - cachedAapd);
-			aapd = cachedAapd;
+		} finally {
+			if(pool != null)
+				pool.shutdown();
 		}
+		kernel.writeBack(seed);
 		
 		// WARNING: need to be verified theoretically : but in fact because IPF does not
 		// guarantee convergence, normalization needs to be done but can disrupt validation process
@@ -0,0 +1,464 @@
+package gospl.algo.ipf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+import core.metamodel.attribute.Attribute;
+import core.metamodel.attribute.IAttribute;
+import core.metamodel.value.IValue;
+import gospl.algo.ipf.margin.Margin;
+import gospl.algo.ipf.margin.MarginDescriptor;
+import gospl.algo.ipf.margin.MarginalsIPFBuilder;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.distribution.matrix.control.ControlFrequency;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+
+/**
+ * Primitive fitting kernel for {@link AGosplIPF}: seed cells are copied into a flat {@code double[]} and
+ * every {@link MarginDescriptor} of every {@link Margin} is resolved, once, into the array of cell indexes it covers.
+ * <p>
+ * Raking iterations ({@link #rake()}) and convergence criteria ({@link #getAAPD()}) then boil down to loops over
+ * primitive arrays, with no allocation and no further lookup into the seed matrix. Fitted values are pushed back to
+ * the seed with {@link #writeBack(AFullNDimensionalMatrix)}
+ * <p>
+ * Cell matching follows {@link AFullNDimensionalMatrix#getCoordinates(Set)}: a cell is bound to a descriptor if, for
+ * each seed attribute of the descriptor, the cell value is one of the descriptor values
+ * <p>
+ * Parallel counterparts {@link #rake(ForkJoinPool)} and {@link #getAAPD(ForkJoinPool)} split the work
+ * on fixed boundaries, hence results do not depend on thread scheduling: two runs with the same seed and
+ * margins give the same fitted values. Margins are still processed one after the other, but descriptors of
+ * a margin that do not share any cell are raked concurrently.
+ *
+ * @param <T>
+ */
+public class IPFKernel<T extends Number> {
+
+	/**
+	 * Below this number of cells, work is not split any further
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+	private final List<ACoordinate<Attribute<? extends IValue>, IValue>> coordinates;
+	private final double[] cells;
+
+	private final int[][] descriptorCells;
+	private final double[] controls;
+	private final int[] marginOffsets;
+	private final boolean[] disjointMargins;
+
+	private final double atomicValue;
+	private final boolean integral;
+	private final double total;
+
+	/**
+	 * Build the kernel for the given margins and seed
+	 *
+	 * @param margins: margins built with {@link MarginalsIPFBuilder} against the seed
+	 * @param seed: the matrix to fit
+	 * @param total: the total of control matrix, used to compute AAPD
+	 */
+	public IPFKernel(Collection<Margin<T>> margins, AFullNDimensionalMatrix<T> seed, double total) {
+		this.total = total;
+		this.atomicValue = seed.getAtomicVal().getValue().doubleValue();
+		this.integral = seed.getNulVal().getValue() instanceof Integer;
+
+		this.coordinates = new ArrayList<>(seed.getMatrix().keySet());
+		this.cells = new double[coordinates.size()];
+		for(int i = 0; i < cells.length; i++)
+			cells[i] = seed.getVal(coordinates.get(i)).getValue().doubleValue();
+
+		int descriptorCount = margins.stream().mapToInt(Margin::size).sum();
+		this.descriptorCells = new int[descriptorCount][];
+		this.controls = new double[descriptorCount];
+		this.marginOffsets = new int[margins.size()+1];
+		this.disjointMargins = new boolean[margins.size()];
+
+		int d = 0, m = 0;
+		int[] owners = new int[cells.length];
+		for(Margin<T> margin : margins) {
+			marginOffsets[m] = d;
+			List<MarginDescriptor> descriptors = new ArrayList<>(margin.getMarginDescriptors());
+			int[][] marginCells = this.indexDescriptors(descriptors, seed.getDimensions());
+			Arrays.fill(owners, -1);
+			boolean disjoint = true;
+			for(int i = 0; i < descriptors.size(); i++) {
+				for(int c : marginCells[i]) {
+					disjoint &= owners[c] == -1;
+					owners[c] = i;
+				}
+				descriptorCells[d] = marginCells[i];
+				controls[d++] = margin.getControl(descriptors.get(i)).getValue().doubleValue();
+			}
+			disjointMargins[m++] = disjoint;
+		}
+		marginOffsets[m] = d;
+	}
+
+	// ------------------------- ACCESSORS ------------------------- //
+
+	/**
+	 * Number of margin descriptors, all margins included
+	 *
+	 * @return
+	 */
+	public int getDescriptorCount() {
+		return controls.length;
+	}
+
+	/**
+	 * Number of cells of the seed
+	 *
+	 * @return
+	 */
+	public int getCellCount() {
+		return cells.length;
+	}
+
+	// ------------------------- ALGO ------------------------- //
+
+	/**
+	 * One IPF iteration: for each margin, in turn, each cell is multiplied by the ratio between
+	 * its descriptor control and its descriptor actual value. When actual value is zero while control is not,
+	 * cells are set to the seed atomic value
+	 */
+	public void rake() {
+		for(int m = 0; m < marginOffsets.length - 1; m++)
+			for(int d = marginOffsets[m]; d < marginOffsets[m+1]; d++)
+				rakeDescriptor(d);
+	}
+
+	/**
+	 * Parallel version of {@link #rake()}: descriptors of a margin are raked concurrently when they do not
+	 * share any cell, otherwise they are raked in turn as in sequential IPF. Large descriptors are themselves
+	 * split into chunks of cells
+	 *
+	 * @param pool
+	 */
+	public void rake(ForkJoinPool pool) {
+		for(int m = 0; m < marginOffsets.length - 1; m++) {
+			if(disjointMargins[m])
+				pool.invoke(new RakeTask(marginOffsets[m], marginOffsets[m+1]));
+			else
+				for(int d = marginOffsets[m]; d < marginOffsets[m+1]; d++)
+					pool.invoke(new RakeTask(d, d+1));
+		}
+	}
+
+	/**
+	 * Average absolute proportional difference between actual and control values, over all descriptors
+	 *
+	 * @return
+	 */
+	public double getAAPD() {
+		if(controls.length == 0)
+			return 0d;
+		double sum = 0d;
+		for(int d = 0; d < controls.length; d++)
+			sum += Math.abs(getActualValue(d) - controls[d]) / total;
+		return sum / controls.length;
+	}
+
+	/**
+	 * Parallel reduction of {@link #getAAPD()}
+	 *
+	 * @param pool
+	 * @return
+	 */
+	public double getAAPD(ForkJoinPool pool) {
+		if(controls.length == 0)
+			return 0d;
+		return pool.invoke(new AAPDTask(0, controls.length)) / controls.length;
+	}
+
+	/**
+	 * Push fitted values back into the seed
+	 *
+	 * @param seed
+	 */
+	public void writeBack(AFullNDimensionalMatrix<T> seed) {
+		for(int i = 0; i < cells.length; i++)
+			seed.setValue(coordinates.get(i), new ControlFrequency(cells[i]));
+	}
+
+	// ------------------------- INNER UTILITIES ------------------------- //
+
+	/*
+	 * Scale the cells of one descriptor
+	 */
+	protected void rakeDescriptor(int d) {
+		int[] dCells = descriptorCells[d];
+		double marginValue = controls[d];
+		double actualValue = getActualValue(d);
+		if(actualValue == 0d) {
+			// If zero seed marginal: statu quo, unless there is something to fit
+			if(marginValue > 0d)
+				for(int c : dCells)
+					cells[c] = atomicValue;
+			return;
+		}
+		double factor = marginValue / actualValue;
+		if(integral)
+			for(int c : dCells)
+				cells[c] = Math.round(cells[c] * factor);
+		else
+			for(int c : dCells)
+				cells[c] *= factor;
+	}
+
+	/*
+	 * Scale the cells of one descriptor, splitting large descriptors
+	 */
+	protected void rakeDescriptorParallel(int d) {
+		int[] dCells = descriptorCells[d];
+		if(dCells.length <= PARALLEL_THRESHOLD) {
+			rakeDescriptor(d);
+			return;
+		}
+		double marginValue = controls[d];
+		double actualValue = new SumTask(dCells, 0, dCells.length).compute();
+		if(actualValue == 0d) {
+			if(marginValue > 0d)
+				new ScaleTask(dCells, 0, dCells.length, Double.NaN).compute();
+			return;
+		}
+		new ScaleTask(dCells, 0, dCells.length, marginValue / actualValue).compute();
+	}
+
+	/*
+	 * Sum of cells of a descriptor
+	 */
+	protected double getActualValue(int d) {
+		double actual = 0d;
+		for(int c : descriptorCells[d])
+			actual += cells[c];
+		return actual;
+	}
+
+	/*
+	 * Sum of cells of a descriptor, splitting large descriptors
+	 */
+	protected double getActualValueParallel(int d) {
+		int[] dCells = descriptorCells[d];
+		if(dCells.length <= PARALLEL_THRESHOLD)
+			return getActualValue(d);
+		return new SumTask(dCells, 0, dCells.length).compute();
+	}
+
+	/*
+	 * Number of cells in a range of descriptors
+	 */
+	private long countCells(int from, int to) {
+		long count = 0;
+		for(int d = from; d < to; d++)
+			count += descriptorCells[d].length;
+		return count;
+	}
+
+	/*
+	 * Resolve cells bound to each descriptor in one pass over the seed cells: descriptors
+	 * are first looked up through the value of their first attribute, then fully checked
+	 */
+	private int[][] indexDescriptors(List<MarginDescriptor> descriptors,
+			Set<Attribute<? extends IValue>> seedDimensions) {
+
+		int size = descriptors.size();
+		List<List<Set<IValue>>> descriptorGroups = new ArrayList<>(size);
+		List<List<IAttribute<? extends IValue>>> descriptorAttributes = new ArrayList<>(size);
+		Map<IAttribute<? extends IValue>, Map<IValue, List<Integer>>> pivots = new HashMap<>();
+		List<Integer> unconstrained = new ArrayList<>();
+
+		for(int i = 0; i < size; i++) {
+			Map<IAttribute<? extends IValue>, Set<IValue>> groups = descriptors.get(i).getSeed().stream()
+					.filter(val -> seedDimensions.contains(val.getValueSpace().getAttribute()))
+					.collect(Collectors.groupingBy(val -> val.getValueSpace().getAttribute(), Collectors.toSet()));
+			List<IAttribute<? extends IValue>> atts = new ArrayList<>(groups.keySet());
+			descriptorAttributes.add(atts);
+			descriptorGroups.add(atts.stream().map(groups::get).collect(Collectors.toList()));
+			if(atts.isEmpty()) {
+				unconstrained.add(i);
+			} else {
+				Map<IValue, List<Integer>> pivot = pivots.computeIfAbsent(atts.get(0), k -> new HashMap<>());
+				for(IValue value : groups.get(atts.get(0)))
+					pivot.computeIfAbsent(value, k -> new ArrayList<>()).add(i);
+			}
+		}
+
+		int[][] result = new int[size][];
+		int[] counts = new int[size];
+		for(int i = 0; i < size; i++)
+			result[i] = new int[4];
+
+		for(int c = 0; c < coordinates.size(); c++) {
+			Map<Attribute<? extends IValue>, IValue> coord = coordinates.get(c).getMap();
+			for(int i : unconstrained)
+				counts[i] = append(result, counts, i, c);
+			for(Map.Entry<IAttribute<? extends IValue>, Map<IValue, List<Integer>>> pivot : pivots.entrySet()) {
+				List<Integer> candidates = pivot.getValue().get(coord.get(pivot.getKey()));
+				if(candidates == null)
+					continue;
+				for(int i : candidates) {
+					List<IAttribute<? extends IValue>> atts = descriptorAttributes.get(i);
+					List<Set<IValue>> groups = descriptorGroups.get(i);
+					boolean match = true;
+					for(int a = 1; match && a < atts.size(); a++)
+						match = groups.get(a).contains(coord.get(atts.get(a)));
+					if(match)
+						counts[i] = append(result, counts, i, c);
+				}
+			}
+		}
+
+		for(int i = 0; i < size; i++)
+			result[i] = Arrays.copyOf(result[i], counts[i]);
+		return result;
+	}
+
+	private int append(int[][] arrays, int[] counts, int i, int value) {
+		if(counts[i] == arrays[i].length)
+			arrays[i] = Arrays.copyOf(arrays[i], arrays[i].length * 2);
+		arrays[i][counts[i]] = value;
+		return counts[i] + 1;
+	}
+
+	// ------------------------- FORK / JOIN ------------------------- //
+
+	/*
+	 * Rake a range of descriptors: ranges are split in halves, hence
+	 * cells of the range must not overlap
+	 */
+	@SuppressWarnings("serial")
+	private class RakeTask extends RecursiveAction {
+
+		private final int from, to;
+
+		RakeTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from == 1)
+				rakeDescriptorParallel(from);
+			else if(countCells(from, to) <= PARALLEL_THRESHOLD)
+				for(int d = from; d < to; d++)
+					rakeDescriptor(d);
+			else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new RakeTask(from, mid), new RakeTask(mid, to));
+			}
+		}
+
+	}
+
+	/*
+	 * Sum of proportional absolute differences over a range of descriptors
+	 */
+	@SuppressWarnings("serial")
+	private class AAPDTask extends RecursiveTask<Double> {
+
+		private final int from, to;
+
+		AAPDTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Double compute() {
+			if(to - from == 1)
+				return Math.abs(getActualValueParallel(from) - controls[from]) / total;
+			if(countCells(from, to) <= PARALLEL_THRESHOLD) {
+				double sum = 0d;
+				for(int d = from; d < to; d++)
+					sum += Math.abs(getActualValue(d) - controls[d]) / total;
+				return sum;
+			}
+			int mid = (from + to) >>> 1;
+			AAPDTask left = new AAPDTask(from, mid);
+			left.fork();
+			double right = new AAPDTask(mid, to).compute();
+			return left.join() + right;
+		}
+
+	}
+
+	/*
+	 * Sum of a chunk of cells
+	 */
+	@SuppressWarnings("serial")
+	private class SumTask extends RecursiveTask<Double> {
+
+		private final int[] dCells;
+		private final int from, to;
+
+		SumTask(int[] dCells, int from, int to) {
+			this.dCells = dCells;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Double compute() {
+			if(to - from <= PARALLEL_THRESHOLD) {
+				double sum = 0d;
+				for(int i = from; i < to; i++)
+					sum += cells[dCells[i]];
+				return sum;
+			}
+			int mid = (from + to) >>> 1;
+			SumTask left = new SumTask(dCells, from, mid);
+			left.fork();
+			double right = new SumTask(dCells, mid, to).compute();
+			return left.join() + right;
+		}
+
+	}
+
+	/*
+	 * Scale a chunk of cells; a NaN factor stands for setting cells to atomic value
+	 */
+	@SuppressWarnings("serial")
+	private class ScaleTask extends RecursiveAction {
+
+		private final int[] dCells;
+		private final int from, to;
+		private final double factor;
+
+		ScaleTask(int[] dCells, int from, int to, double factor) {
+			this.dCells = dCells;
+			this.from = from;
+			this.to = to;
+			this.factor = factor;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= PARALLEL_THRESHOLD) {
+				if(Double.isNaN(factor))
+					for(int i = from; i < to; i++)
+						cells[dCells[i]] = atomicValue;
+				else if(integral)
+					for(int i = from; i < to; i++)
+						cells[dCells[i]] = Math.round(cells[dCells[i]] * factor);
+				else
+					for(int i = from; i < to; i++)
+						cells[dCells[i]] *= factor;
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ScaleTask(dCells, from, mid, factor), new ScaleTask(dCells, mid, to, factor));
+		}
+
+	}
+
+}
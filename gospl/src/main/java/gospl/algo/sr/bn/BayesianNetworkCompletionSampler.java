@@ -25,7 +25,7 @@ public class BayesianNetworkCompletionSampler implements ICompletionSampler<ADem
 	private final Map<Attribute<? extends IValue>,NodeCategorical> popAttribute2bnVariable;
 
 	public BayesianNetworkCompletionSampler(CategoricalBayesianNetwork bn) throws GSIllegalRangedData {
-		this(bn, new EliminationInferenceEngine(bn));
+		this(bn, new JunctionTreeInferenceEngine(bn));
 	}
 	
 	public BayesianNetworkCompletionSampler(CategoricalBayesianNetwork bn, AbstractInferenceEngine engine) throws GSIllegalRangedData {
@@ -102,7 +102,8 @@ public class BayesianNetworkCompletionSampler implements ICompletionSampler<ADem
 
 		// we already have the original entity
 		
-		// let's use it as evidence
+		// let's use it as evidence (instead of the one of the previous entity)
+		engine.clearEvidence();
 		for (Attribute<? extends IValue> aOriginal: originalEntity.getAttributes()) {
 			
 			NodeCategorical n = getBNVariableForAttribute(aOriginal);
@@ -114,9 +115,6 @@ public class BayesianNetworkCompletionSampler implements ICompletionSampler<ADem
 			engine.addEvidence(n, originalEntity.getValueForAttribute(aOriginal).getStringValue());	
 		}
 		
-		System.err.println("inference with evidence : "+engine.evidenceVariable2value);
-		System.err.println("p(evidence): "+engine.getProbabilityEvidence());
-
 		// now we can generate the missing values
 		Map<NodeCategorical,String> variable2value = engine.sampleOne();
 		
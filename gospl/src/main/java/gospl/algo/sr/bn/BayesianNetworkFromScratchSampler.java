@@ -17,15 +17,26 @@ import gospl.distribution.matrix.coordinate.ACoordinate;
 import gospl.distribution.matrix.coordinate.GosplCoordinate;
 import gospl.sampler.ISampler;
 
+/**
+ * Draws individuals from scratch, i.e. without evidence, out of a Bayesian network. The network is 
+ * compiled once into a {@link ForwardSamplingPlan}, so draws only deal with value indexes and the values
+ * of attributes are resolved beforehand.
+ *
+ */
 public class BayesianNetworkFromScratchSampler implements ISampler<ACoordinate<Attribute<? extends IValue>, IValue>> {
 
 	private final CategoricalBayesianNetwork bn;
-	private final AbstractInferenceEngine engine;
+	private final ForwardSamplingPlan plan;
 	private final Map<String,Attribute<? extends IValue>> bnVariable2popAttribute;
 	
+	// attribute and values of each node of the plan, indexed like its domain
+	private final Attribute<? extends IValue>[] attributes;
+	private final IValue[][] values;
+	
+	@SuppressWarnings("unchecked")
 	public BayesianNetworkFromScratchSampler(CategoricalBayesianNetwork bn) throws GSIllegalRangedData {
 		this.bn = bn;
-		this.engine = new BestInferenceEngine(bn);
+		this.plan = new ForwardSamplingPlan(bn);
 		
 		// will probably evolve in the future
 
@@ -41,30 +52,43 @@ public class BayesianNetworkFromScratchSampler implements ISampler<ACoordinate<A
 					);
 		}
 		
+		this.attributes = new Attribute[plan.size()];
+		this.values = new IValue[plan.size()][];
+		for (int i = 0; i < plan.size(); i++) {
+			NodeCategorical n = plan.getNodes().get(i);
+			attributes[i] = bnVariable2popAttribute.get(n.getName());
+			values[i] = new IValue[n.getDomainSize()];
+			for (int k = 0; k < values[i].length; k++)
+				values[i][k] = attributes[i].getValueSpace().addValue(n.getValueIndexed(k));
+		}
+		
+	}
+	
+	/**
+	 * The compiled network this sampler draws from
+	 * @return
+	 */
+	public ForwardSamplingPlan getPlan() {
+		return plan;
 	}
 	
 	@Override
 	public ACoordinate<Attribute<? extends IValue>, IValue> draw() {
-
-		
-		Map<Attribute<? extends IValue>,IValue> att2value = new HashMap<>(bn.getNodes().size());
-
-		
-		// sample one
-		Map<NodeCategorical,String> variable2value = engine.sampleOne();
-
-		// convert the result from the BAyesian network to a valid type
-		for (Map.Entry<NodeCategorical,String> e: variable2value.entrySet()) {
-			Attribute<? extends IValue> a = bnVariable2popAttribute.get(e.getKey().getName());
-			att2value.put(a, a.getValueSpace().addValue(e.getValue()));		
-		}
-		
-		return new GosplCoordinate(att2value);
+		return toCoordinate(plan.draw(), 0);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Value indexes of the whole batch are drawn in parallel by the plan,
+	 * see {@link ForwardSamplingPlan#draw(int, int)}
+	 */
 	@Override
 	public Collection<ACoordinate<Attribute<? extends IValue>, IValue>> draw(int numberOfDraw) {
-		return IntStream.range(0, numberOfDraw).parallel().mapToObj(i -> draw()).collect(Collectors.toList());
+		final int[] indexes = plan.draw(numberOfDraw, Runtime.getRuntime().availableProcessors());
+		return IntStream.range(0, numberOfDraw).parallel()
+				.mapToObj(i -> toCoordinate(indexes, i * plan.size()))
+				.collect(Collectors.toList());
 	}
 
 	@Override
@@ -77,5 +101,15 @@ public class BayesianNetworkFromScratchSampler implements ISampler<ACoordinate<A
 	public EGosplGenerationConcept getConcept() {
 		return IGosplConcept.EGosplGenerationConcept.SR;
 	}
+	
+	/*
+	 * convert the value indexes drawn by the plan to a valid type
+	 */
+	private ACoordinate<Attribute<? extends IValue>, IValue> toCoordinate(int[] indexes, int offset) {
+		Map<Attribute<? extends IValue>,IValue> att2value = new HashMap<>(attributes.length * 2);
+		for (int i = 0; i < attributes.length; i++)
+			att2value.put(attributes[i], values[i][indexes[offset + i]]);
+		return new GosplCoordinate(att2value);
+	}
 
 }
@@ -14,6 +14,7 @@ public final class BestInferenceEngine extends AbstractInferenceEngine {
 	private EliminationInferenceEngine eliminationInferenceEngine = null;
 	private SimpleConditionningInferenceEngine simpleConditionningInferenceEngine = null;
 	private RecursiveConditionningEngine recursiveConditionningEngine = null;
+	private JunctionTreeInferenceEngine junctionTreeInferenceEngine = null;
 
 	public BestInferenceEngine(CategoricalBayesianNetwork bn) {
 		super(bn);
@@ -37,6 +38,15 @@ public final class BestInferenceEngine extends AbstractInferenceEngine {
 		return eliminationInferenceEngine;
 	}
 	
+	private JunctionTreeInferenceEngine getJunctionTreeInferenceEngine() {
+		if (junctionTreeInferenceEngine == null) {
+			junctionTreeInferenceEngine = new JunctionTreeInferenceEngine(bn);
+			junctionTreeInferenceEngine.addEvidence(evidenceVariable2value);
+			junctionTreeInferenceEngine.compute();
+		}
+		return junctionTreeInferenceEngine;
+	}
+	
 	private SimpleConditionningInferenceEngine getSimpleConditionningInferenceEngine() {
 		if (simpleConditionningInferenceEngine == null) {
 			simpleConditionningInferenceEngine = new SimpleConditionningInferenceEngine(bn);
@@ -58,6 +68,9 @@ public final class BestInferenceEngine extends AbstractInferenceEngine {
 		if (recursiveConditionningEngine != null)
 			recursiveConditionningEngine.compute();
 		
+		if (junctionTreeInferenceEngine != null)
+			junctionTreeInferenceEngine.compute();
+		
 		
 		super.compute();
 		
@@ -139,14 +152,13 @@ public final class BestInferenceEngine extends AbstractInferenceEngine {
 		
 		// sample without evidence: the best solution is always simple conditionning !
 		if (evidenceVariable2value.isEmpty())
-			getSimpleConditionningInferenceEngine().sampleOne();
+			return getSimpleConditionningInferenceEngine().sampleOne();
 			
 		AbstractInferenceEngine ie = null;
 		
-		// sample with evidence: the best solution is to use elimination inference
-		ie = getEliminationInferenceEngine();
-				
-		// TODO reset !!!
+		// sample with evidence: the best solution is to use the junction tree, 
+		// which keeps its calibration for the evidences it has seen already
+		ie = getJunctionTreeInferenceEngine();
 		
 		if (!ie.evidenceVariable2value.equals(evidenceVariable2value)) {
 			ie.clearEvidence();
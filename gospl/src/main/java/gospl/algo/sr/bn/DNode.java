@@ -864,11 +864,15 @@ public final class DNode {
 			random = random * this.n.getParents().size();
 			
 			double cumulated = 0.;
-			for (Map.Entry<Map<NodeCategorical,String>,Double> e: reduced.values.entrySet()) {
-				cumulated += e.getValue();
+			for (int i = 0; i < reduced.size(); i++) {
+				double p = reduced.getValue(i);
+				if (p == 0)
+					continue;
+				cumulated += p;
 				if (cumulated >= random) {
-					defined.putAll(e.getKey());
-					logger.trace("picked from CPT: {}", e.getKey());
+					Map<NodeCategorical,String> picked = reduced.getInstantiation(i);
+					defined.putAll(picked);
+					logger.trace("picked from CPT: {}", picked);
 					return; // stop all !
 				} 
 			}
@@ -232,7 +232,7 @@ public class EliminationInferenceEngine extends AbstractInferenceEngine {
 				// let's remove it 
 				 //node2factor.remove(f); // TODO???
 			} else {
-				biggestCPT = Math.max(biggestCPT, f.values.size());
+				biggestCPT = Math.max(biggestCPT, f.size());
 				if (logger.isDebugEnabled())
 					logger.debug("sum {} for {}", n.name, f.toStringLong());
 
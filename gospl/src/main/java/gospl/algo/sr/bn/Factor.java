@@ -1,14 +1,13 @@
 package gospl.algo.sr.bn;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.apache.commons.collections4.map.LRUMap;
 
@@ -16,7 +15,14 @@ import org.apache.commons.collections4.map.LRUMap;
  * A factor f over variables X is a function that maps each instantiation 
  * x of variables X to a non-negative number.
  * 
- * TODO optimisation for storage ? use double[] instead of a map ? 
+ * Values are stored as a dense array indexed by the domain indices of the variables:
+ * the variable at position i of the layout has stride cardinality(0) x ... x cardinality(i-1),
+ * so the index of an instantiation is the sum of domain index x stride over variables.
+ * Reduction, summing out and product are thus computed by loops over strides, without
+ * building any instantiation map.
+ *
+ * By convention, a factor which contains only zeros is empty: it is invariant for multiplication
+ * and sums to 1.
  * 
  * @author Samuel Thiriot
  *
@@ -26,9 +32,14 @@ public final class Factor {
 	private final CategoricalBayesianNetwork bn;
 	protected final Set<NodeCategorical> variables;
 	
-	protected final boolean keepZeros = false;
+	/**
+	 * variables in the order of the layout of values
+	 */
+	private NodeCategorical[] order;
+	private int[] cardinalities;
+	private int[] strides;
 	
-	protected Map<Map<NodeCategorical,String>,Double> values = new HashMap<>();
+	protected double[] values;
 	
 	protected LRUMap<NodeCategorical,Map<String,Factor>> cacheReductionVariable2ValueToResult = null;
 	
@@ -37,17 +48,130 @@ public final class Factor {
 	
 	
 	/**
-	 * Creates a factor over these variables
+	 * Creates a factor over these variables, with all values equal to zero
 	 * @param bn
 	 * @param variables
 	 */
 	public Factor(CategoricalBayesianNetwork bn, Set<NodeCategorical> variables) {
+		this(bn, variables.toArray(new NodeCategorical[variables.size()]));
+	}
+
+	/*
+	 * Creates a factor with this layout of variables
+	 */
+	private Factor(CategoricalBayesianNetwork bn, NodeCategorical[] order) {
 		this.bn = bn;
-		this.variables = variables;
+		this.variables = new LinkedHashSet<>(Arrays.asList(order));
+		this.setLayout(order);
+		this.values = new double[size()];
+	}
+
+	/*
+	 * Creates a factor with this layout of variables and these values
+	 */
+	private Factor(CategoricalBayesianNetwork bn, NodeCategorical[] order, double[] values) {
+		this.bn = bn;
+		this.variables = new LinkedHashSet<>(Arrays.asList(order));
+		this.setLayout(order);
+		this.values = values;
+	}
+
+	/*
+	 * Computes cardinalities and strides of the layout
+	 */
+	private void setLayout(NodeCategorical[] order) {
+		this.order = order;
+		this.cardinalities = new int[order.length];
+		this.strides = new int[order.length];
+		long size = 1;
+		for (int i = 0; i < order.length; i++) {
+			cardinalities[i] = order[i].getDomainSize();
+			strides[i] = (int) size;
+			size *= cardinalities[i];
+			if (size > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("too many combinations of values for a factor over "+variables);
+		}
+	}
+
+	/**
+	 * Returns the number of instantiations of the variables of this factor,
+	 * that is the length of its values
+	 * @return
+	 */
+	public int size() {
+		return order.length == 0 ? 1 : strides[order.length-1] * cardinalities[order.length-1];
+	}
+
+	/**
+	 * Returns the value stored at this index (see {@link #getInstantiation(int)})
+	 * @param index
+	 * @return
+	 */
+	public double getValue(int index) {
+		return values[index];
+	}
+
+	/**
+	 * Returns the instantiation of variables which corresponds to this index of values
+	 * @param index
+	 * @return
+	 */
+	public Map<NodeCategorical,String> getInstantiation(int index) {
+		Map<NodeCategorical,String> res = new HashMap<>(order.length*2);
+		for (int i = 0; i < order.length; i++) {
+			res.put(order[i], order[i].getValueIndexed((index / strides[i]) % cardinalities[i]));
+		}
+		return res;
+	}
+
+	/*
+	 * returns true if there is no value different from zero
+	 */
+	private boolean isEmpty() {
+		for (double d: values) {
+			if (d != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/*
+	 * position of the variable in the layout, or -1
+	 */
+	private int positionOf(NodeCategorical n) {
+		for (int i = 0; i < order.length; i++) {
+			if (order[i] == n)
+				return i;
+		}
+		return -1;
+	}
+
+	/*
+	 * index of this instantiation in values, which should define every variable
+	 */
+	private int indexOf(Map<NodeCategorical,String> instantiations) {
+		int idx = 0;
+		for (int i = 0; i < order.length; i++) {
+			String v = instantiations.get(order[i]);
+			if (v == null)
+				throw new IllegalArgumentException("not enough coordinates to get factor data");
+			idx += order[i].getDomainIndex(v) * strides[i];
+		}
+		return idx;
+	}
+
+	/*
+	 * layout without the variable at this position
+	 */
+	private NodeCategorical[] orderWithout(int position) {
+		NodeCategorical[] res = new NodeCategorical[order.length-1];
+		System.arraycopy(order, 0, res, 0, position);
+		System.arraycopy(order, position+1, res, position, order.length-position-1);
+		return res;
 	}
 	
 	public boolean hasUniqueValue() {
-		return variables.isEmpty() && values.size()==1;
+		return variables.isEmpty() && values[0] != 0;
 	}
 	
 	/**
@@ -60,31 +184,28 @@ public final class Factor {
 		if (!variables.isEmpty())
 			throw new IllegalArgumentException("Factor "+this+" has more than one variable, cannot return a unique value.");
 		
-		return values.values().iterator().next();
+		return values[0];
 	}
 	
 	/**
 	 * Clones a factor.
 	 */
 	public Factor clone() {
-		Factor res = new Factor(bn, new HashSet<>(variables));
-		for (Map.Entry<Map<NodeCategorical,String>,Double> e: values.entrySet()) {
-			res.setFactor(e.getKey(), e.getValue());
-		}
-		return res;
+		return new Factor(bn, order.clone(), values.clone());
 	}
 	
 	public double sum() {
 		
+		double total = 0;
+		for (double d: values) {
+			total += d;
+		}
+
 		// convention
-		if (values.isEmpty()) {
+		if (total == 0 && isEmpty()) {
 			return 1.0;
 		}
 	
-		double total = 0;
-		for (Double d: values.values()) {
-			total += d;
-		}
 		return total;
 	}
 	
@@ -98,41 +219,24 @@ public final class Factor {
 	public void reduce(NodeCategorical nEvidence, String vEvidence) {
 		
 		// quick exit
-		if (!variables.contains(nEvidence))
+		int position = positionOf(nEvidence);
+		if (position < 0)
 			return;
 		
-		// for each value in our map...
+		final int stride = strides[position];
+		final int card = cardinalities[position];
+		final int offset = nEvidence.getDomainIndex(vEvidence) * stride;
 		
-		Map<Map<NodeCategorical,String>,Double> novelvalues = new HashMap<>(values.size()/nEvidence.getDomainSize());
-		
-		for (Iterator<Map.Entry<Map<NodeCategorical,String>,Double>> itValues = values.entrySet().iterator(); itValues.hasNext();) {
-			
-			Map.Entry<Map<NodeCategorical,String>,Double> eValues = itValues.next();
-			
-			Map<NodeCategorical,String> keys = eValues.getKey();
-			Double p = eValues.getValue();
-			
-			String vLine = keys.get(nEvidence);
-			if (vLine.equals(vEvidence)) {
-				// keep it !
-				Map<NodeCategorical,String> n2s = new HashMap<>(keys);
-				n2s.remove(nEvidence);
-				Double previousp = novelvalues.put(n2s, p);
-
-				if (previousp != null) {
-					// oops, we knew this one already. Let's sum instead. 
-					novelvalues.put(n2s, p+previousp);
-					InferencePerformanceUtils.singleton.incAdditions();
-				}
-			} else {
-				// in fact we want to drop that one 
-			}
-			
-			
+		// copy the block of each outer index which corresponds to the value
+		double[] novelvalues = new double[values.length / card];
+		for (int outer = 0, to = 0; to < novelvalues.length; outer += stride*card, to += stride) {
+			System.arraycopy(values, outer+offset, novelvalues, to, stride);
 		}
 		
 		variables.remove(nEvidence);
+		setLayout(orderWithout(position));
 		values = novelvalues;
+		cacheReductionVariable2ValueToResult = null;
 
 	}
 	
@@ -157,10 +261,8 @@ public final class Factor {
 	 */
 	public Factor reduction(Map<NodeCategorical,String> evidence) {
 		// TODO optimization: if the evidence is not related to us, we might return us. 
-		//System.err.println("factor before reduction: "+this.values);
 		Factor res = this.clone();
 		res.reduce(evidence);
-		//System.err.println("factor after reduction: "+res.values);
 		return res;
 	}
 	
@@ -192,18 +294,12 @@ public final class Factor {
 		}
 		
 		return res;
-		
-		// TODO optimization: if the evidence is not related to us, we might return us. 
-		//Factor res = this.clone();
-		//res.reduce(n, s);
-		//return res;
 	}
 	
 	public void setFactor(Map<NodeCategorical,String> instanciations, double p) {
-		if (!keepZeros && p==0)
-			values.remove(instanciations);
-		else 
-			values.put(instanciations, p);	
+		if (instanciations.size() != variables.size() || !variables.containsAll(instanciations.keySet()))
+			throw new IllegalArgumentException("invalid variables "+instanciations.keySet()+" for factor "+this);
+		values[indexOf(instanciations)] = p;
 	}
 	
 	/**
@@ -218,45 +314,11 @@ public final class Factor {
 			throw new IllegalArgumentException("invalid variables "+instantiations.keySet()+" for factor "+this);
 		}
 		
-		double p;
-		
-		if (instantiations.size() == variables.size()) {
-			// perfect solution: just read one single value in this factor 
-			
-			// get it 
-			Double v = values.get(instantiations);
-			
-			if (v==null & !keepZeros)
-				// the fact we red nothing means this is 0.
-				p=0.;
-			else 
-				p = v;
-				
-		} else {
+		if (instantiations.size() != variables.size())
 			throw new IllegalArgumentException("not enough coordinates to get factor data");
-			/*
-			// seems like we don't have all the values required for reading our index ! 
-			// let's sum over it 
-			double total = 0.;
-			for (IteratorCategoricalVariables itDomain = bn.iterateDomains(variables.stream().filter(v -> !instantiations.containsKey(v)).collect(Collectors.toSet())); itDomain.hasNext(); ) {
-				Map<NodeCategorical,String> n2v = itDomain.next();
-				n2v.putAll(instantiations);
-				Double read = values.get(n2v);
-				if (read != null) {
-					total += read; // notice we ignore null lines here... for some reason...
-					if (total >= 1)
-						break;
-				}
-			}
-			p = total;*/
-		}
 		
-		
-		// compute on demand
-		//p = bn.jointProbability(instantiations, Collections.emptyMap());
-		//values.put(instantiations, p);
-		
-		return p;
+		// just read one single value in this factor
+		return values[indexOf(instantiations)];
 	}
 	
 	public double get(String... sss) {
@@ -270,25 +332,26 @@ public final class Factor {
 	
 	public Factor sumOut(NodeCategorical var) {
 		
+		int position = positionOf(var);
+		if (position < 0)
+			throw new IllegalArgumentException("invalid variable "+var+" for factor "+this);
+
 		// the novel factor will target all the values but the one we sum
-		Set<NodeCategorical> novelSet = new HashSet<>(variables);
-		novelSet.remove(var);
-		
-		Factor res = new Factor(bn, novelSet);
-		
-		for (IteratorCategoricalVariables it = bn.iterateDomains(novelSet); it.hasNext();) {
-			Map<NodeCategorical,String> v2n = it.next();
-			double d = 0;
-			for (String v: var.getDomain()) {
-				v2n.put(var, v);
-				d += get(v2n);
-				InferencePerformanceUtils.singleton.incAdditions();
+		final int stride = strides[position];
+		final int card = cardinalities[position];
+		
+		double[] novelvalues = new double[values.length / card];
+		for (int outer = 0, to = 0; to < novelvalues.length; outer += stride*card, to += stride) {
+			for (int k = 0; k < card; k++) {
+				final int from = outer + k*stride;
+				for (int i = 0; i < stride; i++) {
+					novelvalues[to+i] += values[from+i];
+				}
 			}
-			v2n.remove(var);
-			res.setFactor(v2n, d);
 		}
+		InferencePerformanceUtils.singleton.incAdditions(values.length);
 		
-		return res;
+		return new Factor(bn, orderWithout(position), novelvalues);
 	}
 	
 	public Factor multiply(Factor f) {
@@ -297,38 +360,51 @@ public final class Factor {
 			throw new IllegalArgumentException("the other factor variables do not all belong this network");
 		
 		// special case of the empty factor: it is invariant, so we can return the other factor 
-		if (this.values.isEmpty())
+		if (this.isEmpty())
 			return f.clone();
-		if (f.values.isEmpty())
+		if (f.isEmpty())
 			return this.clone();
 		
-		Set<NodeCategorical> vvs = new HashSet<>(this.variables);
-		vvs.addAll(f.variables);
-		
-		Set<NodeCategorical> varsDiff = new HashSet<>(f.variables);
-		varsDiff.removeAll(this.variables);
+		// our variables first, then the other ones
+		List<NodeCategorical> vvs = new ArrayList<>(Arrays.asList(this.order));
+		for (NodeCategorical n: f.order) {
+			if (!this.variables.contains(n))
+				vvs.add(n);
+		}
 		
-		Factor res = new Factor(bn, vvs);
+		Factor res = new Factor(bn, vvs.toArray(new NodeCategorical[vvs.size()]));
+		
+		// strides of each result dimension in each operand (0 when the operand does not depend on it)
+		final int dims = res.order.length;
+		final int[] card = res.cardinalities;
+		final int[] strides1 = new int[dims];
+		final int[] strides2 = new int[dims];
+		for (int d = 0; d < dims; d++) {
+			int p1 = this.positionOf(res.order[d]);
+			int p2 = f.positionOf(res.order[d]);
+			strides1[d] = p1 < 0 ? 0 : this.strides[p1];
+			strides2[d] = p2 < 0 ? 0 : f.strides[p2];
+		}
 		
-		for (IteratorCategoricalVariables it1=bn.iterateDomains(this.variables); it1.hasNext(); ) {
-			Map<NodeCategorical,String> it1m = it1.next(); 
-			double d1 = this.get(it1m);
-			for (IteratorCategoricalVariables it2=bn.iterateDomains(varsDiff); it2.hasNext(); ) {
-				Map<NodeCategorical,String> it2m = new HashMap<>(it2.next()); 
-				for (NodeCategorical n: this.variables) {
-					if (f.variables.contains(n))
-						it2m.put(n,it1m.get(n));
-				}
-				double d2 = f.get(it2m);
-				
-				it2m.putAll(it1m);
-				
-				double times = d1 * d2;
-				InferencePerformanceUtils.singleton.incMultiplications();
-				
-				res.setFactor(it2m, times);
+		// walk the result with a counter, moving the index of each operand along
+		final double[] values1 = this.values;
+		final double[] values2 = f.values;
+		final double[] novelvalues = res.values;
+		final int[] counter = new int[dims];
+		int i1 = 0, i2 = 0;
+		for (int i = 0; i < novelvalues.length; i++) {
+			novelvalues[i] = values1[i1] * values2[i2];
+			for (int d = 0; d < dims; d++) {
+				i1 += strides1[d];
+				i2 += strides2[d];
+				if (++counter[d] < card[d])
+					break;
+				i1 -= strides1[d] * card[d];
+				i2 -= strides2[d] * card[d];
+				counter[d] = 0;
 			}
 		}
+		InferencePerformanceUtils.singleton.incMultiplications(novelvalues.length);
 		
 		return res;
 	}
@@ -377,10 +453,16 @@ public final class Factor {
 	public String toStringLong() {
 		StringBuffer sb = new StringBuffer(toString());
 		sb.append(":\n");
-		for (Map.Entry<Map<NodeCategorical,String>,Double> e: values.entrySet()) {
+		for (int idx = 0; idx < values.length; idx++) {
+			if (values[idx] == 0)
+				continue;
 			sb.append("\t");
-			sb.append(e.getKey().entrySet().stream().map(e2->e2.getKey().name+"="+e2.getValue()).collect(Collectors.joining(",")));
-			sb.append(":").append(e.getValue()).append("\n");
+			for (int i = 0; i < order.length; i++) {
+				if (i > 0)
+					sb.append(",");
+				sb.append(order[i].name).append("=").append(order[i].getValueIndexed((idx / strides[i]) % cardinalities[i]));
+			}
+			sb.append(":").append(values[idx]).append("\n");
 		}
 		return sb.toString();
 	}
@@ -392,29 +474,29 @@ public final class Factor {
 		
 		// sum ?
 		double total = 0;
-		for (double d: values.values()) {
+		for (double d: values) {
 			total += d;
-			InferencePerformanceUtils.singleton.incAdditions();
 		}
+		InferencePerformanceUtils.singleton.incAdditions(values.length);
 		
-		// do nothing if good already !
-		if (total==1)
+		// do nothing if good already (or nothing to normalize) !
+		if (total==1 || total==0)
 			return;
 		
 		// norm !
-		for (Entry<Map<NodeCategorical, String>, Double> e: values.entrySet()) {
-			values.put(e.getKey(), e.getValue()/total );
-			InferencePerformanceUtils.singleton.incMultiplications();
+		for (int i = 0; i < values.length; i++) {
+			values[i] /= total;
 		}
+		InferencePerformanceUtils.singleton.incMultiplications(values.length);
 		
 	}
 
 	public void divide(int size) {
 		// norm !
-		for (Entry<Map<NodeCategorical, String>, Double> e: values.entrySet()) {
-			values.put(e.getKey(), e.getValue()/size );
-			InferencePerformanceUtils.singleton.incMultiplications();
+		for (int i = 0; i < values.length; i++) {
+			values[i] /= size;
 		}
+		InferencePerformanceUtils.singleton.incMultiplications(values.length);
 	}
 
 }
@@ -0,0 +1,210 @@
+package gospl.algo.sr.bn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import core.util.random.GenstarRandom;
+import core.util.random.GenstarRandomStream;
+import gospl.sampler.AliasTable;
+
+/**
+ * A Bayesian network compiled for forward sampling without evidence: nodes are ordered so that
+ * parents come first, and each node holds the strides of its parents plus one alias table
+ * (see Vose's algorithm) for each configuration of its parents. A draw is thus a vector of value indexes,
+ * one per node in the order of {@link #getNodes()}, where each value costs one index computation
+ * and one alias draw.
+ * <p>
+ * Batches of draws are stored in one flat array, individual after individual. They can be drawn in parallel
+ * with {@link #draw(int, int)}: each chunk draws from its own random stream, so the outcome does not
+ * depend on the number of threads.
+ * <p>
+ * WARNING: the plan is a snapshot of the probabilities of the network, it must be compiled again
+ * if the network changes
+ *
+ */
+public final class ForwardSamplingPlan {
+
+	/*
+	 * Number of draws of a chunk in parallel draw: each chunk has its own random stream
+	 */
+	private static final int CHUNK_SIZE = 1 << 14;
+
+	private final List<NodeCategorical> nodes;
+
+	private final int[] domainSizes;
+	// position of parents in the plan and the stride of each one in the configuration index
+	private final int[][] parentPositions;
+	private final int[][] parentStrides;
+
+	// per node, alias tables of every parent configuration: configuration x domain size
+	private final double[][] probability;
+	private final int[][] alias;
+
+	/**
+	 * Compiles the network
+	 *
+	 * @param bn
+	 */
+	public ForwardSamplingPlan(CategoricalBayesianNetwork bn) {
+		this.nodes = Collections.unmodifiableList(new ArrayList<>(bn.enumerateNodes()));
+
+		final int size = nodes.size();
+		this.domainSizes = new int[size];
+		this.parentPositions = new int[size][];
+		this.parentStrides = new int[size][];
+		this.probability = new double[size][];
+		this.alias = new int[size][];
+
+		for (int i = 0; i < size; i++) {
+			NodeCategorical n = nodes.get(i);
+			NodeCategorical[] parents = n.parentsArray;
+			final int d = n.getDomainSize();
+			domainSizes[i] = d;
+			parentPositions[i] = new int[parents.length];
+			parentStrides[i] = new int[parents.length];
+			int configurations = 1;
+			for (int p = 0; p < parents.length; p++) {
+				parentPositions[i][p] = nodes.indexOf(parents[p]);
+				parentStrides[i][p] = configurations;
+				configurations *= parents[p].getDomainSize();
+			}
+
+			probability[i] = new double[configurations * d];
+			alias[i] = new int[configurations * d];
+
+			// one table per configuration of the parents, which indexes are walked like a counter
+			int[] parentIndexes = new int[parents.length];
+			double[] weights = new double[d];
+			for (int c = 0; c < configurations; c++) {
+				for (int k = 0; k < d; k++)
+					weights[k] = n.getProbability(k, parentIndexes);
+				buildAlias(weights, probability[i], alias[i], c * d);
+				for (int p = 0; p < parents.length && ++parentIndexes[p] == parents[p].getDomainSize(); p++)
+					parentIndexes[p] = 0;
+			}
+		}
+	}
+
+	// -------------------- accessors -------------------- //
+
+	/**
+	 * The nodes of the network, in the order of values in a draw
+	 * @return
+	 */
+	public List<NodeCategorical> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * The number of values of one draw, that is the number of nodes
+	 * @return
+	 */
+	public int size() {
+		return nodes.size();
+	}
+
+	/**
+	 * The value of a node at given position of the plan, for given value index
+	 * @param node
+	 * @param index
+	 * @return
+	 */
+	public String getValue(int node, int index) {
+		return nodes.get(node).getValueIndexed(index);
+	}
+
+	// -------------------- draw methods -------------------- //
+
+	/**
+	 * Draws one individual with the random engine, and writes the value indexes
+	 * of nodes in values from offset
+	 *
+	 * @param random
+	 * @param values
+	 * @param offset
+	 */
+	public void draw(Random random, int[] values, int offset) {
+		for (int i = 0; i < domainSizes.length; i++) {
+			final int[] positions = parentPositions[i];
+			final int[] strides = parentStrides[i];
+			int configuration = 0;
+			for (int p = 0; p < positions.length; p++)
+				configuration += values[offset + positions[p]] * strides[p];
+
+			final int d = domainSizes[i];
+			final int column = configuration * d + random.nextInt(d);
+			final int value = random.nextDouble() < probability[i][column] ?
+					column - configuration * d : alias[i][column];
+			if (value < 0)
+				throw new IllegalStateException("Node "+nodes.get(i)+" has no probability for a configuration of its parents that has been drawn");
+			values[offset + i] = value;
+		}
+	}
+
+	/**
+	 * Draws one individual with the random engine of the current thread
+	 *
+	 * @return the value indexes of nodes
+	 */
+	public int[] draw() {
+		int[] values = new int[size()];
+		draw(GenstarRandom.getInstance(), values, 0);
+		return values;
+	}
+
+	/**
+	 * Draws a batch of individuals with a given number of threads. The batch is divided
+	 * into fixed size chunks, each one drawing from a stream split from the current thread engine:
+	 * the outcome is the same whatever the number of threads is
+	 *
+	 * @param numberOfDraw
+	 * @param parallelism
+	 * @return value indexes of individuals, one after the other: value of node j for individual i is
+	 * at index i x {@link #size()} + j
+	 */
+	public int[] draw(int numberOfDraw, int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Parallelism must be strictly positive but was "+parallelism);
+		final int size = size();
+		if ((long) numberOfDraw * size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Cannot draw "+numberOfDraw+" individuals of "+size+" values in one batch");
+
+		final int[] values = new int[numberOfDraw * size];
+		final int chunks = (numberOfDraw + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		final GenstarRandomStream[] streams = new GenstarRandomStream[chunks];
+		for (int chunk = 0; chunk < chunks; chunk++)
+			streams[chunk] = GenstarRandom.split();
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+				int to = Math.min(numberOfDraw, (chunk + 1) * CHUNK_SIZE);
+				for (int i = chunk * CHUNK_SIZE; i < to; i++)
+					draw(streams[chunk], values, i * size);
+			})).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("Parallel draw has failed", e);
+		} finally {
+			pool.shutdown();
+		}
+		return values;
+	}
+
+	// -------------------- inner utilities -------------------- //
+
+	/*
+	 * Alias tables for weights (see AliasTable), written in probability and alias from offset; tables of weights
+	 * that sum to zero have negative aliases, so as to fail if they are ever drawn
+	 */
+	private static void buildAlias(double[] weights, double[] probability, int[] alias, int offset) {
+		if (!AliasTable.build(weights, probability, alias, offset))
+			Arrays.fill(alias, offset, offset + weights.length, -1);
+	}
+
+}
@@ -54,6 +54,14 @@ public class InferencePerformanceUtils {
 		countMultiply++;
 	}
 	
+	public void incAdditions(int count) {
+		countAdditions += count;
+	}
+	
+	public void incMultiplications(int count) {
+		countMultiply += count;
+	}
+	
 	public void display() {
 		logger.info("multiplication: {}, additions:{}, cache hits:{} and miss:{}", countMultiply, countAdditions, cacheHit, cacheMiss);
 	}
@@ -0,0 +1,526 @@
+package gospl.algo.sr.bn;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.collections4.map.LRUMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.util.random.GenstarRandom;
+
+/**
+ * Inference by message passing on a junction tree (aka clique tree) of the network. The tree is
+ * compiled once: the moral graph is triangulated by eliminating at each step the variable which adds
+ * the fewest edges, the cliques created by elimination are linked by a maximum spanning tree over the size
+ * of their separators, and each CPT is assigned to a clique which contains its family.
+ * <p>
+ * Calibration for a given evidence is cached, keyed by the evidence, together with the posteriors computed
+ * from it: queries and samples for an evidence seen before reuse all the work done. Evidence is also
+ * incorporated incrementally: the potential of a clique only depends on evidence on its variables,
+ * and the message sent along an edge only depends on evidence on the variables of the subtree it comes
+ * from, so both are cached with that part of evidence as a key. Adding evidence in one branch of the tree
+ * thus leaves the messages from other branches untouched.
+ * <p>
+ * Sampling ({@link #sampleOne()}) draws the cliques one after the other from the root of the tree, each one
+ * from its calibrated belief reduced by the values already drawn, without changing evidence.
+ * <p>
+ * WARNING: not thread safe
+ *
+ */
+public class JunctionTreeInferenceEngine extends AbstractInferenceEngine {
+
+	private Logger logger = LogManager.getLogger();
+
+	/**
+	 * Number of evidences which calibration is kept in cache
+	 */
+	public static int CACHE_CALIBRATIONS = 1000;
+
+	/**
+	 * Number of potentials (resp. messages) kept in cache for each clique (resp. edge)
+	 */
+	public static int CACHE_MESSAGES = 1000;
+
+	// ---- junction tree ---- //
+
+	private final List<NodeCategorical> nodes;
+	private final Set<NodeCategorical>[] cliques;
+	// the CPTs assigned to each clique
+	private final List<Factor>[] assigned;
+	// neighbours of cliques, and the variables in the subtree behind each neighbour
+	private final int[][] neighbours;
+	private final Set<NodeCategorical>[][] separators;
+	private final Set<NodeCategorical>[][] subtreeVariables;
+	// cliques in breadth first order from the root, with the parent of each one
+	private final int[] order;
+	private final int[] parent;
+	// the smallest clique which contains each node
+	private final Map<NodeCategorical,Integer> node2clique;
+
+	// ---- caches ---- //
+
+	private final LRUMap<Map<NodeCategorical,String>,Calibration> cacheEvidence2calibration = new LRUMap<>(CACHE_CALIBRATIONS);
+	private final LRUMap<Map<NodeCategorical,String>,Factor>[] cachePotentials;
+	private final LRUMap<Map<NodeCategorical,String>,Factor>[][] cacheMessages;
+
+	private Calibration calibration = null;
+
+	/*
+	 * The calibrated beliefs for one evidence
+	 */
+	private static class Calibration {
+
+		private final Factor[] beliefs;
+		private final double probabilityEvidence;
+		private final Map<NodeCategorical,double[]> posteriors = new HashMap<>();
+
+		private Calibration(Factor[] beliefs, double probabilityEvidence) {
+			this.beliefs = beliefs;
+			this.probabilityEvidence = probabilityEvidence;
+		}
+
+	}
+
+	@SuppressWarnings("unchecked")
+	public JunctionTreeInferenceEngine(CategoricalBayesianNetwork bn) {
+		super(bn);
+
+		this.nodes = new ArrayList<>(bn.enumerateNodes());
+
+		List<Set<NodeCategorical>> cliquesL = triangulate();
+		final int size = cliquesL.size();
+		this.cliques = cliquesL.toArray(new Set[size]);
+
+		// assign each CPT to the smallest clique which contains its family
+		this.assigned = new List[size];
+		for (int i = 0; i < size; i++)
+			assigned[i] = new ArrayList<>();
+		this.node2clique = new HashMap<>(nodes.size()*2);
+		for (NodeCategorical n: nodes) {
+			int best = -1, bestFamily = -1;
+			Set<NodeCategorical> family = n.family();
+			for (int i = 0; i < size; i++) {
+				if (cliques[i].contains(n) && (best < 0 || cliques[i].size() < cliques[best].size()))
+					best = i;
+				if (cliques[i].containsAll(family) && (bestFamily < 0 || cliques[i].size() < cliques[bestFamily].size()))
+					bestFamily = i;
+			}
+			node2clique.put(n, best);
+			assigned[bestFamily].add(bn.getFactor(n));
+		}
+
+		// link cliques by a maximum spanning tree over the size of separators (Prim);
+		// empty separators link the components of the network
+		this.order = new int[size];
+		this.parent = new int[size];
+		List<List<Integer>> links = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			links.add(new ArrayList<>());
+		boolean[] inTree = new boolean[size];
+		int[] bestWeight = new int[size];
+		Arrays.fill(bestWeight, -1);
+		Arrays.fill(parent, -1);
+		if (size > 0)
+			bestWeight[0] = 0;
+		for (int step = 0; step < size; step++) {
+			int next = -1;
+			for (int i = 0; i < size; i++)
+				if (!inTree[i] && (next < 0 || bestWeight[i] > bestWeight[next]))
+					next = i;
+			inTree[next] = true;
+			if (parent[next] >= 0) {
+				links.get(next).add(parent[next]);
+				links.get(parent[next]).add(next);
+			}
+			for (int i = 0; i < size; i++) {
+				if (inTree[i])
+					continue;
+				int weight = intersection(cliques[i], cliques[next]).size();
+				if (weight > bestWeight[i]) {
+					bestWeight[i] = weight;
+					parent[i] = next;
+				}
+			}
+		}
+
+		// breadth first order from root, so parents come before their children
+		Arrays.fill(parent, -1);
+		Deque<Integer> toVisit = new ArrayDeque<>();
+		boolean[] visited = new boolean[size];
+		if (size > 0) {
+			toVisit.add(0);
+			visited[0] = true;
+		}
+		for (int idx = 0; !toVisit.isEmpty(); idx++) {
+			int i = toVisit.poll();
+			order[idx] = i;
+			for (int j: links.get(i)) {
+				if (!visited[j]) {
+					visited[j] = true;
+					parent[j] = i;
+					toVisit.add(j);
+				}
+			}
+		}
+
+		this.neighbours = new int[size][];
+		this.separators = new Set[size][];
+		this.subtreeVariables = new Set[size][];
+		this.cachePotentials = new LRUMap[size];
+		this.cacheMessages = new LRUMap[size][];
+		for (int i = 0; i < size; i++) {
+			neighbours[i] = links.get(i).stream().mapToInt(Integer::intValue).toArray();
+			separators[i] = new Set[neighbours[i].length];
+			subtreeVariables[i] = new Set[neighbours[i].length];
+			cachePotentials[i] = new LRUMap<>(CACHE_MESSAGES);
+			cacheMessages[i] = new LRUMap[neighbours[i].length];
+			for (int k = 0; k < neighbours[i].length; k++) {
+				separators[i][k] = intersection(cliques[i], cliques[neighbours[i][k]]);
+				subtreeVariables[i][k] = collectSubtreeVariables(i, neighbours[i][k]);
+				cacheMessages[i][k] = new LRUMap<>(CACHE_MESSAGES);
+			}
+		}
+
+		logger.debug("junction tree of {} cliques, the biggest one having {} variables",
+				size, Arrays.stream(cliques).mapToInt(Set::size).max().orElse(0));
+	}
+
+	// ---- compilation ---- //
+
+	/*
+	 * Triangulates the moral graph, eliminating at each step the variable which adds the fewest edges,
+	 * and returns the maximal cliques created by elimination
+	 */
+	private List<Set<NodeCategorical>> triangulate() {
+
+		Map<NodeCategorical,Set<NodeCategorical>> adjacency = new HashMap<>(nodes.size()*2);
+		for (NodeCategorical n: nodes)
+			adjacency.put(n, new LinkedHashSet<>());
+		for (NodeCategorical n: nodes) {
+			for (NodeCategorical p: n.getParents()) {
+				adjacency.get(n).add(p);
+				adjacency.get(p).add(n);
+				for (NodeCategorical p2: n.getParents())
+					if (p != p2)
+						adjacency.get(p).add(p2);
+			}
+		}
+
+		List<Set<NodeCategorical>> res = new ArrayList<>();
+		Set<NodeCategorical> remaining = new LinkedHashSet<>(nodes);
+		while (!remaining.isEmpty()) {
+
+			NodeCategorical best = null;
+			int bestFill = Integer.MAX_VALUE;
+			for (NodeCategorical n: remaining) {
+				int fill = 0;
+				List<NodeCategorical> neighboursN = new ArrayList<>(adjacency.get(n));
+				for (int i = 0; i < neighboursN.size(); i++)
+					for (int j = i+1; j < neighboursN.size(); j++)
+						if (!adjacency.get(neighboursN.get(i)).contains(neighboursN.get(j)))
+							fill++;
+				if (fill < bestFill) {
+					best = n;
+					bestFill = fill;
+				}
+			}
+
+			Set<NodeCategorical> clique = new LinkedHashSet<>(adjacency.get(best));
+			clique.add(best);
+			for (NodeCategorical a: adjacency.get(best)) {
+				for (NodeCategorical b: adjacency.get(best))
+					if (a != b)
+						adjacency.get(a).add(b);
+				adjacency.get(a).remove(best);
+			}
+			adjacency.remove(best);
+			remaining.remove(best);
+
+			// keep only maximal cliques
+			boolean included = false;
+			for (Set<NodeCategorical> other: res)
+				if (other.containsAll(clique)) {
+					included = true;
+					break;
+				}
+			if (!included)
+				res.add(clique);
+		}
+
+		return res;
+	}
+
+	/*
+	 * The variables of the cliques on the side of "from" when the edge from-to is cut
+	 */
+	private Set<NodeCategorical> collectSubtreeVariables(int from, int to) {
+		Set<NodeCategorical> res = new HashSet<>();
+		Deque<Integer> toVisit = new ArrayDeque<>();
+		Set<Integer> visited = new HashSet<>();
+		toVisit.add(from);
+		visited.add(from);
+		visited.add(to);
+		while (!toVisit.isEmpty()) {
+			int i = toVisit.poll();
+			res.addAll(cliques[i]);
+			for (int j: neighbours(i))
+				if (visited.add(j))
+					toVisit.add(j);
+		}
+		return res;
+	}
+
+	/*
+	 * neighbours of a clique from the tree, usable before neighbours are stored as arrays
+	 */
+	private List<Integer> neighbours(int i) {
+		List<Integer> res = new ArrayList<>();
+		if (parent[i] >= 0)
+			res.add(parent[i]);
+		for (int j = 0; j < parent.length; j++)
+			if (parent[j] == i)
+				res.add(j);
+		return res;
+	}
+
+	private static Set<NodeCategorical> intersection(Set<NodeCategorical> a, Set<NodeCategorical> b) {
+		Set<NodeCategorical> res = new HashSet<>(a);
+		res.retainAll(b);
+		return res;
+	}
+
+	// ---- calibration ---- //
+
+	@Override
+	public void compute() {
+
+		Map<NodeCategorical,String> evidence = new HashMap<>(evidenceVariable2value);
+
+		calibration = cacheEvidence2calibration.get(evidence);
+		if (calibration == null) {
+			InferencePerformanceUtils.singleton.incCacheMiss();
+			calibration = calibrate(evidence);
+			cacheEvidence2calibration.put(evidence, calibration);
+		} else {
+			InferencePerformanceUtils.singleton.incCacheHit();
+		}
+
+		// call parent to tag clean
+		super.compute();
+	}
+
+	/*
+	 * Computes the belief of every clique for this evidence. Evidence is impossible as soon as one
+	 * potential or message is zero everywhere
+	 */
+	private Calibration calibrate(Map<NodeCategorical,String> evidence) {
+
+		Factor[] beliefs = new Factor[cliques.length];
+		try {
+			for (int i = 0; i < cliques.length; i++) {
+				Factor belief = getPotential(i, evidence);
+				for (int k = 0; k < neighbours[i].length; k++) {
+					int j = neighbours[i][k];
+					belief = multiply(belief, getMessage(j, indexOfNeighbour(j, i), evidence));
+				}
+				beliefs[i] = belief;
+			}
+		} catch (ImpossibleEvidence e) {
+			return new Calibration(null, 0.);
+		}
+
+		// every calibrated belief sums to the probability of evidence
+		double total = total(beliefs[order[0]]);
+		return new Calibration(beliefs, total);
+	}
+
+	/*
+	 * The product of the CPTs assigned to the clique, reduced by evidence; null when it has no CPT
+	 */
+	private Factor getPotential(int i, Map<NodeCategorical,String> evidence) {
+		Map<NodeCategorical,String> key = restrict(evidence, cliques[i]);
+		Factor res = cachePotentials[i].get(key);
+		if (res == null && !cachePotentials[i].containsKey(key)) {
+			for (Factor f: assigned[i])
+				res = multiply(res, f.reduction(key));
+			cachePotentials[i].put(key, res);
+		}
+		return res;
+	}
+
+	/*
+	 * The message sent by clique i to its k-th neighbour: the potential of i multiplied by the messages
+	 * of its other neighbours, summed out down to the separator; null when there is no factor to send
+	 */
+	private Factor getMessage(int i, int k, Map<NodeCategorical,String> evidence) {
+		Map<NodeCategorical,String> key = restrict(evidence, subtreeVariables[i][k]);
+		Factor res = cacheMessages[i][k].get(key);
+		if (res == null && !cacheMessages[i][k].containsKey(key)) {
+			res = getPotential(i, evidence);
+			for (int l = 0; l < neighbours[i].length; l++) {
+				if (l == k)
+					continue;
+				int j = neighbours[i][l];
+				res = multiply(res, getMessage(j, indexOfNeighbour(j, i), evidence));
+			}
+			if (res != null)
+				res = res.reduceTo(intersection(res.variables, separators[i][k]));
+			cacheMessages[i][k].put(key, res);
+		}
+		return res;
+	}
+
+	/*
+	 * product where null is the identity; fails if a factor is zero everywhere, 
+	 * which Factor would take as the identity
+	 */
+	private Factor multiply(Factor f1, Factor f2) {
+		if (f1 == null || f2 == null) {
+			Factor res = f1 == null ? f2 : f1;
+			if (res != null && total(res) == 0)
+				throw new ImpossibleEvidence();
+			return res;
+		}
+		if (total(f2) == 0)
+			throw new ImpossibleEvidence();
+		Factor res = f1.multiply(f2);
+		if (total(res) == 0)
+			throw new ImpossibleEvidence();
+		return res;
+	}
+
+	private int indexOfNeighbour(int i, int j) {
+		for (int k = 0; k < neighbours[i].length; k++)
+			if (neighbours[i][k] == j)
+				return k;
+		throw new IllegalArgumentException("cliques "+i+" and "+j+" are not linked");
+	}
+
+	private static Map<NodeCategorical,String> restrict(Map<NodeCategorical,String> evidence, Set<NodeCategorical> variables) {
+		Map<NodeCategorical,String> res = new HashMap<>();
+		for (Map.Entry<NodeCategorical,String> e: evidence.entrySet())
+			if (variables.contains(e.getKey()))
+				res.put(e.getKey(), e.getValue());
+		return res;
+	}
+
+	/*
+	 * sum of the values of a factor, without the convention of empty factors
+	 */
+	private static double total(Factor f) {
+		double total = 0;
+		for (int i = 0; i < f.size(); i++)
+			total += f.getValue(i);
+		return total;
+	}
+
+	/*
+	 * Raised when evidence has probability 0
+	 */
+	@SuppressWarnings("serial")
+	private static class ImpossibleEvidence extends RuntimeException {
+
+		private ImpossibleEvidence() {
+			super(null, null, false, false);
+		}
+
+	}
+
+	private Calibration getCalibration() {
+		if (dirty || calibration == null)
+			compute();
+		if (calibration.beliefs == null)
+			throw new IllegalArgumentException("Pr(evidence)=0 with evidence="+evidenceVariable2value+"; impossible to compute posterior probabilities");
+		return calibration;
+	}
+
+	// ---- queries ---- //
+
+	@Override
+	protected double retrieveConditionalProbability(NodeCategorical n, String s) {
+		return retrieveConditionalProbability(n)[n.getDomainIndex(s)];
+	}
+
+	@Override
+	protected double[] retrieveConditionalProbability(NodeCategorical n) {
+
+		if (evidenceVariable2value.containsKey(n))
+			return getEvidenceAsDoubleArray(n);
+
+		Calibration c = getCalibration();
+		double[] res = c.posteriors.get(n);
+		if (res == null) {
+			Factor f = c.beliefs[node2clique.get(n)].reduceTo(Collections.singleton(n));
+			// the factor has only one variable: values are indexed like its domain
+			res = new double[n.getDomainSize()];
+			for (int k = 0; k < res.length; k++)
+				res[k] = f.getValue(k) / c.probabilityEvidence;
+			c.posteriors.put(n, res);
+		}
+		return res;
+	}
+
+	@Override
+	protected double computeProbabilityEvidence() {
+
+		// easy solution if evidence is empty
+		if (evidenceVariable2value.isEmpty())
+			return 1.0;
+
+		if (dirty || calibration == null)
+			compute();
+		return calibration.probabilityEvidence;
+	}
+
+	/**
+	 * Generates an instanciation of the network given current evidence, by drawing
+	 * the variables of each clique from its belief knowing the values drawn before.
+	 * Evidence is left unchanged, so successive samples reuse the same calibration.
+	 * @return
+	 */
+	@Override
+	public Map<NodeCategorical,String> sampleOne() {
+
+		if (getProbabilityEvidence() == 0.0)
+			throw new IllegalArgumentException("cannot generate if the probability of evidence is 0 - evidence is not possible");
+
+		Calibration c = getCalibration();
+		Random random = GenstarRandom.getInstance();
+
+		Map<NodeCategorical,String> node2attribute = new HashMap<>(evidenceVariable2value);
+		for (int i: order) {
+			Factor f = c.beliefs[i].reduction(restrict(node2attribute, cliques[i]));
+			if (f.variables.isEmpty())
+				continue;
+
+			double r = random.nextDouble() * total(f);
+			double cumulated = 0.;
+			int picked = -1;
+			for (int idx = 0; idx < f.size(); idx++) {
+				if (f.getValue(idx) == 0)
+					continue;
+				picked = idx;
+				cumulated += f.getValue(idx);
+				if (cumulated >= r)
+					break;
+			}
+			if (picked < 0)
+				throw new RuntimeException("oops, should have picked a value for "+f+" knowing "+node2attribute+", but they sum to "+cumulated);
+			node2attribute.putAll(f.getInstantiation(picked));
+		}
+
+		return node2attribute;
+	}
+
+}
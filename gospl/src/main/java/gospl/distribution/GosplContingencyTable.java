@@ -10,9 +10,11 @@ import core.metamodel.value.IValue;
 import core.util.data.GSDataParser;
 import core.util.data.GSEnumDataType;
 import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.distribution.matrix.DenseContingencyMap;
 import gospl.distribution.matrix.control.AControl;
 import gospl.distribution.matrix.control.ControlContingency;
 import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinateIndexer;
 
 
 /**
@@ -29,6 +31,18 @@ public class GosplContingencyTable extends AFullNDimensionalMatrix<Integer> {
 		super(attributes, GSSurveyType.ContingencyTable);
 	}
 	
+	/**
+	 * Build a contingency table which cells are stored in a flat {@code int[]}
+	 * 
+	 * @see DenseContingencyMap
+	 * 
+	 * @param attributes
+	 * @param indexer
+	 */
+	protected GosplContingencyTable(Set<Attribute<? extends IValue>> attributes, GosplCoordinateIndexer indexer) {
+		super(attributes, GSSurveyType.ContingencyTable, new DenseContingencyMap(indexer));
+	}
+	
 	protected GosplContingencyTable(Map<ACoordinate<Attribute<? extends IValue>, IValue>, AControl<Integer>> matrix) {
 		super(new ConcurrentHashMap<>(matrix));
 	}
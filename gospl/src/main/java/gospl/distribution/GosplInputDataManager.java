@@ -61,6 +61,7 @@ import gospl.distribution.matrix.control.AControl;
 import gospl.distribution.matrix.control.ControlFrequency;
 import gospl.distribution.matrix.coordinate.ACoordinate;
 import gospl.distribution.matrix.coordinate.GosplCoordinate;
+import gospl.io.CsvStreamInputHandler;
 import gospl.io.GosplSurveyFactory;
 import gospl.io.exception.InvalidSurveyFormatException;
 import gospl.io.util.ReadMultiLayerEntityUtils;
@@ -441,6 +442,9 @@ public class GosplInputDataManager {
 	/**
 	 * Based on a survey wrapping data, and for a given set of expected attributes, 
 	 * creates a GoSPl population.
+	 * <p>
+	 * When maxIndividuals is null, the sample is limited to {@link #MAX_SAMPLE_SIZE} individuals. 
+	 * Records are drawn all along the survey, except for streamed surveys that stop after the limit
 	 */
 	public static GosplPopulation getSample(final IGSSurvey survey, 
 			final IGenstarDictionary<Attribute<? extends IValue>> dictionnary, 
@@ -461,7 +465,32 @@ public class GosplInputDataManager {
 			throw new RuntimeException("no column header was decoded in survey "+survey+"; are you sure you provided a relevant dictionnary of data?");
 		
 		int unmatchSize = 0;
+		int sizeLimit = maxIndividuals == null ? (int) MAX_SAMPLE_SIZE : maxIndividuals;
 		
+		// -----------------------------------------------------------------
+		// Streamed csv are read in one forward pass, with interned values
+		// -----------------------------------------------------------------
+		if (survey instanceof CsvStreamInputHandler) {
+			try (CsvStreamInputHandler.ValueCursor cursor = 
+					((CsvStreamInputHandler) survey).getValueCursor(columnHeaders)) {
+				
+				final String[] expected = cursor.getAttributes().stream()
+						.map(att -> keepOnlyEqual.get(att.getAttributeName()))
+						.toArray(String[]::new);
+				
+				while (sampleSet.size() < sizeLimit && cursor.next()) {
+					GosplEntity entity = readRecord(cursor, expected, gspu);
+					
+					if (entity != null) {sampleSet.add(entity);}
+					else {unmatchSize++;}
+				}
+			}
+			if (unmatchSize > 0) {
+				gspu.sysoStempMessage("Input sample has bypass "+new DecimalFormat("#.##").format(unmatchSize/(double)sampleSet.size()*100)
+					+"% ("+unmatchSize+") of entities due to unmatching attribute's value");
+			}
+			return sampleSet;
+		}
 		
 		// --------------------------------------------------------
 		// Try with the buffer reader first, only available for csv
@@ -472,9 +501,10 @@ public class GosplInputDataManager {
 			surveyReader = survey.getBufferReader(true);
 			String[] l = null;
 
-			double probaJump = MAX_SAMPLE_SIZE / survey.getLastRowIndex();
+			// Only take (max / size) individual record to match the size limit
+			double probaJump = skipProbability(survey.getLastRowIndex(), sizeLimit);
 			
-			while (sampleSet.size() <= maxIndividuals) {
+			while (sampleSet.size() < sizeLimit) {
 				
 				try { do {l = surveyReader.readNext();} while (GenstarRandomUtils.flip(probaJump)); } catch (IOException e) { e.printStackTrace(); }
 				if (l==null) {break;}
@@ -499,9 +529,10 @@ public class GosplInputDataManager {
 		// If trying to do it with other type of data, go through stored-in-memory algorithm
 		// ---------------------------------------------------------------------------------
 		catch (UnsupportedOperationException e) {
-			for (int i = survey.getFirstRowIndex(); i <= survey.getLastRowIndex(); i++) {
+			int lastRowIndex = survey.getLastRowIndex();
+			for (int i = survey.getFirstRowIndex(); i <= lastRowIndex; i++) {
 				// too much ?
-				if (sampleSet.size() >= maxIndividuals) break;
+				if (sampleSet.size() >= sizeLimit) break;
 
 				GosplEntity entity = readRecord(survey.readLine(i), columnHeaders, keepOnlyEqual, gspu);
 
@@ -517,6 +548,13 @@ public class GosplInputDataManager {
 		return sampleSet;
 	}
 	
+	/*
+	 * Probability to skip a record so that about sizeLimit records are read out of surveySize
+	 */
+	private static double skipProbability(int surveySize, int sizeLimit) {
+		return surveySize <= sizeLimit ? 0.0 : 1 - sizeLimit / (double) surveySize;
+	}
+	
 	/**
 	 * The inner reader for individual entities
 	 *  
@@ -562,6 +600,35 @@ public class GosplInputDataManager {
 		return new GosplEntity(entityAttributes);
 	}
 	
+	/**
+	 * The inner reader for individual entities of streamed csv: values have already been resolved 
+	 * by the cursor
+	 * 
+	 * @param cursor
+	 * @param expected the value expected for each column of the cursor, or null if any value is kept
+	 * @return null if value have not been correctly read or keepOnlyEqual filter have been activated
+	 */
+	private static GosplEntity readRecord(CsvStreamInputHandler.ValueCursor cursor, String[] expected, 
+			GSPerformanceUtil gspu) {
+		
+		final Map<Attribute<? extends IValue>, IValue> entityAttributes = new HashMap<>();
+		for (int i = 0; i < cursor.size(); i++) {
+			IValue val = cursor.getValue(i);
+			Attribute<? extends IValue> att = cursor.getAttributes().get(i);
+			if (val == null) {
+				gspu.sysoStempMessage("Data modality "+cursor.getLabel(i)+" does not match any value for attribute "
+						+att.getAttributeName());
+				return null;
+			}
+			// filter
+			if (expected[i] != null && !val.getStringValue().equals(expected[i]))
+				return null;
+			entityAttributes.put(att, val);
+		}
+		
+		return new GosplEntity(entityAttributes);
+	}
+	
 	/**
 	 * Retrieve a multi layered sample from a survey (micro-data) and a dictionary per layer
 	 * 
@@ -604,6 +671,8 @@ public class GosplInputDataManager {
 		int unmatchSize = 0;
 		int zeroLayerIdx = 0;
 		int sizeLimit = maxIndividuals == null ? (int) MAX_SAMPLE_SIZE : maxIndividuals;
+		// Count rows once: it can be a full pass over the file when data are not stored in memory
+		int surveySize = survey.getLastRowIndex();
 
 		// --------------------------------------------------------
 		// Try with the buffer reader first, only available for csv
@@ -613,11 +682,10 @@ public class GosplInputDataManager {
 			surveyReader = survey.getBufferReader(true);
 			String[] l = null;
 			
-			// Only take (max / size) individual record to match MAX_SAMPLE_SIZE
-			int surveySize = survey.getLastRowIndex();
-			double probaJump = surveySize < sizeLimit ? 0.0 : sizeLimit / survey.getLastRowIndex();
+			// Only take (max / size) individual record to match the size limit
+			double probaJump = skipProbability(surveySize, sizeLimit);
 			
-			while (zeroLayerIdx <= sizeLimit) {
+			while (zeroLayerIdx < sizeLimit) {
 				
 				try { do {l = surveyReader.readNext();} while (GenstarRandomUtils.flip(probaJump)); } catch (IOException e) { e.printStackTrace(); }
 				if (l==null) {break;}
@@ -652,7 +720,7 @@ public class GosplInputDataManager {
 		// If trying to do it with other type of data, go through stored-in-memory algorithm
 		// ---------------------------------------------------------------------------------
 		catch (UnsupportedOperationException e) {
-			for (int i = survey.getFirstRowIndex(); i <= survey.getLastRowIndex(); i++) {
+			for (int i = survey.getFirstRowIndex(); i <= surveySize; i++) {
 				
 				// too much ?
 				if (zeroLayerIdx >= sizeLimit) break;
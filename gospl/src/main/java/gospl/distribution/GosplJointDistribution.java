@@ -8,9 +8,11 @@ import core.metamodel.io.GSSurveyType;
 import core.metamodel.value.IValue;
 import core.util.data.GSDataParser;
 import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.distribution.matrix.DenseFrequencyMap;
 import gospl.distribution.matrix.control.AControl;
 import gospl.distribution.matrix.control.ControlFrequency;
 import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinateIndexer;
 
 /**
  * TODO: javadoc
@@ -29,6 +31,20 @@ public class GosplJointDistribution extends AFullNDimensionalMatrix<Double> {
 	public GosplJointDistribution(Set<Attribute<? extends IValue>> dimensions, GSSurveyType metaDataType) {
 		super(dimensions, metaDataType);
 	}
+	
+	/**
+	 * Build a distribution which cells are stored in a flat {@code double[]}
+	 * 
+	 * @see DenseFrequencyMap
+	 * 
+	 * @param dimensions
+	 * @param metaDataType
+	 * @param indexer
+	 */
+	protected GosplJointDistribution(Set<Attribute<? extends IValue>> dimensions, GSSurveyType metaDataType,
+			GosplCoordinateIndexer indexer) {
+		super(dimensions, metaDataType, new DenseFrequencyMap(indexer));
+	}
 
 		
 	// ----------------------- SETTER CONTRACT ----------------------- //
@@ -25,8 +25,11 @@ import core.metamodel.io.GSSurveyType;
 import core.metamodel.value.IValue;
 import core.util.GSPerformanceUtil;
 import core.util.GSUtilAttribute;
+import gospl.GosplColumnarPopulation;
+import gospl.GosplPopulationInDatabase;
 import gospl.distribution.exception.IllegalDistributionCreation;
 import gospl.distribution.exception.IllegalNDimensionalMatrixAccess;
+import gospl.distribution.matrix.ADenseControlMap;
 import gospl.distribution.matrix.AFullNDimensionalMatrix;
 import gospl.distribution.matrix.ASegmentedNDimensionalMatrix;
 import gospl.distribution.matrix.INDimensionalMatrix;
@@ -36,6 +39,7 @@ import gospl.distribution.matrix.control.ControlContingency;
 import gospl.distribution.matrix.control.ControlFrequency;
 import gospl.distribution.matrix.coordinate.ACoordinate;
 import gospl.distribution.matrix.coordinate.GosplCoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinateIndexer;
 
 /**
  * Factory to build various type of {@link INDimensionalMatrix} from many sources:
@@ -51,11 +55,51 @@ import gospl.distribution.matrix.coordinate.GosplCoordinate;
 public class GosplNDimensionalMatrixFactory {
 	
 	public static double EPSILON = Math.pow(10, -3);
+	
+	private final boolean denseStorage;
 
 	public static final GosplNDimensionalMatrixFactory getFactory() {
 		return new GosplNDimensionalMatrixFactory();
 	}
 	
+	/**
+	 * Factory that builds full matrices with a dense inner storage
+	 * 
+	 * @see #GosplNDimensionalMatrixFactory(boolean)
+	 * 
+	 * @param denseStorage
+	 * @return
+	 */
+	public static final GosplNDimensionalMatrixFactory getFactory(boolean denseStorage) {
+		return new GosplNDimensionalMatrixFactory(denseStorage);
+	}
+	
+	public GosplNDimensionalMatrixFactory() {
+		this(false);
+	}
+	
+	/**
+	 * When {@code denseStorage} is true, full distribution and contingency tables are stored
+	 * in flat primitive arrays (see {@link ADenseControlMap}): memory is bound to the theoretical
+	 * size of the matrix (the product of dimensions' size) instead of the number of defined cells,
+	 * but each cell costs 8 bytes (frequency) or 4 bytes (contingency) instead of a coordinate and a control.
+	 * It should be preferred for large joint distributions that are (almost) fully defined.
+	 * 
+	 * @param denseStorage
+	 */
+	public GosplNDimensionalMatrixFactory(boolean denseStorage) {
+		this.denseStorage = denseStorage;
+	}
+	
+	/**
+	 * Whether full matrices built by this factory rely on dense storage
+	 * 
+	 * @return
+	 */
+	public boolean isDenseStorage() {
+		return denseStorage;
+	}
+	
 	//////////////////////////////////////////////
 	//				EMPTY MATRIX				//
 	//////////////////////////////////////////////
@@ -68,7 +112,7 @@ public class GosplNDimensionalMatrixFactory {
 	 */
 	public AFullNDimensionalMatrix<Double> createEmptyDistribution(
 			Set<Attribute<? extends IValue>> dimensions, GSSurveyType type){
-		AFullNDimensionalMatrix<Double> matrix =  new GosplJointDistribution(dimensions, type);
+		AFullNDimensionalMatrix<Double> matrix =  newDistribution(dimensions, type);
 		matrix.addGenesis("created from scratch GosplNDimensionalMatrixFactory@createEmptyDistribution");
 		return matrix;
 	}
@@ -116,7 +160,7 @@ public class GosplNDimensionalMatrixFactory {
 	 */
 	public AFullNDimensionalMatrix<Integer> createEmtpyContingencies(Set<Attribute<? extends IValue>> dimensions,
 			boolean buildCoordinate) {
-		AFullNDimensionalMatrix<Integer> contingency = new GosplContingencyTable(dimensions);
+		AFullNDimensionalMatrix<Integer> contingency = newContingency(dimensions);
 		if(buildCoordinate) {
 			for (List<? extends IValue> coordinate : Sets.cartesianProduct(dimensions.stream()
 					.map(dim -> dim.getValueSpace().getValues()).collect(Collectors.toList()))) {
@@ -165,7 +209,7 @@ public class GosplNDimensionalMatrixFactory {
 	public AFullNDimensionalMatrix<Double> createDistribution(
 			AFullNDimensionalMatrix<Integer> contigency){
 		// Init the output matrix
-		AFullNDimensionalMatrix<Double> matrix = new GosplJointDistribution(
+		AFullNDimensionalMatrix<Double> matrix = newDistribution(
 				contigency.getDimensions(), 
 				GSSurveyType.GlobalFrequencyTable
 				); 
@@ -197,7 +241,7 @@ public class GosplNDimensionalMatrixFactory {
 		}
 		
 		// Init the output matrix
-		AFullNDimensionalMatrix<Double> matrix = new GosplJointDistribution(
+		AFullNDimensionalMatrix<Double> matrix = newDistribution(
 				distribution.getDimensions(), 
 				GSSurveyType.GlobalFrequencyTable
 				); 
@@ -223,7 +267,7 @@ public class GosplNDimensionalMatrixFactory {
 	public AFullNDimensionalMatrix<Double> createDistribution(
 			IPopulation<ADemoEntity, Attribute<? extends IValue>> population){
 		// Init the output matrix
-		AFullNDimensionalMatrix<Double> matrix = new GosplJointDistribution(population.getPopulationAttributes(), 
+		AFullNDimensionalMatrix<Double> matrix = newDistribution(population.getPopulationAttributes(), 
 				GSSurveyType.GlobalFrequencyTable);
 		matrix.addGenesis("created from population GosplNDimensionalMatrixFactory@createDistribution");
 
@@ -252,7 +296,7 @@ public class GosplNDimensionalMatrixFactory {
 			IPopulation<ADemoEntity, Attribute<? extends IValue>> population) {
 		
 		// Init the output matrix
-		AFullNDimensionalMatrix<Double> matrix = new GosplJointDistribution(attributesToMeasure, GSSurveyType.GlobalFrequencyTable);
+		AFullNDimensionalMatrix<Double> matrix = newDistribution(attributesToMeasure, GSSurveyType.GlobalFrequencyTable);
 		matrix.addGenesis("created from population GosplNDimensionalMatrixFactory@createDistribution");
 
 		double unitFreq = 1d/population.size();
@@ -279,7 +323,13 @@ public class GosplNDimensionalMatrixFactory {
 	 */
 	public AFullNDimensionalMatrix<Double> createDistribution(
 			Map<ACoordinate<Attribute<? extends IValue>, IValue>, AControl<Double>> matrix){
-		return new GosplJointDistribution(matrix);
+		if(!denseStorage)
+			return new GosplJointDistribution(matrix);
+		AFullNDimensionalMatrix<Double> distribution = newDistribution(matrix.keySet().stream()
+				.flatMap(coord -> coord.getDimensions().stream())
+				.collect(Collectors.toSet()), GSSurveyType.GlobalFrequencyTable);
+		matrix.entrySet().stream().forEach(e -> distribution.setValue(e.getKey(), e.getValue()));
+		return distribution;
 	}
 	
 	/**
@@ -352,7 +402,7 @@ public class GosplNDimensionalMatrixFactory {
 	 */
 	public AFullNDimensionalMatrix<Double> cloneDistribution(
 			AFullNDimensionalMatrix<Double> distribution){
-		AFullNDimensionalMatrix<Double> matrix = new GosplJointDistribution(distribution.getDimensions(), 
+		AFullNDimensionalMatrix<Double> matrix = newDistribution(distribution.getDimensions(), 
 				GSSurveyType.GlobalFrequencyTable);
 		
 		distribution.getMatrix().keySet().forEach(coordinate -> 
@@ -419,8 +469,13 @@ public class GosplNDimensionalMatrixFactory {
 	 */
 	public AFullNDimensionalMatrix<Integer> createContingency(
 			IPopulation<ADemoEntity, Attribute<? extends IValue>> population) {
+		// Columnar population count entities with a scan of columns
+		if(population instanceof GosplColumnarPopulation)
+			return ((GosplColumnarPopulation) population).getContingency(population.getPopulationAttributes());
+		if(population instanceof GosplPopulationInDatabase)
+			return ((GosplPopulationInDatabase) population).getContingency(population.getPopulationAttributes());
 		// Init the output matrix
-		AFullNDimensionalMatrix<Integer> matrix = new GosplContingencyTable(population.getPopulationAttributes());
+		AFullNDimensionalMatrix<Integer> matrix = newContingency(population.getPopulationAttributes());
 		matrix.addGenesis("Created from a population GosplNDimensionalMatrixFactory@createContigency");
 
 		// Transpose each entity into a coordinate and adds it to the matrix by means of increments
@@ -448,7 +503,7 @@ public class GosplNDimensionalMatrixFactory {
 				.flatMap(e -> e.getAttributes().stream())
 				.map(atttribute -> (Attribute<? extends IValue>)atttribute).collect(Collectors.toSet());
 		
-		AFullNDimensionalMatrix<Integer> matrix = new GosplContingencyTable(att);
+		AFullNDimensionalMatrix<Integer> matrix = newContingency(att);
 		matrix.addGenesis("Created from a population GosplNDimensionalMatrixFactory@createContigency");
 
 		// Transpose each entity into a coordinate and adds it to the matrix by means of increments
@@ -488,7 +543,7 @@ public class GosplNDimensionalMatrixFactory {
 		}
 		
 		// Init the output matrix
-		AFullNDimensionalMatrix<Integer> matrix = new GosplContingencyTable(matchingAttributes);
+		AFullNDimensionalMatrix<Integer> matrix = newContingency(matchingAttributes);
 		matrix.addGenesis("created from a population GosplNDimensionalMatrixFactory@createContigency");
 
 		final GSPerformanceUtil gspu = new GSPerformanceUtil("Create a contingency matrix from a population on "+
@@ -537,7 +592,7 @@ public class GosplNDimensionalMatrixFactory {
 	 */
 	public AFullNDimensionalMatrix<Integer> createContingency(
 			INDimensionalMatrix<Attribute<? extends IValue>, IValue, Integer> unknownMatrix){
-		AFullNDimensionalMatrix<Integer> matrix = new GosplContingencyTable(unknownMatrix.getDimensions());
+		AFullNDimensionalMatrix<Integer> matrix = newContingency(unknownMatrix.getDimensions());
 		unknownMatrix.getMatrix().keySet().forEach(coordinate -> 
 				matrix.addValue(coordinate, 
 						new ControlContingency(unknownMatrix.getVal(coordinate).getValue())
@@ -553,6 +608,11 @@ public class GosplNDimensionalMatrixFactory {
 	 */
 	public AFullNDimensionalMatrix<Integer> cloneContingency(AFullNDimensionalMatrix<Integer> matrix){
 		Map<ACoordinate<Attribute<? extends IValue>, IValue>, AControl<Integer>> m = matrix.getMatrix();
+		if(denseStorage) {
+			AFullNDimensionalMatrix<Integer> clone = newContingency(matrix.getDimensions());
+			m.entrySet().stream().forEach(e -> clone.setValue(e.getKey(), e.getValue()));
+			return clone;
+		}
 		return new GosplContingencyTable(m.keySet().stream().collect(
 				Collectors.toMap(
 						Function.identity(),
@@ -635,7 +695,7 @@ public class GosplNDimensionalMatrixFactory {
 			IPopulation<ADemoEntity, Attribute<? extends IValue>> population) {
 		
 		// Init the output matrix
-		AFullNDimensionalMatrix<Integer> matrix = new GosplContingencyTable(attributesToMeasure);
+		AFullNDimensionalMatrix<Integer> matrix = newContingency(attributesToMeasure);
 		
 		matrix.addGenesis("created from a population GosplNDimensionalMatrixFactory@createContigency");
 
@@ -649,4 +709,22 @@ public class GosplNDimensionalMatrixFactory {
 		return matrix;
 	}
 
+	
+	//////////////////////////////////////////////////
+	//				  INNER BUILDERS				//
+	//////////////////////////////////////////////////
+	
+	private AFullNDimensionalMatrix<Double> newDistribution(Set<Attribute<? extends IValue>> dimensions,
+			GSSurveyType type){
+		if(denseStorage)
+			return new GosplJointDistribution(dimensions, type, new GosplCoordinateIndexer(dimensions));
+		return new GosplJointDistribution(dimensions, type);
+	}
+	
+	private AFullNDimensionalMatrix<Integer> newContingency(Set<Attribute<? extends IValue>> dimensions){
+		if(denseStorage)
+			return new GosplContingencyTable(dimensions, new GosplCoordinateIndexer(dimensions));
+		return new GosplContingencyTable(dimensions);
+	}
+
 }
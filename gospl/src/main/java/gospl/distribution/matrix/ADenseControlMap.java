@@ -0,0 +1,240 @@
+package gospl.distribution.matrix;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import core.metamodel.attribute.Attribute;
+import core.metamodel.value.IValue;
+import gospl.distribution.exception.IllegalNDimensionalMatrixAccess;
+import gospl.distribution.matrix.control.AControl;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinateIndexer;
+
+/**
+ * Dense inner collection for {@link AFullNDimensionalMatrix}: cells are stored in a flat primitive array
+ * which is indexed through a {@link GosplCoordinateIndexer}, rather than in a hash map of coordinate / control.
+ * <p>
+ * Coordinates and controls are not retained: keys are rebuilt from their index when iterating and
+ * {@link AControl} returned by {@link #get(Object)} are views that read and write through to the array.
+ * Hence, {@code matrix.getVal(coordinate).add(1)} still updates the matrix.
+ * <p>
+ * WARNING: contrary to the default concurrent map, adding new cells is not thread safe
+ *
+ * @param <T>
+ */
+public abstract class ADenseControlMap<T extends Number>
+	extends AbstractMap<ACoordinate<Attribute<? extends IValue>, IValue>, AControl<T>> {
+
+	protected final GosplCoordinateIndexer indexer;
+
+	private final BitSet cells;
+	private int size = 0;
+
+	protected ADenseControlMap(GosplCoordinateIndexer indexer) {
+		this.indexer = indexer;
+		this.cells = new BitSet(indexer.size());
+	}
+
+	/**
+	 * The index that binds coordinates of this map to array positions
+	 *
+	 * @return
+	 */
+	public GosplCoordinateIndexer getIndexer() {
+		return indexer;
+	}
+
+	/**
+	 * Whether a value has been put at this index
+	 *
+	 * @param index
+	 * @return
+	 */
+	public boolean isDefined(int index) {
+		return cells.get(index);
+	}
+
+	/**
+	 * Primitive read access to cell at given index: undefined cells are worth 0
+	 *
+	 * @param index
+	 * @return
+	 */
+	public abstract double getDouble(int index);
+
+	/**
+	 * Primitive write access to cell at given index; make the cell defined
+	 *
+	 * @param index
+	 * @param value
+	 */
+	public void setDouble(int index, double value) {
+		define(index);
+		write(index, value);
+	}
+
+	/**
+	 * Builds a control that reads and writes through to the cell at the given index
+	 *
+	 * @param index
+	 * @return
+	 */
+	protected abstract AControl<T> getControlView(int index);
+
+	/**
+	 * Raw write of a cell value
+	 *
+	 * @param index
+	 * @param value
+	 */
+	protected abstract void write(int index, Number value);
+
+	private void define(int index) {
+		if(!cells.get(index)) {
+			cells.set(index);
+			size++;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private int indexOf(Object key) {
+		if(!(key instanceof ACoordinate))
+			return -1;
+		return indexer.getIndex((ACoordinate<Attribute<? extends IValue>, IValue>) key);
+	}
+
+	// ------------------------- MAP CONTRACT ------------------------- //
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		int index = indexOf(key);
+		return index != -1 && cells.get(index);
+	}
+
+	@Override
+	public AControl<T> get(Object key) {
+		int index = indexOf(key);
+		if(index == -1 || !cells.get(index))
+			return null;
+		return getControlView(index);
+	}
+
+	@Override
+	public AControl<T> put(ACoordinate<Attribute<? extends IValue>, IValue> key, AControl<T> value) {
+		int index = indexer.getIndex(key);
+		if(index == -1)
+			throw new IllegalNDimensionalMatrixAccess("Coordinate "+key+" does not fit dense matrix "
+					+ "dimensions "+indexer.getDimensions());
+		AControl<T> previous = cells.get(index) ? getControlView(index) : null;
+		define(index);
+		write(index, value.getValue());
+		return previous;
+	}
+
+	@Override
+	public AControl<T> remove(Object key) {
+		int index = indexOf(key);
+		if(index == -1 || !cells.get(index))
+			return null;
+		AControl<T> previous = getControlView(index);
+		clearCell(index);
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = cells.nextSetBit(0); i >= 0; i = cells.nextSetBit(i+1))
+			write(i, 0);
+		cells.clear();
+		size = 0;
+	}
+
+	private void clearCell(int index) {
+		write(index, 0);
+		cells.clear(index);
+		size--;
+	}
+
+	@Override
+	public Collection<AControl<T>> values() {
+		return new AbstractCollection<AControl<T>>() {
+			@Override
+			public Iterator<AControl<T>> iterator() {
+				return new CellIterator<AControl<T>>() {
+					@Override
+					protected AControl<T> cell(int index) {
+						return getControlView(index);
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public Set<Entry<ACoordinate<Attribute<? extends IValue>, IValue>, AControl<T>>> entrySet() {
+		return new AbstractSet<Entry<ACoordinate<Attribute<? extends IValue>, IValue>, AControl<T>>>() {
+			@Override
+			public Iterator<Entry<ACoordinate<Attribute<? extends IValue>, IValue>, AControl<T>>> iterator() {
+				return new CellIterator<Entry<ACoordinate<Attribute<? extends IValue>, IValue>, AControl<T>>>() {
+					@Override
+					protected Entry<ACoordinate<Attribute<? extends IValue>, IValue>, AControl<T>> cell(int index) {
+						return new SimpleImmutableEntry<>(indexer.getCoordinate(index), getControlView(index));
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/*
+	 * Iterate over defined cells, following index order
+	 */
+	private abstract class CellIterator<E> implements Iterator<E> {
+
+		private int current = -1;
+		private int next = cells.nextSetBit(0);
+
+		protected abstract E cell(int index);
+
+		@Override
+		public boolean hasNext() {
+			return next >= 0;
+		}
+
+		@Override
+		public E next() {
+			if(next < 0)
+				throw new NoSuchElementException();
+			current = next;
+			next = cells.nextSetBit(current+1);
+			return cell(current);
+		}
+
+		@Override
+		public void remove() {
+			if(current < 0 || !cells.get(current))
+				throw new IllegalStateException();
+			clearCell(current);
+		}
+
+	}
+
+}
@@ -64,10 +64,23 @@ public abstract class AFullNDimensionalMatrix<T extends Number> implements INDim
 	 * @param metaDataType
 	 */
 	public AFullNDimensionalMatrix(Set<Attribute<? extends IValue>> dimensions, GSSurveyType metaDataType) {
-		this.dimensions = new HashSet<>(dimensions);
-		this.matrix = new ConcurrentHashMap<>(dimensions.stream()
+		this(dimensions, metaDataType, new ConcurrentHashMap<>(dimensions.stream()
 				.mapToInt(d -> d.getValueSpace().getValues().size())
-				.reduce(1, (ir, dimSize) -> ir * dimSize) / 4);
+				.reduce(1, (ir, dimSize) -> ir * dimSize) / 4));
+	}
+	
+	/**
+	 * Protected constructor in order for {@link GosplNDimensionalMatrixFactory} to choose
+	 * the inner collection that stores cells, e.g. a dense {@link ADenseControlMap}
+	 * 
+	 * @param dimensions
+	 * @param metaDataType
+	 * @param matrix: an empty inner collection
+	 */
+	protected AFullNDimensionalMatrix(Set<Attribute<? extends IValue>> dimensions, GSSurveyType metaDataType,
+			Map<ACoordinate<Attribute<? extends IValue>, IValue>, AControl<T>> matrix) {
+		this.dimensions = new HashSet<>(dimensions);
+		this.matrix = matrix;
 		this.dataType = metaDataType;
 		this.emptyCoordinate = new GosplCoordinate(Collections.emptyMap());
 		this.label = dimensions.stream().map(dim -> dim.getAttributeName().length()>3 ? 
@@ -169,6 +182,16 @@ public abstract class AFullNDimensionalMatrix<T extends Number> implements INDim
 		return matrix.size();
 	}
 	
+	/**
+	 * Whether cells are stored in a dense primitive array (see {@link ADenseControlMap})
+	 * or in a sparse map of coordinate / control
+	 * 
+	 * @return
+	 */
+	public boolean isDense() {
+		return matrix instanceof ADenseControlMap;
+	}
+	
 	
 	@Override
 	public int getDegree() {
@@ -0,0 +1,70 @@
+package gospl.distribution.matrix;
+
+import gospl.distribution.matrix.control.AControl;
+import gospl.distribution.matrix.control.ControlContingency;
+import gospl.distribution.matrix.coordinate.GosplCoordinateIndexer;
+
+/**
+ * Dense contingency cells stored in an {@code int[]}
+ * 
+ * @see ADenseControlMap
+ *
+ */
+public class DenseContingencyMap extends ADenseControlMap<Integer> {
+
+	private final int[] values;
+	
+	public DenseContingencyMap(GosplCoordinateIndexer indexer) {
+		super(indexer);
+		this.values = new int[indexer.size()];
+	}
+	
+	/**
+	 * Direct access to the underlying array: meant for numerical kernels
+	 * that loop over cells without boxing
+	 * 
+	 * @return
+	 */
+	public int[] getValues() {
+		return values;
+	}
+	
+	@Override
+	public double getDouble(int index) {
+		return values[index];
+	}
+
+	@Override
+	protected void write(int index, Number value) {
+		values[index] = value.intValue();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The value is rounded to the closest integer
+	 */
+	@Override
+	public void setDouble(int index, double value) {
+		super.setDouble(index, Math.round(value));
+	}
+
+	@Override
+	protected AControl<Integer> getControlView(int index) {
+		return new ControlContingency(null) {
+			@Override
+			public Integer getValue() {
+				return values[index];
+			}
+			@Override
+			protected void setValue(Integer control) {
+				values[index] = control;
+			}
+			@Override
+			public String toString() {
+				return String.valueOf(values[index]);
+			}
+		};
+	}
+
+}
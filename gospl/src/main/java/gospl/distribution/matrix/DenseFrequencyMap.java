@@ -0,0 +1,60 @@
+package gospl.distribution.matrix;
+
+import gospl.distribution.matrix.control.AControl;
+import gospl.distribution.matrix.control.ControlFrequency;
+import gospl.distribution.matrix.coordinate.GosplCoordinateIndexer;
+
+/**
+ * Dense frequency cells stored in a {@code double[]}
+ * 
+ * @see ADenseControlMap
+ *
+ */
+public class DenseFrequencyMap extends ADenseControlMap<Double> {
+
+	private final double[] values;
+	
+	public DenseFrequencyMap(GosplCoordinateIndexer indexer) {
+		super(indexer);
+		this.values = new double[indexer.size()];
+	}
+	
+	/**
+	 * Direct access to the underlying array: meant for numerical kernels
+	 * that loop over cells without boxing
+	 * 
+	 * @return
+	 */
+	public double[] getValues() {
+		return values;
+	}
+	
+	@Override
+	public double getDouble(int index) {
+		return values[index];
+	}
+
+	@Override
+	protected void write(int index, Number value) {
+		values[index] = value.doubleValue();
+	}
+	
+	@Override
+	protected AControl<Double> getControlView(int index) {
+		return new ControlFrequency(null) {
+			@Override
+			public Double getValue() {
+				return values[index];
+			}
+			@Override
+			protected void setValue(Double control) {
+				values[index] = control;
+			}
+			@Override
+			public String toString() {
+				return String.valueOf(values[index]);
+			}
+		};
+	}
+
+}
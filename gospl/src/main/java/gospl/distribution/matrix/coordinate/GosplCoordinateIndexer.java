@@ -0,0 +1,178 @@
+package gospl.distribution.matrix.coordinate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.metamodel.attribute.Attribute;
+import core.metamodel.value.IValue;
+
+/**
+ * Bijection between the full coordinate space of a set of {@link Attribute} and a flat range of integer indexes.
+ * <p>
+ * Each attribute is turned into an integer axis made of its value space (plus its empty value, if any) and
+ * the position of a coordinate is computed using stride arithmetic, the first dimension being the slowest one:
+ * <br>
+ * {@code index = sum(axisIndex[d] * stride[d])}
+ * <p>
+ * WARNING: axes are frozen at construction, hence values added to a value space afterward will not be indexed
+ *
+ */
+public class GosplCoordinateIndexer {
+
+	private final List<Attribute<? extends IValue>> dimensions;
+	private final Map<Attribute<? extends IValue>, Integer> dimensionAxis;
+
+	private final IValue[][] axisValues;
+	private final List<Map<IValue, Integer>> axisIndexes;
+	private final int[] strides;
+
+	private final int size;
+
+	public GosplCoordinateIndexer(Collection<Attribute<? extends IValue>> dimensions) {
+		this.dimensions = Collections.unmodifiableList(new ArrayList<>(dimensions));
+		this.dimensionAxis = new HashMap<>();
+		this.axisValues = new IValue[this.dimensions.size()][];
+		this.axisIndexes = new ArrayList<>(this.dimensions.size());
+		this.strides = new int[this.dimensions.size()];
+
+		for(int axis = 0; axis < this.dimensions.size(); axis++) {
+			Attribute<? extends IValue> dimension = this.dimensions.get(axis);
+			List<IValue> values = new ArrayList<>(dimension.getValueSpace().getValues());
+			IValue emptyValue = dimension.getEmptyValue();
+			if(emptyValue != null && !values.contains(emptyValue))
+				values.add(emptyValue);
+
+			Map<IValue, Integer> indexes = new HashMap<>(values.size() * 2);
+			for(int i = 0; i < values.size(); i++)
+				indexes.put(values.get(i), i);
+
+			this.dimensionAxis.put(dimension, axis);
+			this.axisValues[axis] = values.toArray(new IValue[values.size()]);
+			this.axisIndexes.add(indexes);
+		}
+
+		long cells = 1;
+		for(int axis = this.dimensions.size() - 1; axis >= 0; axis--) {
+			if(cells > Integer.MAX_VALUE)
+				break;
+			strides[axis] = (int) cells;
+			cells *= axisValues[axis].length;
+		}
+		if(cells > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Cannot index a coordinate space of more than "
+					+Integer.MAX_VALUE+" cells: dimensions "+this.dimensions);
+		this.size = (int) cells;
+	}
+
+	// ------------------------- ACCESSORS ------------------------- //
+
+	/**
+	 * The number of cells in the full coordinate space, i.e. the product of all axis sizes
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The ordered list of dimensions, the position of a dimension in the list being its axis
+	 *
+	 * @return
+	 */
+	public List<Attribute<? extends IValue>> getDimensions(){
+		return dimensions;
+	}
+
+	/**
+	 * The axis of the given dimension or -1 if it is not part of this index
+	 *
+	 * @param dimension
+	 * @return
+	 */
+	public int getAxis(Attribute<? extends IValue> dimension) {
+		Integer axis = dimensionAxis.get(dimension);
+		return axis == null ? -1 : axis;
+	}
+
+	public int getAxisSize(int axis) {
+		return axisValues[axis].length;
+	}
+
+	public int getStride(int axis) {
+		return strides[axis];
+	}
+
+	/**
+	 * The position of the value on the given axis or -1 if the value is not indexed
+	 *
+	 * @param axis
+	 * @param value
+	 * @return
+	 */
+	public int getAxisIndex(int axis, IValue value) {
+		Integer index = axisIndexes.get(axis).get(value);
+		return index == null ? -1 : index;
+	}
+
+	public IValue getAxisValue(int axis, int axisIndex) {
+		return axisValues[axis][axisIndex];
+	}
+
+	/**
+	 * The position of the value on its axis, retrieved from the cell index
+	 *
+	 * @param index
+	 * @param axis
+	 * @return
+	 */
+	public int getAxisIndexOf(int index, int axis) {
+		return (index / strides[axis]) % axisValues[axis].length;
+	}
+
+	// ------------------------- INDEXING ------------------------- //
+
+	/**
+	 * Gives the flat index of the coordinate, or -1 if the coordinate does not exactly
+	 * span the dimensions of this index or if one of its values has not been indexed
+	 *
+	 * @param coordinate
+	 * @return
+	 */
+	public int getIndex(ACoordinate<Attribute<? extends IValue>, IValue> coordinate) {
+		if(coordinate.size() != dimensions.size())
+			return -1;
+		Map<Attribute<? extends IValue>, IValue> coordMap = coordinate.getMap();
+		int index = 0;
+		for(int axis = 0; axis < axisValues.length; axis++) {
+			IValue value = coordMap.get(dimensions.get(axis));
+			if(value == null)
+				return -1;
+			Integer axisIndex = axisIndexes.get(axis).get(value);
+			if(axisIndex == null)
+				return -1;
+			index += axisIndex * strides[axis];
+		}
+		return index;
+	}
+
+	/**
+	 * Builds the coordinate that is bound to the given flat index
+	 *
+	 * @param index
+	 * @return
+	 */
+	public ACoordinate<Attribute<? extends IValue>, IValue> getCoordinate(int index) {
+		if(index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index "+index+" is outside of coordinate space of size "+size);
+		Map<Attribute<? extends IValue>, IValue> coordMap = new HashMap<>(dimensions.size() * 2);
+		for(int axis = 0; axis < axisValues.length; axis++)
+			coordMap.put(dimensions.get(axis), axisValues[axis][getAxisIndexOf(index, axis)]);
+		return new GosplCoordinate(coordMap);
+	}
+
+}
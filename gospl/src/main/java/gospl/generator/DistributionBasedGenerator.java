@@ -1,22 +1,34 @@
 package gospl.generator;
 
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import core.metamodel.attribute.Attribute;
+import core.metamodel.entity.ADemoEntity;
 import core.metamodel.value.IValue;
+import core.util.random.GenstarRandom;
 import gospl.GosplEntity;
 import gospl.GosplPopulation;
 import gospl.distribution.matrix.INDimensionalMatrix;
 import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.generator.sink.IPopulationSink;
 import gospl.sampler.IDistributionSampler;
 import gospl.sampler.IHierarchicalSampler;
 import gospl.sampler.ISampler;
+import gospl.sampler.sr.GosplAliasSampler;
 
 /**
  * A generator that will draw record from a distribution -- i.e.
  * a n dimensional matrix or {@link INDimensionalMatrix}
  * <p>
  * The literature referred to this type of generator to be based on Synthetic reconstruction procedure
+ * <p>
+ * When the sampler is a {@link GosplAliasSampler}, cells are drawn in batch as primitive indexes and
+ * entities are only created at the end, from the histogram of drawn cells, then shuffled
+ * <p>
+ * Large populations can be streamed batch by batch into an {@link IPopulationSink} 
+ * with {@link #generate(int, int, IPopulationSink)}, so they never have to fit in memory
  * 
  * @see INDimensionalMatrix
  * 
@@ -27,6 +39,8 @@ public class DistributionBasedGenerator implements ISyntheticGosplPopGenerator {
 	
 	private ISampler<ACoordinate<Attribute<? extends IValue>, IValue>> sampler;
 	
+	private int parallelism = 1;
+	
 	/**
 	 * Must be constructed with a sampler of {@link ACoordinate}
 	 * 
@@ -39,10 +53,64 @@ public class DistributionBasedGenerator implements ISyntheticGosplPopGenerator {
 		this.sampler = sampler;
 	}
 	
+	/**
+	 * Set the number of threads used to draw cells, when the sampler supports batch draw 
+	 * (see {@link GosplAliasSampler#drawIndexes(int, int)}). Default is 1
+	 * 
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		if(parallelism < 1)
+			throw new IllegalArgumentException("Parallelism must be strictly positive but was "+parallelism);
+		this.parallelism = parallelism;
+	}
+	
 	@Override
 	public GosplPopulation generate(int numberOfIndividual) {
-		return new GosplPopulation(sampler.draw(numberOfIndividual).stream()
-				.map(coord -> new GosplEntity(coord.getMap())).collect(Collectors.toSet()));
+		List<ADemoEntity> entities = new ArrayList<>(numberOfIndividual);
+		this.drawEntities(numberOfIndividual, entities);
+		return new GosplPopulation(entities);
+	}
+
+	/**
+	 * Generate entities in batches of at most {@code batchSize} entities, each one being passed to the sink 
+	 * before the next one is drawn: peak memory only depends on batch size. The sink is not closed.
+	 * <p>
+	 * Entities do not belong to any population, hence they have no identifier unless the sink gives them one
+	 * 
+	 * @param numberOfIndividual
+	 * @param batchSize
+	 * @param sink
+	 */
+	public void generate(int numberOfIndividual, int batchSize, IPopulationSink sink) {
+		if(batchSize < 1)
+			throw new IllegalArgumentException("Batch size must be strictly positive but was "+batchSize);
+		List<ADemoEntity> batch = new ArrayList<>(Math.min(batchSize, numberOfIndividual));
+		for(int generated = 0; generated < numberOfIndividual; generated += batchSize) {
+			batch.clear();
+			this.drawEntities(Math.min(batchSize, numberOfIndividual - generated), batch);
+			sink.accept(batch);
+		}
+	}
+	
+	/*
+	 * Draw entities into the given list
+	 */
+	private void drawEntities(int numberOfIndividual, List<ADemoEntity> entities) {
+		if(sampler instanceof GosplAliasSampler) {
+			GosplAliasSampler aliasSampler = (GosplAliasSampler) sampler;
+			int from = entities.size();
+			aliasSampler.expand(aliasSampler.drawHistogram(numberOfIndividual, parallelism), 
+					(coord, count) -> {
+						for(int i = 0; i < count; i++)
+							entities.add(new GosplEntity(coord.getMap()));
+					});
+			// Expanded entities come grouped by cell: shuffle them back into drawing order
+			Collections.shuffle(entities.subList(from, entities.size()), GenstarRandom.getInstance());
+		} else {
+			for(ACoordinate<Attribute<? extends IValue>, IValue> coord : sampler.draw(numberOfIndividual))
+				entities.add(new GosplEntity(coord.getMap()));
+		}
 	}
 
 }
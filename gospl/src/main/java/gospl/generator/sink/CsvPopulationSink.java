@@ -0,0 +1,104 @@
+package gospl.generator.sink;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import core.metamodel.attribute.Attribute;
+import core.metamodel.entity.ADemoEntity;
+import core.metamodel.value.IValue;
+
+/**
+ * Write entities as csv lines, one column per attribute. Columns are the attributes of the first
+ * entity written, ordered by name, and the header is written with the first batch
+ * <p>
+ * Fields are written by {@link CSVWriter} with default quote and escape: each field is quoted
+ * and inner quotes are doubled, so labels may contain the separator, quotes or line breaks
+ * 
+ */
+public class CsvPopulationSink implements IPopulationSink {
+
+	private final CSVWriter writer;
+	
+	private List<Attribute<? extends IValue>> columns;
+	private String[] line;
+	private long written = 0;
+	
+	/**
+	 * Write in a file, which is created or overwritten
+	 * 
+	 * @param file
+	 * @param separator
+	 * @throws IOException
+	 */
+	public CsvPopulationSink(Path file, char separator) throws IOException {
+		this(Files.newBufferedWriter(file, StandardCharsets.UTF_8), separator);
+	}
+	
+	/**
+	 * Write into the given writer, which is closed with the sink
+	 * 
+	 * @param writer
+	 * @param separator
+	 */
+	public CsvPopulationSink(Writer writer, char separator) {
+		this.writer = new CSVWriter(writer instanceof BufferedWriter ? writer : new BufferedWriter(writer), 
+				separator, CSVWriter.DEFAULT_QUOTE_CHARACTER, "\n");
+	}
+	
+	@Override
+	public void accept(List<ADemoEntity> batch) {
+		if(batch.isEmpty())
+			return;
+		if(columns == null)
+			writeHeader(batch.get(0));
+		for(ADemoEntity entity : batch) {
+			for(int i = 0; i < columns.size(); i++) {
+				IValue value = entity.getValueForAttribute(columns.get(i));
+				line[i] = value == null ? null : value.getStringValue();
+			}
+			writer.writeNext(line);
+		}
+		// CSVWriter swallows io errors, checking them also flushes the batch
+		if(writer.checkError())
+			throw new UncheckedIOException("Cannot write entities in csv", 
+					new IOException("Error while writing csv lines"));
+		written += batch.size();
+	}
+	
+	/**
+	 * Number of entities written so far
+	 * 
+	 * @return
+	 */
+	public long getWrittenCount() {
+		return written;
+	}
+	
+	@Override
+	public void close() {
+		try {
+			writer.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot close csv writer", e);
+		}
+	}
+	
+	private void writeHeader(ADemoEntity entity) {
+		columns = new ArrayList<>(entity.getAttributes());
+		columns.sort(Comparator.comparing(Attribute::getAttributeName));
+		line = new String[columns.size()];
+		for(int i = 0; i < columns.size(); i++)
+			line[i] = columns.get(i).getAttributeName();
+		writer.writeNext(line);
+	}
+
+}
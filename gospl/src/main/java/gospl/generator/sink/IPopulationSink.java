@@ -0,0 +1,57 @@
+package gospl.generator.sink;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import core.metamodel.IPopulation;
+import core.metamodel.attribute.Attribute;
+import core.metamodel.entity.ADemoEntity;
+import core.metamodel.value.IValue;
+import gospl.GosplPopulationInDatabase;
+import gospl.generator.DistributionBasedGenerator;
+
+/**
+ * Receives generated entities batch by batch, so that a population can be generated without
+ * being stored in memory as a whole (see {@link DistributionBasedGenerator#generate(int, int, IPopulationSink)}).
+ * <p>
+ * WARNING: batches are re-used by the generator, hence entities must be consumed (stored, written, ...) 
+ * within {@link #accept(List)} and the list must not be referenced afterward
+ * 
+ */
+@FunctionalInterface
+public interface IPopulationSink extends AutoCloseable {
+
+	/**
+	 * Consume a batch of entities
+	 * 
+	 * @param batch
+	 */
+	public void accept(List<ADemoEntity> batch);
+	
+	/**
+	 * Release any resource held by the sink, once generation is over
+	 */
+	@Override
+	default void close() { }
+	
+	/**
+	 * A sink that adds entities to a population, e.g. a {@link GosplPopulationInDatabase}
+	 * 
+	 * @param population
+	 * @return
+	 */
+	public static IPopulationSink of(IPopulation<ADemoEntity, Attribute<? extends IValue>> population) {
+		return population::addAll;
+	}
+	
+	/**
+	 * A sink that passes each entity to a callback
+	 * 
+	 * @param callback
+	 * @return
+	 */
+	public static IPopulationSink of(Consumer<? super ADemoEntity> callback) {
+		return batch -> batch.forEach(callback);
+	}
+	
+}
@@ -203,15 +203,7 @@ public abstract class AbstractInputHandler implements IGSSurvey {
 			if(attSet.isEmpty())
 				continue;
 			if(attSet.size() > 1){
-				int row = getFirstRowIndex();
-				Optional<Attribute<? extends IValue>> opAtt = null;
-				do {
-					String value = read(row++, i);
-					opAtt = attSet.stream().filter(att -> att.getValueSpace().getValues()
-							.stream().anyMatch(val -> val.getStringValue().equals(value)))
-							.findAny();
-				} while (opAtt.isPresent());
-				columnHeaders.put(i, opAtt.get());
+				columnHeaders.put(i, getColumnAttribute(i, attSet));
 			} else {
 				columnHeaders.put(i, attSet.iterator().next());
 			}
@@ -219,6 +211,27 @@ public abstract class AbstractInputHandler implements IGSSurvey {
 		return columnHeaders;
 	}
 	
+	/**
+	 * Chooses the attribute of a column whose header matches several attributes,
+	 * according to the values of data rows
+	 * 
+	 * @param columnIndex
+	 * @param attributes : the attributes that match the header of the column
+	 * @return
+	 */
+	protected Attribute<? extends IValue> getColumnAttribute(int columnIndex, 
+			Set<Attribute<? extends IValue>> attributes) {
+		int row = getFirstRowIndex();
+		Optional<Attribute<? extends IValue>> opAtt = null;
+		do {
+			String value = read(row++, columnIndex);
+			opAtt = attributes.stream().filter(att -> att.getValueSpace().getValues()
+					.stream().anyMatch(val -> val.getStringValue().equals(value)))
+					.findAny();
+		} while (opAtt.isPresent());
+		return opAtt.get();
+	}
+	
 	@Override
 	public Map<String, Integer> getColumnIdAndWeight(
 			IGenstarDictionary<Attribute<? extends IValue>> dictionnary) {
@@ -0,0 +1,285 @@
+package gospl.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Forward only csv tokenizer over a file channel: bytes are decoded chunk by chunk into a char buffer,
+ * and each call to {@link #next()} splits one record into a reusable array of chars, fields being
+ * given as (start, end) positions in this array. Hence reading a record does not allocate anything,
+ * and memory is bounded by the buffers and the longest record of the file.
+ * <p>
+ * Fields follow the same rules as {@link au.com.bytecode.opencsv.CSVReader} with default quote:
+ * quoted fields may contain separators, line breaks and doubled quotes. Lines can end with
+ * \n, \r\n or \r, and a leading byte order mark is skipped
+ * <p>
+ * WARNING: the content of fields is overwritten by the next call to {@link #next()}
+ *
+ */
+public final class CsvRecordTokenizer implements Closeable {
+
+	public static final char QUOTE = '"';
+
+	private static final char BOM = '\uFEFF';
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final FileChannel channel;
+	private final CharsetDecoder decoder;
+	private final ByteBuffer bytes;
+	private final CharBuffer chars;
+	private boolean endOfFile = false;
+	private boolean drained = false;
+
+	private final char separator;
+
+	// the current record: its chars and the bounds of each field
+	private char[] record = new char[256];
+	private int length;
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private int fieldCount;
+
+	private long recordCount = 0;
+
+	/**
+	 * Opens the file and skips its byte order mark if any
+	 *
+	 * @param file
+	 * @param charset
+	 * @param separator
+	 * @throws IOException
+	 */
+	public CsvRecordTokenizer(Path file, Charset charset, char separator) throws IOException {
+		if (separator == QUOTE || separator == '\n' || separator == '\r')
+			throw new IllegalArgumentException("Character "+separator+" cannot be used as csv separator");
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.chars = CharBuffer.allocate(BUFFER_SIZE);
+		this.chars.flip();
+		this.separator = separator;
+
+		if (fill() && chars.get(chars.position()) == BOM)
+			chars.get();
+	}
+
+	// ---------------------------- record methods ---------------------------- //
+
+	/**
+	 * Reads the next record of the file
+	 *
+	 * @return false if the end of the file has been reached, true otherwise
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException {
+		length = 0;
+		fieldCount = 0;
+
+		int c = read();
+		if (c < 0)
+			return false;
+
+		int start = 0;
+		boolean quoted = false;
+		while (c >= 0) {
+			if (quoted) {
+				if (c == QUOTE) {
+					c = read();
+					if (c == QUOTE) {
+						append(QUOTE);
+						c = read();
+					} else {
+						quoted = false;
+					}
+					continue;
+				}
+				append((char) c);
+			} else if (c == separator) {
+				endField(start);
+				start = length;
+			} else if (c == '\n') {
+				break;
+			} else if (c == '\r') {
+				if (peek() == '\n')
+					read();
+				break;
+			} else if (c == QUOTE) {
+				quoted = true;
+			} else {
+				append((char) c);
+			}
+			c = read();
+		}
+		endField(start);
+		recordCount++;
+		return true;
+	}
+
+	/**
+	 * Skips given number of records
+	 *
+	 * @param records
+	 * @return the number of records that have actually been skipped
+	 * @throws IOException
+	 */
+	public int skip(int records) throws IOException {
+		int skipped = 0;
+		while (skipped < records && next())
+			skipped++;
+		return skipped;
+	}
+
+	/**
+	 * The number of fields of the current record
+	 * @return
+	 */
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	/**
+	 * The chars of the current record: field i spans from {@link #getFieldStart(int)}
+	 * included to {@link #getFieldEnd(int)} excluded
+	 * @return
+	 */
+	public char[] getChars() {
+		return record;
+	}
+
+	/**
+	 * @param field
+	 * @return
+	 */
+	public int getFieldStart(int field) {
+		return starts[field];
+	}
+
+	/**
+	 * @param field
+	 * @return
+	 */
+	public int getFieldEnd(int field) {
+		return ends[field];
+	}
+
+	/**
+	 * Whether given field of the current record is made of the same chars as the label
+	 *
+	 * @param field
+	 * @param label
+	 * @return
+	 */
+	public boolean fieldEquals(int field, String label) {
+		final int start = starts[field];
+		final int size = ends[field] - start;
+		if (size != label.length())
+			return false;
+		for (int i = 0; i < size; i++)
+			if (record[start + i] != label.charAt(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Given field of the current record as a new string
+	 *
+	 * @param field
+	 * @return
+	 */
+	public String getField(int field) {
+		return new String(record, starts[field], ends[field] - starts[field]);
+	}
+
+	/**
+	 * The current record as a new array of strings
+	 *
+	 * @return
+	 */
+	public String[] toArray() {
+		String[] fields = new String[fieldCount];
+		for (int i = 0; i < fieldCount; i++)
+			fields[i] = getField(i);
+		return fields;
+	}
+
+	/**
+	 * The number of records read so far
+	 * @return
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// ---------------------------- inner utilities ---------------------------- //
+
+	/*
+	 * Next char of the file, -1 at the end of the file
+	 */
+	private int read() throws IOException {
+		if (!chars.hasRemaining() && !fill())
+			return -1;
+		return chars.get();
+	}
+
+	/*
+	 * Next char of the file without consuming it, -1 at the end of the file
+	 */
+	private int peek() throws IOException {
+		if (!chars.hasRemaining() && !fill())
+			return -1;
+		return chars.get(chars.position());
+	}
+
+	/*
+	 * Decodes the next chunk of chars, returns false if there is nothing left to decode
+	 */
+	private boolean fill() throws IOException {
+		chars.clear();
+		while (chars.position() == 0 && !drained) {
+			if (!endOfFile && channel.read(bytes) < 0)
+				endOfFile = true;
+			bytes.flip();
+			CoderResult result = decoder.decode(bytes, chars, endOfFile);
+			bytes.compact();
+			if (endOfFile && result.isUnderflow()) {
+				decoder.flush(chars);
+				drained = true;
+			}
+		}
+		chars.flip();
+		return chars.hasRemaining();
+	}
+
+	private void append(char c) {
+		if (length == record.length)
+			record = Arrays.copyOf(record, length * 2);
+		record[length++] = c;
+	}
+
+	private void endField(int start) {
+		if (fieldCount == starts.length) {
+			starts = Arrays.copyOf(starts, fieldCount * 2);
+			ends = Arrays.copyOf(ends, fieldCount * 2);
+		}
+		starts[fieldCount] = start;
+		ends[fieldCount++] = length;
+	}
+
+}
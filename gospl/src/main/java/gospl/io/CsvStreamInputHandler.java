@@ -0,0 +1,467 @@
+package gospl.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import au.com.bytecode.opencsv.CSVReader;
+import core.metamodel.attribute.Attribute;
+import core.metamodel.io.GSSurveyType;
+import core.metamodel.value.IValue;
+
+/**
+ * Csv survey that is never loaded in memory: only header rows are kept, and data are read in one forward
+ * pass through a {@link ValueCursor}, which tokenizes records with a {@link CsvRecordTokenizer} and translates
+ * labels of the columns into values of attributes. Each column interns the labels it has already met, so a
+ * label is turned into a value (and into a {@link String}) once, whatever the number of records is. It is
+ * meant for huge micro data files (e.g. IPUMS or INSEE census samples), that can be read with a constant
+ * amount of memory
+ * <p>
+ * WARNING: data rows cannot be accessed with index based methods, e.g. {@link #readLine(int)} or
+ * {@link #readColumn(int)}, which throw an {@link UnsupportedOperationException}: use
+ * {@link #getValueCursor(Map)} or {@link #getRecordTokenizer(boolean)} instead
+ *
+ */
+public class CsvStreamInputHandler extends AbstractInputHandler {
+
+	/*
+	 * Maximum number of labels interned per column: beyond, labels (e.g. of a continuous variable)
+	 * are translated each time they are read
+	 */
+	private static final int MAX_INTERNED_LABELS = 1 << 16;
+
+	private final List<String[]> headers;
+
+	private final int firstRowDataIndex;
+	private final int firstColumnDataIndex;
+	// counted on demand, see #getLastRowIndex()
+	private Integer lastRowIndex;
+	private final int lastColumnIndex;
+
+	private final String charset;
+	private final char csvSeparator;
+
+	protected CsvStreamInputHandler(String fileName, char csvSeparator, int firstRowDataIndex,
+			int firstColumnDataIndex, GSSurveyType dataFileType) throws IOException {
+		this(fileName, Charset.defaultCharset().name(), csvSeparator, firstRowDataIndex,
+				firstColumnDataIndex, dataFileType);
+	}
+
+	/**
+	 * Reads the header rows only, without retaining nor counting data
+	 *
+	 * @param fileName
+	 * @param charset
+	 * @param csvSeparator
+	 * @param firstRowDataIndex
+	 * @param firstColumnDataIndex
+	 * @param dataFileType
+	 * @throws IOException
+	 */
+	protected CsvStreamInputHandler(String fileName, String charset, char csvSeparator, int firstRowDataIndex,
+			int firstColumnDataIndex, GSSurveyType dataFileType) throws IOException {
+		super(dataFileType, fileName);
+
+		this.charset = charset;
+		this.csvSeparator = csvSeparator;
+		this.firstRowDataIndex = firstRowDataIndex;
+		this.firstColumnDataIndex = firstColumnDataIndex;
+
+		this.headers = new ArrayList<>(firstRowDataIndex);
+		int rows = 0;
+		int columns = 0;
+		try (CsvRecordTokenizer tokenizer = this.getRecordTokenizer(false)) {
+			// the first record gives the number of columns, even without header
+			while (rows < Math.max(1, firstRowDataIndex) && tokenizer.next()) {
+				if (rows < firstRowDataIndex)
+					headers.add(tokenizer.toArray());
+				if (rows == 0)
+					columns = tokenizer.getFieldCount();
+				rows++;
+			}
+		}
+		this.lastColumnIndex = columns - 1;
+	}
+
+	protected CsvStreamInputHandler(File file, char csvSeparator, int firstRowDataIndex,
+			int firstColumnDataIndex, GSSurveyType dataFileType) throws IOException {
+		this(file.getAbsolutePath(), csvSeparator, firstRowDataIndex, firstColumnDataIndex, dataFileType);
+	}
+
+	protected CsvStreamInputHandler(File file, String charset, char csvSeparator, int firstRowDataIndex,
+			int firstColumnDataIndex, GSSurveyType dataFileType) throws IOException {
+		this(file.getAbsolutePath(), charset, csvSeparator, firstRowDataIndex, firstColumnDataIndex, dataFileType);
+	}
+
+	// ------------------------ forward pass methods ------------------------ //
+
+	/**
+	 * A new tokenizer over the records of the survey, that must be closed
+	 *
+	 * @param skipHeader
+	 * @return
+	 * @throws IOException
+	 */
+	public CsvRecordTokenizer getRecordTokenizer(boolean skipHeader) throws IOException {
+		CsvRecordTokenizer tokenizer = new CsvRecordTokenizer(
+				Paths.get(surveyCompleteFile), Charset.forName(charset), csvSeparator);
+		if (skipHeader)
+			tokenizer.skip(firstRowDataIndex);
+		return tokenizer;
+	}
+
+	/**
+	 * A new cursor over the data rows of the survey, that reads the values of attributes
+	 * at given column indexes. It must be closed
+	 *
+	 * @param columnHeaders
+	 * @return
+	 * @throws IOException
+	 */
+	public ValueCursor getValueCursor(Map<Integer, Attribute<? extends IValue>> columnHeaders) throws IOException {
+		return new ValueCursor(this.getRecordTokenizer(true), new TreeMap<>(columnHeaders));
+	}
+
+	/**
+	 * Forward only cursor over the data rows of the survey: each call to {@link #next()} moves to the next
+	 * record, and {@link #getValue(int)} gives the value of the i-th column read by the cursor. Values are
+	 * resolved the same way as in the sample reader of {@link gospl.distribution.GosplInputDataManager}:
+	 * {@link GosplSurveyFactory#UNKNOWN_VARIABLE} stands for the empty value, other labels are added to the
+	 * value space of the attribute, and labels that match nothing have a null value
+	 *
+	 */
+	public static final class ValueCursor implements Closeable {
+
+		private final CsvRecordTokenizer tokenizer;
+		private final int[] columns;
+		private final List<Attribute<? extends IValue>> attributes;
+		private final LabelTable[] labels;
+		private final IValue[] values;
+
+		private ValueCursor(CsvRecordTokenizer tokenizer, Map<Integer, Attribute<? extends IValue>> columnHeaders) {
+			this.tokenizer = tokenizer;
+			this.columns = new int[columnHeaders.size()];
+			this.attributes = Collections.unmodifiableList(new ArrayList<>(columnHeaders.values()));
+			this.labels = new LabelTable[columns.length];
+			this.values = new IValue[columns.length];
+			int i = 0;
+			for (Integer column : columnHeaders.keySet()) {
+				columns[i] = column;
+				labels[i] = new LabelTable(attributes.get(i));
+				i++;
+			}
+		}
+
+		/**
+		 * Reads the next record
+		 *
+		 * @return false if there is no record left
+		 * @throws IOException
+		 */
+		public boolean next() throws IOException {
+			if (!tokenizer.next())
+				return false;
+			final char[] chars = tokenizer.getChars();
+			final int fields = tokenizer.getFieldCount();
+			for (int i = 0; i < columns.length; i++)
+				values[i] = columns[i] < fields ?
+						labels[i].get(chars, tokenizer.getFieldStart(columns[i]), tokenizer.getFieldEnd(columns[i])) :
+							null;
+			return true;
+		}
+
+		/**
+		 * The number of columns read by the cursor
+		 * @return
+		 */
+		public int size() {
+			return columns.length;
+		}
+
+		/**
+		 * The attributes of columns read by the cursor, in increasing order of column index
+		 * @return
+		 */
+		public List<Attribute<? extends IValue>> getAttributes() {
+			return attributes;
+		}
+
+		/**
+		 * The value of the i-th column of the current record, null if the label does not match any value
+		 *
+		 * @param i
+		 * @return
+		 */
+		public IValue getValue(int i) {
+			return values[i];
+		}
+
+		/**
+		 * The label of the i-th column of the current record, as a new string
+		 *
+		 * @param i
+		 * @return
+		 */
+		public String getLabel(int i) {
+			return columns[i] < tokenizer.getFieldCount() ? tokenizer.getField(columns[i]) : null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			tokenizer.close();
+		}
+
+	}
+
+	/*
+	 * Open addressing table from the chars of labels to values of an attribute. Labels that do not match
+	 * any value are stored as well, with a null value
+	 */
+	private static final class LabelTable {
+
+		private final Attribute<? extends IValue> attribute;
+
+		private char[][] keys = new char[16][];
+		private IValue[] values = new IValue[16];
+		private int size = 0;
+
+		private LabelTable(Attribute<? extends IValue> attribute) {
+			this.attribute = attribute;
+		}
+
+		private IValue get(char[] chars, int start, int end) {
+			int mask = keys.length - 1;
+			for (int slot = hash(chars, start, end) & mask; ; slot = (slot + 1) & mask) {
+				char[] key = keys[slot];
+				if (key == null)
+					break;
+				if (key.length == end - start && equals(key, chars, start))
+					return values[slot];
+			}
+
+			IValue value = resolve(new String(chars, start, end - start));
+			if (size < MAX_INTERNED_LABELS) {
+				if (2 * (size + 1) > keys.length)
+					rehash();
+				insert(Arrays.copyOfRange(chars, start, end), value);
+			}
+			return value;
+		}
+
+		private IValue resolve(String label) {
+			if (label.equals(GosplSurveyFactory.UNKNOWN_VARIABLE))
+				return attribute.getValueSpace().getEmptyValue();
+			IValue value = attribute.getValueSpace().addValue(label);
+			if (value == null && label.equals(attribute.getEmptyValue().getStringValue()))
+				return attribute.getValueSpace().getEmptyValue();
+			return value;
+		}
+
+		private void insert(char[] key, IValue value) {
+			int mask = keys.length - 1;
+			int slot = hash(key, 0, key.length) & mask;
+			while (keys[slot] != null)
+				slot = (slot + 1) & mask;
+			keys[slot] = key;
+			values[slot] = value;
+			size++;
+		}
+
+		private void rehash() {
+			char[][] oldKeys = keys;
+			IValue[] oldValues = values;
+			keys = new char[oldKeys.length * 2][];
+			values = new IValue[oldKeys.length * 2];
+			size = 0;
+			for (int i = 0; i < oldKeys.length; i++)
+				if (oldKeys[i] != null)
+					insert(oldKeys[i], oldValues[i]);
+		}
+
+		private static int hash(char[] chars, int start, int end) {
+			int h = 0;
+			for (int i = start; i < end; i++)
+				h = 31 * h + chars[i];
+			return h ^ (h >>> 16);
+		}
+
+		private static boolean equals(char[] key, char[] chars, int start) {
+			for (int i = 0; i < key.length; i++)
+				if (key[i] != chars[start + i])
+					return false;
+			return true;
+		}
+
+	}
+
+	// ------------------------ header parser methods ------------------------ //
+
+	@Override
+	public String read(int rowIndex, int columnIndex) {
+		return this.readLine(rowIndex).get(columnIndex).trim();
+	}
+
+	@Override
+	public List<String> readLine(int rowIndex) {
+		if (rowIndex >= headers.size())
+			throw new UnsupportedOperationException("Only header rows of "+getName()
+				+" are stored in memory - use #getValueCursor() to access data");
+		return Arrays.asList(headers.get(rowIndex));
+	}
+
+	@Override
+	public List<List<String>> readLines(int fromFirstRowIndex, int toLastRowIndex) {
+		List<List<String>> lines = new ArrayList<>();
+		for (int i = fromFirstRowIndex; i < toLastRowIndex; i++)
+			lines.add(readLine(i));
+		return lines;
+	}
+
+	@Override
+	public List<String> readLines(int fromFirstRowIndex, int toLastRowIndex, int columnIndex) {
+		List<String> line = new ArrayList<>();
+		for (int i = fromFirstRowIndex; i < toLastRowIndex; i++)
+			line.add(this.read(i, columnIndex));
+		return line;
+	}
+
+	@Override
+	public List<List<String>> readLines(int fromFirstRowIndex, int toLastRowIndex,
+			int fromFirstColumnIndex, int toLastColumnIndex) {
+		List<List<String>> lines = new ArrayList<>();
+		for (int i = fromFirstRowIndex; i < toLastRowIndex; i++)
+			lines.add(new ArrayList<>(this.readLine(i).subList(fromFirstColumnIndex, toLastColumnIndex)));
+		return lines;
+	}
+
+	@Override
+	public List<String> readColumn(int columnIndex) {
+		throw new UnsupportedOperationException("Columns of "+getName()
+			+" are not stored in memory - use #getValueCursor() to access data");
+	}
+
+	@Override
+	public List<List<String>> readColumns(int fromFirstColumnIndex, int toLastColumnIndex) {
+		List<List<String>> columns = new ArrayList<>();
+		for (int i = fromFirstColumnIndex; i < toLastColumnIndex; i++)
+			columns.add(this.readColumn(i));
+		return columns;
+	}
+
+	@Override
+	public List<String> readColumns(int fromFirstColumnIndex, int toLastColumnIndex, int rowIndex) {
+		List<String> column = new ArrayList<>();
+		for (int i = fromFirstColumnIndex; i < toLastColumnIndex; i++)
+			column.add(this.read(rowIndex, i));
+		return column;
+	}
+
+	@Override
+	public List<List<String>> readColumns(int fromFirstLine, int toLastLine,
+			int fromFirstVariable, int toLastVariable) {
+		List<List<String>> columns = new ArrayList<>();
+		for (int i = fromFirstVariable; i < toLastVariable; i++)
+			columns.add(this.readLines(fromFirstLine, toLastLine, i));
+		return columns;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Data rows are read forward until a label of the column is a value of one of the attributes
+	 */
+	@Override
+	protected Attribute<? extends IValue> getColumnAttribute(int columnIndex,
+			Set<Attribute<? extends IValue>> attributes) {
+		try (CsvRecordTokenizer tokenizer = this.getRecordTokenizer(true)) {
+			while (tokenizer.next()) {
+				if (columnIndex >= tokenizer.getFieldCount())
+					continue;
+				String label = tokenizer.getField(columnIndex).trim();
+				for (Attribute<? extends IValue> attribute : attributes)
+					if (attribute.getValueSpace().getValues().stream()
+							.anyMatch(value -> value.getStringValue().equals(label)))
+						return attribute;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read column "+columnIndex+" of "+getName(), e);
+		}
+		throw new IllegalArgumentException("Header of column "+columnIndex+" in "+getName()+" matches attributes "
+				+attributes+" but none of its labels is a value of them");
+	}
+
+	// -----------------------------
+
+	@Override
+	public String getName() {
+		return surveyFileName;
+	}
+
+	@Override
+	public int getFirstRowIndex() {
+		return firstRowDataIndex;
+	}
+
+	@Override
+	public int getFirstColumnIndex() {
+		return firstColumnDataIndex;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * WARNING: records are counted by a pass over the whole file at first call
+	 */
+	@Override
+	public synchronized int getLastRowIndex() {
+		if (lastRowIndex == null) {
+			try (CsvRecordTokenizer tokenizer = this.getRecordTokenizer(false)) {
+				lastRowIndex = tokenizer.skip(Integer.MAX_VALUE) - 1;
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot count records of "+getName(), e);
+			}
+		}
+		return lastRowIndex;
+	}
+
+	@Override
+	public int getLastColumnIndex() {
+		return lastColumnIndex;
+	}
+
+	@Override
+	public String toString() {
+		String s = "";
+		s+="Survey name: "+getName()+"\n";
+		s+="\tline number: "+(lastRowIndex == null ? "not counted" : lastRowIndex+1);
+		s+="\tcolumn number: "+(lastColumnIndex+1);
+		return s;
+	}
+
+	@Override
+	public CSVReader getBufferReader(boolean skipHeader) throws UnsupportedEncodingException, FileNotFoundException {
+		CSVReader reader = new CSVReader(new InputStreamReader(new FileInputStream(surveyCompleteFile), this.charset), csvSeparator);
+		try {
+			for (int row = 0; skipHeader && row < firstRowDataIndex; row++)
+				reader.readNext();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return reader;
+	}
+
+}
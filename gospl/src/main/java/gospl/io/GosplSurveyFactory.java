@@ -69,6 +69,7 @@ public class GosplSurveyFactory {
 	private int sheetNb;
 	private int firstRowDataIdx;
 	private int firstColumnDataIdx;
+	private boolean streamedSamples = false;
 	
 	public static final String UNKNOWN_VARIABLE = "?";
 
@@ -179,6 +180,28 @@ public class GosplSurveyFactory {
 		return supportedFileFormat;
 	}
 
+	/**
+	 * Samples read from csv files that are not stored in memory will be read in one forward pass,
+	 * using {@link CsvStreamInputHandler}, if set to true. Default is false
+	 * <p>
+	 * WARNING: streamed samples cannot be read line by line nor column by column, 
+	 * they are meant to be imported with {@link gospl.distribution.GosplInputDataManager#getSample}
+	 * 
+	 * @param streamedSamples
+	 */
+	public void setStreamedSamples(boolean streamedSamples) {
+		this.streamedSamples = streamedSamples;
+	}
+
+	/**
+	 * Whether samples read from csv files that are not stored in memory are streamed or not
+	 * 
+	 * @return
+	 */
+	public boolean isStreamedSamples() {
+		return streamedSamples;
+	}
+
 	// ----------------------------------------------------------------------- //
 	// ------------------------- DATA IMPORT SECTION ------------------------- //
 	// ----------------------------------------------------------------------- //
@@ -327,8 +350,12 @@ public class GosplSurveyFactory {
 			return new XlsInputHandler(file, sheetNn, firstRowDataIndex, 
 					firstColumnDataIndex, dataFileType);
 		if (file.getName().endsWith(CSV_EXT))
-			return new CsvInputHandler(file, storeInMemory, csvSeparator, firstRowDataIndex, 
-					firstColumnDataIndex, dataFileType);
+			// samples that are not stored in memory are read in one forward pass, when asked for
+			return streamedSamples && !storeInMemory && dataFileType == GSSurveyType.Sample ? 
+					new CsvStreamInputHandler(file, csvSeparator, firstRowDataIndex, 
+							firstColumnDataIndex, dataFileType) :
+					new CsvInputHandler(file, storeInMemory, csvSeparator, firstRowDataIndex, 
+							firstColumnDataIndex, dataFileType);
 		//if (file.getName().endsWith(DBF_EXT))
 		//	return new DBaseInputHandler(dataFileType, file);
 		final String[] pathArray = file.getPath().split(File.separator);
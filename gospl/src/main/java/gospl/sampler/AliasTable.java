@@ -0,0 +1,80 @@
+package gospl.sampler;
+
+/**
+ * Builds the probability and alias tables of Vose's alias method, which allows to draw from a discrete
+ * distribution in constant time after a linear preprocessing: to draw, roll a fair die to choose a column k,
+ * then keep k if a uniform number is below probability[k], otherwise take alias[k].
+ * <p>
+ * For a complete writeup on the alias method, see the article "Darts, Dice, and Coins: Sampling
+ * from a Discrete Distribution" at http://www.keithschwarz.com/darts-dice-coins/
+ * <p>
+ * Tables are primitive arrays filled from an offset, so several tables can be packed in the same arrays;
+ * aliases are indexes relative to this offset
+ *
+ */
+public final class AliasTable {
+
+	private AliasTable() {}
+
+	/**
+	 * Writes tables for the weights in probability and alias, from offset. Weights are normalized,
+	 * hence they do not need to sum to one
+	 *
+	 * @param weights : non negative weights
+	 * @param probability
+	 * @param alias
+	 * @param offset
+	 * @return false if weights sum to zero, in which case tables are left unchanged, true otherwise
+	 */
+	public static boolean build(double[] weights, double[] probability, int[] alias, int offset) {
+		final int n = weights.length;
+		double total = 0;
+		for (double w : weights)
+			total += w;
+		if (total <= 0)
+			return false;
+
+		/* Scale weights such that 1/n is given weight 1.0 */
+		double[] scaled = new double[n];
+		/* Two stacks act as worklists of columns below and above the average */
+		int[] small = new int[n], large = new int[n];
+		int smallSize = 0, largeSize = 0;
+		for (int k = 0; k < n; k++) {
+			scaled[k] = weights[k] * n / total;
+			if (scaled[k] < 1)
+				small[smallSize++] = k;
+			else
+				large[largeSize++] = k;
+		}
+
+		/* Due to floating point inaccuracies, the small list is not necessarily
+		 * exhausted before the large one: both must be checked
+		 */
+		while (smallSize > 0 && largeSize > 0) {
+			int less = small[--smallSize];
+			int more = large[--largeSize];
+			probability[offset + less] = scaled[less];
+			alias[offset + less] = more;
+			/* The larger one gives what the smaller one lacks */
+			scaled[more] = (scaled[more] + scaled[less]) - 1;
+			if (scaled[more] < 1)
+				small[smallSize++] = more;
+			else
+				large[largeSize++] = more;
+		}
+
+		/* What remains is 1 up to rounding errors, whichever stack holds it */
+		while (smallSize > 0) {
+			int k = small[--smallSize];
+			probability[offset + k] = 1;
+			alias[offset + k] = k;
+		}
+		while (largeSize > 0) {
+			int k = large[--largeSize];
+			probability[offset + k] = 1;
+			alias[offset + k] = k;
+		}
+		return true;
+	}
+
+}
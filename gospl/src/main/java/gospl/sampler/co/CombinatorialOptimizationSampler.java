@@ -8,7 +8,7 @@ import core.metamodel.value.IValue;
 import gospl.GosplPopulation;
 import gospl.algo.co.metamodel.IOptimizationAlgorithm;
 import gospl.algo.co.metamodel.solution.ISyntheticPopulationSolution;
-import gospl.algo.co.metamodel.solution.SyntheticPopulationSolution;
+import gospl.algo.co.metamodel.solution.SyntheticPopulationIncrementalSolution;
 import gospl.distribution.matrix.INDimensionalMatrix;
 import gospl.sampler.IEntitySampler;
 
@@ -38,7 +38,7 @@ public class CombinatorialOptimizationSampler<A extends IOptimizationAlgorithm<G
 	
 	@Override
 	public Collection<ADemoEntity> draw(int numberOfDraw) {
-		return this.algorithm.run(new SyntheticPopulationSolution(this.basicSampler.draw(numberOfDraw))).getSolution();
+		return this.algorithm.run(new SyntheticPopulationIncrementalSolution(this.basicSampler.draw(numberOfDraw))).getSolution();
 	}
 	
 	@Override
@@ -1,14 +1,15 @@
 package gospl.sampler.sr;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -16,16 +17,19 @@ import org.apache.logging.log4j.Logger;
 import core.metamodel.attribute.Attribute;
 import core.metamodel.value.IValue;
 import core.util.random.GenstarRandom;
+import core.util.random.GenstarRandomStream;
 import gospl.distribution.matrix.AFullNDimensionalMatrix;
 import gospl.distribution.matrix.control.AControl;
 import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.sampler.AliasTable;
 import gospl.sampler.IDistributionSampler;
 
 /******************************************************************************
  * File: AliasMethod.java
  * Author: Keith Schwarz (htiek@cs.stanford.edu)
  *
- * An implementation of the alias method implemented using Vose's algorithm.
+ * An implementation of the alias method implemented using Vose's algorithm,
+ * tables being built by {@link AliasTable}.
  * The alias method allows for efficient sampling of random values from a
  * discrete probability distribution (i.e. rolling a loaded die) in O(1) time
  * each after O(n) preprocessing time.
@@ -36,13 +40,24 @@ import gospl.sampler.IDistributionSampler;
  *
  *                 http://www.keithschwarz.com/darts-dice-coins/
  * 
+ * <p>
+ * Tables are primitive arrays, so drawing a batch of cell indexes with {@link #drawIndexes(int)} does not
+ * allocate anything but the returned array. Large batches can be drawn in parallel with
+ * {@link #drawIndexes(int, int)}: each chunk draws from its own random stream, so the outcome does not
+ * depend on the number of threads. Indexes can then be turned into a histogram of cells 
+ * (see {@link #getHistogram(int[])}) and expanded into entities with {@link #expand(int[], ObjIntConsumer)}
  */
 public class GosplAliasSampler implements IDistributionSampler {
 
 	protected Logger logger = LogManager.getLogger();
 	
+	/*
+	 * Number of draws of a chunk in parallel draw: each chunk has its own random stream
+	 */
+	private static final int CHUNK_SIZE = 1 << 16;
+	
 	private List<ACoordinate<Attribute<? extends IValue>, IValue>> indexedKey;
-	private List<Double> initProba;
+	private double[] initProba;
 	
 
 	/* The probability and alias tables. */
@@ -62,77 +77,13 @@ public class GosplAliasSampler implements IDistributionSampler {
 				distribution.getOrderedMatrix();
 		
 		this.indexedKey = new ArrayList<>(orderedDistribution.keySet());
-		this.initProba = orderedDistribution.values().stream().map(AControl::getValue)
-				.collect(Collectors.toList());
+		this.initProba = orderedDistribution.values().stream().mapToDouble(AControl::getValue).toArray();
 		
 		/* Allocate space for the probability and alias tables. */
-		probability = new double[distribution.size()];
-		alias = new int[distribution.size()];
-
-		/* Compute the average probability and cache it for later use. */
-		final double average = 1.0 / distribution.size();
-
-		/* Make a copy of the probabilities list, since we will be making
-		 * changes to it.
-		 */
-		List<Double> probabilities = new ArrayList<Double>(initProba);
-
-		/* Create two stacks to act as worklists as we populate the tables. */
-		Deque<Integer> small = new ArrayDeque<Integer>();
-		Deque<Integer> large = new ArrayDeque<Integer>();
-
-		/* Populate the stacks with the input probabilities. */
-		for (int i = 0; i < probabilities.size(); ++i) {
-			/* If the probability is below the average probability, then we add
-			 * it to the small list; otherwise we add it to the large list.
-			 */
-			if (probabilities.get(i) >= average)
-				large.add(i);
-			else
-				small.add(i);
-		}
-
-		/* As a note: in the mathematical specification of the algorithm, we
-		 * will always exhaust the small list before the big list.  However,
-		 * due to floating point inaccuracies, this is not necessarily true.
-		 * Consequently, this inner loop (which tries to pair small and large
-		 * elements) will have to check that both lists aren't empty.
-		 */
-		while (!small.isEmpty() && !large.isEmpty()) {
-			/* Get the index of the small and the large probabilities. */
-			int less = small.removeLast();
-			int more = large.removeLast();
-
-			/* These probabilities have not yet been scaled up to be such that
-			 * 1/n is given weight 1.0.  We do this here instead.
-			 */
-			probability[less] = probabilities.get(less) * probabilities.size();
-			alias[less] = more;
-
-			/* Decrease the probability of the larger one by the appropriate
-			 * amount.
-			 */
-			probabilities.set(more, 
-					(probabilities.get(more) + probabilities.get(less)) - average);
-
-			/* If the new probability is less than the average, add it into the
-			 * small list; otherwise add it to the large list.
-			 */
-			if (probabilities.get(more) >= 1.0 / probabilities.size())
-				large.add(more);
-			else
-				small.add(more);
-		}
-
-		/* At this point, everything is in one list, which means that the
-		 * remaining probabilities should all be 1/n.  Based on this, set them
-		 * appropriately.  Due to numerical issues, we can't be sure which
-		 * stack will hold the entries, so we empty both.
-		 */
-		while (!small.isEmpty())
-			probability[small.removeLast()] = 1.0;
-		while (!large.isEmpty())
-			probability[large.removeLast()] = 1.0;
+		probability = new double[initProba.length];
+		alias = new int[initProba.length];
+		if(!AliasTable.build(initProba, probability, alias, 0))
+			throw new IllegalArgumentException("Cannot setup a sampler with a distribution of null probabilities "+distribution);
 	}
 	
 
@@ -141,11 +92,16 @@ public class GosplAliasSampler implements IDistributionSampler {
 	/**
 	 * {@inheritDoc}
 	 * <p>
-	 * WARNING: make use of {@link Stream#parallel()}
+	 * Cell indexes are drawn in one batch (see {@link #drawIndexes(int)}) and then
+	 * mapped to the shared coordinates of the distribution
 	 */
 	@Override
 	public final Collection<ACoordinate<Attribute<? extends IValue>, IValue>> draw(int numberOfDraw) {
-		return IntStream.range(0, numberOfDraw).mapToObj(i -> draw()).collect(Collectors.toList());
+		int[] indexes = drawIndexes(numberOfDraw);
+		List<ACoordinate<Attribute<? extends IValue>, IValue>> draws = new ArrayList<>(numberOfDraw);
+		for(int index : indexes)
+			draws.add(indexedKey.get(index));
+		return draws;
 	}
 	
 	/**
@@ -156,15 +112,148 @@ public class GosplAliasSampler implements IDistributionSampler {
 	 */
 	@Override
 	public ACoordinate<Attribute<? extends IValue>, IValue> draw() {
+		return indexedKey.get(drawIndex(GenstarRandom.getInstance()));
+	}
+	
+	// -------------------- batch draw -------------------- //
+	
+	/**
+	 * Draw the index of one cell of the distribution, i.e. the coordinate returned by
+	 * {@link #getCoordinate(int)}
+	 * 
+	 * @param random
+	 * @return
+	 */
+	public int drawIndex(Random random) {
 		/* Generate a fair die roll to determine which column to inspect. */
-		int column =  GenstarRandom.getInstance().nextInt(probability.length);
+		int column = random.nextInt(probability.length);
 
 		/* Generate a biased coin toss to determine which option to pick. */
-		boolean coinToss = GenstarRandom.getInstance().nextDouble() < probability[column];
+		return random.nextDouble() < probability[column] ? column : alias[column];
+	}
+	
+	/**
+	 * Draw a batch of cell indexes from the random engine of the current thread
+	 * 
+	 * @see #drawIndex(Random)
+	 * 
+	 * @param numberOfDraw
+	 * @return
+	 */
+	public int[] drawIndexes(int numberOfDraw) {
+		int[] indexes = new int[numberOfDraw];
+		Random random = GenstarRandom.getInstance();
+		for(int i = 0; i < numberOfDraw; i++)
+			indexes[i] = drawIndex(random);
+		return indexes;
+	}
+	
+	/**
+	 * Draw a batch of cell indexes with a given number of threads. The batch is divided
+	 * into fixed size chunks, each one drawing from a stream split from the current thread engine:
+	 * the outcome is the same whatever the number of threads is
+	 * 
+	 * @param numberOfDraw
+	 * @param parallelism
+	 * @return
+	 */
+	public int[] drawIndexes(int numberOfDraw, int parallelism) {
+		if(parallelism < 1)
+			throw new IllegalArgumentException("Parallelism must be strictly positive but was "+parallelism);
+		int[] indexes = new int[numberOfDraw];
+		int chunks = (numberOfDraw + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		GenstarRandomStream[] streams = new GenstarRandomStream[chunks];
+		for(int chunk = 0; chunk < chunks; chunk++)
+			streams[chunk] = GenstarRandom.split();
 		
-		return indexedKey.get(coinToss ? column : alias[column]);
+		// Same chunks and streams, without a pool
+		if(parallelism == 1 || chunks == 1) {
+			for(int chunk = 0; chunk < chunks; chunk++) {
+				int to = Math.min(numberOfDraw, (chunk + 1) * CHUNK_SIZE);
+				for(int i = chunk * CHUNK_SIZE; i < to; i++)
+					indexes[i] = drawIndex(streams[chunk]);
+			}
+			return indexes;
+		}
+		
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+				int to = Math.min(numberOfDraw, (chunk + 1) * CHUNK_SIZE);
+				for(int i = chunk * CHUNK_SIZE; i < to; i++)
+					indexes[i] = drawIndex(streams[chunk]);
+			})).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("Parallel draw has failed", e);
+		} finally {
+			pool.shutdown();
+		}
+		return indexes;
 	}
 	
+	/**
+	 * Count the number of draws of each cell
+	 * 
+	 * @param indexes
+	 * @return an array of counts, indexed like cells
+	 */
+	public int[] getHistogram(int[] indexes) {
+		int[] histogram = new int[indexedKey.size()];
+		for(int index : indexes)
+			histogram[index]++;
+		return histogram;
+	}
+	
+	/**
+	 * Draw a histogram of cells, i.e. the number of times each cell has been drawn. Cells are
+	 * drawn by chunks (see {@link #drawIndexes(int, int)}) whatever the parallelism is, so the
+	 * histogram does not depend on it
+	 * 
+	 * @param numberOfDraw
+	 * @param parallelism
+	 * @return
+	 */
+	public int[] drawHistogram(int numberOfDraw, int parallelism) {
+		return getHistogram(drawIndexes(numberOfDraw, parallelism));
+	}
+	
+	/**
+	 * Expand a histogram of cells: the consumer is called once for each non empty 
+	 * cell, with the coordinate of the cell and the number of draws
+	 * 
+	 * @param histogram
+	 * @param consumer
+	 */
+	public void expand(int[] histogram, 
+			ObjIntConsumer<ACoordinate<Attribute<? extends IValue>, IValue>> consumer) {
+		if(histogram.length != indexedKey.size())
+			throw new IllegalArgumentException("Histogram has "+histogram.length+" cells but distribution has "
+					+indexedKey.size());
+		for(int cell = 0; cell < histogram.length; cell++)
+			if(histogram[cell] > 0)
+				consumer.accept(indexedKey.get(cell), histogram[cell]);
+	}
+	
+	/**
+	 * The coordinate of a given cell
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public ACoordinate<Attribute<? extends IValue>, IValue> getCoordinate(int index) {
+		return indexedKey.get(index);
+	}
+	
+	/**
+	 * The number of cells in the distribution
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return indexedKey.size();
+	}
+	
+	// -------------------- utility -------------------- //
 	
 	@Override
 	public String toCsv(String csvSeparator){
@@ -173,7 +262,8 @@ public class GosplAliasSampler implements IDistributionSampler {
 				.collect(Collectors.toSet()));
 		String s = String.join(csvSeparator, attributs.stream().map(att -> att.getAttributeName()).collect(Collectors.toList()));
 		s += "; Probability\n";
-		for(ACoordinate<Attribute<? extends IValue>, IValue> coord : indexedKey){
+		for(int i = 0; i < indexedKey.size(); i++){
+			ACoordinate<Attribute<? extends IValue>, IValue> coord = indexedKey.get(i);
 			String line = "";
 			for(Attribute<? extends IValue> att : attributs){
 				if(coord.getDimensions().contains(att)){
@@ -188,10 +278,9 @@ public class GosplAliasSampler implements IDistributionSampler {
 						s += csvSeparator+" ";
 				}
 			}
-			s += line + csvSeparator + initProba.get(indexedKey.indexOf(coord))+"\n";
+			s += line + csvSeparator + initProba[i]+"\n";
 		}
 		return s;
 	}
 
 }
-
@@ -1,16 +1,26 @@
 package gospl.sampler.sr;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import core.metamodel.attribute.Attribute;
 import core.metamodel.value.IValue;
+import core.util.random.GenstarRandom;
 import core.util.random.roulette.RouletteWheelSelectionFactory;
 import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.distribution.matrix.control.AControl;
 import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.sampler.AliasTable;
 import gospl.sampler.ICompletionSampler;
 import gospl.sampler.IDistributionSampler;
 
@@ -18,6 +28,10 @@ import gospl.sampler.IDistributionSampler;
  * Sampler that is able to return a coordinate associated to another (partial) coordinate. In fact,
  * the sampler will take into account a small number of dimension/value pairs given as a coordinate to sample
  * missing dimension/value pairs according to the given distribution
+ * <p>
+ * Cells of the distribution are grouped by their projection on the dimensions of the partial coordinates, 
+ * once per set of conditioning dimensions, and each group is bound to an alias table: a completion is then
+ * a hash lookup followed by a constant time draw
  * 
  * @author kevinchapuis
  *
@@ -27,14 +41,40 @@ public class GosplCompletionDirectSampling implements ICompletionSampler<ACoordi
 	private AFullNDimensionalMatrix<Double> distribution;
 	private GosplBasicSampler innerSampler;
 	
+	private Map<Set<Attribute<? extends IValue>>, Map<Map<Attribute<? extends IValue>, IValue>, ConditionalAlias>> conditionalIndex;
+	
 	public GosplCompletionDirectSampling() {
 		this.innerSampler = new GosplBasicSampler();
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * WARNING: when some dimensions of the partial coordinate are not dimensions of the distribution, 
+	 * falls back to a scan of every cell of the distribution
+	 */
 	@Override
 	public ACoordinate<Attribute<? extends IValue>, IValue> complete(
 			ACoordinate<Attribute<? extends IValue>, IValue> originalEntity) {
 		
+		Set<Attribute<? extends IValue>> conditions = originalEntity.getDimensions();
+		if(!distribution.getDimensions().containsAll(conditions))
+			return this.completeByScan(originalEntity);
+		
+		ConditionalAlias alias = conditionalIndex
+				.computeIfAbsent(new HashSet<>(conditions), this::buildConditionalIndex)
+				.get(originalEntity.getMap());
+		if(alias == null)
+			throw new IllegalArgumentException("No cell of the distribution matches partial coordinate "+originalEntity);
+		return alias.draw(GenstarRandom.getInstance());
+	}
+	
+	/*
+	 * Former way to complete: filter every cell that contains the values of the partial coordinate 
+	 */
+	private ACoordinate<Attribute<? extends IValue>, IValue> completeByScan(
+			ACoordinate<Attribute<? extends IValue>, IValue> originalEntity) {
+		
 		Map<ACoordinate<Attribute<? extends IValue>, IValue>, Double> subDistribution = 
 				distribution.getMatrix().entrySet()
 				.stream().filter(e -> e.getKey().containsAll(originalEntity.values()))
@@ -46,6 +86,26 @@ public class GosplCompletionDirectSampling implements ICompletionSampler<ACoordi
 				keys.stream().map(k -> subDistribution.get(k)).collect(Collectors.toList()), 
 				keys).drawObject();
 	}
+	
+	/*
+	 * Groups cells of the distribution by their values for the conditioning dimensions
+	 */
+	private Map<Map<Attribute<? extends IValue>, IValue>, ConditionalAlias> buildConditionalIndex(
+			Set<Attribute<? extends IValue>> conditions) {
+		Map<Map<Attribute<? extends IValue>, IValue>, List<Entry<ACoordinate<Attribute<? extends IValue>, IValue>, AControl<Double>>>> groups =
+				new HashMap<>();
+		for(Entry<ACoordinate<Attribute<? extends IValue>, IValue>, AControl<Double>> cell : distribution.getMatrix().entrySet()) {
+			Map<Attribute<? extends IValue>, IValue> projection = new HashMap<>();
+			for(Attribute<? extends IValue> condition : conditions)
+				projection.put(condition, cell.getKey().getMap().get(condition));
+			groups.computeIfAbsent(projection, k -> new ArrayList<>()).add(cell);
+		}
+		Map<Map<Attribute<? extends IValue>, IValue>, ConditionalAlias> index = new HashMap<>(groups.size() * 2);
+		for(Entry<Map<Attribute<? extends IValue>, IValue>, List<Entry<ACoordinate<Attribute<? extends IValue>, IValue>, AControl<Double>>>> group 
+				: groups.entrySet())
+			index.put(group.getKey(), new ConditionalAlias(group.getValue()));
+		return index;
+	}
 
 	@Override
 	public ACoordinate<Attribute<? extends IValue>, IValue> draw() {
@@ -61,6 +121,7 @@ public class GosplCompletionDirectSampling implements ICompletionSampler<ACoordi
 	public void setDistribution(AFullNDimensionalMatrix<Double> distribution) {
 		this.distribution = distribution;
 		this.innerSampler.setDistribution(distribution);
+		this.conditionalIndex = new ConcurrentHashMap<>();
 	}
 	
 	@Override
@@ -69,4 +130,38 @@ public class GosplCompletionDirectSampling implements ICompletionSampler<ACoordi
 		return null;
 	}
 
+	/*
+	 * Alias table (Vose's algorithm, see AliasTable) over the cells that share a conditioning key; 
+	 * weights are normalized, and drawn uniformly if they are all null
+	 */
+	private static class ConditionalAlias {
+		
+		private final List<ACoordinate<Attribute<? extends IValue>, IValue>> cells;
+		private final double[] probability;
+		private final int[] alias;
+		
+		private ConditionalAlias(List<Entry<ACoordinate<Attribute<? extends IValue>, IValue>, AControl<Double>>> group) {
+			int n = group.size();
+			this.cells = new ArrayList<>(n);
+			this.probability = new double[n];
+			this.alias = new int[n];
+			
+			double[] weights = new double[n];
+			for(int i = 0; i < n; i++) {
+				cells.add(group.get(i).getKey());
+				weights[i] = group.get(i).getValue().getValue();
+			}
+			if(!AliasTable.build(weights, probability, alias, 0)) {
+				Arrays.fill(weights, 1d);
+				AliasTable.build(weights, probability, alias, 0);
+			}
+		}
+		
+		private ACoordinate<Attribute<? extends IValue>, IValue> draw(Random random) {
+			int column = random.nextInt(probability.length);
+			return cells.get(random.nextDouble() < probability[column] ? column : alias[column]);
+		}
+		
+	}
+	
 }
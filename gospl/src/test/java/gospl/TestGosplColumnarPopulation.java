@@ -0,0 +1,103 @@
+package gospl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import core.metamodel.attribute.Attribute;
+import core.metamodel.entity.ADemoEntity;
+import core.metamodel.value.IValue;
+import gospl.distribution.GosplNDimensionalMatrixFactory;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.generator.util.GSUtilGenerator;
+
+public class TestGosplColumnarPopulation {
+
+	private static GosplPopulation POPULATION;
+
+	@BeforeClass
+	public static void setupBeforeClass() {
+		POPULATION = new GSUtilGenerator(3, 5).generate(1000);
+	}
+
+	@Test
+	public void testContingency() {
+		GosplColumnarPopulation columnar = new GosplColumnarPopulation(POPULATION);
+		assertEquals(POPULATION.size(), columnar.size());
+		assertEquals(POPULATION.getPopulationAttributes(), columnar.getPopulationAttributes());
+
+		AFullNDimensionalMatrix<Integer> expected = GosplNDimensionalMatrixFactory.getFactory()
+				.createContingency(POPULATION);
+		AFullNDimensionalMatrix<Integer> actual = GosplNDimensionalMatrixFactory.getFactory()
+				.createContingency(columnar);
+		assertEquals(expected.getVal().getValue(), actual.getVal().getValue());
+		for(ACoordinate<Attribute<? extends IValue>, IValue> coordinate : expected.getMatrix().keySet())
+			assertEquals(expected.getVal(coordinate).getValue(), actual.getVal(coordinate).getValue());
+
+		ADemoEntity entity = POPULATION.iterator().next();
+		Map<Attribute<? extends IValue>, IValue> values = entity.getAttributeMap();
+		assertEquals(expected.getVal(new ArrayList<>(values.values())).getValue().intValue(),
+				columnar.getCountHavingValues(values));
+	}
+
+	@Test
+	public void testFlyweightEntities() {
+		GosplColumnarPopulation columnar = new GosplColumnarPopulation(POPULATION);
+		Iterator<ADemoEntity> it = columnar.iterator();
+		ADemoEntity first = it.next();
+		ADemoEntity second = it.next();
+		assertTrue(columnar.contains(first));
+
+		// Values are written through columns
+		Attribute<? extends IValue> attribute = columnar.getPopulationAttributes().iterator().next();
+		first.setAttributeValue(attribute, second.getValueForAttribute(attribute));
+		assertEquals(second.getValueForAttribute(attribute), columnar.iterator().next().getValueForAttribute(attribute));
+
+		// Clone is independent
+		GosplColumnarPopulation clone = columnar.clone();
+		assertTrue(columnar.remove(first));
+		assertFalse(columnar.contains(first));
+		assertEquals(POPULATION.size() - 1, columnar.size());
+		assertEquals(POPULATION.size(), clone.size());
+
+		// Removed entity can be added back as a new row
+		assertTrue(columnar.add(first));
+		assertEquals(POPULATION.size(), columnar.size());
+		assertEquals(POPULATION.size(), columnar.stream().count());
+	}
+
+	@Test
+	public void testEntitiesAreStaleAfterClear() {
+		GosplColumnarPopulation columnar = new GosplColumnarPopulation(POPULATION);
+		Iterator<ADemoEntity> it = columnar.iterator();
+		ADemoEntity first = it.next();
+		ADemoEntity second = it.next();
+
+		columnar.clear();
+		assertFalse(columnar.contains(first));
+		assertFalse(columnar.remove(second));
+		assertEquals(0, columnar.size());
+
+		// rows are reused by new entities, but former entities still do not belong to the population
+		Iterator<ADemoEntity> entities = POPULATION.iterator();
+		assertTrue(columnar.add(entities.next()));
+		assertTrue(columnar.add(entities.next()));
+		ADemoEntity reused = columnar.iterator().next();
+		assertTrue(columnar.contains(reused));
+		assertFalse(reused.equals(first));
+		assertFalse(columnar.contains(first));
+		assertFalse(columnar.remove(first));
+		assertFalse(columnar.remove(second));
+		assertEquals(2, columnar.size());
+		assertEquals(2, columnar.stream().count());
+	}
+
+}
@@ -1,21 +1,39 @@
 package gospl.algo.co;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import core.metamodel.attribute.Attribute;
+import core.metamodel.entity.ADemoEntity;
+import core.metamodel.entity.comparator.HammingEntityComparator;
+import core.metamodel.entity.matcher.AttributeVectorMatcher;
 import core.metamodel.value.IValue;
+import core.util.random.GenstarRandom;
 import gospl.GosplPopulation;
 import gospl.algo.co.hillclimbing.HillClimbing;
+import gospl.algo.co.metamodel.AOptimizationAlgorithm;
+import gospl.algo.co.metamodel.neighbor.EntityProfileIndex;
+import gospl.algo.co.metamodel.neighbor.PopulationEntityNeighborSearch;
+import gospl.algo.co.metamodel.solution.ISyntheticPopulationSolution;
+import gospl.algo.co.metamodel.solution.SyntheticPopulationIncrementalSolution;
+import gospl.algo.co.metamodel.solution.SyntheticPopulationSolution;
+import gospl.algo.co.multistart.MultiStartOptimization;
 import gospl.algo.co.simannealing.SimulatedAnnealing;
 import gospl.algo.co.tabusearch.TabuList;
 import gospl.algo.co.tabusearch.TabuSearch;
 import gospl.distribution.GosplNDimensionalMatrixFactory;
 import gospl.distribution.matrix.INDimensionalMatrix;
+import gospl.distribution.matrix.coordinate.ACoordinate;
 import gospl.generator.ISyntheticGosplPopGenerator;
 import gospl.generator.SampleBasedGenerator;
 import gospl.generator.util.GSUtilPopulation;
@@ -99,4 +117,118 @@ public class GosplCOTest {
 		assertEquals(POPULATION_SIZE, gosplGenerator.generate(POPULATION_SIZE).size());
 	}
 	
+	@Test
+	public void multiStartTest() {
+		Set<INDimensionalMatrix<Attribute<? extends IValue>, IValue, Integer>> objectives = new HashSet<>();
+		objectives.add(MARGINALS);
+		
+		MultiStartOptimization multiStart = new MultiStartOptimization(
+				() -> new HillClimbing(0, MAX_ITERATION / 100), 4, 3, 2);
+		multiStart.setSample(SAMPLE);
+		multiStart.addObjectives(MARGINALS);
+		
+		ISyntheticPopulationSolution<GosplPopulation> start = new SyntheticPopulationIncrementalSolution(
+				new GosplPopulation(POPULATION.stream().limit(POPULATION_SIZE / 2).collect(Collectors.toList())));
+		double initialFitness = start.getFitness(objectives);
+		
+		GenstarRandom.setSeed(42);
+		double fitness = multiStart.run(start).getFitness(objectives);
+		assertTrue(fitness <= initialFitness);
+		// Start solution is left untouched by chains
+		assertEquals(initialFitness, new SyntheticPopulationSolution(start.getSolution()).getFitness(objectives), 0d);
+		
+		// Another run with the same seed: chains do not add objectives again
+		GenstarRandom.setSeed(42);
+		assertEquals(fitness, multiStart.run(start).getFitness(objectives), 0d);
+		for(AOptimizationAlgorithm<GosplPopulation> chain : multiStart.getChains())
+			assertEquals(objectives, chain.getObjectives());
+	}
+	
+	@Test
+	public void incrementalFitnessTest() {
+		Set<INDimensionalMatrix<Attribute<? extends IValue>, IValue, Integer>> objectives = new HashSet<>();
+		objectives.add(MARGINALS);
+		
+		GosplPopulation start = new GosplPopulation(SAMPLE.stream().collect(Collectors.toList()));
+		SyntheticPopulationIncrementalSolution solution = new SyntheticPopulationIncrementalSolution(start);
+		assertEquals(new SyntheticPopulationSolution(start).getFitness(objectives), solution.getFitness(objectives));
+		
+		PopulationEntityNeighborSearch neighborSearch = new PopulationEntityNeighborSearch();
+		neighborSearch.updatePredicates(start);
+		ISyntheticPopulationSolution<GosplPopulation> current = solution;
+		for(int k : new int[] {1, 5, 20}) {
+			// Fresh entities from sample, that do not belong to any population yet
+			neighborSearch.setSample(new GosplPopulation(POPULATION.stream()
+					.map(ADemoEntity::clone).collect(Collectors.toList())));
+			ISyntheticPopulationSolution<GosplPopulation> neighbor = current.getRandomNeighbor(neighborSearch, k);
+			double fitness = neighbor.getFitness(objectives);
+			assertEquals(new SyntheticPopulationSolution(neighbor.getSolution()).getFitness(objectives), fitness, 0d);
+			// Evaluating a neighbor leaves the counts of the current solution untouched
+			assertEquals(new SyntheticPopulationSolution(current.getSolution()).getFitness(objectives), 
+					current.getFitness(objectives), 0d);
+			// Accept the neighbor: the next one is drawn from it
+			current = neighbor;
+		}
+		
+		// Absolute errors from counts
+		INDimensionalMatrix<Attribute<? extends IValue>, IValue, Integer> errors = current.getAbsoluteErrors(
+				new GosplNDimensionalMatrixFactory().createContingency(MARGINALS), objectives);
+		GosplPopulation population = current.getSolution();
+		for(ACoordinate<Attribute<? extends IValue>, IValue> coordinate : MARGINALS.getMatrix().keySet()) {
+			long count = population.stream()
+					.filter(e -> e.getAttributeMap().values().containsAll(coordinate.values())).count();
+			assertEquals(MARGINALS.getVal(coordinate).getValue() - count, 
+					errors.getVal(coordinate).getValue().longValue());
+		}
+	}
+	
+	@Test
+	public void profileIndexUpdateTest() {
+		GosplPopulation start = new GosplPopulation(SAMPLE.stream().collect(Collectors.toList()));
+		PopulationEntityNeighborSearch neighborSearch = new PopulationEntityNeighborSearch();
+		neighborSearch.updatePredicates(start);
+		neighborSearch.setSample(new GosplPopulation(POPULATION.stream()
+				.map(ADemoEntity::clone).collect(Collectors.toList())));
+		
+		GosplPopulation current = start;
+		EntityProfileIndex index = neighborSearch.getProfileIndex(current);
+		for(int step = 0; step < 10; step++) {
+			ADemoEntity predicate = current.iterator().next();
+			// A rejected neighbor, then the accepted one
+			neighborSearch.getPairwisedEntities(current, predicate, 5, false);
+			Map<ADemoEntity, ADemoEntity> theSwitch = neighborSearch.getPairwisedEntities(current, predicate, 5, false);
+			current = neighborSearch.getNeighbor(current, theSwitch);
+			
+			// Index is updated with the switch, not built again
+			assertSame(index, neighborSearch.getProfileIndex(current));
+			assertEquals(current.size(), index.size());
+			EntityProfileIndex expected = new EntityProfileIndex(current);
+			assertEquals(expected.getProfileCount(), index.getProfileCount());
+			AttributeVectorMatcher matcher = new AttributeVectorMatcher(predicate);
+			assertEquals(expected.getNearest(predicate, 20).stream().mapToInt(matcher::getHammingDistance).sum(), 
+					index.getNearest(predicate, 20).stream().mapToInt(matcher::getHammingDistance).sum());
+			assertTrue(current.containsAll(index.getNearest(predicate, 20)));
+		}
+	}
+	
+	@Test
+	public void profileIndexTest() {
+		EntityProfileIndex index = new EntityProfileIndex(POPULATION);
+		assertEquals(POPULATION.size(), index.size());
+		
+		for(ADemoEntity referent : SAMPLE.stream().limit(10).collect(Collectors.toList())) {
+			AttributeVectorMatcher matcher = new AttributeVectorMatcher(referent);
+			for(int k : new int[] {1, 10, 100}) {
+				List<ADemoEntity> nearest = index.getNearest(referent, k);
+				List<ADemoEntity> sorted = POPULATION.stream().sorted(new HammingEntityComparator(referent))
+						.limit(k).collect(Collectors.toList());
+				assertEquals(k, nearest.size());
+				assertEquals(k, new HashSet<>(nearest).size());
+				// Same matching scores than sorting the whole population
+				assertEquals(sorted.stream().mapToInt(matcher::getHammingDistance).sum(), 
+						nearest.stream().mapToInt(matcher::getHammingDistance).sum());
+			}
+		}
+	}
+	
 }
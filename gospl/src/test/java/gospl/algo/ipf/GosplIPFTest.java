@@ -213,6 +213,27 @@ public class GosplIPFTest {
 		assertEquals(GENERATION_SIZE, popOut.size());
 	}
 	
+	@Test
+	public void parallelTest() throws GSIllegalRangedData {
+		
+		IPopulation<ADemoEntity, Attribute<? extends IValue>> seed = 
+				new GSUtilPopulation().buildPopulation((int)(POPULATION_SIZE * SEED_RATIO));
+		INDimensionalMatrix<Attribute<? extends IValue>, IValue, Double> marginals = 
+				new GosplNDimensionalMatrixFactory().createDistribution(
+						new GSUtilPopulation().buildPopulation(POPULATION_SIZE));
+		
+		AFullNDimensionalMatrix<Double> sequential = doIPF(seed, marginals, 1);
+		AFullNDimensionalMatrix<Double> twoThreads = doIPF(seed, marginals, 2);
+		AFullNDimensionalMatrix<Double> fourThreads = doIPF(seed, marginals, 4);
+		
+		assertEquals(sequential.getMatrix().keySet(), fourThreads.getMatrix().keySet());
+		for(ACoordinate<Attribute<? extends IValue>, IValue> coord : sequential.getMatrix().keySet()) {
+			// Parallel fitting must be deterministic
+			assertEquals(twoThreads.getVal(coord).getValue(), fourThreads.getVal(coord).getValue());
+			assertEquals(sequential.getVal(coord).getValue(), fourThreads.getVal(coord).getValue(), Math.pow(10, -9));
+		}
+	}
+	
 	// Partial means that control and seed are not express at the same level
 	// at least one attribute is aggregated in one side and desaggregated in the other
 	@Test
@@ -239,6 +260,19 @@ public class GosplIPFTest {
 		return gosplGenerator.generate(GENERATION_SIZE);
 	}
 	
+	/*
+	 * DO THE IPF WITH GIVEN PARALLELISM
+	 */
+	private AFullNDimensionalMatrix<Double> doIPF(
+			IPopulation<ADemoEntity, Attribute<? extends IValue>> seed,
+			INDimensionalMatrix<Attribute<? extends IValue>, IValue, Double> marginals,
+			int parallelism){
+		SRIPFAlgo ipf = new SRIPFAlgo(seed);
+		ipf.setMarginalMatrix(marginals);
+		ipf.setParallelism(parallelism);
+		return ipf.process();
+	}
+	
 	
 
 }
@@ -2,21 +2,46 @@ package gospl.algo.sampler.sr;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Test;
 
+import au.com.bytecode.opencsv.CSVReader;
+
 import com.google.common.collect.Lists;
 import com.google.common.primitives.Ints;
 
+import core.metamodel.attribute.Attribute;
+import core.metamodel.attribute.AttributeFactory;
+import core.metamodel.entity.ADemoEntity;
+import core.metamodel.value.IValue;
+import core.metamodel.value.categoric.NominalValue;
+import core.util.random.GenstarRandom;
+import gospl.GosplEntity;
 import gospl.GosplPopulation;
 import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinate;
+import gospl.generator.DistributionBasedGenerator;
+import gospl.generator.sink.CsvPopulationSink;
+import gospl.generator.sink.IPopulationSink;
 import gospl.generator.util.GSUtilPopulation;
 import gospl.sampler.sr.GosplAliasSampler;
 import gospl.sampler.sr.GosplBasicSampler;
 import gospl.sampler.sr.GosplBinarySampler;
+import gospl.sampler.sr.GosplCompletionDirectSampling;
 import gospl.validation.GosplIndicatorFactory;
 
 /**
@@ -55,6 +80,147 @@ public class GosplSamplerTest {
 				
 	}
 
+	@Test
+	public void testAliasBatch() {
+		
+		SamplerTestSetup<GosplAliasSampler> sts = new SamplerTestSetup<>(new GosplAliasSampler());
+		GosplAliasSampler sampler = sts.getSampler();
+		int draws = POPSIZE * 20;
+		
+		// Parallel draw does not depend on the number of threads
+		GenstarRandom.setSeed(42);
+		int[] sequential = sampler.drawIndexes(draws, 1);
+		GenstarRandom.setSeed(42);
+		int[] parallel = sampler.drawIndexes(draws, 4);
+		assertArrayEquals(sequential, parallel);
+		
+		int[] histogram = sampler.getHistogram(parallel);
+		assertEquals(draws, Arrays.stream(histogram).sum());
+		
+		DistributionBasedGenerator generator = new DistributionBasedGenerator(sampler);
+		generator.setParallelism(4);
+		GosplPopulation population = generator.generate(POPSIZE);
+		assertEquals(POPSIZE, population.size());
+		
+		double aapdError = GosplIndicatorFactory.getFactory().getAAPD(
+				sts.getBasePopulationUtil().getFrequency(), population);
+		assertThat(aapdError, lessThan(POPSIZE * DELTA));
+		
+	}
+
+	@Test
+	public void testGenerationDoesNotDependOnParallelism() {
+		
+		SamplerTestSetup<GosplAliasSampler> sts = new SamplerTestSetup<>(new GosplAliasSampler());
+		GosplAliasSampler sampler = sts.getSampler();
+		
+		GenstarRandom.setSeed(42);
+		int[] sequential = sampler.drawHistogram(POPSIZE * 20, 1);
+		GenstarRandom.setSeed(42);
+		int[] parallel = sampler.drawHistogram(POPSIZE * 20, 4);
+		assertArrayEquals(sequential, parallel);
+		
+		DistributionBasedGenerator generator = new DistributionBasedGenerator(sampler);
+		GenstarRandom.setSeed(42);
+		Map<Map<Attribute<? extends IValue>, IValue>, Integer> oneThread = profiles(generator.generate(POPSIZE));
+		generator.setParallelism(4);
+		GenstarRandom.setSeed(42);
+		Map<Map<Attribute<? extends IValue>, IValue>, Integer> fourThreads = profiles(generator.generate(POPSIZE));
+		assertEquals(oneThread, fourThreads);
+		
+	}
+	
+	@Test
+	public void testStreamedGeneration() {
+		
+		SamplerTestSetup<GosplAliasSampler> sts = new SamplerTestSetup<>(new GosplAliasSampler());
+		DistributionBasedGenerator generator = new DistributionBasedGenerator(sts.getSampler());
+		
+		int batchSize = POPSIZE / 7;
+		int[] batches = new int[1];
+		GosplPopulation population = new GosplPopulation();
+		generator.generate(POPSIZE, batchSize, batch -> {
+			assertThat(batch.size(), lessThan(batchSize + 1));
+			batches[0]++;
+			IPopulationSink.of(population).accept(batch);
+		});
+		assertEquals(POPSIZE, population.size());
+		assertEquals(8, batches[0]);
+		
+		// Entities of a full batch are not grouped by profile
+		generator.generate(batchSize * 2, batchSize, batch -> {
+			List<Map<Attribute<? extends IValue>, IValue>> profiles = new ArrayList<>();
+			for(ADemoEntity entity : batch)
+				profiles.add(entity.getAttributeMap());
+			int runs = 1;
+			for(int i = 1; i < profiles.size(); i++)
+				if(!profiles.get(i).equals(profiles.get(i - 1)))
+					runs++;
+			assertThat(2 * profiles.stream().distinct().count(), lessThan((long) runs));
+		});
+		
+		StringWriter writer = new StringWriter();
+		try(CsvPopulationSink csv = new CsvPopulationSink(writer, ';')) {
+			generator.generate(POPSIZE, batchSize, csv);
+			assertEquals(POPSIZE, csv.getWrittenCount());
+		}
+		// Header plus one line per entity
+		assertEquals(POPSIZE + 1, writer.toString().split("\n").length);
+		
+	}
+
+	@Test
+	public void testCsvSinkQuotesLabels() throws Exception {
+		
+		List<String> labels = Arrays.asList("a;b", "say \"hi\"", "two\nlines");
+		Attribute<NominalValue> attribute = AttributeFactory.getFactory()
+				.createAttribute("label", labels, NominalValue.class);
+		List<ADemoEntity> entities = new ArrayList<>();
+		for(String label : labels)
+			entities.add(new GosplEntity(Collections.singletonMap(attribute, 
+					attribute.getValueSpace().getValue(label))));
+		
+		StringWriter writer = new StringWriter();
+		try(CsvPopulationSink csv = new CsvPopulationSink(writer, ';')) {
+			csv.accept(entities);
+		}
+		
+		try(CSVReader reader = new CSVReader(new StringReader(writer.toString()), ';')) {
+			assertArrayEquals(new String[] {"label"}, reader.readNext());
+			for(String label : labels)
+				assertArrayEquals(new String[] {label}, reader.readNext());
+			assertNull(reader.readNext());
+		}
+		
+	}
+
+	@Test
+	public void testCompletion() {
+		
+		SamplerTestSetup<GosplCompletionDirectSampling> sts = new SamplerTestSetup<>(new GosplCompletionDirectSampling());
+		AFullNDimensionalMatrix<Double> distribution = sts.getBasePopulationUtil().getFrequency();
+		
+		// Condition on the value of one dimension of the most frequent cell
+		ACoordinate<Attribute<? extends IValue>, IValue> cell = distribution.getMatrix().entrySet().stream()
+				.max((e1, e2) -> e1.getValue().getValue().compareTo(e2.getValue().getValue())).get().getKey();
+		Attribute<? extends IValue> dimension = cell.getDimensions().iterator().next();
+		Map<Attribute<? extends IValue>, IValue> condition = new HashMap<>();
+		condition.put(dimension, cell.getMap().get(dimension));
+		
+		double conditionalProba = distribution.getVal(cell).getValue() / distribution.getMatrix().entrySet().stream()
+				.filter(e -> e.getKey().getMap().get(dimension).equals(condition.get(dimension)))
+				.mapToDouble(e -> e.getValue().getValue()).sum();
+		
+		int draws = POPSIZE, hits = 0;
+		for(int i = 0; i < draws; i++) {
+			ACoordinate<Attribute<? extends IValue>, IValue> completed = sts.getSampler().complete(new GosplCoordinate(condition));
+			assertEquals(condition.get(dimension), completed.getMap().get(dimension));
+			if(completed.equals(cell))
+				hits++;
+		}
+		assertTrue(Math.abs(hits / (double) draws - conditionalProba) < 5 * DELTA);
+	}
+	
 	@Test
 	public void testBasic() {
 		
@@ -128,4 +294,13 @@ public class GosplSamplerTest {
 		return taeMap;
 	}
 	
+	/*
+	 * Number of entities per attribute values
+	 */
+	private static Map<Map<Attribute<? extends IValue>, IValue>, Integer> profiles(GosplPopulation population) {
+		Map<Map<Attribute<? extends IValue>, IValue>, Integer> profiles = new HashMap<>();
+		population.forEach(e -> profiles.merge(e.getAttributeMap(), 1, Integer::sum));
+		return profiles;
+	}
+	
 }
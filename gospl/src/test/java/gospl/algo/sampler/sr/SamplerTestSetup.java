@@ -26,6 +26,10 @@ public class SamplerTestSetup<Sampler extends IDistributionSampler> {
 		return this.uPop;
 	}
 	
+	public Sampler getSampler() {
+		return this.sampler;
+	}
+	
 	public GosplPopulation drawPopulation(int nbDraw) {
 		return new GosplPopulation(IntStream.range(0, nbDraw)
 				.parallel()
@@ -158,5 +158,10 @@ public class TestBayesianNetworkCompletionSampler {
 	public void testCompletionEliminationInference() {
 		this.testCompletion(EliminationInferenceEngine.class);
 	}
+	
+	@Test
+	public void testCompletionJunctionTree() {
+		this.testCompletion(JunctionTreeInferenceEngine.class);
+	}
 
 }
@@ -35,7 +35,8 @@ public class TestCompareInferenceEngines {
 		EliminationInferenceEngine.class,
 		//BestInferenceEngine.class,
 		RecursiveConditionningEngine.class,
-		SimpleConditionningInferenceEngine.class
+		SimpleConditionningInferenceEngine.class,
+		JunctionTreeInferenceEngine.class
 	});
 	
 	@Parameters(name="{0}")
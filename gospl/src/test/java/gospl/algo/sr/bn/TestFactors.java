@@ -38,7 +38,7 @@ public class TestFactors {
 		Factor f = nAge.asFactor();
 		
 		// is the factor having the right size? 
-		assertEquals(2*2, f.values.size());
+		assertEquals(2*2, f.size());
 		
 		assertEquals(0.55, f.get("age","<15","gender","male"), Math.pow(1, -4));
 		
@@ -104,7 +104,7 @@ public class TestFactors {
 		Factor m = f1.multiply(f2);
 		
 		// is the factor having the right size? 
-		assertEquals(2*2, m.values.size());
+		assertEquals(2*2, m.size());
 				
 		// test mult
 		assertEquals(0.45*0.55, m.get("age",">=15","gender","male"), Math.pow(1, -4));
@@ -117,7 +117,7 @@ public class TestFactors {
 		m = f1.multiply(f2);
 		
 		// is the factor having the right size? 
-		assertEquals(2*2*2, m.values.size());
+		assertEquals(2*2*2, m.size());
 		
 		// test mult
 		assertEquals(0.45*0.1, m.get("age",">=15","gender","male","CSP","+"), Math.pow(1, -4));
@@ -0,0 +1,75 @@
+package gospl.algo.sr.bn;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import core.util.random.GenstarRandom;
+
+public class TestForwardSamplingPlan {
+
+	private CategoricalBayesianNetwork bn;
+	private NodeCategorical nGender, nAge;
+
+	@Before
+	public void setUp() throws Exception {
+
+		bn = new CategoricalBayesianNetwork("test1");
+
+		// declare the child first, so the plan has to reorder nodes
+		nAge = new NodeCategorical(bn, "age");
+		nGender = new NodeCategorical(bn, "gender");
+		nGender.addDomain("male", "female");
+		nGender.setProbabilities(0.55, "male");
+		nGender.setProbabilities(0.45, "female");
+
+		nAge.addParent(nGender);
+		nAge.addDomain("<15", "15-65", ">65");
+		nAge.setProbabilities(0.2, "<15", "gender", "male");
+		nAge.setProbabilities(0.7, "15-65", "gender", "male");
+		nAge.setProbabilities(0.1, ">65", "gender", "male");
+		nAge.setProbabilities(0.0, "<15", "gender", "female");
+		nAge.setProbabilities(0.6, "15-65", "gender", "female");
+		nAge.setProbabilities(0.4, ">65", "gender", "female");
+
+	}
+
+	@Test
+	public void testFrequencies() {
+
+		ForwardSamplingPlan plan = new ForwardSamplingPlan(bn);
+		assertEquals(nGender, plan.getNodes().get(0));
+		assertEquals(nAge, plan.getNodes().get(1));
+
+		final int draws = 200000;
+		int[] values = plan.draw(draws, 4);
+		assertEquals(draws * plan.size(), values.length);
+
+		double[][] counts = new double[2][3];
+		for (int i = 0; i < draws; i++)
+			counts[values[2*i]][values[2*i+1]]++;
+
+		assertEquals(0.55*0.2, counts[0][0] / draws, 0.01);
+		assertEquals(0.55*0.7, counts[0][1] / draws, 0.01);
+		assertEquals(0.55*0.1, counts[0][2] / draws, 0.01);
+		assertEquals(0.0, counts[1][0], 0.0);
+		assertEquals(0.45*0.6, counts[1][1] / draws, 0.01);
+		assertEquals(0.45*0.4, counts[1][2] / draws, 0.01);
+	}
+
+	@Test
+	public void testParallelDrawIsReproducible() {
+
+		ForwardSamplingPlan plan = new ForwardSamplingPlan(bn);
+
+		GenstarRandom.setSeed(42);
+		int[] sequential = plan.draw(100000, 1);
+		GenstarRandom.setSeed(42);
+		int[] parallel = plan.draw(100000, 4);
+
+		assertArrayEquals(sequential, parallel);
+	}
+
+}
@@ -42,21 +42,25 @@ public class TestInferenceEnginesOnData {
 			{ EliminationInferenceEngine.class, 			new DataSprinkler() },
 			{ RecursiveConditionningEngine.class, 			new DataSprinkler() },
 			{ BestInferenceEngine.class, 					new DataSprinkler() },
+			{ JunctionTreeInferenceEngine.class, 			new DataSprinkler() },
 
 			{ SimpleConditionningInferenceEngine.class, 	new DataGerland1() },
 			{ EliminationInferenceEngine.class, 			new DataGerland1() },
 			{ RecursiveConditionningEngine.class, 			new DataGerland1() },
 			{ BestInferenceEngine.class, 					new DataGerland1() },
+			{ JunctionTreeInferenceEngine.class, 			new DataGerland1() },
 
 			{ SimpleConditionningInferenceEngine.class, 	new DataCancerSmall() },
 			{ EliminationInferenceEngine.class, 			new DataCancerSmall() },
 			{ RecursiveConditionningEngine.class, 			new DataCancerSmall() },
 			{ BestInferenceEngine.class, 					new DataCancerSmall() },
+			{ JunctionTreeInferenceEngine.class, 			new DataCancerSmall() },
 
 			{ SimpleConditionningInferenceEngine.class, 	new DataSachs() },
 			{ EliminationInferenceEngine.class, 			new DataSachs() },
 			{ RecursiveConditionningEngine.class, 			new DataSachs() },
 			{ BestInferenceEngine.class, 					new DataSachs() },
+			{ JunctionTreeInferenceEngine.class, 			new DataSachs() },
 
 			// the complexity of this large case excludes much engines on large data
 			// we can activate those but not on build machines in which they would slow don't the process
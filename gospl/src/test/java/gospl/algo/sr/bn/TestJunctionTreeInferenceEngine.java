@@ -0,0 +1,143 @@
+package gospl.algo.sr.bn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestJunctionTreeInferenceEngine {
+
+	private CategoricalBayesianNetwork bn;
+	private NodeCategorical nGender, nAge, nIncome, nCar;
+
+	@Before
+	public void setUp() throws Exception {
+
+		bn = new CategoricalBayesianNetwork("test1");
+
+		nGender = new NodeCategorical(bn, "gender");
+		nGender.addDomain("male", "female");
+		nGender.setProbabilities(0.55, "male");
+		nGender.setProbabilities(0.45, "female");
+
+		nAge = new NodeCategorical(bn, "age");
+		nAge.addParent(nGender);
+		nAge.addDomain("<15", ">=15");
+		nAge.setProbabilities(0.3, "<15", "gender", "male");
+		nAge.setProbabilities(0.7, ">=15", "gender", "male");
+		nAge.setProbabilities(0.0, "<15", "gender", "female");
+		nAge.setProbabilities(1.0, ">=15", "gender", "female");
+
+		// v-structure, so the moral graph has to link gender and age
+		nIncome = new NodeCategorical(bn, "income");
+		nIncome.addParent(nGender);
+		nIncome.addParent(nAge);
+		nIncome.addDomain("low", "high");
+		nIncome.setProbabilities(0.9, "low", "gender", "male", "age", "<15");
+		nIncome.setProbabilities(0.1, "high", "gender", "male", "age", "<15");
+		nIncome.setProbabilities(0.4, "low", "gender", "male", "age", ">=15");
+		nIncome.setProbabilities(0.6, "high", "gender", "male", "age", ">=15");
+		nIncome.setProbabilities(0.8, "low", "gender", "female", "age", "<15");
+		nIncome.setProbabilities(0.2, "high", "gender", "female", "age", "<15");
+		nIncome.setProbabilities(0.5, "low", "gender", "female", "age", ">=15");
+		nIncome.setProbabilities(0.5, "high", "gender", "female", "age", ">=15");
+
+		nCar = new NodeCategorical(bn, "car");
+		nCar.addParent(nIncome);
+		nCar.addDomain("yes", "no");
+		nCar.setProbabilities(0.2, "yes", "income", "low");
+		nCar.setProbabilities(0.8, "no", "income", "low");
+		nCar.setProbabilities(0.7, "yes", "income", "high");
+		nCar.setProbabilities(0.3, "no", "income", "high");
+
+	}
+
+	@Test
+	public void testSameAsElimination() {
+
+		JunctionTreeInferenceEngine jt = new JunctionTreeInferenceEngine(bn);
+		EliminationInferenceEngine elimination = new EliminationInferenceEngine(bn);
+
+		// without evidence, then with evidence on one or two variables, twice so the caches are used
+		for (int pass = 0; pass < 2; pass++) {
+			for (NodeCategorical n1: bn.getNodes()) {
+				for (String v1: n1.getDomain()) {
+					for (NodeCategorical n2: bn.getNodes()) {
+
+						jt.clearEvidence();
+						elimination.clearEvidence();
+						jt.addEvidence(n1, v1);
+						elimination.addEvidence(n1, v1);
+						if (n2 != n1 && n2 != nGender) {
+							jt.addEvidence(n2, n2.getValueIndexed(0));
+							elimination.addEvidence(n2, n2.getValueIndexed(0));
+						}
+
+						// impossible evidence is checked in testImpossibleEvidence
+						if (jt.getProbabilityEvidence() == 0)
+							continue;
+						assertEquals(elimination.getProbabilityEvidence(), jt.getProbabilityEvidence(), 1e-9);
+
+						for (NodeCategorical n: bn.getNodes())
+							for (String v: n.getDomain())
+								assertEquals(
+										"p("+n.name+"="+v+"|"+jt.evidenceVariable2value+")",
+										elimination.getConditionalProbability(n, v),
+										jt.getConditionalProbability(n, v),
+										1e-9);
+					}
+				}
+			}
+		}
+
+	}
+
+	@Test
+	public void testImpossibleEvidence() {
+
+		JunctionTreeInferenceEngine jt = new JunctionTreeInferenceEngine(bn);
+		jt.addEvidence(nGender, "female");
+		jt.addEvidence(nAge, "<15");
+
+		assertEquals(0., jt.getProbabilityEvidence(), 0.);
+		try {
+			jt.getConditionalProbability(nCar, "yes");
+			fail("should have raised an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// all's right.
+		}
+
+		// other evidence is still fine
+		jt.clearEvidence();
+		jt.addEvidence(nGender, "female");
+		assertEquals(0.45, jt.getProbabilityEvidence(), 1e-9);
+		assertEquals(1., jt.getConditionalProbability(nAge, ">=15"), 1e-9);
+	}
+
+	@Test
+	public void testSampleOneWithEvidence() {
+
+		JunctionTreeInferenceEngine jt = new JunctionTreeInferenceEngine(bn);
+		jt.addEvidence(nCar, "yes");
+
+		final int draws = 100000;
+		int male = 0;
+		for (int i = 0; i < draws; i++) {
+			Map<NodeCategorical,String> sample = jt.sampleOne();
+			assertEquals(bn.getNodes().size(), sample.size());
+			assertEquals("yes", sample.get(nCar));
+			if (sample.get(nAge).equals("<15"))
+				assertEquals("male", sample.get(nGender));
+			if (sample.get(nGender).equals("male"))
+				male++;
+		}
+
+		// evidence is left untouched
+		assertEquals(1, jt.evidenceVariable2value.size());
+		assertEquals(jt.getConditionalProbability(nGender, "male"), male / (double) draws, 0.01);
+	}
+
+}
@@ -8,23 +8,39 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import core.metamodel.attribute.Attribute;
+import core.metamodel.attribute.AttributeFactory;
 import core.metamodel.entity.ADemoEntity;
 import core.metamodel.value.IValue;
+import core.metamodel.value.categoric.NominalValue;
+import core.metamodel.value.numeric.IntegerValue;
+import core.util.excpetion.GSIllegalRangedData;
+import gospl.GosplEntity;
 import gospl.GosplPopulation;
 import gospl.GosplPopulationInDatabase;
+import gospl.GosplPopulationInDatabase.DatabaseRow;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinate;
 import gospl.io.insee.DownloadINSEESampleData;
 import gospl.io.insee.INSEETestURLs;
 
@@ -246,6 +262,279 @@ public class TestGosplPopulationInDatabase {
 	}
 	
 
+	@Test
+	public void testAddAgentsInSmallBatches() {
+
+		GosplPopulation o = getGoSPLPopulation();
+		
+		// create an empty population loaded by batches smaller than the entities to add
+		GosplPopulationInDatabase p = new GosplPopulationInDatabase();
+		p.setBatchSize(7);
+
+		Iterator<ADemoEntity> itEntities = o.iterator();
+		List<ADemoEntity> fewEntities = new LinkedList<>();
+		for (int i=0;i<100;i++) {
+			fewEntities.add(itEntities.next());
+		}
+		
+		assertTrue("the entities should accept to be added", p.addAll(fewEntities));
+		assertEquals("the count should be 100 after adding", 100, p.size());
+
+		// a batch with existing entities is added one by one
+		fewEntities.add(itEntities.next());
+		assertTrue("the entities should accept to be added", p.addAll(fewEntities));
+		assertEquals("the count should 101 after adding", 101, p.size());
+		
+	}
+	
+
+	@Test
+	public void testCountCacheInvalidation() {
+
+		GosplPopulation o = getGoSPLPopulation();
+		
+		Iterator<ADemoEntity> itEntities = o.iterator();
+		ADemoEntity first = itEntities.next();
+		List<ADemoEntity> fewEntities = new LinkedList<>();
+		for (int i=0;i<100;i++) {
+			fewEntities.add(itEntities.next());
+		}
+		
+		GosplPopulationInDatabase p = new GosplPopulationInDatabase();
+		p.addAll(fewEntities);
+		
+		Attribute<? extends IValue> a = o.getPopulationAttributes().iterator().next();
+		IValue v = first.getValueForAttribute(a);
+		Map<Attribute<? extends IValue>,IValue> coordinate = new HashMap<>();
+		coordinate.put(a, v);
+		
+		int count = p.getCountHavingValues(a, v);
+		assertEquals("cached and prepared counts should be the same", count, p.getCountHavingCoordinate(coordinate));
+		assertEquals("the cached count should be the same", count, p.getCountHavingValues(a, v));
+		
+		// adding an entity with the value invalidates the cache
+		assertTrue("the entity should accept to be added", p.add(first));
+		assertEquals("the count should be updated after adding", count+1, p.getCountHavingValues(a, v));
+		
+		// so does removing it
+		assertTrue("the entity should accept to be removed", p.remove(first));
+		assertEquals("the count should be updated after removal", count, p.getCountHavingCoordinate(coordinate));
+		
+	}
+	
+	@Test
+	public void testCountStatementsAreBounded() throws Exception {
+		
+		Attribute<NominalValue> colour = AttributeFactory.getFactory()
+				.createAttribute("colour", Arrays.asList("red", "blue"), NominalValue.class);
+		Attribute<NominalValue> size = AttributeFactory.getFactory()
+				.createAttribute("size", Arrays.asList("small", "big"), NominalValue.class);
+		
+		// keeps track of the statements prepared for counts
+		List<PreparedStatement> statements = new ArrayList<>();
+		GosplPopulationInDatabase p = new GosplPopulationInDatabase() {
+			@Override
+			protected PreparedStatement getCountStatement(String type, 
+					List<Attribute<? extends IValue>> attributes, List<Integer> arities) throws SQLException {
+				PreparedStatement st = super.getCountStatement(type, attributes, arities);
+				if (!statements.contains(st))
+					statements.add(st);
+				return st;
+			}
+		};
+		p.add(entity("household", colour, "red", size, "small"));
+		p.add(entity("household", colour, "blue", size, "big"));
+		p.setCountCacheSize(0);
+		
+		int maxSize = GosplPopulationInDatabase.COUNT_STATEMENTS_SIZE;
+		GosplPopulationInDatabase.COUNT_STATEMENTS_SIZE = 2;
+		try {
+			assertEquals(1, p.getCountHavingValues(colour, colour.getValueSpace().getValue("red")));
+			assertEquals(1, p.getCountHavingValues(size, size.getValueSpace().getValue("big")));
+			assertEquals(2, p.getCountHavingValues(colour, colour.getValueSpace().getValue("red"), 
+					colour.getValueSpace().getValue("blue")));
+			assertEquals(3, statements.size());
+			assertTrue("the least recently used statement should be closed", statements.get(0).isClosed());
+			assertFalse("recently used statements should stay open", statements.get(1).isClosed());
+			
+			// an evicted statement is prepared again
+			assertEquals(1, p.getCountHavingValues(colour, colour.getValueSpace().getValue("blue")));
+			assertEquals(4, statements.size());
+			assertTrue(statements.get(1).isClosed());
+		} finally {
+			GosplPopulationInDatabase.COUNT_STATEMENTS_SIZE = maxSize;
+		}
+		
+	}
+	
+	@Test
+	public void testContingencyCube() {
+
+		GosplPopulation o = getGoSPLPopulation();
+		
+		Iterator<ADemoEntity> itEntities = o.iterator();
+		ADemoEntity first = itEntities.next();
+		List<ADemoEntity> fewEntities = new LinkedList<>();
+		for (int i=0;i<100;i++) {
+			fewEntities.add(itEntities.next());
+		}
+		
+		GosplPopulationInDatabase p = new GosplPopulationInDatabase();
+		p.addAll(fewEntities);
+		
+		Iterator<Attribute<? extends IValue>> itAttributes = o.getPopulationAttributes().iterator();
+		Set<Attribute<? extends IValue>> attributes = new HashSet<>(Arrays.asList(itAttributes.next(), itAttributes.next()));
+		p.registerContingency(attributes);
+		
+		// the cube should be filled with existing entities
+		AFullNDimensionalMatrix<Integer> cube = p.getContingency(attributes);
+		assertEquals("the cube should count all the entities", p.size(), cube.getVal().getValue().intValue());
+		for (ACoordinate<Attribute<? extends IValue>, IValue> c : cube.getMatrix().keySet())
+			assertEquals("cells should match counts", p.getCountHavingCoordinate(c.getMap()), 
+					cube.getVal(c).getValue().intValue());
+		
+		// and updated after adding and removing
+		ACoordinate<Attribute<? extends IValue>, IValue> firstCoordinate = new GosplCoordinate(
+				first.getAttributeMap().entrySet().stream().filter(e -> attributes.contains(e.getKey()))
+				.collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue())));
+		int count = p.getCountHavingCoordinate(firstCoordinate.getMap());
+		assertTrue("the entity should accept to be added", p.add(first));
+		assertEquals("the cube should be updated after adding", count+1, 
+				p.getContingency(attributes).getVal(firstCoordinate).getValue().intValue());
+		assertTrue("the entity should accept to be removed", p.remove(first));
+		assertEquals("the cube should be updated after removal", p.size(), 
+				p.getContingency(attributes).getVal().getValue().intValue());
+		
+	}
+	
+	@Test
+	public void testContingencyOverTypesWithSomeAttributes() throws GSIllegalRangedData {
+		
+		Attribute<NominalValue> colour = AttributeFactory.getFactory()
+				.createAttribute("colour", Arrays.asList("red", "blue"), NominalValue.class);
+		Attribute<NominalValue> size = AttributeFactory.getFactory()
+				.createAttribute("size", Arrays.asList("small", "big"), NominalValue.class);
+		Attribute<NominalValue> sex = AttributeFactory.getFactory()
+				.createAttribute("sex", Arrays.asList("male", "female"), NominalValue.class);
+		
+		// households have both attributes, the last one without colour; persons have no size
+		GosplPopulationInDatabase p = new GosplPopulationInDatabase();
+		p.add(entity("household", colour, "red", size, "small"));
+		p.add(entity("household", colour, "red", size, "small"));
+		p.add(entity("household", colour, "blue", size, "big"));
+		p.add(entity("household", size, "big"));
+		p.add(entity("person", colour, "red", sex, "male"));
+		p.add(entity("person", colour, "red", sex, "female"));
+		p.add(entity("person", colour, "blue", sex, "male"));
+		
+		Set<Attribute<? extends IValue>> attributes = new HashSet<>(Arrays.asList(colour, size));
+		for (int registered = 0; registered < 2; registered++) {
+			AFullNDimensionalMatrix<Integer> matrix = p.getContingency(attributes);
+			assertEquals("all the entities should be counted", 7, matrix.getVal().getValue().intValue());
+			assertEquals(2, matrix.getVal(coordinate(colour, colour.getValueSpace().getValue("red"),
+					size, size.getValueSpace().getValue("small"))).getValue().intValue());
+			assertEquals(1, matrix.getVal(coordinate(colour, colour.getValueSpace().getEmptyValue(),
+					size, size.getValueSpace().getValue("big"))).getValue().intValue());
+			assertEquals(2, matrix.getVal(coordinate(colour, colour.getValueSpace().getValue("red"),
+					size, size.getValueSpace().getEmptyValue())).getValue().intValue());
+			assertEquals(1, matrix.getVal(coordinate(colour, colour.getValueSpace().getValue("blue"),
+					size, size.getValueSpace().getEmptyValue())).getValue().intValue());
+			// households are then read from their table of counts
+			p.registerContingency(attributes);
+		}
+		
+	}
+	
+	/*
+	 * An entity of a given type with values given as attribute, label, attribute, label...
+	 */
+	private static ADemoEntity entity(String type, Object... attributeAndLabels) {
+		Map<Attribute<? extends IValue>,IValue> values = new HashMap<>();
+		for (int i = 0; i < attributeAndLabels.length; i += 2) {
+			Attribute<? extends IValue> a = (Attribute<? extends IValue>) attributeAndLabels[i];
+			values.put(a, a.getValueSpace().getValue((String) attributeAndLabels[i+1]));
+		}
+		ADemoEntity e = new GosplEntity(values);
+		e.setEntityType(type);
+		return e;
+	}
+	
+	private static ACoordinate<Attribute<? extends IValue>, IValue> coordinate(
+			Attribute<? extends IValue> a1, IValue v1, Attribute<? extends IValue> a2, IValue v2) {
+		Map<Attribute<? extends IValue>,IValue> values = new HashMap<>();
+		values.put(a1, v1);
+		values.put(a2, v2);
+		return new GosplCoordinate(values);
+	}
+	
+	@Test
+	public void testStreamEntities() {
+
+		GosplPopulation o = getGoSPLPopulation();
+		GosplPopulationInDatabase p = new GosplPopulationInDatabase(o);
+		p.setFetchSize(100);
+		
+		// parallel streams split on ids and still see every entity once
+		Set<String> ids = p.stream().parallel().map(e -> e.getEntityId()).collect(Collectors.toSet());
+		assertEquals("all the entities should be streamed", o.size(), ids.size());
+		assertEquals("no entity should be streamed twice", o.size(), p.stream().parallel().count());
+		
+		// rows only decode projected attributes
+		Attribute<? extends IValue> a = o.getPopulationAttributes().iterator().next();
+		String type = p.iterator().next().getEntityType();
+		Iterator<DatabaseRow> itRows = p.rowIterator(type, Collections.singleton(a));
+		DatabaseRow row = itRows.next();
+		ADemoEntity e = p.getEntityForId(row.getEntityId());
+		assertEquals("rows should read the same values", e.getValueForAttribute(a), row.getValueForAttribute(a));
+		assertEquals("rows should be projected", 1, row.toEntity().getAttributes().size());
+		int count = 1;
+		while (itRows.hasNext()) {
+			assertTrue("the row view should be reused", row == itRows.next());
+			count++;
+		}
+		assertEquals("all the rows should be browsed", p.size(), count);
+		
+	}
+	
+	@Test
+	public void testRowsHoldTheirOwnValues() throws GSIllegalRangedData {
+		
+		// every row has its own values, so a row reading the values of its neighbour cannot pass
+		List<String> ranks = new ArrayList<>();
+		for (int i = 0; i < 50; i++)
+			ranks.add(Integer.toString(i));
+		Attribute<IntegerValue> rank = AttributeFactory.getFactory().createAttribute("rank", ranks, IntegerValue.class);
+		List<String> labels = ranks.stream().map(r -> "label"+r).collect(Collectors.toList());
+		Attribute<NominalValue> label = AttributeFactory.getFactory().createAttribute("label", labels, NominalValue.class);
+		
+		GosplPopulation o = new GosplPopulation();
+		for (int i = 0; i < ranks.size(); i++) {
+			Map<Attribute<? extends IValue>,IValue> values = new HashMap<>();
+			values.put(rank, rank.getValueSpace().getValue(ranks.get(i)));
+			values.put(label, label.getValueSpace().getValue(labels.get(i)));
+			o.add(new GosplEntity(values));
+		}
+		
+		GosplPopulationInDatabase p = new GosplPopulationInDatabase(o);
+		p.setFetchSize(7);
+		
+		String type = p.iterator().next().getEntityType();
+		Set<String> seen = new HashSet<>();
+		Iterator<DatabaseRow> itRows = p.rowIterator(type, new HashSet<>(Arrays.asList(rank, label)));
+		while (itRows.hasNext()) {
+			DatabaseRow row = itRows.next();
+			ADemoEntity e = p.getEntityForId(row.getEntityId());
+			assertEquals("rows should read their own values", e.getValueForAttribute(rank), row.getValueForAttribute(rank));
+			assertEquals("rows should read their own values", e.getValueForAttribute(label), row.getValueForAttribute(label));
+			assertEquals("rows should hold consistent values", "label"+row.getValueForAttribute(rank).getStringValue(), 
+					row.getValueForAttribute(label).getStringValue());
+			assertEquals("entities should hold the values of their row", e.getAttributeMap(), row.toEntity().getAttributeMap());
+			seen.add(row.getValueForAttribute(rank).getStringValue());
+		}
+		assertEquals("all the rows should be browsed once", ranks.size(), seen.size());
+		
+	}
+	
 	@Ignore
 	@Test
 	public void testCountEntitiesHavingOneValue() {
@@ -0,0 +1,120 @@
+package gospl.distribution.matrix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import core.metamodel.attribute.Attribute;
+import core.metamodel.attribute.AttributeFactory;
+import core.metamodel.value.IValue;
+import core.util.data.GSEnumDataType;
+import core.util.excpetion.GSIllegalRangedData;
+import gospl.distribution.GosplNDimensionalMatrixFactory;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinateIndexer;
+
+public class TestDenseNDimensionalMatrix {
+
+	private static double delta = 0.000001;
+
+	private Set<Attribute<? extends IValue>> attributes;
+
+	@Before
+	public void setUp() throws GSIllegalRangedData {
+		attributes = new HashSet<>();
+		attributes.add(AttributeFactory.getFactory().createAttribute(
+				"Genre", GSEnumDataType.Nominal, Arrays.asList("Homme", "Femme")));
+		attributes.add(AttributeFactory.getFactory().createAttribute("Age", GSEnumDataType.Range,
+				Arrays.asList("0-5", "6-15", "16-25", "26-40", "40-55", "55 et plus")));
+	}
+
+	private AFullNDimensionalMatrix<Double> fill(AFullNDimensionalMatrix<Double> m) {
+		m.setValue(0.05, "Genre", "Homme", "Age", "0-5");
+		m.setValue(0.10, "Genre", "Homme", "Age", "6-15");
+		m.setValue(0.10, "Genre", "Homme", "Age", "16-25");
+		m.setValue(0.15, "Genre", "Homme", "Age", "26-40");
+		m.setValue(0.05, "Genre", "Femme", "Age", "0-5");
+		m.setValue(0.20, "Genre", "Femme", "Age", "16-25");
+		m.setValue(0.35, "Genre", "Femme", "Age", "55 et plus");
+		return m;
+	}
+
+	@Test
+	public void testIndexerIsBijective() {
+		GosplCoordinateIndexer indexer = new GosplCoordinateIndexer(attributes);
+		for(int i = 0; i < indexer.size(); i++) {
+			ACoordinate<Attribute<? extends IValue>, IValue> coordinate = indexer.getCoordinate(i);
+			assertEquals(i, indexer.getIndex(coordinate));
+		}
+	}
+
+	@Test
+	public void testDenseMatchSparse() {
+		AFullNDimensionalMatrix<Double> sparse = fill(GosplNDimensionalMatrixFactory.getFactory()
+				.createEmptyDistribution(attributes));
+		AFullNDimensionalMatrix<Double> dense = fill(GosplNDimensionalMatrixFactory.getFactory(true)
+				.createEmptyDistribution(attributes));
+
+		assertTrue(dense.isDense());
+		assertFalse(sparse.isDense());
+		assertEquals(sparse.size(), dense.size());
+		assertEquals(sparse.getMatrix().keySet(), dense.getMatrix().keySet());
+		assertEquals(sparse.getVal().getValue(), dense.getVal().getValue(), delta);
+		for(ACoordinate<Attribute<? extends IValue>, IValue> coordinate : sparse.getMatrix().keySet())
+			assertEquals(sparse.getVal(coordinate).getValue(), dense.getVal(coordinate).getValue(), delta);
+		for(IValue aspect : sparse.getAspects())
+			assertEquals(sparse.getVal(aspect, true).getValue(), dense.getVal(aspect, true).getValue(), delta);
+	}
+
+	@Test
+	public void testWriteThroughControls() {
+		AFullNDimensionalMatrix<Double> dense = fill(GosplNDimensionalMatrixFactory.getFactory(true)
+				.createEmptyDistribution(attributes));
+
+		ACoordinate<Attribute<? extends IValue>, IValue> coordinate = GosplCoordinate.createCoordinate(
+				attributes, "Genre", "Homme", "Age", "0-5");
+		dense.getVal(coordinate).add(0.05);
+		assertEquals(0.1, dense.getVal(coordinate).getValue(), delta);
+
+		dense.normalize();
+		assertEquals(1d, dense.getVal().getValue(), delta);
+		assertEquals(0.1/1.05, dense.getVal(coordinate).getValue(), delta);
+
+		// undefined cell stay undefined but compliant
+		ACoordinate<Attribute<? extends IValue>, IValue> undefined = GosplCoordinate.createCoordinate(
+				attributes, "Genre", "Femme", "Age", "6-15");
+		assertFalse(dense.getMatrix().containsKey(undefined));
+		assertEquals(0d, dense.getVal(undefined).getValue(), delta);
+	}
+
+	@Test
+	public void testDenseContingency() {
+		GosplNDimensionalMatrixFactory factory = GosplNDimensionalMatrixFactory.getFactory(true);
+		AFullNDimensionalMatrix<Integer> contingency = factory.createEmtpyContingencies(attributes, true);
+
+		assertTrue(contingency.isDense());
+		assertEquals(attributes.stream().mapToInt(a -> a.getValueSpace().getValues().size())
+				.reduce(1, (i1, i2) -> i1 * i2), contingency.size());
+		assertTrue(contingency.checkAllCoordinatesHaveValues());
+
+		ACoordinate<Attribute<? extends IValue>, IValue> coordinate = GosplCoordinate.createCoordinate(
+				attributes, "Genre", "Femme", "Age", "40-55");
+		contingency.getVal(coordinate).add(3);
+		contingency.getVal(coordinate).add(1);
+		assertEquals(4, contingency.getVal().getValue().intValue());
+
+		AFullNDimensionalMatrix<Integer> clone = factory.cloneContingency(contingency);
+		clone.getVal(coordinate).add(1);
+		assertEquals(4, contingency.getVal(coordinate).getValue().intValue());
+		assertEquals(5, clone.getVal(coordinate).getValue().intValue());
+	}
+
+}
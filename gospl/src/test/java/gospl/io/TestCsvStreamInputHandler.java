@@ -0,0 +1,145 @@
+package gospl.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import core.configuration.dictionary.AttributeDictionary;
+import core.metamodel.attribute.Attribute;
+import core.metamodel.attribute.AttributeFactory;
+import core.metamodel.entity.ADemoEntity;
+import core.metamodel.io.GSSurveyType;
+import core.metamodel.io.IGSSurvey;
+import core.metamodel.value.IValue;
+import core.metamodel.value.categoric.NominalValue;
+import gospl.GosplPopulation;
+import gospl.distribution.GosplInputDataManager;
+import gospl.generator.util.GSUtilGenerator;
+
+public class TestCsvStreamInputHandler {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testTokenizer() throws Exception {
+		File file = folder.newFile("records.csv");
+		Files.write(file.toPath(),
+				"\uFEFFname;comment\r\nbob;\"a;b\"\r\n\"al\"\"ice\";\"two\nlines\"\n;\rlast".getBytes(StandardCharsets.UTF_8));
+
+		try (CsvRecordTokenizer tokenizer = new CsvRecordTokenizer(file.toPath(), StandardCharsets.UTF_8, ';')) {
+			assertTrue(tokenizer.next());
+			assertArrayEquals(new String[] {"name", "comment"}, tokenizer.toArray());
+			assertTrue(tokenizer.next());
+			assertArrayEquals(new String[] {"bob", "a;b"}, tokenizer.toArray());
+			assertTrue(tokenizer.fieldEquals(0, "bob"));
+			assertFalse(tokenizer.fieldEquals(0, "bo"));
+			assertTrue(tokenizer.next());
+			assertArrayEquals(new String[] {"al\"ice", "two\nlines"}, tokenizer.toArray());
+			assertTrue(tokenizer.next());
+			assertArrayEquals(new String[] {"", ""}, tokenizer.toArray());
+			assertTrue(tokenizer.next());
+			assertArrayEquals(new String[] {"last"}, tokenizer.toArray());
+			assertFalse(tokenizer.next());
+			assertEquals(5, tokenizer.getRecordCount());
+		}
+	}
+
+	@Test
+	public void testSampleIsReadInOnePass() throws Exception {
+		GosplPopulation population = new GSUtilGenerator(4, 5).generate(5000);
+
+		List<Attribute<? extends IValue>> attributes = new ArrayList<>(population.getPopulationAttributes());
+
+		// samples are read as a whole by default, with the same size limit rule
+		GosplSurveyFactory factory = new GosplSurveyFactory(0, ';', 2, 0);
+		IGSSurvey buffered = factory.createSummary(folder.newFile("default.csv"), GSSurveyType.Sample, population);
+		assertFalse(buffered instanceof CsvStreamInputHandler);
+		assertEquals(population.size(), GosplInputDataManager.getSample(buffered,
+				new AttributeDictionary(attributes), null, Collections.emptyMap()).size());
+
+		// samples that are not stored in memory are streamed when asked for
+		factory.setStreamedSamples(true);
+		IGSSurvey survey = factory.createSummary(folder.newFile("sample.csv"), GSSurveyType.Sample, population);
+		assertTrue(survey instanceof CsvStreamInputHandler);
+		assertEquals(population.size() + 1, survey.getLastRowIndex());
+
+		GosplPopulation sample = GosplInputDataManager.getSample(survey,
+				new AttributeDictionary(attributes), null, Collections.emptyMap());
+		assertEquals(population.size(), sample.size());
+		assertEquals(profiles(population, attributes), profiles(sample, attributes));
+
+		// filter and limit
+		Attribute<? extends IValue> attribute = attributes.get(0);
+		String expected = population.iterator().next().getValueForAttribute(attribute).getStringValue();
+		GosplPopulation filtered = GosplInputDataManager.getSample(survey, new AttributeDictionary(attributes),
+				10, Collections.singletonMap(attribute.getAttributeName(), expected));
+		assertEquals(Math.min(10, population.stream()
+				.filter(e -> e.getValueForAttribute(attribute).getStringValue().equals(expected)).count()),
+				filtered.size());
+		assertTrue(filtered.stream()
+				.allMatch(e -> e.getValueForAttribute(attribute).getStringValue().equals(expected)));
+	}
+
+	@Test
+	public void testAmbiguousHeaderIsResolvedFromData() throws Exception {
+		Attribute<NominalValue> kind = AttributeFactory.getFactory()
+				.createAttribute("kind", Arrays.asList("small", "big"), NominalValue.class);
+		Attribute<NominalValue> colour = AttributeFactory.getFactory()
+				.createAttribute("colour", Arrays.asList("red", "blue"), NominalValue.class);
+		AttributeDictionary dictionary = new AttributeDictionary(Arrays.asList(kind, colour));
+
+		// both header rows name an attribute: the first label that is a value of one of them decides
+		File file = folder.newFile("ambiguous.csv");
+		Files.write(file.toPath(), "kind;id\ncolour;id\nnone;1\nblue;2\nsmall;3\n".getBytes(StandardCharsets.UTF_8));
+		GosplSurveyFactory factory = new GosplSurveyFactory(0, ';', 2, 0);
+		factory.setStreamedSamples(true);
+		IGSSurvey survey = factory.getSurvey(file, false, 0, ';', 2, 0, GSSurveyType.Sample);
+		assertTrue(survey instanceof CsvStreamInputHandler);
+		assertEquals(Collections.singletonMap(0, colour), survey.getColumnSample(dictionary));
+		assertEquals(4, survey.getLastRowIndex());
+
+		File unresolved = folder.newFile("unresolved.csv");
+		Files.write(unresolved.toPath(), "kind;id\ncolour;id\nnone;1\n".getBytes(StandardCharsets.UTF_8));
+		IGSSurvey unresolvedSurvey = factory.getSurvey(unresolved, false, 0, ';', 2, 0, GSSurveyType.Sample);
+		try {
+			unresolvedSurvey.getColumnSample(dictionary);
+			fail("Column cannot be bound to an attribute");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("unresolved.csv"));
+		}
+	}
+
+	/*
+	 * Number of entities per profile of values
+	 */
+	private static Map<String, Integer> profiles(GosplPopulation population,
+			List<Attribute<? extends IValue>> attributes) {
+		Map<String, Integer> profiles = new HashMap<>();
+		for (ADemoEntity e : population) {
+			String profile = attributes.stream()
+					.map(a -> e.getValueForAttribute(a.getAttributeName()).getStringValue())
+					.collect(Collectors.joining("|"));
+			profiles.merge(profile, 1, Integer::sum);
+		}
+		return profiles;
+	}
+
+}
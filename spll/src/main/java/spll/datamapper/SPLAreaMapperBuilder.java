@@ -36,7 +36,9 @@ import spll.datamapper.normalizer.SPLUniformNormalizer;
 import spll.datamapper.variable.SPLVariable;
 import spll.entity.SpllFeature;
 import spll.entity.SpllPixel;
+import spll.entity.iterator.GSPixelCursor;
 import spll.io.SPLRasterFile;
+import spll.io.SPLSpatialIndex;
 import spll.io.SPLVectorFile;
 
 /**
@@ -159,13 +161,15 @@ public class SPLAreaMapperBuilder extends ASPLMapperBuilder<SPLVariable, Double>
 		Collection<? extends AGeoEntity<? extends IValue>> mainGeoData = super.mainFile.getGeoEntity();
 		ancillaries.remove(outputFormat);
 
-		// Iterate over pixels to apply regression coefficient
-		IntStream.range(0, columns).parallel().forEach(
-				x -> IntStream.range(0, rows).forEach(
-						y -> pixels[x][y] = (float) this.computePixelWithinOutput(x, y, outputFormat,  ancillaries,
-								mainGeoData, regCoef, pixCorrection, gspu, intersect)
-						)
-				);
+		SPLSpatialIndex<AGeoEntity<? extends IValue>> mainGeoIndex = new SPLSpatialIndex<>(mainGeoData);
+
+		// Iterate over pixels, tile by tile, to apply regression coefficient
+		IntStream.range(0, outputFormat.getTileCount()).parallel().forEach(tile -> {
+			GSPixelCursor cursor = outputFormat.getPixelCursor(tile, tile+1);
+			while(cursor.next())
+				pixels[cursor.getColumn()][cursor.getRow()] = (float) this.computePixelWithinOutput(cursor, outputFormat, 
+						ancillaries, mainGeoData, mainGeoIndex, regCoef, pixCorrection, gspu, intersect);
+		});
 		
 		// debug purpose
 		pixelRendered = 0;
@@ -194,9 +198,10 @@ public class SPLAreaMapperBuilder extends ASPLMapperBuilder<SPLVariable, Double>
 	// INNER UTILITY PIXEL PROCESS COUNT
 	private static int pixelRendered = 0;
 	
-	private double computePixelWithinOutput(int x, int y, SPLRasterFile geotiff, 
+	private double computePixelWithinOutput(GSPixelCursor cursor, SPLRasterFile geotiff, 
 			Collection<IGSGeofile<? extends AGeoEntity<? extends IValue>, ? extends IValue>> ancillaries,
 			Collection<? extends AGeoEntity<? extends IValue>> mainFeatures, 
+			SPLSpatialIndex<AGeoEntity<? extends IValue>> mainFeatureIndex,
 					Map<SPLVariable, Double> regCoef, Map<AGeoEntity<? extends IValue>, Double> pixResidual,
 			GSPerformanceUtil gspu, boolean intersect) {
 		// Output progression
@@ -204,22 +209,15 @@ public class SPLAreaMapperBuilder extends ASPLMapperBuilder<SPLVariable, Double>
 		if((++pixelRendered+1) % prop10for100 == 0)
 			gspu.sysoStempPerformance((pixelRendered+1) / (prop10for100 * 10.0), this);
 
-		// Get the current pixel value
-		SpllPixel refPixel = null;
-		try {
-			refPixel = geotiff.getPixel(x, y);
-		} catch (TransformException e1) {
-			// TODO Auto-generated catch block
-			e1.printStackTrace();
-		}
-		
 		// Get the related feature in main space features
-		Point pixelLocation = refPixel.getLocation();
-		Optional<? extends AGeoEntity<? extends IValue>> opFeature = mainFeatures.stream()
-				.filter(ft -> pixelLocation.within(ft.getGeometry())).findFirst();
+		Point pixelLocation = cursor.getLocation();
+		Optional<? extends AGeoEntity<? extends IValue>> opFeature = mainFeatureIndex
+				.query(pixelLocation, (pixel, ft) -> pixel.within(ft.getGeometry())).stream().findFirst();
 
+		// Only pixels which are within a main feature are built as entities
 		if(!opFeature.isPresent())
 			return SPLRasterFile.DEF_NODATA.floatValue();
+		SpllPixel refPixel = cursor.toPixel();
 		if(intersect)
 			return computePixelIntersectOutput(refPixel, geotiff, ancillaries, mainFeatures, regCoef, pixResidual);
 		return computePixelWithin(refPixel, geotiff, ancillaries, opFeature.get(), regCoef, pixResidual.get(opFeature.get()));
@@ -0,0 +1,287 @@
+package spll.entity.iterator;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridEnvelope2D;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.geometry.Envelope2D;
+import org.opengis.metadata.spatial.PixelOrientation;
+import org.opengis.referencing.operation.MathTransform2D;
+import org.opengis.referencing.operation.TransformException;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+import spll.entity.GeoEntityFactory;
+import spll.entity.SpllPixel;
+
+/**
+ * Cursor over the pixels of a raster coverage, which does not allocate while moving from pixel to pixel:
+ * band values are read tile by tile into primitive {@code double[]} buffers, which hold any sample type
+ * without loss of precision, and pixel geometry is only computed on demand from grid indexes.
+ * <p>
+ * Pixels are visited tile by tile, row by row within a tile. Use {@link #toPixel()} to get a proper
+ * {@link SpllPixel} entity for the current pixel.
+ * <p>
+ * WARNING: not thread safe, use one cursor per thread (e.g. one per range of tiles)
+ *
+ * @see GSPixelIterator
+ */
+public class GSPixelCursor {
+
+	private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+	private final GridCoverage2D coverage;
+	private final RenderedImage image;
+	private final Rectangle gridRange;
+	private final int nbBands;
+
+	private final AffineTransform gridToWorld;
+	private final double[] corners = new double[4];
+	private int cornersIndex = -1;
+
+	private final int lastTile;
+	private int tile;
+
+	private final double[][] buffers;
+	private int tileMinX, tileMinY, tileWidth, tileHeight;
+	private int index;
+
+	private GeoEntityFactory gef;
+
+	/**
+	 * Cursor over all pixels of the coverage
+	 * @param nbBands
+	 * @param coverage
+	 */
+	public GSPixelCursor(int nbBands, GridCoverage2D coverage) {
+		this(nbBands, coverage, 0, getTileCount(coverage));
+	}
+
+	/**
+	 * Cursor over pixels of a range of tiles of the coverage
+	 *
+	 * @param nbBands
+	 * @param coverage
+	 * @param fromTile : index of first tile (inclusive)
+	 * @param toTile : index of last tile (exclusive)
+	 */
+	public GSPixelCursor(int nbBands, GridCoverage2D coverage, int fromTile, int toTile) {
+		this.coverage = coverage;
+		this.image = coverage.getRenderedImage();
+		this.gridRange = coverage.getGridGeometry().getGridRange2D().getBounds();
+		this.nbBands = Math.min(nbBands, image.getSampleModel().getNumBands());
+		this.buffers = new double[this.nbBands][image.getTileWidth() * image.getTileHeight()];
+
+		MathTransform2D transform = coverage.getGridGeometry().getGridToCRS2D(PixelOrientation.UPPER_LEFT);
+		this.gridToWorld = transform instanceof AffineTransform ? (AffineTransform) transform : null;
+
+		this.tile = fromTile - 1;
+		this.lastTile = Math.min(toTile, getTileCount(coverage));
+		this.index = -1;
+	}
+
+	/**
+	 * The number of tiles of the coverage
+	 * @param coverage
+	 * @return
+	 */
+	public static int getTileCount(GridCoverage2D coverage) {
+		RenderedImage image = coverage.getRenderedImage();
+		return image.getNumXTiles() * image.getNumYTiles();
+	}
+
+	// ---------------------------------------------------- //
+
+	/**
+	 * Moves to the next pixel
+	 * @return false if there is no pixel left
+	 */
+	public boolean next() {
+		while(index + 1 >= tileWidth * tileHeight) {
+			if(++tile >= lastTile)
+				return false;
+			this.loadTile();
+		}
+		index++;
+		return true;
+	}
+
+	/**
+	 * X coordinate of current pixel in the grid of the coverage
+	 * @return
+	 */
+	public int getGridX() {
+		return tileMinX + index % tileWidth;
+	}
+
+	/**
+	 * Y coordinate of current pixel in the grid of the coverage
+	 * @return
+	 */
+	public int getGridY() {
+		return tileMinY + index / tileWidth;
+	}
+
+	/**
+	 * 0 based column of current pixel, i.e. relative to the origin of the grid
+	 * @return
+	 */
+	public int getColumn() {
+		return getGridX() - gridRange.x;
+	}
+
+	/**
+	 * 0 based row of current pixel, i.e. relative to the origin of the grid
+	 * @return
+	 */
+	public int getRow() {
+		return getGridY() - gridRange.y;
+	}
+
+	/**
+	 * Value of current pixel for the given band
+	 * @param band
+	 * @return
+	 */
+	public double getValue(int band) {
+		this.checkPosition();
+		return buffers[band][index];
+	}
+
+	/**
+	 * Number of bands read by this cursor
+	 * @return
+	 */
+	public int getBandNumber() {
+		return nbBands;
+	}
+
+	// ---------------------- Geometry ---------------------- //
+
+	public double getMinX() {
+		this.computeCorners();
+		return Math.min(corners[0], corners[2]);
+	}
+
+	public double getMaxX() {
+		this.computeCorners();
+		return Math.max(corners[0], corners[2]);
+	}
+
+	public double getMinY() {
+		this.computeCorners();
+		return Math.min(corners[1], corners[3]);
+	}
+
+	public double getMaxY() {
+		this.computeCorners();
+		return Math.max(corners[1], corners[3]);
+	}
+
+	public double getCenterX() {
+		this.computeCorners();
+		return (corners[0] + corners[2]) / 2;
+	}
+
+	public double getCenterY() {
+		this.computeCorners();
+		return (corners[1] + corners[3]) / 2;
+	}
+
+	/**
+	 * The center of current pixel
+	 * @return
+	 */
+	public Point getLocation() {
+		return GEOMETRY_FACTORY.createPoint(new Coordinate(getCenterX(), getCenterY()));
+	}
+
+	/**
+	 * The envelope of current pixel in world coordinates
+	 * @return
+	 */
+	public Envelope2D getEnvelope() {
+		if(gridToWorld == null)
+			return this.transformEnvelope();
+		return new Envelope2D(coverage.getCoordinateReferenceSystem2D(),
+				getMinX(), getMinY(), getMaxX() - getMinX(), getMaxY() - getMinY());
+	}
+
+	/**
+	 * Creates the pixel entity of current position
+	 * @return
+	 */
+	public SpllPixel toPixel() {
+		this.checkPosition();
+		if(gef == null)
+			gef = new GeoEntityFactory(new HashSet<>());
+		Double[] values = new Double[nbBands];
+		for(int b = 0; b < nbBands; b++)
+			values[b] = buffers[b][index];
+		return gef.createGeoEntity(values, getEnvelope(), getGridX(), getGridY());
+	}
+
+	// ---------------------------------------------------- //
+
+	/*
+	 * Reads every band of current tile, restricted to the grid range, into buffers
+	 */
+	private void loadTile() {
+		int tileX = image.getMinTileX() + tile % image.getNumXTiles();
+		int tileY = image.getMinTileY() + tile / image.getNumXTiles();
+		Raster raster = image.getTile(tileX, tileY);
+		Rectangle area = raster.getBounds().intersection(gridRange);
+		this.index = -1;
+		this.cornersIndex = -1;
+		if(area.isEmpty()) {
+			tileWidth = tileHeight = 0;
+			return;
+		}
+		tileMinX = area.x;
+		tileMinY = area.y;
+		tileWidth = area.width;
+		tileHeight = area.height;
+		for(int b = 0; b < nbBands; b++)
+			raster.getSamples(tileMinX, tileMinY, tileWidth, tileHeight, b, buffers[b]);
+	}
+
+	private void computeCorners() {
+		this.checkPosition();
+		if(cornersIndex == index)
+			return;
+		if(gridToWorld == null) {
+			Envelope2D env = this.transformEnvelope();
+			corners[0] = env.getMinX(); corners[1] = env.getMinY();
+			corners[2] = env.getMaxX(); corners[3] = env.getMaxY();
+		} else {
+			int x = getGridX(), y = getGridY();
+			corners[0] = x; corners[1] = y;
+			corners[2] = x + 1; corners[3] = y + 1;
+			gridToWorld.transform(corners, 0, corners, 0, 2);
+		}
+		cornersIndex = index;
+	}
+
+	private Envelope2D transformEnvelope() {
+		GridGeometry2D grid = coverage.getGridGeometry();
+		try {
+			return grid.gridToWorld(new GridEnvelope2D(getGridX(), getGridY(), 1, 1));
+		} catch (TransformException e) {
+			throw new IllegalStateException("Cannot compute envelope of pixel ["+getGridX()+";"+getGridY()+"]", e);
+		}
+	}
+
+	private void checkPosition() {
+		if(index < 0 || tile >= lastTile)
+			throw new NoSuchElementException("Cursor is not on a pixel, use next() to move to one");
+	}
+
+}
@@ -42,6 +42,7 @@ import core.metamodel.value.IValue;
 import core.metamodel.value.numeric.ContinuousValue;
 import spll.entity.GeoEntityFactory;
 import spll.entity.SpllPixel;
+import spll.entity.iterator.GSPixelCursor;
 import spll.entity.iterator.GSPixelIterator;
 import spll.io.SPLGeofileBuilder.SPLGisFileExtension;
 import spll.io.exception.InvalidGeoFormatException;
@@ -181,8 +182,8 @@ public class SPLRasterFile implements IGSGeofile<SpllPixel, ContinuousValue> {
 	/**
 	 * {@inheritDoc}
 	 * 
-	 * Collection of geo data could lead to overload memory. Iterators should be use
-	 * to save memory 
+	 * Collection of geo data could lead to overload memory. Iterators or rather {@link #getPixelCursor()} 
+	 * should be use to save memory 
 	 * 
 	 */
 	@Override
@@ -252,6 +253,37 @@ public class SPLRasterFile implements IGSGeofile<SpllPixel, ContinuousValue> {
 	
 	// ------------------- specific geotiff accessors ------------------- //
 	
+	/**
+	 * Cursor over every pixel of the raster, that reads band values tile by tile without 
+	 * creating pixel entities
+	 * 
+	 * @return
+	 */
+	public GSPixelCursor getPixelCursor() {
+		return new GSPixelCursor(store.getGridCoverageCount(), coverage);
+	}
+	
+	/**
+	 * Cursor over pixels of a range of tiles of the raster, e.g. to process tiles in parallel
+	 * 
+	 * @see #getTileCount()
+	 * 
+	 * @param fromTile : inclusive
+	 * @param toTile : exclusive
+	 * @return
+	 */
+	public GSPixelCursor getPixelCursor(int fromTile, int toTile) {
+		return new GSPixelCursor(store.getGridCoverageCount(), coverage, fromTile, toTile);
+	}
+	
+	/**
+	 * The number of tiles raster data are stored in
+	 * @return
+	 */
+	public int getTileCount() {
+		return GSPixelCursor.getTileCount(coverage);
+	}
+	
 	public AbstractGridCoverage2DReader getStore() {
 		return store;
 	}
@@ -304,16 +336,10 @@ public class SPLRasterFile implements IGSGeofile<SpllPixel, ContinuousValue> {
 		if(coverage.getNumSampleDimensions() < i)
 			throw new IllegalArgumentException("This raster data file does not have more than "
 					+ coverage.getNumSampleDimensions() + " data bands while ask for band n° "+i);
-		String bandName = GeoEntityFactory.ATTRIBUTE_PIXEL_BAND+i;
 		float[][] matrix = new float[getColumnNumber()][getRowNumber()];
-		Iterator<SpllPixel> pixIt = this.getGeoEntityIterator(); 
-		while(pixIt.hasNext()) {
-			SpllPixel pix = pixIt.next();
-			matrix[pix.getGridX()][pix.getGridY()] = pix.getAttributes().stream()
-					.filter(attribute -> attribute.getAttributeName().equals(bandName))
-					.map(attribute -> pix.getNumericValueForAttribute(attribute))
-					.findFirst().get().floatValue();
-		}
+		GSPixelCursor cursor = this.getPixelCursor();
+		while(cursor.next())
+			matrix[cursor.getGridX()][cursor.getGridY()] = (float) cursor.getValue(i);
 		return matrix;
 	}
 
@@ -0,0 +1,88 @@
+package spll.io;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+import core.metamodel.entity.AGeoEntity;
+import core.metamodel.io.IGSGeofile;
+import core.metamodel.value.IValue;
+
+/**
+ * In memory spatial index over the entities of a {@link IGSGeofile}: entities are stored by envelope in
+ * a JTS {@link STRtree}, built once, so geometric queries only test entities whose envelope
+ * intersects the envelope of the query geometry. Exact tests are made against a prepared
+ * version of the query geometry.
+ * <p>
+ * WARNING: the index does not follow changes of the geometries of entities
+ *
+ * @param <E>
+ */
+public class SPLSpatialIndex<E extends AGeoEntity<? extends IValue>> {
+
+	private final STRtree tree;
+	private final int size;
+
+	/**
+	 * Builds the index of the given entities
+	 * @param entities
+	 */
+	public SPLSpatialIndex(Collection<? extends E> entities) {
+		this.tree = new STRtree();
+		for (E entity : entities)
+			tree.insert(entity.getGeometry().getEnvelopeInternal(), entity);
+		tree.build();
+		this.size = entities.size();
+	}
+
+	/**
+	 * Entities whose geometry is within the given geometry
+	 * @param geom
+	 * @return
+	 */
+	public List<E> getEntityWithin(Geometry geom) {
+		return query(geom, (pg, entity) -> pg.contains(entity.getGeometry()));
+	}
+
+	/**
+	 * Entities whose geometry intersects the given geometry
+	 * @param geom
+	 * @return
+	 */
+	public List<E> getEntityIntersect(Geometry geom) {
+		return query(geom, (pg, entity) -> pg.intersects(entity.getGeometry()));
+	}
+
+	/**
+	 * Entities whose envelope intersects the envelope of the given geometry and
+	 * which fit the predicate, tested against the prepared geometry
+	 * @param geom
+	 * @param predicate
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public List<E> query(Geometry geom, BiPredicate<PreparedGeometry, ? super E> predicate) {
+		PreparedGeometry pg = PreparedGeometryFactory.prepare(geom);
+		List<E> result = new ArrayList<>();
+		tree.query(geom.getEnvelopeInternal(), item -> {
+			if (predicate.test(pg, (E) item))
+				result.add((E) item);
+		});
+		return result;
+	}
+
+	/**
+	 * The number of indexed entities
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+}
@@ -77,6 +77,11 @@ public class SPLVectorFile implements IGSGeofile<SpllFeature, IValue> {
 	 */
 	private Map<Feature, SpllFeature> feature2SPLFeature = new HashMap<>(10000);
 	
+	/**
+	 * Spatial index of features, built on first geometric query
+	 */
+	private SPLSpatialIndex<SpllFeature> spatialIndex = null;
+	
 	
 	/**
 	 * In this constructor {@link SpllFeature} and {@code dataStore} provide the side of the
@@ -263,11 +268,16 @@ public class SPLVectorFile implements IGSGeofile<SpllFeature, IValue> {
 	}
 
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Features are queried through the spatial index of this file
+	 * 
+	 * @see #getSpatialIndex()
+	 */
 	@Override
 	public Collection<SpllFeature> getGeoEntityWithin(Geometry geom) {
-		Set<SpllFeature> collection = new HashSet<>(); 
-		getGeoEntityIteratorWithin(geom).forEachRemaining(collection::add);
-		return collection;
+		return getSpatialIndex().getEntityWithin(geom);
 	}
 
 	@Override
@@ -277,11 +287,27 @@ public class SPLVectorFile implements IGSGeofile<SpllFeature, IValue> {
 		return new GSFeatureIterator(dataStore, filter, feature2SPLFeature);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Features are queried through the spatial index of this file
+	 * 
+	 * @see #getSpatialIndex()
+	 */
 	@Override
 	public Collection<SpllFeature> getGeoEntityIntersect(Geometry geom) {
-		Set<SpllFeature> collection = new HashSet<>(); 
-		getGeoEntityIteratorIntersect(geom).forEachRemaining(collection::add);
-		return collection;
+		return getSpatialIndex().getEntityIntersect(geom);
+	}
+	
+	/**
+	 * The spatial index of the features of this file, built once on first call
+	 * 
+	 * @return
+	 */
+	public synchronized SPLSpatialIndex<SpllFeature> getSpatialIndex() {
+		if (spatialIndex == null)
+			spatialIndex = new SPLSpatialIndex<>(features);
+		return spatialIndex;
 	}
 
 	public DataStore getStore() {
@@ -14,6 +14,9 @@ import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -49,14 +52,17 @@ import spll.datamapper.variable.ISPLVariable;
 import spll.entity.GeoEntityFactory;
 import spll.entity.SpllFeature;
 import spll.entity.SpllPixel;
+import spll.entity.iterator.GSPixelCursor;
 import spll.io.SPLGeofileBuilder;
 import spll.io.SPLGeofileBuilder.SPLGisFileExtension;
 import spll.io.SPLRasterFile;
 import spll.io.SPLVectorFile;
 import spll.io.exception.InvalidGeoFormatException;
+import spll.localizer.constraint.ASpatialConstraint;
 import spll.localizer.constraint.ISpatialConstraint;
 import spll.localizer.constraint.SpatialConstraintLocalization;
 import spll.localizer.distribution.ISpatialDistribution;
+import spll.localizer.distribution.KernelSpatialDistribution;
 import spll.localizer.distribution.SpatialDistributionFactory;
 import spll.localizer.linker.ISPLinker;
 import spll.localizer.linker.SPLinker;
@@ -89,6 +95,8 @@ public class SPLocalizer implements ISPLocalizer {
 	protected String keyAttMatch; //name of the attribute that is used to store the id of the referenced area in the match file
 
 	protected Random rand;
+	
+	protected int parallelism = 1; //number of areas localized at the same time
 
 	/**
 	 * Private constructor to setup random engine
@@ -99,6 +107,28 @@ public class SPLocalizer implements ISPLocalizer {
 		this.linker = new SPLinker<>(SpatialDistributionFactory.getInstance().getUniformDistribution());
 	}
 
+	/*
+	 * Localizer of one area in parallel mode: shares population, geofiles and linker constraints - which
+	 * synchronize their relaxation - with the given localizer, but has its own random engine, 
+	 * localization constraint and distribution
+	 */
+	private SPLocalizer(SPLocalizer localizer, Random rand) {
+		this.gspu = localizer.gspu;
+		this.population = localizer.population;
+		this.match = localizer.match;
+		this.map = localizer.map;
+		this.keyAttMap = localizer.keyAttMap;
+		this.keyAttPop = localizer.keyAttPop;
+		this.keyAttMatch = localizer.keyAttMatch;
+		this.rand = rand;
+		this.pointInLocalizer = localizer.pointInLocalizer instanceof RandomPointInLocalizer ? 
+				new RandomPointInLocalizer(rand) : localizer.pointInLocalizer;
+		this.localizationConstraint = new SpatialConstraintLocalization(localizer.localizationConstraint);
+		this.linker = new SPLinker<>(localizer.linker.getDistribution().clone(), 
+				localizer.linker.getConstraintsReleaseRule());
+		this.linker.setConstraints(localizer.linker.getConstraints());
+	}
+
 	/**
 	 * Build a localizer based on a geographically grounded population
 	 *  
@@ -136,20 +166,17 @@ public class SPLocalizer implements ISPLocalizer {
 			}
 			//case where the referenced file is defined
 			else {
-				for (AGeoEntity<? extends IValue> globalfeature : match.getGeoEntity()) {
-					String valKeyAtt = globalfeature.getValueForAttribute(keyAttMatch).getStringValue();
-					
-					List<SpllEntity> entities = outputPopulation.stream()
-							.filter(s -> s.getValueForAttribute(keyAttPop).getStringValue().equals(valKeyAtt))
-							.collect(Collectors.toList());
-					
-					if (keyAttMap == null || map == null) {
-						localizationInNest(entities, globalfeature.getProxyGeometry());
-					}
-					else {
-						localizationInNestWithNumbers(entities, globalfeature.getProxyGeometry());
+				// partition entities by area once
+				Map<String, List<SpllEntity>> area2entities = outputPopulation.stream()
+						.collect(Collectors.groupingBy(s -> s.getValueForAttribute(keyAttPop).getStringValue()));
+				List<AGeoEntity<? extends IValue>> areas = new ArrayList<>(match.getGeoEntity());
+				
+				if (parallelism > 1) {
+					localizationInAreas(areas, area2entities);
+				} else {
+					for (AGeoEntity<? extends IValue> globalfeature : areas) {
+						localizationInArea(globalfeature, area2entities);
 					}
-					
 				}
 			}
 			outputPopulation.removeIf(a -> a.getLocation() == null); 
@@ -159,11 +186,38 @@ public class SPLocalizer implements ISPLocalizer {
 		return outputPopulation;
 	}
 
+	/**
+	 * Set the number of areas of the matcher that are localized at the same time: entities of an area 
+	 * are bound to their nests by a dedicated task, which draws from its own random stream 
+	 * (see {@link GenstarRandom#getStream(long)}) and has its own localization constraint and distribution.
+	 * <p>
+	 * WARNING: the constraints of the linker are shared between tasks, so that nest capacities hold across areas:
+	 * constraints update their state atomically and synchronize relaxation (see {@link ASpatialConstraint}), 
+	 * but then results depend on thread scheduling as soon as the linker has constraints. Without any,
+	 * results are the same whatever the scheduling
+	 * 
+	 * @see #setMatcher(IGSGeofile, String, String)
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Parallelism should be at least 1, but was "+parallelism);
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * When the linker draws from a {@link KernelSpatialDistribution}, linked places are set once as its
+	 * candidates so that the places left by constraints are searched through its grid
+	 */
 	@Override
 	public SpllPopulation linkPopulation(
 			SpllPopulation population, ISPLinker<SpllEntity> linker,
 			Collection<? extends AGeoEntity<? extends IValue>> linkedPlaces, 
 					Attribute<? extends IValue> attribute) {
+		if (linker.getDistribution() instanceof KernelSpatialDistribution)
+			linker.getDistribution().setCandidate(new ArrayList<>(linkedPlaces));
 		population.forEach(entity -> entity
 				.addLinkedPlaces(
 						attribute.getAttributeName(), 
@@ -379,8 +433,7 @@ public class SPLocalizer implements ISPLocalizer {
 	private void localizationInNest(Collection<SpllEntity> entities, Geometry spatialBounds) throws IOException, TransformException {
 
 		localizationConstraint.setBounds(spatialBounds);
-		List<AGeoEntity<? extends IValue>> possibleNests = localizationConstraint.getCandidates(
-				localizationConstraint.getReferenceFile().getGeoEntity().stream().collect(Collectors.toList())); 
+		List<AGeoEntity<? extends IValue>> possibleNests = getNestsInBounds(); 
 		
 		if (linker.getConstraints().isEmpty()) {
 			
@@ -396,9 +449,11 @@ public class SPLocalizer implements ISPLocalizer {
 			for (ISpatialConstraint cr : otherConstraints) {
 				while (!cr.isConstraintLimitReach()) {
 					
-					List<AGeoEntity<? extends IValue>> candidates = new ArrayList<>(localizationConstraint.getReferenceFile().getGeoEntity());
+					// localization constraint is a filter like others: apply it first through the spatial index
+					List<AGeoEntity<? extends IValue>> candidates = getNestsInBounds();
 					for (ISpatialConstraint constraint : otherConstraints) {
-						candidates = constraint.getCandidates(candidates);
+						if (constraint != localizationConstraint)
+							candidates = constraint.getCandidates(candidates);
 					}
 					
 					remainingEntities = localizationInNestOp(remainingEntities, candidates, null);
@@ -411,6 +466,16 @@ public class SPLocalizer implements ISPLocalizer {
 		}
 	}
 
+	/*
+	 * Nests of the reference file that fit the localization constraint: when it has bounds, 
+	 * they are retrieved from the spatial index of the reference file instead of filtering all nests
+	 */
+	private List<AGeoEntity<? extends IValue>> getNestsInBounds() throws IOException {
+		if (localizationConstraint.getBounds() == null)
+			return new ArrayList<>(localizationConstraint.getReferenceFile().getGeoEntity());
+		return localizationConstraint.getCandidates(null);
+	}
+
 	private List<SpllEntity> localizationInNestOp(Collection<SpllEntity> entities, 
 			List<AGeoEntity<? extends IValue>> possibleNests, Long val){
 		Collection<SpllEntity> chosenEntities = null;
@@ -426,28 +491,83 @@ public class SPLocalizer implements ISPLocalizer {
 		}else {
 			chosenEntities = entities;
 		}
-		for (SpllEntity entity : chosenEntities) {
-			if (possibleNests.isEmpty()) {
-				break;
-			}
-			Optional<AGeoEntity<? extends IValue>> oNest = linker.getCandidate(entity, possibleNests);
-			boolean removeObject = false;
-			if(oNest.isPresent()) {
-				AGeoEntity<? extends IValue> nest = oNest.get();
+		// constraints filter nests once: then nests that cannot receive more entities are removed 
+		// from the distribution and the others get their probability updated, both in O(log n).
+		// Candidates are set on a copy, so the distribution of the linker is left as given
+		Collection<AGeoEntity<? extends IValue>> candidates = linker.filter(possibleNests);
+		if (!candidates.isEmpty()) {
+			ISpatialDistribution<ADemoEntity> distribution = linker.getDistribution().clone();
+			distribution.setCandidate(new ArrayList<>(candidates));
+			for (SpllEntity entity : chosenEntities) {
+				AGeoEntity<? extends IValue> nest = distribution.getCandidate(entity);
+				if (nest == null) {
+					break;
+				}
+				boolean removeObject = false;
 				for (ISpatialConstraint constraint: linker.getConstraints()) {
-					removeObject = removeObject || constraint.updateConstraint(nest);
+					removeObject = constraint.updateConstraint(nest) || removeObject;
 				}
-				if (removeObject) possibleNests.remove(0);
+				if (removeObject) distribution.removeCandidate(nest);
+				else distribution.updateCandidate(nest);
+				// distributions that depend on localized entities withdraw the former location of moved ones
+				if (entity.getLocation() != null)
+					distribution.removeEntity(entity);
 				entity.setNest(nest);
 				entity.setLocation(pointInLocalizer.pointIn(nest.getProxyGeometry()));
+				distribution.addEntity(entity);
 			}
-
-
 		}
 		return entities.stream().filter(a -> a.getLocation() == null)
 				.collect(Collectors.toList());
 	}
 
+	/*
+	 * Localize the entities bound to one area of the matcher
+	 */
+	private void localizationInArea(AGeoEntity<? extends IValue> globalfeature, 
+			Map<String, List<SpllEntity>> area2entities) throws IOException, TransformException {
+		String valKeyAtt = globalfeature.getValueForAttribute(keyAttMatch).getStringValue();
+		List<SpllEntity> entities = area2entities.getOrDefault(valKeyAtt, Collections.emptyList());
+		
+		if (keyAttMap == null || map == null) {
+			localizationInNest(entities, globalfeature.getProxyGeometry());
+		}
+		else {
+			localizationInNestWithNumbers(entities, globalfeature.getProxyGeometry());
+		}
+	}
+	
+	/*
+	 * Localize areas concurrently: the task of the i-th area draws from the i-th random stream, 
+	 * hence only shared linker constraints make it depend on thread scheduling
+	 */
+	private void localizationInAreas(List<AGeoEntity<? extends IValue>> areas, 
+			Map<String, List<SpllEntity>> area2entities) {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, areas.size())));
+		try {
+			List<Future<?>> results = new ArrayList<>(areas.size());
+			for (int i = 0; i < areas.size(); i++) {
+				final AGeoEntity<? extends IValue> area = areas.get(i);
+				final Random stream = GenstarRandom.getStream(i);
+				results.add(executor.submit(() -> {
+					GenstarRandom.setThreadInstance(stream);
+					try {
+						new SPLocalizer(this, stream).localizationInArea(area, area2entities);
+					} finally {
+						GenstarRandom.setThreadInstance(null);
+					}
+					return null;
+				}));
+			}
+			for (Future<?> result : results)
+				result.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("Parallel localization has failed", e);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	// For each area concerned of the entityNbAreas shapefile  (all if not bounds is defined, only the one in the bounds if the one is not null),
 	//define the number of entities from the entities list to locate inside, then try to set a nest to this randomly chosen number of entities.
 	// NOTE: if no nest is located inside the area, not entities will be located inside.
@@ -457,14 +577,14 @@ public class SPLocalizer implements ISPLocalizer {
 		List<ISpatialConstraint> otherConstraints = new ArrayList<>(linker.getConstraints());
 	
 	
-		List<? extends AGeoEntity<? extends IValue>> areas = new ArrayList<>(spatialBounds == null ? 
-				map.getGeoEntity() : map.getGeoEntityWithin(spatialBounds));
+		List<? extends AGeoEntity<? extends IValue>> areas = spatialBounds == null ? this.getMapAreas() 
+				: new ArrayList<>(map.getGeoEntityWithin(spatialBounds));
 		Collections.shuffle(areas, GenstarRandom.getInstance());
 			
-				Map<String,Double> vals = map.getGeoEntity().stream()
-						.collect(Collectors.toMap(AGeoEntity::getGenstarName, e -> e.getNumericValueForAttribute(keyAttMap).doubleValue()));
 				Map<String,Double> vals2 = areas.stream()
 						.collect(Collectors.toMap(AGeoEntity::getGenstarName, e -> e.getNumericValueForAttribute(keyAttMap).doubleValue()));
+				Map<String,Double> vals = spatialBounds == null ? new HashMap<>(vals2) : map.getGeoEntity().stream()
+						.collect(Collectors.toMap(AGeoEntity::getGenstarName, e -> e.getNumericValueForAttribute(keyAttMap).doubleValue()));
 
 				if (map.getGeoGSFileType().equals(GeoGSFileType.RASTER)) {
 					double unknowVal = ((SPLRasterFile) map).getNoDataValue();
@@ -510,6 +630,31 @@ public class SPLocalizer implements ISPLocalizer {
 				}
 	}
 
+	/*
+	 * Areas of the map: for a raster map which key attribute is a band, pixels are read through a cursor
+	 * and only the ones with data are built
+	 */
+	private List<? extends AGeoEntity<? extends IValue>> getMapAreas() {
+		if(map.getGeoGSFileType().equals(GeoGSFileType.RASTER) 
+				&& keyAttMap.matches(GeoEntityFactory.ATTRIBUTE_PIXEL_BAND+"\\d+")) {
+			SPLRasterFile raster = (SPLRasterFile) map;
+			int band = Integer.parseInt(keyAttMap.substring(GeoEntityFactory.ATTRIBUTE_PIXEL_BAND.length()));
+			double noData = raster.getNoDataValue();
+			GSPixelCursor cursor = raster.getPixelCursor();
+			if(band < cursor.getBandNumber()) {
+				List<SpllPixel> pixels = new ArrayList<>();
+				boolean noDataIsNaN = Double.isNaN(noData);
+				while(cursor.next()) {
+					double value = cursor.getValue(band);
+					if(noDataIsNaN ? !Double.isNaN(value) : value != noData)
+						pixels.add(cursor.toPixel());
+				}
+				return pixels;
+			}
+		}
+		return new ArrayList<>(map.getGeoEntity());
+	}
+
 	// ----------------------------- MOVE PART OF THESE METHOD INTO FACTORY / BUILDER
 
 	/*
@@ -8,6 +8,8 @@ import core.metamodel.value.IValue;
 /**
  * Abstract numerical representation of a spatial constraint: it deals with priority (int) 
  * among different constraints and relaxation of constraint rules
+ * <p>
+ * Relaxation is synchronized, so a constraint can be shared by areas localized in parallel
  * 
  * @author kevinchapuis
  *
@@ -27,7 +29,7 @@ public abstract class ASpatialConstraint implements ISpatialConstraint {
 	}
 	
 	@Override
-	public void relaxConstraint(Collection<AGeoEntity<? extends IValue>> nests) {
+	public synchronized void relaxConstraint(Collection<AGeoEntity<? extends IValue>> nests) {
 		if (currentValue < maxIncrease) {
 			currentValue = Math.min(currentValue + increaseStep, maxIncrease);
 			constraintLimitReach = false;
@@ -40,12 +42,12 @@ public abstract class ASpatialConstraint implements ISpatialConstraint {
 	
 
 	@Override
-	public boolean isConstraintLimitReach() {
+	public synchronized boolean isConstraintLimitReach() {
 		return constraintLimitReach;
 	}
 
 	@Override
-	public double getCurrentValue() {
+	public synchronized double getCurrentValue() {
 		return currentValue;
 	}
 	
@@ -90,7 +92,7 @@ public abstract class ASpatialConstraint implements ISpatialConstraint {
 	}
 	
 	/**
-	 * Define how the relaxation should be made
+	 * Define how the relaxation should be made: called under the lock of this constraint
 	 * 
 	 * @param nests
 	 */
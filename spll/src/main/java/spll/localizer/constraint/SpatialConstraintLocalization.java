@@ -1,7 +1,9 @@
 package spll.localizer.constraint;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -10,16 +12,34 @@ import com.vividsolutions.jts.geom.Geometry;
 import core.metamodel.entity.AGeoEntity;
 import core.metamodel.io.IGSGeofile;
 import core.metamodel.value.IValue;
+import spll.io.SPLSpatialIndex;
+import spll.io.SPLVectorFile;
 
 public class SpatialConstraintLocalization extends ASpatialConstraint {
 
 	Geometry bounds;
 	protected IGSGeofile<? extends AGeoEntity<? extends IValue>, IValue> referenceFile;
+	private SPLSpatialIndex<? extends AGeoEntity<? extends IValue>> spatialIndex;
 	
 	public SpatialConstraintLocalization(Geometry bounds) {
 		super();
 		this.bounds = bounds;
 	}
+	
+	/**
+	 * A constraint with the same settings and reference file as the given one - sharing its spatial index - 
+	 * but whose bounds and relaxation evolve separately
+	 * 
+	 * @param constraint
+	 */
+	public SpatialConstraintLocalization(SpatialConstraintLocalization constraint) {
+		this(constraint.bounds);
+		this.priority = constraint.priority;
+		this.maxIncrease = constraint.maxIncrease;
+		this.increaseStep = constraint.increaseStep;
+		this.referenceFile = constraint.referenceFile;
+		this.spatialIndex = constraint.getSpatialIndex();
+	}
 
 	@Override
 	public List<AGeoEntity<? extends IValue>> getCandidates(List<AGeoEntity<? extends IValue>> nests) {
@@ -28,10 +48,10 @@ public class SpatialConstraintLocalization extends ASpatialConstraint {
 		//System.out.println("nests: " + nests.size());
 		List<AGeoEntity<? extends IValue>> cands = null;
 		if (referenceFile != null) {
-			cands = new ArrayList<>(referenceFile.getGeoEntityIntersect(bounds));
-			cands.removeIf(a -> !a.getGeometry().getCentroid().intersects(bounds));
+			cands = new ArrayList<>(getSpatialIndex().query(bounds, 
+					(pg, a) -> pg.intersects(a.getGeometry()) && pg.intersects(a.getGeometry().getCentroid())));
 			if (nests != null) {
-				Collection<String> nestNames = new ArrayList<>();
+				Collection<String> nestNames = new HashSet<>();
 				for (AGeoEntity<? extends IValue> nest : nests) {
 					nestNames.add(nest.getGenstarName());
 				}
@@ -75,6 +95,25 @@ public class SpatialConstraintLocalization extends ASpatialConstraint {
 
 	public void setReferenceFile(IGSGeofile<? extends AGeoEntity<? extends IValue>, IValue> referenceFile) {
 		this.referenceFile = referenceFile;
+		this.spatialIndex = null;
+	}
+	
+	/*
+	 * Spatial index of the reference file: vector files hold their own, 
+	 * otherwise one is built from the entities of the file
+	 */
+	private SPLSpatialIndex<? extends AGeoEntity<? extends IValue>> getSpatialIndex() {
+		if (spatialIndex == null) {
+			if (referenceFile instanceof SPLVectorFile)
+				spatialIndex = ((SPLVectorFile) referenceFile).getSpatialIndex();
+			else
+				try {
+					spatialIndex = new SPLSpatialIndex<>(referenceFile.getGeoEntity());
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+		}
+		return spatialIndex;
 	}
 
 
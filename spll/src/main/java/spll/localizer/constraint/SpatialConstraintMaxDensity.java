@@ -24,11 +24,12 @@ public class SpatialConstraintMaxDensity extends SpatialConstraintMaxNumber{
 	
 	@Override
 	public void relaxConstraintOp(Collection<AGeoEntity<? extends IValue>> nests) {
+		// atomic update, as capacities are decreased concurrently by areas localized in parallel
 		for (AGeoEntity<? extends IValue> n : nests )
-			nestCapacities.put(n.getGenstarName(), (int)Math.round(
-					nestCapacities.get(n.getGenstarName()) 
-					- (int)(Math.round(nestInitDensity.get(n.getGenstarName()) * n.getArea())))
-					+ (int)(Math.round((nestInitDensity.get(n.getGenstarName()) + increaseStep *(1 + nbIncrements)) * n.getArea())));
+			nestCapacities.computeIfPresent(n.getGenstarName(), (name, capacity) -> (int)Math.round(
+					capacity 
+					- (int)(Math.round(nestInitDensity.get(name) * n.getArea())))
+					+ (int)(Math.round((nestInitDensity.get(name) + increaseStep *(1 + nbIncrements)) * n.getArea())));
 	}
 		
 	
@@ -3,6 +3,7 @@ package spll.localizer.constraint;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -15,12 +16,12 @@ public class SpatialConstraintMaxDistance extends ASpatialConstraint {
 
 	public SpatialConstraintMaxDistance(Collection<AGeoEntity<? extends IValue>> distanceToEntities,
 			Double distance) {
-		this.distanceToEntities = distanceToEntities.stream().collect(Collectors
-				.toMap(Function.identity(), entity -> distance));
+		this.distanceToEntities = new ConcurrentHashMap<>(distanceToEntities.stream().collect(Collectors
+				.toMap(Function.identity(), entity -> distance)));
 	}
 	
 	public SpatialConstraintMaxDistance(Map<AGeoEntity<? extends IValue>, Double> distanceToEntities) {
-		this.distanceToEntities = distanceToEntities;
+		this.distanceToEntities = new ConcurrentHashMap<>(distanceToEntities);
 	}
 	
 	@Override
@@ -45,9 +46,10 @@ public class SpatialConstraintMaxDistance extends ASpatialConstraint {
 
 	@Override
 	public void relaxConstraintOp(Collection<AGeoEntity<? extends IValue>> distanceToEntities) {
+		// distances are read concurrently by areas localized in parallel
 		distanceToEntities.stream().forEach(entity -> 
-			this.distanceToEntities.put(entity, 
-					this.distanceToEntities.get(entity)+this.increaseStep));
+			this.distanceToEntities.computeIfPresent(entity, 
+					(e, distance) -> distance+this.increaseStep));
 
 	}
 
@@ -3,6 +3,7 @@ package spll.localizer.constraint;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import core.metamodel.entity.AGeoEntity;
@@ -21,7 +22,7 @@ public class SpatialConstraintMaxNumber extends ASpatialConstraint {
 	 */
 	public SpatialConstraintMaxNumber(Collection<? extends AGeoEntity<? extends IValue>> nests, Double maxVal) {
 		super();
-		nestCapacities = computeMaxPerNest(nests, maxVal);
+		nestCapacities = new ConcurrentHashMap<>(computeMaxPerNest(nests, maxVal));
 	}
 	
 	 /**
@@ -31,13 +32,13 @@ public class SpatialConstraintMaxNumber extends ASpatialConstraint {
 	  */
 	public SpatialConstraintMaxNumber(Collection<? extends AGeoEntity<? extends IValue>> nests, String keyAttMax) {
 		super();
-		nestCapacities = computeMaxPerNest(nests, keyAttMax);
+		nestCapacities = new ConcurrentHashMap<>(computeMaxPerNest(nests, keyAttMax));
 	}
 	
 	@Override
 	public void relaxConstraintOp(Collection<AGeoEntity<? extends IValue>> nests) {
 		for (AGeoEntity<? extends IValue> n : nests )
-			nestCapacities.put(n.getGenstarName(), (int)Math.round(nestCapacities.get(n.getGenstarName()) + increaseStep));
+			nestCapacities.computeIfPresent(n.getGenstarName(), (name, capacity) -> (int)Math.round(capacity + increaseStep));
 	}
 
 
@@ -51,11 +52,10 @@ public class SpatialConstraintMaxNumber extends ASpatialConstraint {
 	
 	@Override
 	public boolean updateConstraint(AGeoEntity<? extends IValue> nest) {
-		int capacity = nestCapacities.get(nest.getGenstarName());
-		nestCapacities.put(nest.getGenstarName(), capacity - 1);
-		if (capacity <= 1) return true;
+		// atomic decrement, so the constraint can be shared by areas localized in parallel
+		int capacity = nestCapacities.compute(nest.getGenstarName(), (name, c) -> c - 1);
+		if (capacity <= 0) return true;
 		return false;
-			
 	}
 
 	
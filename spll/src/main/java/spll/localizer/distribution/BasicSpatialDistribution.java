@@ -1,13 +1,15 @@
 package spll.localizer.distribution;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import core.metamodel.entity.ADemoEntity;
 import core.metamodel.entity.AGeoEntity;
 import core.metamodel.value.IValue;
-import core.util.random.roulette.ARouletteWheelSelection;
+import core.util.random.roulette.FenwickRouletteWheelSelection;
 import core.util.random.roulette.RouletteWheelSelectionFactory;
+import spll.localizer.distribution.function.CapacityFunction;
 import spll.localizer.distribution.function.ISpatialEntityFunction;
 
 /**
@@ -21,7 +23,7 @@ import spll.localizer.distribution.function.ISpatialEntityFunction;
 public class BasicSpatialDistribution<N extends Number, E extends ADemoEntity> implements ISpatialDistribution<E> {
 	
 	private ISpatialEntityFunction<N> function;
-	private ARouletteWheelSelection<N, ? extends AGeoEntity<? extends IValue>> roulette;
+	private FenwickRouletteWheelSelection<AGeoEntity<? extends IValue>> roulette;
 
 	public BasicSpatialDistribution(ISpatialEntityFunction<N> function) {
 		this.function = function;
@@ -38,13 +40,19 @@ public class BasicSpatialDistribution<N extends Number, E extends ADemoEntity> i
 	public AGeoEntity<? extends IValue> getCandidate(E entity) {
 		if(this.roulette == null || this.roulette.getKeys().isEmpty())
 			throw new NullPointerException("No candidate geographic entity to draw from");
-		return roulette.drawObject();
+		return roulette.getTotal() > 0 ? roulette.drawObject() : null;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Candidates are stored in a {@link FenwickRouletteWheelSelection}, so draws and updates of 
+	 * candidate probabilities are made in O(log n)
+	 */
 	@Override
 	public void setCandidate(List<? extends AGeoEntity<? extends IValue>> candidates) {
-		this.roulette = RouletteWheelSelectionFactory.getRouletteWheel(candidates.stream()
-				.map(a -> function.apply(a)).collect(Collectors.toList()), candidates);
+		this.roulette = RouletteWheelSelectionFactory.getFenwickRouletteWheel(candidates.stream()
+				.map(this::getWeight).collect(Collectors.toList()), new ArrayList<>(candidates));
 	}
 
 	@Override
@@ -52,4 +60,38 @@ public class BasicSpatialDistribution<N extends Number, E extends ADemoEntity> i
 		return roulette.getKeys();
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The candidate is given a zero probability
+	 */
+	@Override
+	public void removeCandidate(AGeoEntity<? extends IValue> candidate) {
+		roulette.setWeight(candidate, 0d);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The probability of the candidate is computed again from the function, 
+	 * e.g. a {@link CapacityFunction} whose capacity has been decreased
+	 */
+	@Override
+	public void updateCandidate(AGeoEntity<? extends IValue> candidate) {
+		roulette.setWeight(candidate, getWeight(candidate));
+	}
+	
+	/*
+	 * Weight of a candidate in the roulette: a capacity can go below zero when constraints are shared 
+	 * by localizers running in parallel, in which case the candidate cannot be drawn anymore
+	 */
+	private double getWeight(AGeoEntity<? extends IValue> candidate) {
+		return Math.max(0d, function.apply(candidate).doubleValue());
+	}
+	
+	@Override
+	public BasicSpatialDistribution<N, E> clone() {
+		return new BasicSpatialDistribution<>(function);
+	}
+	
 }
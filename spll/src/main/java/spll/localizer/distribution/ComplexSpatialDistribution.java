@@ -1,5 +1,6 @@
 package spll.localizer.distribution;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -42,9 +43,11 @@ public class ComplexSpatialDistribution<N extends Number> implements ISpatialDis
 
 	@Override
 	public AGeoEntity<? extends IValue> getCandidate(SpllEntity entity) {
-		if(this.candidates == null || this.candidates.isEmpty())
+		if(this.candidates == null)
 			throw new NullPointerException("No candidates have been setup, must use "
 					+ "ISpatialDistribution.setCandidates(List) first");
+		if(this.candidates.isEmpty())
+			return null;
 		if(this.roulettes == null)
 			this.roulettes = new HashMap<>();
 		if(this.roulettes.isEmpty()
@@ -63,6 +66,41 @@ public class ComplexSpatialDistribution<N extends Number> implements ISpatialDis
 	public List<? extends AGeoEntity<? extends IValue>> getCandidates() {
 		return Collections.unmodifiableList(candidates);
 	}
+	
+	@Override
+	public void removeCandidate(AGeoEntity<? extends IValue> candidate) {
+		List<AGeoEntity<? extends IValue>> remaining = new ArrayList<>(candidates);
+		if (remaining.remove(candidate)) {
+			this.candidates = remaining;
+			this.roulettes = null;
+		}
+	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The entity is given to the function, and cached probabilities are dropped
+	 */
+	@Override
+	public void addEntity(SpllEntity entity) {
+		function.addEntity(entity);
+		this.roulettes = null;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The entity is withdrawn from the function, and cached probabilities are dropped
+	 */
+	@Override
+	public void removeEntity(SpllEntity entity) {
+		function.removeEntity(entity);
+		this.roulettes = null;
+	}
 
+	@Override
+	public ComplexSpatialDistribution<N> clone() {
+		return new ComplexSpatialDistribution<>(function);
+	}
+	
 }
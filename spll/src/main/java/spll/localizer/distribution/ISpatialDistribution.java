@@ -26,7 +26,7 @@ public interface ISpatialDistribution<E extends IEntity<Attribute<? extends IVal
 	/**
 	 * Draw a spatial entity from a pre-determined set of candidate to be bind with given population entity
 	 * @param entity
-	 * @return
+	 * @return the candidate, or null if all candidates have been removed
 	 */
 	public AGeoEntity<? extends IValue> getCandidate(E entity);
 	
@@ -41,5 +41,41 @@ public interface ISpatialDistribution<E extends IEntity<Attribute<? extends IVal
 	 * @return
 	 */
 	public List<? extends AGeoEntity<? extends IValue>> getCandidates();
+	
+	/**
+	 * Removes a candidate from the pre-determined set, e.g. when it cannot be bound to more entities
+	 * @param candidate
+	 */
+	public void removeCandidate(AGeoEntity<? extends IValue> candidate);
+	
+	/**
+	 * Updates the probability of a candidate of the pre-determined set after the state it relies on
+	 * has changed, e.g. its remaining capacity. Does nothing by default.
+	 * @param candidate
+	 */
+	default void updateCandidate(AGeoEntity<? extends IValue> candidate) {}
+	
+	/**
+	 * Notifies that an entity has just been localized, e.g. when probabilities depend on the location
+	 * of already localized entities. Does nothing by default.
+	 * @param entity
+	 */
+	default void addEntity(E entity) {}
+	
+	/**
+	 * Notifies that a localized entity is about to be moved, while it still has its former location.
+	 * Does nothing by default.
+	 * @param entity
+	 */
+	default void removeEntity(E entity) {}
+	
+	/**
+	 * A distribution that draws the same way as this one, e.g. to be used by another thread.
+	 * <p>
+	 * WARNING: candidates are not copied and must be set again
+	 * 
+	 * @return
+	 */
+	public ISpatialDistribution<E> clone();
 
 }
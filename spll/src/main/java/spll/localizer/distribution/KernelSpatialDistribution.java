@@ -0,0 +1,438 @@
+package spll.localizer.distribution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.ToDoubleFunction;
+
+import com.vividsolutions.jts.geom.Point;
+
+import core.metamodel.entity.AGeoEntity;
+import core.metamodel.value.IValue;
+import core.util.random.GenstarRandom;
+import spll.SpllEntity;
+
+/**
+ * Spatial distribution where the probability of a candidate is given by a kernel of the distance between
+ * the centroid of the candidate and the location of the entity, optionally multiplied by a mass attached
+ * to the candidate (e.g. gravity model). Only the k nearest candidates and/or the candidates within a given
+ * radius are considered: they are found through a regular grid built over candidate centroids, which are
+ * stored as primitive coordinate arrays. Nothing is retained per entity, hence memory only depends on the
+ * number of candidates.
+ * <p>
+ * WARNING: distance is computed between centroids of candidates and entity location, not between
+ * geometries as in {@link ComplexSpatialDistribution}. Entities must have been localized (have a location).
+ *
+ * @see SpatialDistributionFactory#getKernelDistribution(DoubleUnaryOperator, int, double)
+ */
+public class KernelSpatialDistribution implements ISpatialDistribution<SpllEntity> {
+
+	/**
+	 * Average number of candidates per cell of the grid
+	 */
+	public static int CANDIDATES_PER_CELL = 4;
+
+	private final DoubleUnaryOperator kernel;
+	private final int k;
+	private final double radius;
+	private ToDoubleFunction<AGeoEntity<? extends IValue>> mass;
+
+	private List<? extends AGeoEntity<? extends IValue>> candidates;
+	private Map<AGeoEntity<? extends IValue>, Integer> candidate2index;
+	private double[] xs, ys, masses;
+	private boolean[] removed;
+	private int removedCount;
+
+	// ---- Grid ---- //
+	private double minX, minY, cellSize;
+	private int nx, ny;
+	private int[] cellStart, cellItems;
+
+	// ---- Reusable buffers of selected candidates ---- //
+	private int[] selected = new int[16];
+	private double[] selectedDist = new double[16];
+	private int found;
+	
+	// ---- Restriction of searches to given candidates: the ones marked with current stamp ---- //
+	private int[] stamps;
+	private int stamp;
+	private boolean restricted;
+
+	/**
+	 *
+	 * @param kernel : probability (not normalized) of a candidate from its distance to the entity
+	 * @param k : the number of nearest candidates to draw from, all candidates if k <= 0
+	 * @param radius : the maximum distance of candidates to draw from, no limit if radius <= 0
+	 */
+	public KernelSpatialDistribution(DoubleUnaryOperator kernel, int k, double radius) {
+		this.kernel = kernel;
+		this.k = k;
+		this.radius = radius;
+	}
+
+	/**
+	 * Multiplies kernel by a mass of candidates, computed once when candidates are set
+	 * @param mass
+	 */
+	public void setMass(ToDoubleFunction<AGeoEntity<? extends IValue>> mass) {
+		this.mass = mass;
+		if(candidates != null)
+			this.masses = computeMasses(candidates);
+	}
+
+	// ---- Kernels ---- //
+
+	/**
+	 * Power law kernel, i.e. 1 / d^frictionCoeff as in gravity model; distances are
+	 * bounded below by minDistance to avoid infinite probabilities
+	 * @param frictionCoeff
+	 * @param minDistance
+	 * @return
+	 */
+	public static DoubleUnaryOperator powerLawKernel(double frictionCoeff, double minDistance) {
+		if(minDistance <= 0)
+			throw new IllegalArgumentException("Minimum distance of power law kernel must be strictly positive");
+		return d -> Math.pow(Math.max(d, minDistance), -frictionCoeff);
+	}
+
+	/**
+	 * Gaussian kernel of given bandwidth
+	 * @param bandwidth
+	 * @return
+	 */
+	public static DoubleUnaryOperator gaussianKernel(double bandwidth) {
+		double f = -1d / (2 * bandwidth * bandwidth);
+		return d -> Math.exp(d * d * f);
+	}
+
+	// ---- Distribution ---- //
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Only the k nearest of given candidates within radius are drawn from: when they have all been set with 
+	 * {@link #setCandidate(List)}, e.g. after being filtered by constraints, they are searched through the grid;
+	 * otherwise each of them is weighted
+	 */
+	@Override
+	public AGeoEntity<? extends IValue> getCandidate(SpllEntity entity,
+			List<? extends AGeoEntity<? extends IValue>> candidates) {
+		Point location = location(entity);
+		if(this.stamp(candidates)) {
+			this.restricted = true;
+			try {
+				this.search(location.getX(), location.getY());
+			} finally {
+				this.restricted = false;
+			}
+			return this.drawSelected(this.candidates, true);
+		}
+		found = 0;
+		double r2 = radius > 0 ? radius * radius : Double.POSITIVE_INFINITY;
+		for(int i = 0; i < candidates.size(); i++) {
+			Point centroid = candidates.get(i).getGeometry().getCentroid();
+			double dx = centroid.getX() - location.getX(), dy = centroid.getY() - location.getY();
+			double d2 = dx * dx + dy * dy;
+			if(d2 <= r2)
+				this.select(i, d2);
+		}
+		return this.drawSelected(candidates, false);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Also returns null when no candidate is within the radius of the entity
+	 */
+	@Override
+	public AGeoEntity<? extends IValue> getCandidate(SpllEntity entity) {
+		if(this.candidates == null)
+			throw new NullPointerException("No candidates have been setup, must use "
+					+ "ISpatialDistribution.setCandidates(List) first");
+		if(removedCount == candidates.size())
+			return null;
+		Point location = location(entity);
+		this.search(location.getX(), location.getY());
+		return this.drawSelected(candidates, true);
+	}
+
+	@Override
+	public void setCandidate(List<? extends AGeoEntity<? extends IValue>> candidates) {
+		this.candidates = candidates;
+		this.candidate2index = null;
+		int n = candidates.size();
+		this.xs = new double[n];
+		this.ys = new double[n];
+		this.removed = new boolean[n];
+		this.removedCount = 0;
+		for(int i = 0; i < n; i++) {
+			Point centroid = candidates.get(i).getGeometry().getCentroid();
+			xs[i] = centroid.getX();
+			ys[i] = centroid.getY();
+		}
+		this.masses = mass == null ? null : computeMasses(candidates);
+		this.buildGrid();
+	}
+
+	@Override
+	public List<? extends AGeoEntity<? extends IValue>> getCandidates() {
+		if(removedCount == 0)
+			return Collections.unmodifiableList(candidates);
+		List<AGeoEntity<? extends IValue>> remaining = new ArrayList<>(candidates.size() - removedCount);
+		for(int i = 0; i < candidates.size(); i++)
+			if(!removed[i])
+				remaining.add(candidates.get(i));
+		return Collections.unmodifiableList(remaining);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Removed candidates stay in the grid and are skipped by searches
+	 */
+	@Override
+	public void removeCandidate(AGeoEntity<? extends IValue> candidate) {
+		Integer index = this.getCandidateIndex().get(candidate);
+		if(index != null && !removed[index]) {
+			removed[index] = true;
+			removedCount++;
+		}
+	}
+
+	@Override
+	public KernelSpatialDistribution clone() {
+		KernelSpatialDistribution clone = new KernelSpatialDistribution(kernel, k, radius);
+		clone.mass = mass;
+		return clone;
+	}
+
+	// ------------------------------------------------------ //
+
+	/*
+	 * Buckets candidate indexes per cell of a regular grid over centroids (compressed rows: items
+	 * of cell c are cellItems[cellStart[c]] to cellItems[cellStart[c+1]-1])
+	 */
+	private void buildGrid() {
+		int n = xs.length;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		minX = Double.POSITIVE_INFINITY;
+		minY = Double.POSITIVE_INFINITY;
+		for(int i = 0; i < n; i++) {
+			minX = Math.min(minX, xs[i]); maxX = Math.max(maxX, xs[i]);
+			minY = Math.min(minY, ys[i]); maxY = Math.max(maxY, ys[i]);
+		}
+		if(n == 0)
+			minX = maxX = minY = maxY = 0;
+		double width = maxX - minX, height = maxY - minY;
+		int cells = Math.max(1, n / Math.max(1, CANDIDATES_PER_CELL));
+		// Square cells, but never more than the number of cells along one side
+		cellSize = Math.max(Math.sqrt(width * height / cells), Math.max(width, height) / cells);
+		if(!(cellSize > 0))
+			cellSize = 1d;
+		nx = Math.min(cells, (int) (width / cellSize) + 1);
+		ny = Math.min(cells, (int) (height / cellSize) + 1);
+
+		cellStart = new int[nx * ny + 1];
+		int[] cellOf = new int[n];
+		for(int i = 0; i < n; i++) {
+			cellOf[i] = cell(xs[i], ys[i]);
+			cellStart[cellOf[i] + 1]++;
+		}
+		for(int c = 0; c < nx * ny; c++)
+			cellStart[c + 1] += cellStart[c];
+		int[] fill = Arrays.copyOf(cellStart, nx * ny);
+		cellItems = new int[n];
+		for(int i = 0; i < n; i++)
+			cellItems[fill[cellOf[i]]++] = i;
+	}
+
+	private int cell(double x, double y) {
+		int cx = Math.min(nx - 1, (int) ((x - minX) / cellSize));
+		int cy = Math.min(ny - 1, (int) ((y - minY) / cellSize));
+		return cy * nx + cx;
+	}
+
+	/*
+	 * Fills selected/selectedDist with the (squared distance of) remaining candidates around (x, y):
+	 * visits rings of cells around the cell of the point until no unvisited cell can contain
+	 * a closer candidate than the k-th nearest or one within radius
+	 */
+	private void search(double x, double y) {
+		found = 0;
+		int cx = (int) Math.floor((x - minX) / cellSize);
+		int cy = (int) Math.floor((y - minY) / cellSize);
+		int maxRing = Math.max(Math.max(cx, nx - 1 - cx), Math.max(cy, ny - 1 - cy));
+		// Point may be outside of the grid: start from the first ring that overlaps it
+		int minRing = Math.max(Math.max(Math.max(0, -cx), cx - nx + 1), Math.max(-cy, cy - ny + 1));
+		double r2 = radius > 0 ? radius * radius : Double.POSITIVE_INFINITY;
+		for(int ring = minRing; ring <= maxRing; ring++) {
+			// Every candidate in this ring or beyond is at least at this distance
+			double ringDist = Math.max(0, ring - 1) * cellSize;
+			if(ringDist * ringDist > r2
+					|| (k > 0 && found == k && ringDist * ringDist > selectedDist[0]))
+				break;
+			for(int j = Math.max(0, cy - ring); j <= Math.min(ny - 1, cy + ring); j++) {
+				if(j == cy - ring || j == cy + ring) {
+					for(int i = Math.max(0, cx - ring); i <= Math.min(nx - 1, cx + ring); i++)
+						this.visitCell(j * nx + i, x, y, r2);
+				} else {
+					if(cx - ring >= 0 && cx - ring < nx)
+						this.visitCell(j * nx + cx - ring, x, y, r2);
+					if(ring > 0 && cx + ring >= 0 && cx + ring < nx)
+						this.visitCell(j * nx + cx + ring, x, y, r2);
+				}
+			}
+		}
+	}
+
+	private void visitCell(int c, double x, double y, double r2) {
+		for(int p = cellStart[c]; p < cellStart[c + 1]; p++) {
+			int index = cellItems[p];
+			if(restricted ? stamps[index] != stamp : removed[index])
+				continue;
+			double dx = xs[index] - x, dy = ys[index] - y;
+			double d2 = dx * dx + dy * dy;
+			if(d2 <= r2)
+				this.select(index, d2);
+		}
+	}
+	
+	/*
+	 * Keeps the candidate if it is one of the k nearest found so far
+	 */
+	private void select(int index, double d2) {
+		if(k <= 0)
+			this.append(index, d2);
+		else if(found < k)
+			this.heapPush(index, d2);
+		else if(d2 < selectedDist[0])
+			this.heapReplaceTop(index, d2);
+	}
+	
+	/*
+	 * Draws one of the selected candidates, weighted by kernel of their distance and mass: masses 
+	 * are precomputed when selected indexes refer to the candidates which have been set
+	 */
+	private AGeoEntity<? extends IValue> drawSelected(List<? extends AGeoEntity<? extends IValue>> from, 
+			boolean indexed) {
+		double sum = 0;
+		for(int i = 0; i < found; i++) {
+			double w = kernel.applyAsDouble(Math.sqrt(selectedDist[i]));
+			if(mass != null)
+				w *= indexed ? masses[selected[i]] : mass.applyAsDouble(from.get(selected[i]));
+			selectedDist[i] = w;
+			sum += w;
+		}
+		int index = draw(selectedDist, found, sum);
+		return index < 0 ? null : from.get(selected[index]);
+	}
+	
+	/*
+	 * Stamps given candidates if they have all been set, so that searches can be restricted to them
+	 */
+	private boolean stamp(List<? extends AGeoEntity<? extends IValue>> given) {
+		if(this.candidates == null)
+			return false;
+		if(stamps == null || stamps.length != this.candidates.size()) {
+			stamps = new int[this.candidates.size()];
+			stamp = 0;
+		}
+		stamp++;
+		Map<AGeoEntity<? extends IValue>, Integer> indexes = this.getCandidateIndex();
+		for(AGeoEntity<? extends IValue> candidate : given) {
+			Integer index = indexes.get(candidate);
+			if(index == null)
+				return false;
+			stamps[index] = stamp;
+		}
+		return true;
+	}
+
+	private void append(int index, double d2) {
+		if(found == selected.length) {
+			selected = Arrays.copyOf(selected, found * 2);
+			selectedDist = Arrays.copyOf(selectedDist, found * 2);
+		}
+		selected[found] = index;
+		selectedDist[found++] = d2;
+	}
+
+	/*
+	 * Max-heap on squared distance, so the farthest of the k nearest is on top
+	 */
+	private void heapPush(int index, double d2) {
+		this.append(index, d2);
+		int i = found - 1;
+		while(i > 0) {
+			int parent = (i - 1) / 2;
+			if(selectedDist[parent] >= selectedDist[i])
+				break;
+			this.swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void heapReplaceTop(int index, double d2) {
+		selected[0] = index;
+		selectedDist[0] = d2;
+		int i = 0;
+		while(true) {
+			int l = 2 * i + 1, r = l + 1, max = i;
+			if(l < found && selectedDist[l] > selectedDist[max]) max = l;
+			if(r < found && selectedDist[r] > selectedDist[max]) max = r;
+			if(max == i)
+				break;
+			this.swap(i, max);
+			i = max;
+		}
+	}
+
+	private void swap(int i, int j) {
+		int index = selected[i]; selected[i] = selected[j]; selected[j] = index;
+		double d = selectedDist[i]; selectedDist[i] = selectedDist[j]; selectedDist[j] = d;
+	}
+
+	private Map<AGeoEntity<? extends IValue>, Integer> getCandidateIndex() {
+		if(candidate2index == null) {
+			candidate2index = new HashMap<>(candidates.size() * 2);
+			for(int i = 0; i < candidates.size(); i++)
+				candidate2index.put(candidates.get(i), i);
+		}
+		return candidate2index;
+	}
+
+	private double[] computeMasses(List<? extends AGeoEntity<? extends IValue>> candidates) {
+		double[] masses = new double[candidates.size()];
+		for(int i = 0; i < masses.length; i++)
+			masses[i] = mass.applyAsDouble(candidates.get(i));
+		return masses;
+	}
+
+	private static int draw(double[] weights, int size, double sum) {
+		if(size == 0 || !(sum > 0))
+			return -1;
+		double random = GenstarRandom.getInstance().nextDouble() * sum;
+		int last = -1;
+		for(int i = 0; i < size; i++) {
+			if(weights[i] <= 0)
+				continue;
+			last = i;
+			random -= weights[i];
+			if(random < 0)
+				break;
+		}
+		return last;
+	}
+
+	private static Point location(SpllEntity entity) {
+		if(entity.getLocation() == null)
+			throw new IllegalArgumentException("Entity "+entity.getEntityId()+" has no location: "
+					+ "kernel distribution requires entities to be localized");
+		return entity.getLocation();
+	}
+
+}
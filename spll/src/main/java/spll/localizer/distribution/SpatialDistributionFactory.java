@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.DoubleUnaryOperator;
 
 import core.metamodel.entity.ADemoEntity;
 import core.metamodel.entity.AGeoEntity;
@@ -35,6 +36,11 @@ import spll.localizer.distribution.function.ISpatialEntityFunction;
  *   <li> according to the distance of spatial object from other places {@link #getDistanceBasedDistribution()} </li>
  *   <li> according to a given mass function {@link #getGravityModelDistribution(Collection, double, SpllEntity...)}
  *  </ul>
+ *  <li>Distribution based on a kernel of distance restricted to nearest spatial objects:</li>
+ *  <ul>
+ *   <li> any kernel {@link #getKernelDistribution(DoubleUnaryOperator, int, double)} </li>
+ *   <li> gravity model {@link #getGravityKernelDistribution(Collection, double, int, SpllEntity...)} </li>
+ *  </ul>
  * </ul>
  *  
  *  Defining custom {@link ISpatialEntityFunction} or {@link ISpatialComplexFunction} allows to define user made distribution
@@ -221,4 +227,60 @@ public class SpatialDistributionFactory {
 		return new ComplexSpatialDistribution<>(new GravityFunction(candidates, frictionCoeff, buffer, entities));
 	}
 	
+	/**
+	 * Gravity model that associate probability (the mass in gravity model) to each candidates according to gravity model, 
+	 * considering a given buffer around geometries (or sum of distances when buffer is not strictly positive). Entities
+	 * are aggregated on a grid with given number of cells along its longest side: the finer the grid, the closer the masses
+	 * to exact ones, but the longer to compute
+	 * 
+	 * @param candidates
+	 * @param frictionCoeff
+	 * @param buffer
+	 * @param gridSize
+	 * @param entities
+	 * @return
+	 */
+	public ISpatialDistribution<SpllEntity> getGravityModelDistribution(
+			Collection<? extends AGeoEntity<? extends IValue>> candidates, 
+			double frictionCoeff, double buffer, int gridSize, Collection<SpllEntity> entities){
+		return new ComplexSpatialDistribution<>(new GravityFunction(candidates, frictionCoeff, buffer, gridSize, entities));
+	}
+	
+	/**
+	 * Probability is computed as a kernel of the distance between centroid of spatial entities and location of
+	 * population entities, only considering the k nearest spatial entities and/or the ones within a radius
+	 * 
+	 * @see KernelSpatialDistribution#powerLawKernel(double, double)
+	 * @see KernelSpatialDistribution#gaussianKernel(double)
+	 * 
+	 * @param kernel
+	 * @param k : all candidates if k <= 0
+	 * @param radius : no limit if radius <= 0
+	 * @return
+	 */
+	public ISpatialDistribution<SpllEntity> getKernelDistribution(DoubleUnaryOperator kernel, int k, double radius){
+		return new KernelSpatialDistribution(kernel, k, radius);
+	}
+	
+	/**
+	 * Gravity model restricted to the k nearest candidates: mass of candidates are computed as in 
+	 * {@link #getGravityModelDistribution(Collection, double, SpllEntity...)}, but distance is computed 
+	 * from candidate centroids and is bounded below by 1 (in unit of the coordinate reference system)
+	 * 
+	 * @param candidates
+	 * @param frictionCoeff
+	 * @param k
+	 * @param entities
+	 * @return
+	 */
+	public ISpatialDistribution<SpllEntity> getGravityKernelDistribution(
+			Collection<? extends AGeoEntity<? extends IValue>> candidates, 
+			double frictionCoeff, int k, SpllEntity... entities){
+		GravityFunction gravity = new GravityFunction(candidates, frictionCoeff, entities);
+		KernelSpatialDistribution distribution = new KernelSpatialDistribution(
+				KernelSpatialDistribution.powerLawKernel(frictionCoeff, 1d), k, -1);
+		distribution.setMass(gravity::getMass);
+		return distribution;
+	}
+	
 }
@@ -1,7 +1,10 @@
 package spll.localizer.distribution;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import core.metamodel.entity.ADemoEntity;
 import core.metamodel.entity.AGeoEntity;
@@ -17,7 +20,8 @@ import core.util.random.GenstarRandom;
  */
 public class UniformSpatialDistribution<N extends Number, E extends ADemoEntity> implements ISpatialDistribution<E> {
 	
-	private List<? extends AGeoEntity<? extends IValue>> candidates;
+	private List<AGeoEntity<? extends IValue>> candidates;
+	private Map<AGeoEntity<? extends IValue>, Integer> candidate2index;
 
 	@Override
 	public AGeoEntity<? extends IValue> getCandidate(E entity, List<? extends AGeoEntity<? extends IValue>> candidates) {
@@ -26,14 +30,15 @@ public class UniformSpatialDistribution<N extends Number, E extends ADemoEntity>
 
 	@Override
 	public AGeoEntity<? extends IValue> getCandidate(E entity) {
-		if(this.candidates == null || this.candidates.isEmpty())
+		if(this.candidates == null)
 			throw new NullPointerException("No candidates have been setp - use ISpatialDistribution.setCandidates(List) first");
-		return this.getCandidate(entity, candidates);
+		return candidates.isEmpty() ? null : this.getCandidate(entity, candidates);
 	}
 
 	@Override
 	public void setCandidate(List<? extends AGeoEntity<? extends IValue>> candidates) {
-		this.candidates = candidates;
+		this.candidates = new ArrayList<>(candidates);
+		this.candidate2index = null;
 	}
 
 	@Override
@@ -41,4 +46,31 @@ public class UniformSpatialDistribution<N extends Number, E extends ADemoEntity>
 		return Collections.unmodifiableList(candidates);
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The last candidate takes the place of the removed one, so removal is made in constant time
+	 */
+	@Override
+	public void removeCandidate(AGeoEntity<? extends IValue> candidate) {
+		if (candidate2index == null) {
+			candidate2index = new HashMap<>(candidates.size() * 2);
+			for (int i = 0; i < candidates.size(); i++)
+				candidate2index.put(candidates.get(i), i);
+		}
+		Integer index = candidate2index.remove(candidate);
+		if (index == null)
+			return;
+		AGeoEntity<? extends IValue> last = candidates.remove(candidates.size()-1);
+		if (index < candidates.size()) {
+			candidates.set(index, last);
+			candidate2index.put(last, index);
+		}
+	}
+	
+	@Override
+	public UniformSpatialDistribution<N, E> clone() {
+		return new UniformSpatialDistribution<>();
+	}
+	
 }
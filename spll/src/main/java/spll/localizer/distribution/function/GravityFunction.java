@@ -1,11 +1,14 @@
 package spll.localizer.distribution.function;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+
+import com.vividsolutions.jts.geom.Envelope;
 
 import core.metamodel.entity.AGeoEntity;
 import core.metamodel.value.IValue;
@@ -13,58 +16,89 @@ import spll.SpllEntity;
 
 /**
  * Function that computes probability based on the gravity model
- * 
+ * <p>
+ * Entity locations are sorted on a grid (see {@link #DEFAULT_GRID_SIZE}) so the mass of a spatial entity
+ * is computed from cells rather than from every entity: within a buffer, whole cells are counted at once and
+ * only entities of cells that straddle the buffer are tested, hence the mass is exact. The sum of distances
+ * is exact too, unless far cells are asked to be aggregated (see {@link #setDistanceApproximation(double)}).
+ * Masses are computed on demand and cached until the state of the function changes. Entities can be added
+ * or removed one at a time while localizing, distributions that share the function across threads being
+ * synchronized on it.
+ *
  * @author kevinchapuis
  *
  */
 public class GravityFunction implements ISpatialComplexFunction<Double> {
 
-	private Map<AGeoEntity<? extends IValue>, Double> mass; 
+	/**
+	 * Default number of cells along the longest side of the grid used to aggregate entities
+	 */
+	public static int DEFAULT_GRID_SIZE = 64;
+
+	private final int gridSize;
+	private GravityMassGrid grid;
+
+	private Map<AGeoEntity<? extends IValue>, Double> mass = new ConcurrentHashMap<>();
+	private Map<AGeoEntity<? extends IValue>, Double> fixedMass = new ConcurrentHashMap<>();
+
 	private double buffer = -1;
+	private double farCells = 0;
 	private double frictionCoeff = 1.0;
-	
+
 	private BiFunction<Double, Double, Double> function;
 
-	private GravityFunction() {
+	private GravityFunction(int gridSize) {
+		this.gridSize = gridSize;
 		this.function = new BiFunction<Double, Double, Double>() {
-			@Override public Double apply(Double mass, Double distance) { 
+			@Override public Double apply(Double mass, Double distance) {
 				return mass / Math.pow(distance, frictionCoeff); }
 		};
 	}
-	
+
 	/**
 	 * Mass of spatial entity is defined as the sum of distance between the spatial entity and all entities
-	 * 
+	 *
 	 * @param candidates
 	 * @param frictionCoeff
 	 * @param entities
 	 */
 	public GravityFunction( Collection<? extends AGeoEntity<? extends IValue>> candidates, double frictionCoeff, SpllEntity... entities) {
-		this();
-		this.frictionCoeff = frictionCoeff;
-		this.mass = candidates.stream().collect(Collectors.toMap(Function.identity(), se -> Arrays.asList(entities).stream()
-				.mapToDouble(e -> se.getGeometry().distance(e.getLocation())).sum()));
+		this(candidates, frictionCoeff, -1, DEFAULT_GRID_SIZE, Arrays.asList(entities));
 	}
 
 	/**
 	 * Mass of spatial entity is defined as the number of entity within a given buffer around the spatial entity
-	 * 
+	 *
 	 * @param candidates
 	 * @param frictionCoeff
 	 * @param buffer
 	 * @param entities
 	 */
-	public GravityFunction(Collection<? extends AGeoEntity<? extends IValue>> candidates, 
+	public GravityFunction(Collection<? extends AGeoEntity<? extends IValue>> candidates,
 			double frictionCoeff, double buffer, SpllEntity... entities) {
-		this();
-		this.mass = candidates.stream().collect(Collectors.toMap(Function.identity(), spacEntity -> (double) Arrays.asList(entities).stream()
-				.filter(e -> spacEntity.getGeometry().buffer(buffer).contains(e.getLocation())).count()));
+		this(candidates, frictionCoeff, buffer, DEFAULT_GRID_SIZE, Arrays.asList(entities));
+	}
+
+	/**
+	 * Mass of spatial entity is defined as the number of entity within a given buffer around the spatial entity,
+	 * or as the sum of distance between the spatial entity and all entities if buffer is not strictly positive
+	 *
+	 * @param candidates
+	 * @param frictionCoeff
+	 * @param buffer
+	 * @param gridSize : the number of cells along the longest side of the grid that aggregates entities
+	 * @param entities
+	 */
+	public GravityFunction(Collection<? extends AGeoEntity<? extends IValue>> candidates,
+			double frictionCoeff, double buffer, int gridSize, Collection<SpllEntity> entities) {
+		this(gridSize);
 		this.buffer = buffer;
 		this.frictionCoeff = frictionCoeff;
+		this.buildGrid(entities, candidates);
 	}
-	
+
 	// ------------------------------------------ //
-	
+
 	/**
 	 * Set the function that compute probability from mass of space entity and distance
 	 * from population entity
@@ -73,36 +107,122 @@ public class GravityFunction implements ISpatialComplexFunction<Double> {
 	public void setMassDistanceFunction(BiFunction<Double, Double, Double> function) {
 		this.function = function;
 	}
-	
+
 	/**
 	 * Add / Replace the recorded mass of spatial entity
 	 * @param mass
 	 */
 	public void setSpatialEntityMass(Map<AGeoEntity<? extends IValue>, Double> mass) {
-		this.mass.putAll(mass);
+		this.fixedMass.putAll(mass);
+	}
+
+	/**
+	 * Entities of cells farther than the given number of cell diagonals from a spatial entity are measured from
+	 * the centroid of their cell, which bounds the relative error on their distance by 1 / (cellDiagonals - 1)
+	 * and saves the distance to every entity. Only applies to the sum of distance mass, which is exact by default
+	 *
+	 * @param cellDiagonals : 0 or less to measure the distance to every entity
+	 */
+	public synchronized void setDistanceApproximation(double cellDiagonals) {
+		this.farCells = cellDiagonals;
+		mass.clear();
+	}
+
+	/**
+	 * The mass of a spatial entity
+	 * @param spatialEntity
+	 * @return
+	 */
+	public synchronized double getMass(AGeoEntity<? extends IValue> spatialEntity) {
+		Double fixed = fixedMass.get(spatialEntity);
+		if(fixed != null)
+			return fixed;
+		return mass.computeIfAbsent(spatialEntity, this::computeMass);
+	}
+
+	/**
+	 * The exponent of distance in the gravity model
+	 * @return
+	 */
+	public double getFrictionCoeff() {
+		return frictionCoeff;
+	}
+
+	/**
+	 * Adds the contribution of a localized entity to the mass of spatial entities,
+	 * e.g. when it has just been localized
+	 *
+	 * @param entity
+	 */
+	@Override
+	public synchronized void addEntity(SpllEntity entity) {
+		grid.add(entity.getLocation().getX(), entity.getLocation().getY());
+		mass.clear();
+	}
+
+	/**
+	 * Removes the contribution of a localized entity to the mass of spatial entities,
+	 * e.g. before it is moved
+	 *
+	 * @param entity
+	 */
+	@Override
+	public synchronized void removeEntity(SpllEntity entity) {
+		grid.remove(entity.getLocation().getX(), entity.getLocation().getY());
+		mass.clear();
 	}
-	
+
 	// ------------------------------------------ //
 
 	@Override
 	public Double apply(AGeoEntity<? extends IValue> spatialEntity, SpllEntity entity) {
-		return function.apply(mass.get(spatialEntity), spatialEntity.getGeometry().distance(entity.getLocation()));
+		return function.apply(getMass(spatialEntity), spatialEntity.getGeometry().distance(entity.getLocation()));
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Entities are aggregated again on a grid that covers them and the candidates
+	 */
 	@Override
 	public void updateFunctionState(Collection<SpllEntity> entities,
 			Collection<AGeoEntity<? extends IValue>> candidates) {
-		if(buffer <= 0)
-			for(AGeoEntity<? extends IValue> se : candidates)
-				mass.put(se, entities.stream().mapToDouble(e -> se.getGeometry().distance(e.getLocation())).sum());
-		else
-			for(AGeoEntity<? extends IValue> se : candidates)
-				mass.put(se, (double) entities.stream().filter(e -> se.getGeometry().contains(e.getLocation())).count());
+		this.buildGrid(entities, candidates);
+		mass.clear();
 	}
 
 	@Override
 	public void clear() {
 		mass.clear();
+		fixedMass.clear();
+		grid = new GravityMassGrid(new Envelope(), gridSize);
+	}
+
+	// ------------------------------------------ //
+
+	private void buildGrid(Collection<SpllEntity> entities,
+			Collection<? extends AGeoEntity<? extends IValue>> candidates) {
+		List<SpllEntity> located = new ArrayList<>(entities.size());
+		for(SpllEntity entity : entities)
+			if(entity.getLocation() != null)
+				located.add(entity);
+		double[] xs = new double[located.size()], ys = new double[located.size()];
+		Envelope extent = new Envelope();
+		for(int i = 0; i < xs.length; i++) {
+			xs[i] = located.get(i).getLocation().getX();
+			ys[i] = located.get(i).getLocation().getY();
+			extent.expandToInclude(xs[i], ys[i]);
+		}
+		for(AGeoEntity<? extends IValue> candidate : candidates)
+			extent.expandToInclude(candidate.getGeometry().getEnvelopeInternal());
+		this.grid = new GravityMassGrid(extent, gridSize);
+		this.grid.build(xs, ys);
+	}
+
+	private double computeMass(AGeoEntity<? extends IValue> spatialEntity) {
+		if(buffer > 0)
+			return grid.countWithin(spatialEntity.getGeometry(), buffer);
+		return grid.distanceMass(spatialEntity.getGeometry(), farCells);
 	}
 
 }
@@ -0,0 +1,214 @@
+package spll.localizer.distribution.function;
+
+import java.util.Arrays;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Sorts locations of entities on a regular grid of cells, to compute gravity masses of a geometry
+ * cell by cell rather than entity by entity:
+ * <ul>
+ *  <li> the number of entities within a distance of a geometry sums up counts of cells that are
+ *  entirely within the distance, skips cells that are entirely beyond it and only tests entities one
+ *  by one in cells that straddle the distance: the count is exact
+ *  <li> the sum of distances between a geometry and all entities is exact, unless cells far from the
+ *  geometry are asked to be aggregated at their centroid (see {@link #distanceMass(Geometry, double)})
+ * </ul>
+ * Entities can be added and removed one at a time.
+ * <p>
+ * WARNING: not thread safe; entities outside of the extent of the grid are sorted in border cells
+ */
+class GravityMassGrid {
+
+	private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+	private final double minX, minY, cellSize;
+	private final int nx, ny;
+
+	private final int[] counts;
+	private final double[] sumX, sumY;
+	// Locations of entities in each cell
+	private final double[][] cellXs, cellYs;
+
+	/**
+	 *
+	 * @param extent : the area to be covered by the grid
+	 * @param gridSize : the number of cells along the longest side of extent
+	 */
+	GravityMassGrid(Envelope extent, int gridSize) {
+		if(gridSize < 1)
+			throw new IllegalArgumentException("Grid size must be at least 1, but was "+gridSize);
+		double side = Math.max(extent.getWidth(), extent.getHeight());
+		this.cellSize = side > 0 ? side / gridSize : 1d;
+		this.minX = extent.isNull() ? 0 : extent.getMinX();
+		this.minY = extent.isNull() ? 0 : extent.getMinY();
+		this.nx = extent.isNull() ? 1 : Math.min(gridSize, (int) (extent.getWidth() / cellSize) + 1);
+		this.ny = extent.isNull() ? 1 : Math.min(gridSize, (int) (extent.getHeight() / cellSize) + 1);
+		this.counts = new int[nx * ny];
+		this.sumX = new double[nx * ny];
+		this.sumY = new double[nx * ny];
+		this.cellXs = new double[nx * ny][0];
+		this.cellYs = new double[nx * ny][0];
+	}
+
+	/**
+	 * Sorts locations in bulk, in place of the ones that were in the grid
+	 * @param xs
+	 * @param ys
+	 */
+	void build(double[] xs, double[] ys) {
+		Arrays.fill(counts, 0);
+		Arrays.fill(sumX, 0);
+		Arrays.fill(sumY, 0);
+		for(int i = 0; i < xs.length; i++)
+			counts[cell(xs[i], ys[i])]++;
+		for(int c = 0; c < counts.length; c++) {
+			cellXs[c] = new double[counts[c]];
+			cellYs[c] = new double[counts[c]];
+		}
+		Arrays.fill(counts, 0);
+		for(int i = 0; i < xs.length; i++)
+			this.add(xs[i], ys[i]);
+	}
+
+	/**
+	 * Adds one entity location
+	 * @param x
+	 * @param y
+	 */
+	void add(double x, double y) {
+		int c = cell(x, y);
+		if(counts[c] == cellXs[c].length) {
+			cellXs[c] = Arrays.copyOf(cellXs[c], Math.max(4, 2 * counts[c]));
+			cellYs[c] = Arrays.copyOf(cellYs[c], cellXs[c].length);
+		}
+		cellXs[c][counts[c]] = x;
+		cellYs[c][counts[c]++] = y;
+		sumX[c] += x;
+		sumY[c] += y;
+	}
+
+	/**
+	 * Removes one entity location: does nothing if there is no entity at this location
+	 * @param x
+	 * @param y
+	 */
+	void remove(double x, double y) {
+		int c = cell(x, y);
+		for(int k = 0; k < counts[c]; k++) {
+			if(cellXs[c][k] != x || cellYs[c][k] != y)
+				continue;
+			// the last location of the cell takes the place of the removed one
+			int last = --counts[c];
+			cellXs[c][k] = cellXs[c][last];
+			cellYs[c][k] = cellYs[c][last];
+			sumX[c] -= x;
+			sumY[c] -= y;
+			return;
+		}
+	}
+
+	/**
+	 * The exact sum of distances between the geometry and every entity
+	 * @param geometry
+	 * @return
+	 */
+	double distanceMass(Geometry geometry) {
+		return this.distanceMass(geometry, 0);
+	}
+
+	/**
+	 * The sum of distances between the geometry and every entity. Entities of a cell whose centroid is farther
+	 * than farCells cell diagonals from the geometry are considered to be at this centroid, which bounds the relative
+	 * error on their distance by 1 / (farCells - 1); other entities are measured one by one
+	 *
+	 * @param geometry
+	 * @param farCells : 0 or less to measure every entity
+	 * @return
+	 */
+	double distanceMass(Geometry geometry, double farCells) {
+		double far = farCells > 0 ? farCells * getDiagonal() : Double.POSITIVE_INFINITY;
+		double sum = 0;
+		for(int c = 0; c < counts.length; c++) {
+			if(counts[c] == 0)
+				continue;
+			if(far < Double.POSITIVE_INFINITY) {
+				double d = geometry.distance(point(sumX[c] / counts[c], sumY[c] / counts[c]));
+				if(d > far) {
+					sum += counts[c] * d;
+					continue;
+				}
+			}
+			for(int k = 0; k < counts[c]; k++)
+				sum += geometry.distance(point(cellXs[c][k], cellYs[c][k]));
+		}
+		return sum;
+	}
+
+	/**
+	 * The exact number of entities within the given distance of the geometry
+	 * @param geometry
+	 * @param distance
+	 * @return
+	 */
+	int countWithin(Geometry geometry, double distance) {
+		Envelope env = new Envelope(geometry.getEnvelopeInternal());
+		env.expandBy(distance);
+		int iMin = Math.max(0, (int) Math.floor((env.getMinX() - minX) / cellSize));
+		int iMax = Math.min(nx - 1, (int) Math.floor((env.getMaxX() - minX) / cellSize));
+		int jMin = Math.max(0, (int) Math.floor((env.getMinY() - minY) / cellSize));
+		int jMax = Math.min(ny - 1, (int) Math.floor((env.getMaxY() - minY) / cellSize));
+		double halfDiagonal = getDiagonal() / 2;
+		int count = 0;
+		for(int j = jMin; j <= jMax; j++) {
+			for(int i = iMin; i <= iMax; i++) {
+				int c = j * nx + i;
+				if(counts[c] == 0)
+					continue;
+				// border cells may hold entities outside of their bounds: test them one by one
+				boolean border = i == 0 || j == 0 || i == nx - 1 || j == ny - 1;
+				if(!border) {
+					double d = geometry.distance(point(centerX(i), centerY(j)));
+					if(d + halfDiagonal <= distance) {
+						count += counts[c];
+						continue;
+					}
+					if(d - halfDiagonal > distance)
+						continue;
+				}
+				for(int k = 0; k < counts[c]; k++)
+					if(geometry.isWithinDistance(point(cellXs[c][k], cellYs[c][k]), distance))
+						count++;
+			}
+		}
+		return count;
+	}
+
+	// ------------------------------------------------------ //
+
+	private double getDiagonal() {
+		return cellSize * Math.sqrt(2);
+	}
+
+	private int cell(double x, double y) {
+		int i = Math.max(0, Math.min(nx - 1, (int) Math.floor((x - minX) / cellSize)));
+		int j = Math.max(0, Math.min(ny - 1, (int) Math.floor((y - minY) / cellSize)));
+		return j * nx + i;
+	}
+
+	private double centerX(int i) {
+		return minX + (i + 0.5) * cellSize;
+	}
+
+	private double centerY(int j) {
+		return minY + (j + 0.5) * cellSize;
+	}
+
+	private static Geometry point(double x, double y) {
+		return GEOMETRY_FACTORY.createPoint(new Coordinate(x, y));
+	}
+
+}
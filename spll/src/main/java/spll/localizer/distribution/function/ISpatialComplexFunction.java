@@ -29,4 +29,18 @@ public interface ISpatialComplexFunction<N extends Number> extends BiFunction<AG
 	 */
 	public void clear();
 	
+	/**
+	 * Takes into account an entity that has just been localized. Does nothing by default.
+	 * 
+	 * @param entity
+	 */
+	default void addEntity(SpllEntity entity) {}
+	
+	/**
+	 * Withdraws a localized entity, before it is moved. Does nothing by default.
+	 * 
+	 * @param entity
+	 */
+	default void removeEntity(SpllEntity entity) {}
+	
 }
@@ -1,18 +1,35 @@
 package spll.io;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.geotools.coverage.grid.GridCoordinates2D;
+import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.feature.SchemaException;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.opengis.referencing.operation.TransformException;
 
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
 import core.configuration.dictionary.AttributeDictionary;
 import core.metamodel.IPopulation;
 import core.metamodel.attribute.Attribute;
@@ -24,6 +41,8 @@ import core.util.data.GSEnumDataType;
 import core.util.excpetion.GSIllegalRangedData;
 import gospl.generator.util.GSUtilGenerator;
 import spll.SpllPopulation;
+import spll.entity.SpllFeature;
+import spll.entity.iterator.GSPixelCursor;
 import spll.io.exception.InvalidGeoFormatException;
 import spll.localizer.SPLocalizer;
 
@@ -92,6 +111,57 @@ public class IoTest {
 	}
 	
 	
+	@Test
+	public void spatialIndexMatchesFilters() throws IOException, InvalidGeoFormatException, GSIllegalRangedData {
+		SPLVectorFile file = SPLGeofileBuilder.getShapeFile(new File("src/test/resources/buildings.shp"), null);
+		Envelope env = file.getEnvelope();
+		Geometry bounds = new GeometryFactory().toGeometry(new Envelope(
+				env.getMinX(), env.getMinX() + env.getWidth() / 2, 
+				env.getMinY(), env.getMinY() + env.getHeight() / 2));
+		
+		Set<SpllFeature> within = new HashSet<>();
+		file.getGeoEntityIteratorWithin(bounds).forEachRemaining(within::add);
+		assertEquals(within, new HashSet<>(file.getGeoEntityWithin(bounds)));
+		
+		Set<SpllFeature> intersect = new HashSet<>();
+		file.getGeoEntityIteratorIntersect(bounds).forEachRemaining(intersect::add);
+		assertEquals(intersect, new HashSet<>(file.getGeoEntityIntersect(bounds)));
+	}
+	
+	@Test
+	public void pixelCursorMatchesPerPixelRead() throws IOException, InvalidGeoFormatException, GSIllegalRangedData {
+		SPLRasterFile file = (SPLRasterFile) new SPLGeofileBuilder()
+				.setFile(new File("src/test/resources/CLC12_D076_RGF_S.tif")).buildGeofile();
+		GridCoverage2D coverage = file.getStore().read(null);
+		RenderedImage image = coverage.getRenderedImage();
+		Rectangle grid = coverage.getGridGeometry().getGridRange2D().getBounds();
+		
+		// pixels are expected tile by tile, then row by row within a tile, starting with the origin of the grid
+		List<Point> expected = new ArrayList<>();
+		for(int ty = 0; ty < image.getNumYTiles(); ty++)
+			for(int tx = 0; tx < image.getNumXTiles(); tx++) {
+				Rectangle tile = image.getTile(image.getMinTileX() + tx, image.getMinTileY() + ty)
+						.getBounds().intersection(grid);
+				for(int y = tile.y; y < tile.y + tile.height; y++)
+					for(int x = tile.x; x < tile.x + tile.width; x++)
+						expected.add(new Point(x, y));
+			}
+		assertEquals(grid.width * grid.height, expected.size());
+		assertEquals(new Point(grid.x, grid.y), expected.get(0));
+		
+		GSPixelCursor cursor = new GSPixelCursor(file.getStore().getGridCoverageCount(), coverage);
+		double[] values = new double[image.getSampleModel().getNumBands()];
+		for(Point p : expected) {
+			assertTrue(cursor.next());
+			assertEquals(p, new Point(cursor.getGridX(), cursor.getGridY()));
+			// same values as the former per-pixel read of the coverage
+			coverage.evaluate(new GridCoordinates2D(p.x, p.y), values);
+			for(int b = 0; b < cursor.getBandNumber(); b++)
+				assertEquals(values[b], cursor.getValue(b), 0d);
+		}
+		assertFalse(cursor.next());
+	}
+	
 	@SuppressWarnings("unchecked")
 	private static void setupRandom(){
 		AttributeDictionary atts = new AttributeDictionary();
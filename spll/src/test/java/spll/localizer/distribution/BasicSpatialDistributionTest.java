@@ -0,0 +1,72 @@
+package spll.localizer.distribution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import core.metamodel.entity.ADemoEntity;
+import core.metamodel.entity.AGeoEntity;
+import core.metamodel.value.IValue;
+import spll.localizer.distribution.function.ISpatialEntityFunction;
+
+public class BasicSpatialDistributionTest {
+
+	private final GeometryFactory factory = new GeometryFactory();
+
+	@Test
+	public void negativeWeightsCannotBeDrawn() {
+		AGeoEntity<IValue> full = place("full", 0), free = place("free", 1);
+		Map<AGeoEntity<? extends IValue>, Integer> capacities = new HashMap<>();
+		capacities.put(full, 1);
+		capacities.put(free, 1);
+
+		BasicSpatialDistribution<Integer, ADemoEntity> distribution =
+				new BasicSpatialDistribution<>(new ISpatialEntityFunction<Integer>() {
+					@Override
+					public Integer apply(AGeoEntity<? extends IValue> place) {
+						return capacities.get(place);
+					}
+					@Override
+					public void updateFunctionState(AGeoEntity<? extends IValue> entity) {}
+				});
+		distribution.setCandidate(Arrays.asList(full, free));
+
+		// e.g. the capacity of a place decreased twice by localizers running in parallel
+		capacities.put(full, -1);
+		distribution.updateCandidate(full);
+		for (int i = 0; i < 100; i++)
+			assertSame(free, distribution.getCandidate(null));
+
+		// a negative capacity when candidates are set is not drawn either
+		distribution.setCandidate(Arrays.asList(full, free));
+		assertEquals(2, distribution.getCandidates().size());
+		assertSame(free, distribution.getCandidate(null));
+
+		capacities.put(free, 0);
+		distribution.updateCandidate(free);
+		assertNull(distribution.getCandidate(null));
+	}
+
+	// ------------------------------------------------------ //
+
+	private AGeoEntity<IValue> place(String id, double x) {
+		Geometry point = factory.createPoint(new Coordinate(x, 0));
+		return new AGeoEntity<IValue>(new HashMap<>(), id) {
+			@Override
+			public Geometry getGeometry() {
+				return point;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,145 @@
+package spll.localizer.distribution.function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class GravityMassGridTest {
+
+	private static final int ENTITIES = 2000;
+	private static final int GRID_SIZE = 16;
+
+	private final GeometryFactory factory = new GeometryFactory();
+	private final Envelope extent = new Envelope(0, 1000, 0, 600);
+
+	private double[] xs, ys;
+
+	@Before
+	public void setUp() {
+		Random random = new Random(42);
+		xs = new double[ENTITIES];
+		ys = new double[ENTITIES];
+		for (int i = 0; i < ENTITIES; i++) {
+			// two clusters and some noise, to get cells with very different counts
+			double cx = i % 3 == 0 ? 200 : 750, cy = i % 3 == 0 ? 150 : 400;
+			xs[i] = i % 5 == 0 ? random.nextDouble() * extent.getWidth()
+					: Math.max(0, Math.min(extent.getMaxX(), cx + random.nextGaussian() * 80));
+			ys[i] = i % 5 == 0 ? random.nextDouble() * extent.getHeight()
+					: Math.max(0, Math.min(extent.getMaxY(), cy + random.nextGaussian() * 80));
+		}
+	}
+
+	@Test
+	public void countWithinIsTheEntityByEntityCount() {
+		// entities outside of the extent of the grid are still counted
+		xs = Arrays.copyOf(xs, ENTITIES + 2);
+		ys = Arrays.copyOf(ys, ENTITIES + 2);
+		xs[ENTITIES] = -50;
+		ys[ENTITIES] = 300;
+		xs[ENTITIES + 1] = 1100;
+		ys[ENTITIES + 1] = 650;
+		GravityMassGrid grid = new GravityMassGrid(extent, GRID_SIZE);
+		grid.build(xs, ys);
+
+		for (Geometry geometry : geometries()) {
+			for (double buffer : new double[] {50, 150, 400}) {
+				int count = grid.countWithin(geometry, buffer);
+				assertEquals(bruteCountWithin(geometry, buffer), count);
+				// the former count tested entities against the buffer polygon, that cuts arcs of the buffer
+				int polygonCount = bruteCountInBuffer(geometry, buffer);
+				assertTrue(polygonCount <= count);
+				assertTrue(bruteCountWithin(geometry, buffer * Math.cos(Math.PI / 32)) <= polygonCount);
+			}
+		}
+	}
+
+	@Test
+	public void distanceMassIsTheEntityByEntitySum() {
+		GravityMassGrid grid = new GravityMassGrid(extent, GRID_SIZE);
+		grid.build(xs, ys);
+		for (Geometry geometry : geometries()) {
+			double expected = bruteDistanceMass(geometry);
+			assertEquals(expected, grid.distanceMass(geometry), expected * 1e-9);
+		}
+	}
+
+	@Test
+	public void approximatedDistanceMassIsBounded() {
+		GravityMassGrid grid = new GravityMassGrid(extent, GRID_SIZE);
+		grid.build(xs, ys);
+		double farCells = 4;
+		for (Geometry geometry : geometries()) {
+			double expected = bruteDistanceMass(geometry);
+			assertEquals(expected, grid.distanceMass(geometry, farCells), expected / (farCells - 1));
+		}
+	}
+
+	@Test
+	public void removeUndoesAdd() {
+		GravityMassGrid grid = new GravityMassGrid(extent, GRID_SIZE);
+		grid.build(xs, ys);
+		Geometry from = factory.createPoint(new Coordinate(123, 456));
+		Geometry around = factory.createPoint(new Coordinate(200, 150));
+		double before = grid.distanceMass(from);
+		int countBefore = grid.countWithin(around, 100);
+
+		grid.add(210, 160);
+		assertEquals(before + Math.hypot(210 - 123, 160 - 456), grid.distanceMass(from), before * 1e-9);
+		assertEquals(countBefore + 1, grid.countWithin(around, 100));
+
+		grid.remove(210, 160);
+		assertEquals(before, grid.distanceMass(from), before * 1e-9);
+		assertEquals(countBefore, grid.countWithin(around, 100));
+
+		// no entity there
+		grid.remove(211, 161);
+		assertEquals(countBefore, grid.countWithin(around, 100));
+	}
+
+	// ------------------------------------------------------ //
+
+	private Geometry[] geometries() {
+		return new Geometry[] {
+				factory.createPoint(new Coordinate(200, 150)),
+				factory.createPoint(new Coordinate(900, 50)),
+				factory.createLineString(new Coordinate[] {new Coordinate(100, 500), new Coordinate(800, 300)}),
+				// a polygon that contains entities
+				factory.toGeometry(new Envelope(600, 700, 350, 450))
+		};
+	}
+
+	private double bruteDistanceMass(Geometry geometry) {
+		double sum = 0;
+		for (int i = 0; i < xs.length; i++)
+			sum += geometry.distance(factory.createPoint(new Coordinate(xs[i], ys[i])));
+		return sum;
+	}
+
+	private int bruteCountWithin(Geometry geometry, double distance) {
+		int count = 0;
+		for (int i = 0; i < xs.length; i++)
+			if (geometry.isWithinDistance(factory.createPoint(new Coordinate(xs[i], ys[i])), distance))
+				count++;
+		return count;
+	}
+
+	private int bruteCountInBuffer(Geometry geometry, double distance) {
+		Geometry buffer = geometry.buffer(distance);
+		int count = 0;
+		for (int i = 0; i < xs.length; i++)
+			if (buffer.contains(factory.createPoint(new Coordinate(xs[i], ys[i]))))
+				count++;
+		return count;
+	}
+
+}
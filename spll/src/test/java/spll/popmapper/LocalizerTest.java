@@ -103,6 +103,19 @@ public class LocalizerTest {
 		assert localizedPop.stream().filter(a -> a.getLocation() != null).count() == 50;
 	}
 	
+	@Test
+	public void testParallelMatcher() {
+		SPLocalizer localizer = new SPLocalizer(sst.pop, sst.sfBuildings);
+		
+		localizer.setMatcher(sst.sfAdmin, "iris", "CODE_IRIS");
+		localizer.getLocalizationConstraint().setIncreaseStep(10.0);
+		localizer.getLocalizationConstraint().setMaxIncrease(10.0); 
+		localizer.setParallelism(4);
+		SpllPopulation localizedPop = localizer.localisePopulation();
+		
+		assert localizedPop.stream().filter(a -> a.getLocation() != null).count() == 50;
+	}
+	
 	@Test
 	public void testMatcherMapperRegression() {
 
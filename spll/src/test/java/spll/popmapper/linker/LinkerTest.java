@@ -61,4 +61,42 @@ public class LinkerTest {
 		assert localizedPop.stream().allMatch(a -> a.getLinkedPlaces().containsKey(ATT_NAME));
 	}
 	
+	@Test
+	public void testKernelLinker() throws GSIllegalRangedData {
+		SPLocalizer localizer = new SPLocalizer(sst.pop, sst.sfBuildings);
+		SpllPopulation localizedPop = localizer.localisePopulation();
+		
+		ISPLinker<SpllEntity> linker = new SPLinker<>(SpatialDistributionFactory.getInstance()
+				.getGravityKernelDistribution(sst.sfRoads.getGeoEntity(), 1.0, 10,
+						localizedPop.toArray(new SpllEntity[localizedPop.size()])));
+		
+		localizer.linkPopulation(localizedPop, linker, sst.sfRoads.getGeoEntity(), 
+				AttributeFactory.getFactory().createAttribute("Kernel driving", GSEnumDataType.Nominal));
+		
+		assert localizedPop.stream().allMatch(a -> a.getLinkedPlaces().containsKey("Kernel driving"));
+	}
+	
+	@Test
+	public void testKernelLinkerDrawsNearest() throws GSIllegalRangedData {
+		SPLocalizer localizer = new SPLocalizer(sst.pop, sst.sfBuildings);
+		SpllPopulation localizedPop = localizer.localisePopulation();
+		
+		// flat kernel: only the restriction to the k nearest roads makes the draw spatial
+		int k = 3;
+		ISPLinker<SpllEntity> linker = new SPLinker<>(SpatialDistributionFactory.getInstance()
+				.getKernelDistribution(d -> 1d, k, 0));
+		
+		Collection<? extends AGeoEntity<? extends IValue>> roads = sst.sfRoads.getGeoEntity();
+		localizer.linkPopulation(localizedPop, linker, roads, 
+				AttributeFactory.getFactory().createAttribute("Nearest road", GSEnumDataType.Nominal));
+		
+		assert localizedPop.stream().allMatch(a -> {
+			double kthDistance = roads.stream()
+					.mapToDouble(road -> road.getGeometry().getCentroid().distance(a.getLocation()))
+					.sorted().skip(k - 1).findFirst().getAsDouble();
+			return a.getLinkedPlaces().get("Nearest road").getGeometry().getCentroid()
+					.distance(a.getLocation()) <= kthDistance;
+		});
+	}
+	
 }